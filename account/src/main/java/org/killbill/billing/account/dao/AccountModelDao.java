@@ -168,6 +168,19 @@ public class AccountModelDao extends EntityModelDaoBase implements TimeZoneAware
         }
     }
 
+    // Row as written by AccountSqlDao#update: the updated fields come from this model, the other ones from the current row
+    public AccountModelDao toUpdatedRow(final AccountModelDao currentAccount, final DateTime updatedDate) {
+        final AccountModelDao updatedRow = new AccountModelDao(getId(), currentAccount.getCreatedDate(), updatedDate, currentAccount.getExternalKey(),
+                                                               email, name, firstNameLength, currency, parentAccountId, isPaymentDelegatedToParent,
+                                                               billingCycleDayLocal, paymentMethodId, currentAccount.getReferenceTime(), timeZone,
+                                                               locale, address1, address2, companyName, city, stateOrProvince, country, postalCode,
+                                                               phone, notes, currentAccount.getMigrated(), false);
+        updatedRow.setRecordId(currentAccount.getRecordId());
+        updatedRow.setAccountRecordId(currentAccount.getAccountRecordId());
+        updatedRow.setTenantRecordId(currentAccount.getTenantRecordId());
+        return updatedRow;
+    }
+
     public void validateAccountUpdateInput(final AccountModelDao currentAccount,
                                            final boolean ignoreNullInput,
                                            final boolean allowAccountBCDUpdate) {
@@ -49,7 +49,7 @@ public interface AccountSqlDao extends EntitySqlDao<AccountModelDao, Account> {
                           @SmartBindBean final InternalTenantContext context);
 
     @SqlUpdate
-    @Audited(ChangeType.UPDATE)
+    @Audited(value = ChangeType.UPDATE, historyFromArguments = true)
     public void update(@SmartBindBean final AccountModelDao account,
                        @SmartBindBean final InternalCallContext context);
 
@@ -223,7 +223,8 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
                 specifiedAccount.mergeWithDelegate(currentAccount);
             }
 
-            transactional.update(specifiedAccount, context);
+            // PERF: pass the full row, so that the history entry doesn't require to read it back
+            transactional.update(specifiedAccount.toUpdatedRow(currentAccount, context.getUpdatedDate()), context);
 
             final AccountChangeInternalEvent changeEvent = new DefaultAccountChangeEvent(accountId,
                                                                                          currentAccount,
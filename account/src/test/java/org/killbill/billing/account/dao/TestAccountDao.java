@@ -250,6 +250,8 @@ public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(history2.getMigrated(), retrievedAccount.getMigrated());
         Assert.assertEquals(history2.getTimeZone(), retrievedAccount.getTimeZone());
         Assert.assertEquals(history2.getLocale(), retrievedAccount.getLocale());
+        Assert.assertEquals(history2.getName(), retrievedAccount.getName());
+        Assert.assertEquals(history2.getReferenceTime().compareTo(retrievedAccount.getReferenceTime()), 0);
 
         final AccountData accountData2 = new MockAccountBuilder(new DefaultAccount(updatedAccount)).locale("en_US")
                                                                                                    .build();
@@ -271,6 +273,8 @@ public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(history3.getMigrated(), retrievedAccount2.getMigrated());
         Assert.assertEquals(history3.getTimeZone(), retrievedAccount2.getTimeZone());
         Assert.assertEquals(history3.getLocale(), retrievedAccount2.getLocale());
+        Assert.assertEquals(history3.getName(), retrievedAccount2.getName());
+        Assert.assertEquals(history3.getReferenceTime().compareTo(retrievedAccount2.getReferenceTime()), 0);
     }
 
     @Test(groups = "slow", description = "Test Account DAO: payment method update")
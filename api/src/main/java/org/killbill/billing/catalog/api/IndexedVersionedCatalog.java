@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.catalog.api;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+//
+// VersionedCatalog with O(log V) lookups by effective date and by plan (or phase) name across the V versions.
+// Version indexes refer to the position in getVersions().
+//
+public interface IndexedVersionedCatalog extends VersionedCatalog {
+
+    // Index of the version effective at the given date (or of the first version, if the date is prior all versions)
+    public int getVersionIndex(Date date);
+
+    // Index of the latest version, prior or equal to maxVersionIndex, defining that plan -- or -1 if none does
+    public int getLatestVersionIndexForPlan(String planName, int maxVersionIndex);
+
+    // Plan as defined in the given version -- or null if that version doesn't define it
+    public Plan findPlan(String planName, int versionIndex);
+
+    // Plan as defined in the version effective at the given date
+    public Plan findPlan(String planName, Date date) throws CatalogApiException;
+
+    // Phase as defined in the version effective at the given date
+    public PlanPhase findPhase(String phaseName, Date date) throws CatalogApiException;
+
+    // Resolve at once the (price overridden) plans not defined by the catalog itself, for the versions effective at the given dates,
+    // so that subsequent lookups for these plans don't hit the database one plan at a time
+    public void loadOverriddenPlans(Map<String, ? extends Collection<Date>> effectiveDatesByPlanName);
+}
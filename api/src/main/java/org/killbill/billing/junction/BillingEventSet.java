@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.killbill.billing.catalog.api.Usage;
 
@@ -36,4 +37,10 @@ public interface BillingEventSet extends SortedSet<BillingEvent> {
     public List<UUID> getSubscriptionIdsWithAutoInvoiceOff();
 
     public Map<String, Usage> getUsages();
+
+    // Events of that subscription, in order
+    public default List<BillingEvent> getSubscriptionEvents(final UUID subscriptionId) {
+        return stream().filter(event -> subscriptionId.equals(event.getSubscriptionId()))
+                       .collect(Collectors.toUnmodifiableList());
+    }
 }
@@ -83,6 +83,12 @@ public interface SubscriptionBaseInternalApi {
 
     public SubscriptionBase getSubscriptionFromExternalKey(String externalKey, InternalTenantContext context) throws SubscriptionBaseApiException;
 
+    /**
+     * @param subscription a subscription returned by this API
+     * @return a copy of the subscription, which isn't affected by the user APIs (cancel, changePlan, ...) invoked on the original one, and vice versa
+     */
+    public SubscriptionBase copySubscription(SubscriptionBase subscription);
+
     public SubscriptionBaseBundle getBundleFromId(UUID id, InternalTenantContext context) throws SubscriptionBaseApiException;
 
     public void setChargedThroughDates(Map<DateTime, List<UUID>> chargeThroughDates, InternalCallContext context) throws SubscriptionBaseApiException;
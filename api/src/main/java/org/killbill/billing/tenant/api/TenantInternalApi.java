@@ -20,11 +20,21 @@ package org.killbill.billing.tenant.api;
 import java.util.List;
 import java.util.Locale;
 
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 
 public interface TenantInternalApi {
 
+    // Catalog snapshots, only maintained internally through updateTenantValueForKey
+    public static final String CATALOG_SNAPSHOT_WITH_TEMPLATES_KEY = "SNAPSHOT_CATALOG_WITH_TEMPLATES";
+    public static final String CATALOG_SNAPSHOT_WITHOUT_TEMPLATES_KEY = "SNAPSHOT_CATALOG_WITHOUT_TEMPLATES";
+
+    /**
+     * Keys which can only be modified through {@link #updateTenantValueForKey}, and not through the TenantUserApi
+     */
+    public static final List<String> RESERVED_KEYS = List.of(CATALOG_SNAPSHOT_WITH_TEMPLATES_KEY, CATALOG_SNAPSHOT_WITHOUT_TEMPLATES_KEY);
+
     public interface CacheInvalidationCallback {
 
         /**
@@ -57,5 +67,14 @@ public interface TenantInternalApi {
 
     public List<String> getTenantValuesForKey(final String key, final InternalTenantContext tenantContext);
 
+    /**
+     * Replace the values of a key which is not a {@link TenantKey} (such keys are neither cached nor broadcast across nodes)
+     *
+     * @param key     the key
+     * @param value   the new value
+     * @param context the call context
+     */
+    public void updateTenantValueForKey(final String key, final String value, final InternalCallContext context);
+
     public Tenant getTenantByApiKey(final String key) throws TenantApiException;
 }
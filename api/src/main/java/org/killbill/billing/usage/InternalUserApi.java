@@ -18,14 +18,37 @@
 package org.killbill.billing.usage;
 
 import java.util.List;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.invoice.api.DryRunInfo;
 import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.util.entity.Pagination;
 
 public interface InternalUserApi {
 
     public List<RawUsageRecord> getRawUsageForAccount(DateTime stateDate, DateTime endDate, DryRunInfo dryRunInfo, InternalTenantContext tenantContext);
+
+    /**
+     * Streaming variant of {@link #getRawUsageForAccount(DateTime, DateTime, DryRunInfo, InternalTenantContext)}: the records are read from a
+     * forward-only cursor as they are iterated, ordered by subscription id (string representation) and record date, so that the usage can be
+     * consumed one subscription at a time.
+     * <p>
+     * The returned pagination holds a database connection and must be closed.
+     */
+    public Pagination<RawUsageRecord> getRawUsageStreamForAccount(DateTime stateDate, DateTime endDate, DryRunInfo dryRunInfo, InternalTenantContext tenantContext);
+
+    /**
+     * Same as {@link #getRawUsageForAccount(DateTime, DateTime, DryRunInfo, InternalTenantContext)}, except that the usage of the days fully
+     * covered by the daily rollup is returned as {@link org.killbill.billing.usage.api.AggregatedRawUsageRecord} instead of raw records.
+     * <p>
+     * Raw records are always returned for the (UTC) days containing the start and end dates, as well as for the specified days (typically
+     * the days of the billing transitions, which can split a day in several billing intervals). Raw records only are returned when the usage
+     * comes from a plugin or when the rollup does not cover all the raw records of the period.
+     *
+     * @param rawUsageDays the UTC days for which raw records are required
+     */
+    public List<RawUsageRecord> getAggregatedUsageForAccount(DateTime stateDate, DateTime endDate, Set<LocalDate> rawUsageDays, DryRunInfo dryRunInfo, InternalTenantContext tenantContext);
 }
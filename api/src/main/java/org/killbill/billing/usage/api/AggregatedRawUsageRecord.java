@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api;
+
+import java.math.BigDecimal;
+
+import org.joda.time.DateTime;
+
+/**
+ * A {@link RawUsageRecord} standing for all the raw records of a subscription sharing the same unit type, tracking id and day.
+ * <p>
+ * {@link #getDate()} is the date of the earliest of these records and {@link #getAmount()} the sum of their amounts.
+ */
+public interface AggregatedRawUsageRecord extends RawUsageRecord {
+
+    /**
+     * @return the date of the latest aggregated record
+     */
+    DateTime getMaxDate();
+
+    /**
+     * @return the largest amount among the aggregated records (used for capacity usage)
+     */
+    BigDecimal getMaxAmount();
+
+    /**
+     * @return the number of aggregated records
+     */
+    long getNbRecords();
+}
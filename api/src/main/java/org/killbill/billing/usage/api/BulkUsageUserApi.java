@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api;
+
+import java.util.List;
+
+import org.killbill.billing.util.callcontext.CallContext;
+
+public interface BulkUsageUserApi {
+
+    /**
+     * Record the usage of many subscriptions at once.
+     * <p>
+     * The tracking ids of the whole batch are checked with a single lookup: a record whose tracking id already exists for its
+     * subscription (or which is repeated within the batch) is skipped and reported as {@link UsageRecordResult.Status#DUPLICATE},
+     * so that a partially failed batch can be safely retried. Records without a tracking id are always recorded.
+     *
+     * @param records     the usage records, for any subscription of the tenant
+     * @param callContext the call context
+     * @return the status of each record, in the order of the input
+     */
+    List<UsageRecordResult> recordRolledUpUsage(Iterable<SubscriptionUsageRecord> records, CallContext callContext);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api;
+
+import java.util.UUID;
+
+public class UsageRecordResult {
+
+    public enum Status {
+        RECORDED,
+        DUPLICATE
+    }
+
+    private final UUID subscriptionId;
+    private final String trackingId;
+    private final Status status;
+
+    public UsageRecordResult(final UUID subscriptionId, final String trackingId, final Status status) {
+        this.subscriptionId = subscriptionId;
+        this.trackingId = trackingId;
+        this.status = status;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+}
@@ -1273,6 +1273,26 @@ public class TestIntegrationBase extends BeatrixTestSuiteWithEmbeddedDB implemen
             return isUsageZeroAmountDisabled();
         }
 
+        @Override
+        public boolean isUsageDailyRollupEnabled() {
+            return defaultInvoiceConfig.isUsageDailyRollupEnabled();
+        }
+
+        @Override
+        public boolean isUsageDailyRollupEnabled(final InternalTenantContext tenantContext) {
+            return isUsageDailyRollupEnabled();
+        }
+
+        @Override
+        public boolean isUsageStreamingEnabled() {
+            return defaultInvoiceConfig.isUsageStreamingEnabled();
+        }
+
+        @Override
+        public boolean isUsageStreamingEnabled(final InternalTenantContext tenantContext) {
+            return isUsageStreamingEnabled();
+        }
+
         @Override
         public boolean isUsageMissingLenient() {
             return defaultInvoiceConfig.isUsageMissingLenient();
@@ -1331,6 +1351,41 @@ public class TestIntegrationBase extends BeatrixTestSuiteWithEmbeddedDB implemen
             this.maxRawUsagePreviousPeriod = maxRawUsagePreviousPeriod;
         }
 
+        @Override
+        public boolean isParallelItemGenerationEnabled() {
+            return defaultInvoiceConfig.isParallelItemGenerationEnabled();
+        }
+
+        @Override
+        public boolean isParallelItemGenerationEnabled(final InternalTenantContext tenantContext) {
+            return isParallelItemGenerationEnabled();
+        }
+
+        @Override
+        public int getParallelItemGenerationThreadNb() {
+            return defaultInvoiceConfig.getParallelItemGenerationThreadNb();
+        }
+
+        @Override
+        public boolean isArrayBackedItemTreeEnabled() {
+            return defaultInvoiceConfig.isArrayBackedItemTreeEnabled();
+        }
+
+        @Override
+        public boolean isArrayBackedItemTreeEnabled(final InternalTenantContext tenantContext) {
+            return isArrayBackedItemTreeEnabled();
+        }
+
+        @Override
+        public boolean isSubscriptionWatermarkEnabled() {
+            return defaultInvoiceConfig.isSubscriptionWatermarkEnabled();
+        }
+
+        @Override
+        public boolean isSubscriptionWatermarkEnabled(final InternalTenantContext tenantContext) {
+            return isSubscriptionWatermarkEnabled();
+        }
+
         @Override
         public int getMaxGlobalLockRetries() {
             return defaultInvoiceConfig.getMaxGlobalLockRetries();
@@ -1423,6 +1478,16 @@ public class TestIntegrationBase extends BeatrixTestSuiteWithEmbeddedDB implemen
             return getRescheduleIntervalOnLock();
         }
 
+        @Override
+        public TimeSpan getSlowAccountThreshold() {
+            return defaultInvoiceConfig.getSlowAccountThreshold();
+        }
+
+        @Override
+        public TimeSpan getSlowAccountThreshold(final InternalTenantContext tenantContext) {
+            return getSlowAccountThreshold();
+        }
+
         public void setShouldParkAccountsWithUnknownUsage(final boolean shouldParkAccountsWithUnknownUsage) {
             this.shouldParkAccountsWithUnknownUsage = shouldParkAccountsWithUnknownUsage;
         }
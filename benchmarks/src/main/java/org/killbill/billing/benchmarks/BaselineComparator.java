@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JMH JSON result files (as produced by {@code -rf json}) and flags the benchmarks whose
+ * score regressed by more than the given threshold (10% by default).
+ * <p>
+ * A difference is only reported as a regression when it is also larger than the combined error bars
+ * ({@code scoreError}, i.e. the 99.9% confidence interval half-width) of both runs: otherwise the two
+ * confidence intervals overlap and the difference is noise.
+ * <p>
+ * Usage: {@code BaselineComparator <baseline.json> <current.json> [thresholdPercent]}. The exit code is 1 when at least one regression is found.
+ */
+public class BaselineComparator {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+
+        final double thresholdPercent = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        final Map<String, Result> baseline = load(new File(args[0]));
+        final Map<String, Result> current = load(new File(args[1]));
+
+        int nbRegressions = 0;
+        for (final Entry<String, Result> entry : current.entrySet()) {
+            final Result baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null) {
+                System.out.printf("%-100s %31s %14.3f +/- %-12.3f %-10s%n", entry.getKey(), "-", entry.getValue().score, entry.getValue().scoreError, "NEW");
+                continue;
+            }
+
+            final double deltaPercent = 100.0 * (entry.getValue().score - baselineResult.score) / baselineResult.score;
+            // Higher is better for throughput, lower is better for the other modes
+            final double regressionPercent = "thrpt".equals(entry.getValue().mode) ? -deltaPercent : deltaPercent;
+            final boolean isSignificant = Math.abs(entry.getValue().score - baselineResult.score) > baselineResult.scoreError + entry.getValue().scoreError;
+            final boolean isRegression = regressionPercent > thresholdPercent && isSignificant;
+            if (isRegression) {
+                nbRegressions++;
+            }
+            System.out.printf("%-100s %14.3f +/- %-12.3f %14.3f +/- %-12.3f %+9.1f%% %s%n",
+                              entry.getKey(),
+                              baselineResult.score,
+                              baselineResult.scoreError,
+                              entry.getValue().score,
+                              entry.getValue().scoreError,
+                              deltaPercent,
+                              isRegression ? "REGRESSION" : (regressionPercent > thresholdPercent ? "(within error)" : ""));
+        }
+
+        System.exit(nbRegressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Result> load(final File file) throws IOException {
+        final Map<String, Result> results = new LinkedHashMap<>();
+        for (final JsonNode run : new ObjectMapper().readTree(file)) {
+            final StringBuilder key = new StringBuilder(run.get("benchmark").asText());
+            final JsonNode params = run.get("params");
+            if (params != null) {
+                final Iterator<Entry<String, JsonNode>> it = params.fields();
+                while (it.hasNext()) {
+                    final Entry<String, JsonNode> param = it.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+
+            final JsonNode primaryMetric = run.get("primaryMetric");
+            // scoreError is NaN when there is a single measurement iteration
+            final double scoreError = primaryMetric.get("scoreError").asDouble();
+            results.put(key.toString(), new Result(run.get("mode").asText(), primaryMetric.get("score").asDouble(), Double.isNaN(scoreError) ? 0.0 : scoreError));
+        }
+        return results;
+    }
+
+    private static final class Result {
+
+        private final String mode;
+        private final double score;
+        private final double scoreError;
+
+        private Result(final String mode, final double score, final double scoreError) {
+            this.mode = mode;
+            this.score = score;
+            this.scoreError = scoreError;
+        }
+    }
+}
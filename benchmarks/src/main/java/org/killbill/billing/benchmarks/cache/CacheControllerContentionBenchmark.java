@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.killbill.billing.util.cache.BaseCacheLoader;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.cache.KillBillCacheController;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link KillBillCacheController#get} when many threads miss at the same time (e.g. cold caches after a deploy).
+ * <p>
+ * The loader parks for {@code loadTimeMicros} to simulate a database or catalog load. Run with:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CacheControllerContentionBenchmark -t 16
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+public class CacheControllerContentionBenchmark {
+
+    private static final int NB_WARM_KEYS = 1000;
+    // Number of consecutive requests sharing the same key in sameKeyMisses
+    private static final int NB_REQUESTS_PER_KEY = 16;
+
+    @Param({"100", "1000"})
+    public long loadTimeMicros;
+
+    private final AtomicLong keySequence = new AtomicLong();
+
+    private CacheManager cacheManager;
+    private KillBillCacheController<String, Long> cacheController;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider").getCacheManager();
+        final Cache<String, Long> cache = cacheManager.createCache("benchmark-" + CacheType.RECORD_ID.getCacheName(),
+                                                                   new MutableConfiguration<String, Long>().setTypes(String.class, Long.class));
+        cacheController = new KillBillCacheController<String, Long>(cache, new SlowCacheLoader(loadTimeMicros), new NoOpMetricRegistry());
+
+        for (int i = 0; i < NB_WARM_KEYS; i++) {
+            cacheController.get("warm-" + i, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheManager.close();
+    }
+
+    @Benchmark
+    public Long hits() {
+        return cacheController.get("warm-" + ThreadLocalRandom.current().nextInt(NB_WARM_KEYS), null);
+    }
+
+    @Benchmark
+    public Long distinctKeyMisses() {
+        // Every request misses on its own key: these loads should run in parallel
+        final String key = String.valueOf(keySequence.incrementAndGet());
+        final Long value = cacheController.get(key, null);
+        cacheController.remove(key);
+        return value;
+    }
+
+    @Benchmark
+    public Long sameKeyMisses() {
+        // Concurrent requests ask for the same key: they should share a single load
+        return cacheController.get("shared-" + keySequence.incrementAndGet() / NB_REQUESTS_PER_KEY, null);
+    }
+
+    private static final class SlowCacheLoader extends BaseCacheLoader<String, Long> {
+
+        private final long loadTimeNanos;
+
+        private SlowCacheLoader(final long loadTimeMicros) {
+            this.loadTimeNanos = TimeUnit.MICROSECONDS.toNanos(loadTimeMicros);
+        }
+
+        @Override
+        public CacheType getCacheType() {
+            return CacheType.RECORD_ID;
+        }
+
+        @Override
+        public Long compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
+            LockSupport.parkNanos(loadTimeNanos);
+            return (long) key.hashCode();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.catalog;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingAlignment;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PhaseType;
+import org.killbill.billing.catalog.api.PlanAlignmentChange;
+import org.killbill.billing.catalog.api.PlanAlignmentCreate;
+import org.killbill.billing.catalog.api.PlanChangeResult;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.api.rules.PlanRules;
+import org.killbill.billing.catalog.rules.DefaultCaseCancelPolicy;
+import org.killbill.billing.catalog.rules.DefaultCaseChange;
+import org.killbill.billing.catalog.rules.DefaultCaseChangePlanAlignment;
+import org.killbill.billing.catalog.rules.DefaultCaseChangePlanPolicy;
+import org.killbill.billing.catalog.rules.DefaultCasePhase;
+import org.killbill.xmlloader.XMLLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the catalog plan rules lookups, on a generated catalog with 4 rule cases per product and billing period.
+ * <p>
+ * Build with {@code mvn -pl benchmarks -am package -DskipTests} and run with:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar PlanRulesBenchmark
+ * </pre>
+ * The {@code *LinearScan} benchmarks walk the rule cases like the catalog did before they were compiled into decision tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PlanRulesBenchmark {
+
+    private static final int NB_SPECIFIERS = 1024;
+    private static final String[] BILLING_PERIODS = {"MONTHLY", "ANNUAL"};
+    private static final String[] PHASE_TYPES = {"TRIAL", "EVERGREEN"};
+
+    @Param({"10", "100"})
+    public int nbProducts;
+
+    private StandaloneCatalog catalog;
+    private PlanRules planRules;
+    private DefaultCaseCancelPolicy[] cancelCases;
+    private DefaultCaseChangePlanPolicy[] changeCases;
+    private DefaultCaseChangePlanAlignment[] changeAlignmentCases;
+    private PlanPhaseSpecifier[] fromSpecifiers;
+    private PlanSpecifier[] toSpecifiers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        catalog = XMLLoader.getObjectFromStream(new ByteArrayInputStream(createCatalog(nbProducts).getBytes(StandardCharsets.UTF_8)), StandaloneCatalog.class);
+        planRules = catalog.getPlanRules();
+        cancelCases = toArray(planRules.getCaseCancelPolicy(), DefaultCaseCancelPolicy.class);
+        changeCases = toArray(planRules.getCaseChangePlanPolicy(), DefaultCaseChangePlanPolicy.class);
+        changeAlignmentCases = toArray(planRules.getCaseChangePlanAlignment(), DefaultCaseChangePlanAlignment.class);
+
+        final Random random = new Random(42);
+        fromSpecifiers = new PlanPhaseSpecifier[NB_SPECIFIERS];
+        toSpecifiers = new PlanSpecifier[NB_SPECIFIERS];
+        for (int i = 0; i < NB_SPECIFIERS; i++) {
+            fromSpecifiers[i] = new PlanPhaseSpecifier(planName(random.nextInt(nbProducts), BILLING_PERIODS[random.nextInt(2)]), PhaseType.valueOf(PHASE_TYPES[random.nextInt(2)]));
+            toSpecifiers[i] = new PlanSpecifier(planName(random.nextInt(nbProducts), BILLING_PERIODS[random.nextInt(2)]));
+        }
+    }
+
+    @Benchmark
+    public PlanAlignmentCreate createAlignment() throws CatalogApiException {
+        return planRules.getPlanCreateAlignment(toSpecifiers[nextIndex()]);
+    }
+
+    @Benchmark
+    public BillingAlignment billingAlignment() throws CatalogApiException {
+        return planRules.getBillingAlignment(fromSpecifiers[nextIndex()]);
+    }
+
+    @Benchmark
+    public BillingActionPolicy cancelPolicy() throws CatalogApiException {
+        return planRules.getPlanCancelPolicy(fromSpecifiers[nextIndex()]);
+    }
+
+    @Benchmark
+    public BillingActionPolicy cancelPolicyLinearScan() throws CatalogApiException {
+        return DefaultCasePhase.getResult(cancelCases, fromSpecifiers[nextIndex()], catalog);
+    }
+
+    @Benchmark
+    public PlanChangeResult planChange() throws CatalogApiException {
+        final int index = nextIndex();
+        return planRules.getPlanChangeResult(fromSpecifiers[index], toSpecifiers[index]);
+    }
+
+    @Benchmark
+    public PlanAlignmentChange planChangeLinearScan() throws CatalogApiException {
+        final int index = nextIndex();
+        final BillingActionPolicy policy = DefaultCaseChange.getResult(changeCases, fromSpecifiers[index], toSpecifiers[index], catalog);
+        return policy == null ? null : DefaultCaseChange.getResult(changeAlignmentCases, fromSpecifiers[index], toSpecifiers[index], catalog);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (NB_SPECIFIERS - 1);
+        return next;
+    }
+
+    private static <T> T[] toArray(final Iterable<?> cases, final Class<T> clazz) {
+        final List<T> result = new ArrayList<>();
+        for (final Object cur : cases) {
+            result.add(clazz.cast(cur));
+        }
+        @SuppressWarnings("unchecked")
+        final T[] array = (T[]) Array.newInstance(clazz, result.size());
+        return result.toArray(array);
+    }
+
+    private static String planName(final int product, final String billingPeriod) {
+        return "product-" + product + "-" + billingPeriod.toLowerCase();
+    }
+
+    // One product per plan pair, and one rule case per product, billing period (and phase type for the phase rules); the default cases come last
+    private static String createCatalog(final int nbProducts) {
+        final StringBuilder products = new StringBuilder();
+        final StringBuilder plans = new StringBuilder();
+        final StringBuilder priceListPlans = new StringBuilder();
+        final StringBuilder changePolicy = new StringBuilder();
+        final StringBuilder changeAlignment = new StringBuilder();
+        final StringBuilder cancelPolicy = new StringBuilder();
+        final StringBuilder createAlignment = new StringBuilder();
+        final StringBuilder billingAlignment = new StringBuilder();
+        for (int i = 0; i < nbProducts; i++) {
+            final String product = "Product-" + i;
+            products.append("<product name=\"").append(product).append("\"><category>BASE</category></product>");
+            for (final String billingPeriod : BILLING_PERIODS) {
+                final String planName = planName(i, billingPeriod);
+                plans.append("<plan name=\"").append(planName).append("\"><product>").append(product).append("</product>")
+                     .append("<finalPhase type=\"EVERGREEN\"><duration><unit>UNLIMITED</unit></duration><recurring><billingPeriod>").append(billingPeriod)
+                     .append("</billingPeriod><recurringPrice><price><currency>USD</currency><value>10</value></price></recurringPrice></recurring></finalPhase></plan>");
+                priceListPlans.append("<plan>").append(planName).append("</plan>");
+
+                changePolicy.append("<changePolicyCase><fromProduct>").append(product).append("</fromProduct><toBillingPeriod>").append(billingPeriod)
+                            .append("</toBillingPeriod><policy>").append(i % 2 == 0 ? "IMMEDIATE" : "END_OF_TERM").append("</policy></changePolicyCase>");
+                createAlignment.append("<createAlignmentCase><product>").append(product).append("</product><billingPeriod>").append(billingPeriod)
+                               .append("</billingPeriod><alignment>START_OF_SUBSCRIPTION</alignment></createAlignmentCase>");
+                for (final String phaseType : PHASE_TYPES) {
+                    changeAlignment.append("<changeAlignmentCase><phaseType>").append(phaseType).append("</phaseType><fromProduct>").append(product)
+                                   .append("</fromProduct><fromBillingPeriod>").append(billingPeriod).append("</fromBillingPeriod><alignment>CHANGE_OF_PLAN</alignment></changeAlignmentCase>");
+                    cancelPolicy.append("<cancelPolicyCase><product>").append(product).append("</product><billingPeriod>").append(billingPeriod)
+                                .append("</billingPeriod><phaseType>").append(phaseType).append("</phaseType><policy>IMMEDIATE</policy></cancelPolicyCase>");
+                    billingAlignment.append("<billingAlignmentCase><product>").append(product).append("</product><billingPeriod>").append(billingPeriod)
+                                    .append("</billingPeriod><phaseType>").append(phaseType).append("</phaseType><alignment>SUBSCRIPTION</alignment></billingAlignmentCase>");
+                }
+            }
+        }
+
+        return "<catalog><effectiveDate>2010-01-01T00:00:00+00:00</effectiveDate><catalogName>PlanRulesBenchmark</catalogName>" +
+               "<recurringBillingMode>IN_ADVANCE</recurringBillingMode><currencies><currency>USD</currency></currencies>" +
+               "<products>" + products + "</products>" +
+               "<rules>" +
+               "<changePolicy>" + changePolicy + "<changePolicyCase><policy>END_OF_TERM</policy></changePolicyCase></changePolicy>" +
+               "<changeAlignment>" + changeAlignment + "<changeAlignmentCase><alignment>START_OF_BUNDLE</alignment></changeAlignmentCase></changeAlignment>" +
+               "<cancelPolicy>" + cancelPolicy + "<cancelPolicyCase><policy>END_OF_TERM</policy></cancelPolicyCase></cancelPolicy>" +
+               "<createAlignment>" + createAlignment + "<createAlignmentCase><alignment>START_OF_BUNDLE</alignment></createAlignmentCase></createAlignment>" +
+               "<billingAlignment>" + billingAlignment + "<billingAlignmentCase><alignment>ACCOUNT</alignment></billingAlignmentCase></billingAlignment>" +
+               "<priceList><priceListCase><toPriceList>DEFAULT</toPriceList></priceListCase></priceList>" +
+               "</rules>" +
+               "<plans>" + plans + "</plans>" +
+               "<priceLists><defaultPriceList name=\"DEFAULT\"><plans>" + priceListPlans + "</plans></defaultPriceList></priceLists>" +
+               "</catalog>";
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.entitlement;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.entitlement.api.BlockingStateOrdering;
+import org.killbill.billing.entitlement.api.BlockingStateType;
+import org.killbill.billing.entitlement.api.DefaultEntitlement;
+import org.killbill.billing.entitlement.api.DefaultEntitlementApi;
+import org.killbill.billing.entitlement.api.DefaultSubscriptionEvent;
+import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.SubscriptionEvent;
+import org.killbill.billing.entitlement.api.SubscriptionEventType;
+import org.killbill.billing.junction.DefaultBlockingState;
+import org.killbill.billing.platform.api.KillbillService.KILLBILL_SERVICES;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insertion of the blocking states in the subscription events timeline (as done when building the subscription bundle timeline).
+ * <p>
+ * Each entitlement has one subscription event per day and a service state change (alternatively blocking and unblocking billing)
+ * every other day. Build with {@code mvn -pl benchmarks -am package -DskipTests} and run with:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar BlockingStateOrderingBenchmark -rf json -rff current.json
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BlockingStateOrderingBenchmark {
+
+    private static final DateTime START_DATE = new DateTime(2020, 1, 1, 0, 0, 0, DateTimeZone.UTC);
+
+    // Total number of subscription events, across all entitlements
+    @Param({"1000", "10000"})
+    public int nbEvents;
+
+    @Param({"1", "10"})
+    public int nbEntitlements;
+
+    private final InternalTenantContext context = new InternalTenantContext(1L, 1L, DateTimeZone.UTC, START_DATE);
+
+    private List<Entitlement> entitlements;
+    private List<SubscriptionEvent> subscriptionEvents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int nbDays = nbEvents / nbEntitlements;
+
+        final List<UUID> entitlementIds = new ArrayList<>();
+        entitlements = new ArrayList<>();
+        for (int i = 0; i < nbEntitlements; i++) {
+            final UUID entitlementId = UUID.randomUUID();
+            entitlementIds.add(entitlementId);
+            entitlements.add(createEntitlement(entitlementId, createBlockingStates(entitlementId, nbDays)));
+        }
+        entitlementIds.sort(null);
+
+        // Same ordering as SubscriptionEventOrdering: by date, then by entitlement
+        subscriptionEvents = new ArrayList<>(nbEvents);
+        for (int day = 0; day < nbDays; day++) {
+            for (final UUID entitlementId : entitlementIds) {
+                subscriptionEvents.add(createSubscriptionEvent(entitlementId, day == 0 ? SubscriptionEventType.START_BILLING : SubscriptionEventType.PHASE, START_DATE.plusDays(day)));
+            }
+        }
+    }
+
+    @Benchmark
+    public LinkedList<SubscriptionEvent> insertSorted() {
+        final LinkedList<SubscriptionEvent> result = new LinkedList<>(subscriptionEvents);
+        BlockingStateOrdering.insertSorted(entitlements, context, result);
+        return result;
+    }
+
+    private List<BlockingState> createBlockingStates(final UUID entitlementId, final int nbDays) {
+        final List<BlockingState> blockingStates = new ArrayList<>();
+        blockingStates.add(createBlockingState(entitlementId, DefaultEntitlementApi.ENT_STATE_START, KILLBILL_SERVICES.ENTITLEMENT_SERVICE.getServiceName(), false, START_DATE));
+        for (int day = 1; day < nbDays; day += 2) {
+            final boolean blockBilling = (day / 2) % 2 == 0;
+            blockingStates.add(createBlockingState(entitlementId, blockBilling ? "BLOCKED" : "CLEAR", "benchmark-service", blockBilling, START_DATE.plusDays(day)));
+        }
+        return blockingStates;
+    }
+
+    private BlockingState createBlockingState(final UUID entitlementId, final String stateName, final String service, final boolean blockBilling, final DateTime effectiveDate) {
+        return new DefaultBlockingState(UUID.randomUUID(), entitlementId, BlockingStateType.SUBSCRIPTION, stateName, service, false, false, blockBilling,
+                                        effectiveDate, effectiveDate, effectiveDate, 0L);
+    }
+
+    private SubscriptionEvent createSubscriptionEvent(final UUID entitlementId, final SubscriptionEventType eventType, final DateTime effectiveDate) {
+        return new DefaultSubscriptionEvent(UUID.randomUUID(), entitlementId, effectiveDate, eventType, false, false, "billing-service", eventType.toString(),
+                                            null, null, null, null, null, null, null, null, null, null, effectiveDate, context);
+    }
+
+    private Entitlement createEntitlement(final UUID entitlementId, final List<BlockingState> blockingStates) {
+        final EventsStream eventsStream = Mockito.mock(EventsStream.class);
+        Mockito.when(eventsStream.getBlockingStates(Mockito.anyBoolean())).thenReturn(blockingStates);
+
+        final DefaultEntitlement entitlement = Mockito.mock(DefaultEntitlement.class);
+        Mockito.when(entitlement.getId()).thenReturn(entitlementId);
+        Mockito.when(entitlement.getEventsStream()).thenReturn(eventsStream);
+        return entitlement;
+    }
+}
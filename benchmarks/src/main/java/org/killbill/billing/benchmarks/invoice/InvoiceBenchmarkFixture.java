@@ -0,0 +1,322 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.DefaultImmutableAccountData;
+import org.killbill.billing.account.api.ImmutableAccountData;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.invoice.api.DryRunInfo;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.dao.InvoiceDao;
+import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
+import org.killbill.billing.invoice.generator.FixedAndRecurringInvoiceItemGenerator;
+import org.killbill.billing.invoice.generator.InvoiceItemGeneratorExecutor;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata;
+import org.killbill.billing.invoice.generator.UsageInvoiceItemGenerator;
+import org.killbill.billing.invoice.optimizer.InvoiceOptimizerBase.AccountInvoices;
+import org.killbill.billing.invoice.usage.RawUsageOptimizer;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.junction.plumbing.billing.DefaultBillingEvent;
+import org.killbill.billing.junction.plumbing.billing.DefaultBillingEventSet;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.killbill.billing.usage.InternalUserApi;
+import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.usage.api.svcs.DefaultRawUsage;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.billing.util.entity.Pagination;
+import org.killbill.clock.Clock;
+import org.killbill.clock.DefaultClock;
+import org.killbill.xmlloader.XMLLoader;
+import org.mockito.Mockito;
+import org.skife.config.ConfigurationObjectFactory;
+import org.skife.config.SimplePropertyConfigSource;
+
+/**
+ * Synthetic account used by the invoice benchmarks.
+ * <p>
+ * Subscriptions are spread over three plans (IN_ADVANCE recurring, IN_ARREAR recurring and consumable IN_ARREAR usage)
+ * and every tenth IN_ADVANCE subscription changes plan mid-history so the item tree has repairs to compute. The existing
+ * invoices hold the full history up to the previous billing period, so each benchmark invocation models a regular BCD run.
+ */
+public class InvoiceBenchmarkFixture {
+
+    public static final LocalDate TARGET_DATE = new LocalDate(2022, 6, 1);
+    public static final Currency CURRENCY = Currency.USD;
+
+    private static final String CATALOG_RESOURCE = "org/killbill/billing/benchmarks/BenchmarkCatalog.xml";
+    private static final String UNIT_TYPE = "api-calls";
+    private static final int BCD = 1;
+    private static final int RAW_USAGE_INTERVAL_DAYS = 7;
+
+    private final StandaloneCatalog catalog;
+    private final ImmutableAccountData account;
+    private final InternalCallContext context;
+    private final InvoiceConfig invoiceConfig;
+    private final Clock clock;
+    private final List<RawUsageRecord> rawUsage;
+    private final BillingEventSet billingEvents;
+    private final FixedAndRecurringInvoiceItemGenerator fixedAndRecurringInvoiceItemGenerator;
+    private final UsageInvoiceItemGenerator usageInvoiceItemGenerator;
+    private final DefaultInvoiceGenerator invoiceGenerator;
+    private final AccountInvoices existingInvoices;
+    private final List<InvoiceItem> existingRecurringItems;
+    private final List<InvoiceItem> proposedRecurringItems;
+
+    public InvoiceBenchmarkFixture(final int nbSubscriptions, final int yearsOfHistory) throws Exception {
+        final LocalDate historyStartDate = TARGET_DATE.minusYears(yearsOfHistory);
+        final DateTime referenceTime = historyStartDate.toDateTimeAtStartOfDay(DateTimeZone.UTC);
+
+        this.catalog = loadCatalog();
+        this.account = new DefaultImmutableAccountData(UUID.randomUUID(), "benchmark", CURRENCY, DateTimeZone.UTC, DateTimeZone.UTC, referenceTime);
+        this.context = new InternalCallContext(1L, 1L, DateTimeZone.UTC, referenceTime, UUID.randomUUID(), "benchmark", CallOrigin.INTERNAL, UserType.TEST,
+                                               null, null, TARGET_DATE.toDateTimeAtStartOfDay(DateTimeZone.UTC), TARGET_DATE.toDateTimeAtStartOfDay(DateTimeZone.UTC));
+        this.invoiceConfig = createInvoiceConfig();
+        this.clock = new DefaultClock();
+
+        this.rawUsage = new ArrayList<>();
+        this.billingEvents = createBillingEvents(nbSubscriptions, historyStartDate);
+
+        final RawUsageOptimizer rawUsageOptimizer = new RawUsageOptimizer(invoiceConfig, Mockito.mock(InvoiceDao.class), new BenchmarkUsageApi(rawUsage), clock);
+        final InvoiceItemGeneratorExecutor invoiceItemGeneratorExecutor = new InvoiceItemGeneratorExecutor(invoiceConfig);
+        this.fixedAndRecurringInvoiceItemGenerator = new FixedAndRecurringInvoiceItemGenerator(invoiceConfig, clock, invoiceItemGeneratorExecutor);
+        this.usageInvoiceItemGenerator = new UsageInvoiceItemGenerator(rawUsageOptimizer, invoiceConfig, invoiceItemGeneratorExecutor);
+        this.invoiceGenerator = new DefaultInvoiceGenerator(clock, invoiceConfig, fixedAndRecurringInvoiceItemGenerator, usageInvoiceItemGenerator);
+
+        // Everything up to the previous period has already been invoiced
+        final InvoiceWithMetadata history = invoiceGenerator.generateInvoice(account, billingEvents, new AccountInvoices(), null, TARGET_DATE.minusMonths(1), CURRENCY, null, context);
+        final List<Invoice> invoices = history.getInvoice() != null ? List.of(history.getInvoice()) : Collections.emptyList();
+        this.existingInvoices = new AccountInvoices(null, null, invoices);
+
+        this.existingRecurringItems = new ArrayList<>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                if (item.getInvoiceItemType() != InvoiceItemType.USAGE) {
+                    existingRecurringItems.add(item);
+                }
+            }
+        }
+
+        // All items since the beginning of time, as proposed to the tree on a regular run
+        final InvoiceWithMetadata proposed = invoiceGenerator.generateInvoice(account, billingEvents, new AccountInvoices(), null, TARGET_DATE, CURRENCY, null, context);
+        this.proposedRecurringItems = new ArrayList<>();
+        if (proposed.getInvoice() != null) {
+            for (final InvoiceItem item : proposed.getInvoice().getInvoiceItems()) {
+                if (item.getInvoiceItemType() != InvoiceItemType.USAGE) {
+                    proposedRecurringItems.add(item);
+                }
+            }
+        }
+    }
+
+    private BillingEventSet createBillingEvents(final int nbSubscriptions, final LocalDate historyStartDate) throws CatalogApiException {
+        final DefaultBillingEventSet result = new DefaultBillingEventSet(false, false, false);
+        final Plan inAdvancePlan = catalog.findPlan("standard-monthly");
+        final Plan inArrearPlan = catalog.findPlan("metered-monthly");
+        final Plan usagePlan = catalog.findPlan("consumption-monthly");
+
+        final LocalDate changeDate = historyStartDate.plusDays(Days.daysBetween(historyStartDate, TARGET_DATE).getDays() / 2).withDayOfMonth(15);
+        long totalOrdering = 0;
+        for (int i = 0; i < nbSubscriptions; i++) {
+            final UUID subscriptionId = UUID.randomUUID();
+            final UUID bundleId = UUID.randomUUID();
+            final LocalDate startDate = historyStartDate.plusDays(i % 28);
+
+            switch (i % 3) {
+                case 0:
+                    result.add(createBillingEvent(subscriptionId, bundleId, startDate, inAdvancePlan, totalOrdering++, SubscriptionBaseTransitionType.CREATE));
+                    if (i % 10 == 0) {
+                        result.add(createBillingEvent(subscriptionId, bundleId, changeDate, inArrearPlan, totalOrdering++, SubscriptionBaseTransitionType.CHANGE));
+                    }
+                    break;
+                case 1:
+                    result.add(createBillingEvent(subscriptionId, bundleId, startDate, inArrearPlan, totalOrdering++, SubscriptionBaseTransitionType.CREATE));
+                    break;
+                default:
+                    result.add(createBillingEvent(subscriptionId, bundleId, startDate, usagePlan, totalOrdering++, SubscriptionBaseTransitionType.CREATE));
+                    addRawUsage(subscriptionId, startDate);
+                    break;
+            }
+        }
+
+        rawUsage.sort((o1, o2) -> o1.getDate().compareTo(o2.getDate()));
+        return result;
+    }
+
+    private BillingEvent createBillingEvent(final UUID subscriptionId, final UUID bundleId, final LocalDate effectiveDate, final Plan plan,
+                                            final long totalOrdering, final SubscriptionBaseTransitionType type) throws CatalogApiException {
+        final PlanPhase phase = plan.getFinalPhase();
+        final BillingPeriod billingPeriod = phase.getRecurring() != null ? phase.getRecurring().getBillingPeriod() : BillingPeriod.NO_BILLING_PERIOD;
+        final BigDecimal recurringPrice = phase.getRecurring() != null ? phase.getRecurring().getRecurringPrice().getPrice(CURRENCY) : null;
+        return new DefaultBillingEvent(subscriptionId,
+                                       bundleId,
+                                       effectiveDate.toDateTimeAtStartOfDay(DateTimeZone.UTC),
+                                       plan,
+                                       phase,
+                                       null,
+                                       recurringPrice,
+                                       List.of(phase.getUsages()),
+                                       CURRENCY,
+                                       billingPeriod,
+                                       BCD,
+                                       1,
+                                       type.toString(),
+                                       totalOrdering,
+                                       type);
+    }
+
+    private void addRawUsage(final UUID subscriptionId, final LocalDate startDate) {
+        LocalDate recordDate = startDate;
+        while (recordDate.isBefore(TARGET_DATE)) {
+            final String trackingId = String.format("%s-%d-%d", subscriptionId, recordDate.getYear(), recordDate.getMonthOfYear());
+            rawUsage.add(new DefaultRawUsage(subscriptionId, recordDate.toDateTimeAtStartOfDay(DateTimeZone.UTC), UNIT_TYPE, BigDecimal.valueOf(100L + recordDate.getDayOfMonth()), trackingId));
+            recordDate = recordDate.plusDays(RAW_USAGE_INTERVAL_DAYS);
+        }
+    }
+
+    // Same behavior as MultiTenantInvoiceConfig without any per-tenant override: the tenant-aware getters return the static values
+    private static InvoiceConfig createInvoiceConfig() throws NoSuchMethodException {
+        final Properties properties = new Properties();
+        // The whole history is generated in one go, which the per-day item count bound would otherwise reject
+        properties.setProperty("org.killbill.invoice.maxDailyNumberOfItemsSafetyBound", "-1");
+        final InvoiceConfig staticConfig = new ConfigurationObjectFactory(new SimplePropertyConfigSource(properties)).build(InvoiceConfig.class);
+        final Map<Method, Method> perTenantToStaticMethod = new HashMap<>();
+        for (final Method method : InvoiceConfig.class.getMethods()) {
+            if (method.getParameterCount() == 1 && method.getParameterTypes()[0] == InternalTenantContext.class) {
+                perTenantToStaticMethod.put(method, InvoiceConfig.class.getMethod(method.getName()));
+            }
+        }
+        return (InvoiceConfig) Proxy.newProxyInstance(InvoiceConfig.class.getClassLoader(),
+                                                      new Class[]{InvoiceConfig.class},
+                                                      (proxy, method, args) -> {
+                                                          final Method staticMethod = perTenantToStaticMethod.get(method);
+                                                          return staticMethod != null ? staticMethod.invoke(staticConfig) : method.invoke(staticConfig, args);
+                                                      });
+    }
+
+    private static StandaloneCatalog loadCatalog() throws Exception {
+        try (final InputStream in = InvoiceBenchmarkFixture.class.getClassLoader().getResourceAsStream(CATALOG_RESOURCE)) {
+            return XMLLoader.getObjectFromStream(in, StandaloneCatalog.class);
+        }
+    }
+
+    public ImmutableAccountData getAccount() {
+        return account;
+    }
+
+    public InternalCallContext getContext() {
+        return context;
+    }
+
+    public BillingEventSet getBillingEvents() {
+        return billingEvents;
+    }
+
+    public AccountInvoices getExistingInvoices() {
+        return existingInvoices;
+    }
+
+    public List<InvoiceItem> getExistingRecurringItems() {
+        return existingRecurringItems;
+    }
+
+    public List<InvoiceItem> getProposedRecurringItems() {
+        return proposedRecurringItems;
+    }
+
+    public FixedAndRecurringInvoiceItemGenerator getFixedAndRecurringInvoiceItemGenerator() {
+        return fixedAndRecurringInvoiceItemGenerator;
+    }
+
+    public UsageInvoiceItemGenerator getUsageInvoiceItemGenerator() {
+        return usageInvoiceItemGenerator;
+    }
+
+    public DefaultInvoiceGenerator getInvoiceGenerator() {
+        return invoiceGenerator;
+    }
+
+    public InvoiceWithMetadata generateInvoice(final LocalDate targetDate) throws InvoiceApiException {
+        return invoiceGenerator.generateInvoice(account, billingEvents, existingInvoices, null, targetDate, CURRENCY, null, context);
+    }
+
+    private static final class BenchmarkUsageApi implements InternalUserApi {
+
+        private final List<RawUsageRecord> rawUsage;
+
+        private BenchmarkUsageApi(final List<RawUsageRecord> rawUsage) {
+            this.rawUsage = rawUsage;
+        }
+
+        // Mimics the DAO: records are filtered on [startDate, endDate)
+        @Override
+        public List<RawUsageRecord> getRawUsageForAccount(final DateTime startDate, final DateTime endDate, final DryRunInfo dryRunInfo, final InternalTenantContext tenantContext) {
+            final List<RawUsageRecord> result = new ArrayList<>();
+            for (final RawUsageRecord record : rawUsage) {
+                if (record.getDate().compareTo(startDate) >= 0 && record.getDate().compareTo(endDate) < 0) {
+                    result.add(record);
+                }
+            }
+            return result;
+        }
+
+        // No daily rollup in the benchmark, all the usage is returned as raw records
+        @Override
+        public List<RawUsageRecord> getAggregatedUsageForAccount(final DateTime startDate, final DateTime endDate, final Set<LocalDate> rawUsageDays, final DryRunInfo dryRunInfo, final InternalTenantContext tenantContext) {
+            return getRawUsageForAccount(startDate, endDate, dryRunInfo, tenantContext);
+        }
+
+        @Override
+        public Pagination<RawUsageRecord> getRawUsageStreamForAccount(final DateTime startDate, final DateTime endDate, final DryRunInfo dryRunInfo, final InternalTenantContext tenantContext) {
+            final List<RawUsageRecord> result = getRawUsageForAccount(startDate, endDate, dryRunInfo, tenantContext);
+            result.sort(Comparator.<RawUsageRecord, String>comparing(input -> input.getSubscriptionId().toString()).thenComparing(RawUsageRecord::getDate));
+            return new DefaultPagination<RawUsageRecord>((long) result.size(), result.iterator());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks.invoice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.generator.InvoiceItemGenerator.InvoiceGeneratorResult;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata;
+import org.killbill.billing.invoice.tree.AccountItemTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.killbill.billing.benchmarks.invoice.InvoiceBenchmarkFixture.CURRENCY;
+import static org.killbill.billing.benchmarks.invoice.InvoiceBenchmarkFixture.TARGET_DATE;
+
+/**
+ * Per-stage throughput of the invoice generation hot path.
+ * <p>
+ * Build with {@code mvn -pl benchmarks -am package -DskipTests} and run with:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar InvoiceGenerationBenchmark -prof gc -rf json -rff current.json
+ * java -cp benchmarks/target/benchmarks.jar org.killbill.billing.benchmarks.BaselineComparator benchmarks/baseline/invoice-generation.json current.json
+ * </pre>
+ * The {@code gc} profiler reports the allocation rate ({@code gc.alloc.rate.norm}) of each stage.
+ * <p>
+ * The baseline must be recorded with the warmup and measurement settings below (i.e. without {@code -wi}, {@code -i}, {@code -w} or {@code -r}
+ * overrides), otherwise its error bars are too wide for the comparison to be meaningful. Remove the machine specific {@code jvm} entries before
+ * committing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class InvoiceGenerationBenchmark {
+
+    // Larger accounts can be run with -p nbSubscriptions=5000 (minutes per operation with the current item tree)
+    @Param({"1", "100", "1000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "3"})
+    public int yearsOfHistory;
+
+    private InvoiceBenchmarkFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new InvoiceBenchmarkFixture(nbSubscriptions, yearsOfHistory);
+    }
+
+    @Benchmark
+    public InvoiceGeneratorResult fixedAndRecurringItems() throws InvoiceApiException {
+        return fixture.getFixedAndRecurringInvoiceItemGenerator().generateItems(fixture.getAccount(), UUID.randomUUID(), fixture.getBillingEvents(), fixture.getExistingInvoices(),
+                                                                                TARGET_DATE, CURRENCY, new HashMap<>(), null, fixture.getContext());
+    }
+
+    @Benchmark
+    public InvoiceGeneratorResult usageItems() throws InvoiceApiException {
+        return fixture.getUsageInvoiceItemGenerator().generateItems(fixture.getAccount(), UUID.randomUUID(), fixture.getBillingEvents(), fixture.getExistingInvoices(),
+                                                                    TARGET_DATE, CURRENCY, new HashMap<>(), null, fixture.getContext());
+    }
+
+    @Benchmark
+    public List<InvoiceItem> itemTreeMerge() {
+        return mergeItemTree(false);
+    }
+
+    @Benchmark
+    public List<InvoiceItem> itemTreeMergeArrayBacked() {
+        return mergeItemTree(true);
+    }
+
+    @Benchmark
+    public InvoiceWithMetadata generateInvoice() throws InvoiceApiException {
+        return fixture.generateInvoice(TARGET_DATE);
+    }
+
+    private List<InvoiceItem> mergeItemTree(final boolean useArrayBackedTree) {
+        final AccountItemTree accountItemTree = new AccountItemTree(fixture.getAccount().getId(), UUID.randomUUID(), useArrayBackedTree);
+        for (final InvoiceItem item : fixture.getExistingRecurringItems()) {
+            accountItemTree.addExistingItem(item);
+        }
+        accountItemTree.mergeWithProposedItems(new ArrayList<>(fixture.getProposedRecurringItems()));
+        return accountItemTree.getResultingItemList();
+    }
+}
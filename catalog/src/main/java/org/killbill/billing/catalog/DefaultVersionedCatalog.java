@@ -27,8 +27,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -38,10 +43,11 @@ import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.IndexedVersionedCatalog;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanPhase;
 import org.killbill.billing.catalog.api.StaticCatalog;
-import org.killbill.billing.catalog.api.VersionedCatalog;
 import org.killbill.billing.util.catalog.CatalogDateHelper;
 import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationError;
@@ -49,7 +55,7 @@ import org.killbill.xmlloader.ValidationErrors;
 
 @XmlRootElement(name = "catalogs")
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCatalog> implements VersionedCatalog, Externalizable {
+public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCatalog> implements IndexedVersionedCatalog, Externalizable {
 
     private static final long serialVersionUID = 3181874902672322725L;
     @XmlElementWrapper(name = "versions", required = true)
@@ -58,6 +64,9 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     @XmlElement(required = true)
     private String catalogName;
 
+    // Lazily built (and rebuilt after deserialization or when a version is added)
+    private transient volatile VersionIndex versionIndex;
+
     // Required for JAXB deserialization
     public DefaultVersionedCatalog() {
         this.versions = new ArrayList<StaticCatalog>();
@@ -89,11 +98,28 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     }
 
     private int indexOfVersionForDate(final Date date) {
-
-        for (int i = versions.size() - 1; i >= 0; i--) {
-            final StaticCatalog c = versions.get(i);
-            if (c.getEffectiveDate().getTime() <= date.getTime()) {
-                return i;
+        final long[] effectiveDates = getIndex().effectiveDates;
+        if (effectiveDates != null) {
+            // Last version effective prior or at that date
+            int low = 0;
+            int high = effectiveDates.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (effectiveDates[mid] <= date.getTime()) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (high >= 0) {
+                return high;
+            }
+        } else {
+            for (int i = versions.size() - 1; i >= 0; i--) {
+                final StaticCatalog c = versions.get(i);
+                if (c.getEffectiveDate().getTime() <= date.getTime()) {
+                    return i;
+                }
             }
         }
         // If the only version we have are after the input date, we return the first version
@@ -106,6 +132,72 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
         throw new IllegalStateException(String.format("No existing versions in the VersionedCatalog catalog for input date %s", date));
     }
 
+    @Override
+    public int getVersionIndex(final Date date) {
+        return indexOfVersionForDate(CatalogDateHelper.toUTCDateTime(date).toDate());
+    }
+
+    @Override
+    public int getLatestVersionIndexForPlan(final String planName, final int maxVersionIndex) {
+        final PlanVersions planVersions = getIndex().plans.get(planName);
+        if (planVersions == null) {
+            return -1;
+        }
+        final int position = planVersions.latestPositionAtOrBefore(maxVersionIndex);
+        return position >= 0 ? planVersions.versionIndexes[position] : -1;
+    }
+
+    @Override
+    public Plan findPlan(final String planName, final int versionIndex) {
+        final PlanVersions planVersions = getIndex().plans.get(planName);
+        if (planVersions == null) {
+            return null;
+        }
+        final int position = planVersions.latestPositionAtOrBefore(versionIndex);
+        return position >= 0 && planVersions.versionIndexes[position] == versionIndex ? planVersions.plans[position] : null;
+    }
+
+    @Override
+    public Plan findPlan(final String planName, final Date date) throws CatalogApiException {
+        final int versionIndex = getVersionIndex(date);
+        final Plan plan = findPlan(planName, versionIndex);
+        // Not in the index (e.g. overridden plan): let the version resolve it (or throw)
+        return plan != null ? plan : versions.get(versionIndex).findPlan(planName);
+    }
+
+    @Override
+    public PlanPhase findPhase(final String phaseName, final Date date) throws CatalogApiException {
+        final int versionIndex = getVersionIndex(date);
+        // Phase names are derived from the plan names, so the plan index is also our phase index
+        final Plan plan = findPlan(DefaultPlanPhase.planName(phaseName), versionIndex);
+        return plan != null ? plan.findPhase(phaseName) : versions.get(versionIndex).findPhase(phaseName);
+    }
+
+    @Override
+    public void loadOverriddenPlans(final Map<String, ? extends Collection<Date>> effectiveDatesByPlanName) {
+        if (versions.isEmpty()) {
+            return;
+        }
+
+        final Map<Integer, Set<String>> planNamesByVersionIndex = new TreeMap<>();
+        for (final Entry<String, ? extends Collection<Date>> entry : effectiveDatesByPlanName.entrySet()) {
+            // Plans defined by the catalog itself don't need any loading
+            if (getIndex().plans.containsKey(entry.getKey())) {
+                continue;
+            }
+            for (final Date date : entry.getValue()) {
+                planNamesByVersionIndex.computeIfAbsent(getVersionIndex(date), k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+
+        for (final Entry<Integer, Set<String>> entry : planNamesByVersionIndex.entrySet()) {
+            final StaticCatalog version = versions.get(entry.getKey());
+            if (version instanceof StandaloneCatalogWithPriceOverride) {
+                ((StandaloneCatalogWithPriceOverride) version).loadOverriddenPlans(entry.getValue());
+            }
+        }
+    }
+
     public void add(final StandaloneCatalog e) {
         if (catalogName == null && e.getCatalogName() != null) {
             catalogName = e.getCatalogName();
@@ -117,6 +209,16 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
                 return c1.getEffectiveDate().compareTo(c2.getEffectiveDate());
             }
         });
+        versionIndex = null;
+    }
+
+    private VersionIndex getIndex() {
+        VersionIndex result = versionIndex;
+        if (result == null) {
+            result = new VersionIndex(versions);
+            versionIndex = result;
+        }
+        return result;
     }
 
     @Override
@@ -196,6 +298,7 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
     public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
         this.catalogName = in.readBoolean() ? in.readUTF() : null;
         this.versions.addAll((Collection<? extends StandaloneCatalog>) in.readObject());
+        this.versionIndex = null;
     }
 
     @Override
@@ -232,4 +335,63 @@ public class DefaultVersionedCatalog extends ValidatingConfig<DefaultVersionedCa
         return result;
     }
 
+
+    private static final class VersionIndex {
+
+        // Null if the versions aren't sorted by effective date (e.g. JAXB-loaded), in which case we scan them
+        private final long[] effectiveDates;
+        private final Map<String, PlanVersions> plans;
+
+        private VersionIndex(final List<StaticCatalog> versions) {
+            long[] dates = new long[versions.size()];
+            final Map<String, List<Integer>> versionIndexesPerPlan = new HashMap<String, List<Integer>>();
+            final Map<String, List<Plan>> plansPerPlanName = new HashMap<String, List<Plan>>();
+            for (int i = 0; i < versions.size(); i++) {
+                final StaticCatalog version = versions.get(i);
+                if (dates != null) {
+                    dates[i] = version.getEffectiveDate().getTime();
+                    if (i > 0 && dates[i] < dates[i - 1]) {
+                        dates = null;
+                    }
+                }
+                for (final Plan plan : version.getPlans()) {
+                    versionIndexesPerPlan.computeIfAbsent(plan.getName(), k -> new ArrayList<Integer>()).add(i);
+                    plansPerPlanName.computeIfAbsent(plan.getName(), k -> new ArrayList<Plan>()).add(plan);
+                }
+            }
+            this.effectiveDates = dates;
+
+            this.plans = new HashMap<String, PlanVersions>(versionIndexesPerPlan.size());
+            for (final Map.Entry<String, List<Integer>> entry : versionIndexesPerPlan.entrySet()) {
+                final int[] versionIndexes = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                plans.put(entry.getKey(), new PlanVersions(versionIndexes, plansPerPlanName.get(entry.getKey()).toArray(new Plan[0])));
+            }
+        }
+    }
+
+    private static final class PlanVersions {
+
+        // Ascending indexes of the versions defining the plan, and the matching plans
+        private final int[] versionIndexes;
+        private final Plan[] plans;
+
+        private PlanVersions(final int[] versionIndexes, final Plan[] plans) {
+            this.versionIndexes = versionIndexes;
+            this.plans = plans;
+        }
+
+        private int latestPositionAtOrBefore(final int versionIndex) {
+            int low = 0;
+            int high = versionIndexes.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (versionIndexes[mid] <= versionIndex) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+    }
 }
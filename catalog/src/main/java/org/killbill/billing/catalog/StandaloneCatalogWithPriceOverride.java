@@ -21,6 +21,9 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.regex.Matcher;
 
 import org.killbill.billing.ErrorCode;
@@ -121,6 +124,19 @@ public class StandaloneCatalogWithPriceOverride extends StandaloneCatalog implem
         return super.findPhase(phaseName);
     }
 
+    // Resolve at once the overridden plans among those names, for this catalog version
+    public void loadOverriddenPlans(final Collection<String> planNames) {
+        final List<String> overriddenPlanNames = new ArrayList<>();
+        for (final String planName : planNames) {
+            if (priceOverride.isOverriddenPlan(planName)) {
+                overriddenPlanNames.add(planName);
+            }
+        }
+        if (!overriddenPlanNames.isEmpty()) {
+            priceOverride.loadOverriddenPlans(overriddenPlanNames, this, createInternalTenantContext());
+        }
+    }
+
     private DefaultPlan maybeGetOverriddenPlan(final String planName) throws CatalogApiException {
         final InternalTenantContext internalTenantContext = createInternalTenantContext();
 
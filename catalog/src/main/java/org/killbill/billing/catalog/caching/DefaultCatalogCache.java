@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.caching;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -26,6 +27,7 @@ import javax.inject.Inject;
 import org.joda.time.DateTime;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.DefaultVersionedCatalog;
 import org.killbill.billing.catalog.StandaloneCatalog;
@@ -34,11 +36,16 @@ import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.StaticCatalog;
 import org.killbill.billing.catalog.api.VersionedCatalog;
 import org.killbill.billing.catalog.io.VersionedCatalogLoader;
+import org.killbill.billing.catalog.io.VersionedCatalogSnapshot;
 import org.killbill.billing.catalog.override.PriceOverride;
 import org.killbill.billing.catalog.plugin.VersionedCatalogMapper;
 import org.killbill.billing.catalog.plugin.api.CatalogPluginApi;
 import org.killbill.billing.catalog.plugin.api.VersionedPluginCatalog;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.CatalogConfig;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
 import org.killbill.billing.util.cache.Cachable.CacheType;
@@ -63,6 +70,8 @@ public class DefaultCatalogCache implements CatalogCache {
     private final VersionedCatalogMapper versionedCatalogMapper;
     private final PriceOverride priceOverride;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final TenantInternalApi tenantInternalApi;
+    private final CatalogConfig catalogConfig;
     private VersionedCatalog defaultCatalog;
 
     @Inject
@@ -71,13 +80,17 @@ public class DefaultCatalogCache implements CatalogCache {
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final VersionedCatalogLoader loader,
                                final PriceOverride priceOverride,
-                               final InternalCallContextFactory internalCallContextFactory) {
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final TenantInternalApi tenantInternalApi,
+                               final CatalogConfig catalogConfig) {
         this.pluginRegistry = pluginRegistry;
         this.versionedCatalogMapper = versionedCatalogMapper;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.TENANT_CATALOG);
         this.loader = loader;
         this.priceOverride = priceOverride;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.tenantInternalApi = tenantInternalApi;
+        this.catalogConfig = catalogConfig;
         this.cacheLoaderArgumentWithTemplateFiltering = initializeCacheLoaderArgument(true);
         this.cacheLoaderArgument = initializeCacheLoaderArgument(false);
         setDefaultCatalog();
@@ -208,7 +221,7 @@ public class DefaultCatalogCache implements CatalogCache {
         final LoaderCallback loaderCallback = new LoaderCallback() {
             @Override
             public VersionedCatalog loadCatalog(final List<String> catalogXMLs, final Long tenantRecordId) throws CatalogApiException {
-                final VersionedCatalog versionedCatalog = loader.load(catalogXMLs, filterTemplateCatalog, tenantRecordId);
+                final VersionedCatalog versionedCatalog = loadCatalogFromSnapshotOrXML(catalogXMLs, filterTemplateCatalog, tenantRecordId);
                 if (versionedCatalog != null) {
                     initializeCatalog(versionedCatalog);
                 }
@@ -222,6 +235,32 @@ public class DefaultCatalogCache implements CatalogCache {
         return new CacheLoaderArgument(irrelevant, args, notUsed);
     }
 
+    private VersionedCatalog loadCatalogFromSnapshotOrXML(final List<String> catalogXMLs, final boolean filterTemplateCatalog, final Long tenantRecordId) throws CatalogApiException {
+        final String snapshotSecret = catalogConfig.getCatalogSnapshotSecret();
+        if (!catalogConfig.isCatalogSnapshotEnabled() || snapshotSecret == null || snapshotSecret.isEmpty() || !VersionedCatalogSnapshot.isSupported() || catalogXMLs.isEmpty()) {
+            return loader.load(catalogXMLs, filterTemplateCatalog, tenantRecordId);
+        }
+
+        final String snapshotKey = VersionedCatalogSnapshot.getTenantKey(filterTemplateCatalog);
+        final InternalTenantContext tenantContext = internalCallContextFactory.createInternalTenantContext(tenantRecordId, null);
+        final List<String> snapshots = tenantInternalApi.getTenantValuesForKey(snapshotKey, tenantContext);
+        // Already initialized and validated
+        final DefaultVersionedCatalog fromSnapshot = VersionedCatalogSnapshot.read(snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1), catalogXMLs, filterTemplateCatalog, tenantRecordId, snapshotSecret);
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+
+        final VersionedCatalog versionedCatalog = loader.load(catalogXMLs, filterTemplateCatalog, tenantRecordId);
+        // Snapshot (first load or stale snapshot) for the next cache miss -- on this node or any other node sharing the same database
+        try {
+            final InternalCallContext context = internalCallContextFactory.createInternalCallContext(tenantRecordId, null, "CatalogSnapshot", CallOrigin.INTERNAL, UserType.SYSTEM, null);
+            tenantInternalApi.updateTenantValueForKey(snapshotKey, VersionedCatalogSnapshot.write((DefaultVersionedCatalog) versionedCatalog, catalogXMLs, filterTemplateCatalog, tenantRecordId, snapshotSecret), context);
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Failed to persist catalog snapshot for tenantRecordId='{}'", tenantRecordId, e);
+        }
+        return versionedCatalog;
+    }
+
     @VisibleForTesting
     void setDefaultCatalog() {
         try {
@@ -18,7 +18,15 @@
 package org.killbill.billing.catalog.caching;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -44,6 +52,7 @@ import org.killbill.billing.catalog.api.Usage;
 import org.killbill.billing.catalog.api.UsagePriceOverride;
 import org.killbill.billing.catalog.dao.CatalogOverrideBlockDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideDao;
+import org.killbill.billing.catalog.dao.CatalogOverrideDefinitions;
 import org.killbill.billing.catalog.dao.CatalogOverridePhaseDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideTierDefinitionModelDao;
 import org.killbill.billing.catalog.dao.CatalogOverrideUsageDefinitionModelDao;
@@ -52,9 +61,12 @@ import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.OverriddenPlanCacheLoader.LoaderCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultOverriddenPlanCache.class);
 
     private final CacheController<String, Plan> cacheController;
     private final LoaderCallback loaderCallback;
@@ -71,21 +83,39 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
             public Plan loadPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
                 return loadOverriddenPlan(planName, (StandaloneCatalog) catalog, context);
             }
+
+            @Override
+            public Map<String, Plan> loadPlans(final Collection<String> planNames, final StaticCatalog catalog, final InternalTenantContext context) {
+                return loadOverriddenPlansFromDao(planNames, (StandaloneCatalog) catalog, context);
+            }
         };
     }
 
     @Override
     public DefaultPlan getOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) {
+        final String planNameVersion = getPlanNameVersion(planName, catalog);
+        final DefaultPlan defaultPlan = (DefaultPlan) cacheController.get(planNameVersion, createCacheLoaderArgument(catalog, context));
+        defaultPlan.initialize(catalog);
+        return defaultPlan;
+    }
+
+    @Override
+    public void loadOverriddenPlans(final Collection<String> planNames, final StandaloneCatalog catalog, final InternalTenantContext context) {
+        final Set<String> planNameVersions = new LinkedHashSet<>();
+        for (final String planName : planNames) {
+            planNameVersions.add(getPlanNameVersion(planName, catalog));
+        }
+        // Only the plans missing from the cache are loaded (see loadOverriddenPlansFromDao below)
+        cacheController.getAll(planNameVersions, createCacheLoaderArgument(catalog, context));
+    }
+
+    private CacheLoaderArgument createCacheLoaderArgument(final StandaloneCatalog catalog, final InternalTenantContext context) {
         final ObjectType irrelevant = null;
         final Object[] args = new Object[2];
         args[0] = loaderCallback;
         args[1] = catalog;
 
-        final CacheLoaderArgument argument = new CacheLoaderArgument(irrelevant, args, context);
-        final String planNameVersion = getPlanNameVersion(planName, catalog);
-        final DefaultPlan defaultPlan = (DefaultPlan) cacheController.get(planNameVersion, argument);
-        defaultPlan.initialize(catalog);
-        return defaultPlan;
+        return new CacheLoaderArgument(irrelevant, args, context);
     }
 
     @Override
@@ -103,18 +133,50 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
 
     private DefaultPlan loadOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
         final String[] parts = priceOverridePattern.getPlanParts(planName);
-        final String parentPlanName = parts[0];
-        final Long planDefRecordId = Long.parseLong(parts[1]);
+        final DefaultPlan defaultPlan = catalog.findPlan(parts[0]);
+
+        final CatalogOverrideDefinitions definitions = overrideDao.getOverriddenPlanDefinitions(List.of(Long.parseLong(parts[1])), context);
+        return createOverriddenPlan(parts, defaultPlan, catalog, definitions);
+    }
+
+    // All override definitions are fetched at once (see CatalogOverrideDao#getOverriddenPlanDefinitions), instead of a few queries per plan, phase, usage and tier
+    private Map<String, Plan> loadOverriddenPlansFromDao(final Collection<String> planNames, final StandaloneCatalog catalog, final InternalTenantContext context) {
+        final Map<String, String[]> planPartsByName = new LinkedHashMap<>();
+        final Map<String, DefaultPlan> defaultPlanByName = new HashMap<>();
+        final Set<Long> planDefRecordIds = new HashSet<>();
+        for (final String planName : planNames) {
+            try {
+                final String[] parts = priceOverridePattern.getPlanParts(planName);
+                defaultPlanByName.put(planName, catalog.findPlan(parts[0]));
+                planPartsByName.put(planName, parts);
+                planDefRecordIds.add(Long.parseLong(parts[1]));
+            } catch (final CatalogApiException e) {
+                // Parent plan not in that catalog version (ambiguous name?), left to the regular loading path
+                log.debug("Unable to load overridden plan {} for catalog version {}", planName, catalog.getEffectiveDate(), e);
+            }
+        }
+
+        final Map<String, Plan> result = new LinkedHashMap<>();
+        if (planDefRecordIds.isEmpty()) {
+            return result;
+        }
+
+        final CatalogOverrideDefinitions definitions = overrideDao.getOverriddenPlanDefinitions(planDefRecordIds, context);
+        for (final Entry<String, String[]> entry : planPartsByName.entrySet()) {
+            result.put(entry.getKey(), createOverriddenPlan(entry.getValue(), defaultPlanByName.get(entry.getKey()), catalog, definitions));
+        }
+        return result;
+    }
 
-        final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs = overrideDao.getOverriddenPlanPhases(planDefRecordId, context);
-        final DefaultPlan defaultPlan = catalog.findPlan(parentPlanName);
-        final PlanPhasePriceOverride[] overrides = createOverrides(defaultPlan, phaseDefs, context);
+    private DefaultPlan createOverriddenPlan(final String[] parts, final DefaultPlan defaultPlan, final StandaloneCatalog catalog, final CatalogOverrideDefinitions definitions) {
+        final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs = definitions.getOverriddenPlanPhases(Long.parseLong(parts[1]));
+        final PlanPhasePriceOverride[] overrides = createOverrides(defaultPlan, phaseDefs, definitions);
         final DefaultPlan result = new DefaultPlan(priceOverridePattern.getPlanName(parts), defaultPlan, overrides);
         result.initialize(catalog);
         return result;
     }
 
-    private PlanPhasePriceOverride[] createOverrides(final Plan defaultPlan, final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs, final InternalTenantContext context) {
+    private PlanPhasePriceOverride[] createOverrides(final Plan defaultPlan, final List<CatalogOverridePhaseDefinitionModelDao> phaseDefs, final CatalogOverrideDefinitions definitions) {
         final PlanPhasePriceOverride[] result = new PlanPhasePriceOverride[defaultPlan.getAllPhases().length];
 
         for (int i = 0; i < defaultPlan.getAllPhases().length; i++) {
@@ -124,7 +186,7 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
                     .findFirst().orElse(null);
 
             if (overriddenPhase != null) {
-                List<UsagePriceOverride> usagePriceOverrides = getUsagePriceOverrides(curPhase, overriddenPhase, context);
+                List<UsagePriceOverride> usagePriceOverrides = getUsagePriceOverrides(curPhase, overriddenPhase, definitions);
                 result[i] = new DefaultPlanPhasePriceOverride(curPhase.getName(), Currency.valueOf(overriddenPhase.getCurrency()), overriddenPhase.getFixedPrice(), overriddenPhase.getRecurringPrice(), usagePriceOverrides);
             } else {
                 result[i] = null;
@@ -133,10 +195,10 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
         return result;
     }
 
-    List<UsagePriceOverride> getUsagePriceOverrides(PlanPhase curPhase, CatalogOverridePhaseDefinitionModelDao overriddenPhase, final InternalTenantContext context) {
+    List<UsagePriceOverride> getUsagePriceOverrides(PlanPhase curPhase, CatalogOverridePhaseDefinitionModelDao overriddenPhase, final CatalogOverrideDefinitions definitions) {
 
         final List<UsagePriceOverride> usagePriceOverrides = new ArrayList<>();
-        final List<CatalogOverrideUsageDefinitionModelDao> usageDefs = overrideDao.getOverriddenPhaseUsages(overriddenPhase.getRecordId(), context);
+        final List<CatalogOverrideUsageDefinitionModelDao> usageDefs = definitions.getOverriddenPhaseUsages(overriddenPhase.getRecordId());
 
         for (int i = 0; i < curPhase.getUsages().length; i++) {
             final Usage curUsage = curPhase.getUsages()[i];
@@ -145,24 +207,24 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
                     .findFirst().orElse(null);
 
             if (overriddenUsage != null) {
-                List<TierPriceOverride> tierPriceOverrides = getTierPriceOverrides(curUsage, overriddenUsage, context);
+                List<TierPriceOverride> tierPriceOverrides = getTierPriceOverrides(curUsage, overriddenUsage, definitions);
                 usagePriceOverrides.add(new DefaultUsagePriceOverride(overriddenUsage.getParentUsageName(), curUsage.getUsageType(), tierPriceOverrides));
             }
         }
         return usagePriceOverrides;
     }
 
-    List<TierPriceOverride> getTierPriceOverrides(Usage curUsage, CatalogOverrideUsageDefinitionModelDao overriddenUsage, final InternalTenantContext context) {
+    List<TierPriceOverride> getTierPriceOverrides(Usage curUsage, CatalogOverrideUsageDefinitionModelDao overriddenUsage, final CatalogOverrideDefinitions definitions) {
 
         final List<TierPriceOverride> tierPriceOverrides = new ArrayList<>();
 
-        final List<CatalogOverrideTierDefinitionModelDao> tierDefs = overrideDao.getOverriddenUsageTiers(overriddenUsage.getRecordId(), context);
+        final List<CatalogOverrideTierDefinitionModelDao> tierDefs = definitions.getOverriddenUsageTiers(overriddenUsage.getRecordId());
         for (int i = 0; i < curUsage.getTiers().length; i++) {
             final Tier curTier = curUsage.getTiers()[i];
             final TieredBlock[] curTieredBlocks = curTier.getTieredBlocks();
             final CatalogOverrideTierDefinitionModelDao overriddenTier = tierDefs.stream()
                     .filter(input -> {
-                        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = overrideDao.getOverriddenTierBlocks(input.getRecordId(), context);
+                        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = definitions.getOverriddenTierBlocks(input.getRecordId());
                         for (final CatalogOverrideBlockDefinitionModelDao blockDef : blockDefs) {
                             final String unitName = blockDef.getParentUnitName();
 
@@ -180,17 +242,17 @@ public class DefaultOverriddenPlanCache implements OverriddenPlanCache {
 
 
             if (overriddenTier != null) {
-                List<TieredBlockPriceOverride> tieredBlockPriceOverrides = getTieredBlockPriceOverrides(curTier, overriddenTier, context);
+                List<TieredBlockPriceOverride> tieredBlockPriceOverrides = getTieredBlockPriceOverrides(curTier, overriddenTier, definitions);
                 tierPriceOverrides.add(new DefaultTierPriceOverride(tieredBlockPriceOverrides));
             }
         }
         return tierPriceOverrides;
     }
 
-    List<TieredBlockPriceOverride> getTieredBlockPriceOverrides(Tier curTier, CatalogOverrideTierDefinitionModelDao overriddenTier, final InternalTenantContext context) {
+    List<TieredBlockPriceOverride> getTieredBlockPriceOverrides(Tier curTier, CatalogOverrideTierDefinitionModelDao overriddenTier, final CatalogOverrideDefinitions definitions) {
 
         final List<TieredBlockPriceOverride> blockPriceOverrides = new ArrayList<>();
-        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = overrideDao.getOverriddenTierBlocks(overriddenTier.getRecordId(), context);
+        final List<CatalogOverrideBlockDefinitionModelDao> blockDefs = definitions.getOverriddenTierBlocks(overriddenTier.getRecordId());
 
         for (int i = 0; i < curTier.getTieredBlocks().length; i++) {
             final TieredBlock curTieredBlock = curTier.getTieredBlocks()[i];
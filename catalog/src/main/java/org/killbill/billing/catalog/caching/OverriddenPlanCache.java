@@ -17,6 +17,8 @@
 
 package org.killbill.billing.catalog.caching;
 
+import java.util.Collection;
+
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.DefaultPlan;
 import org.killbill.billing.catalog.StandaloneCatalog;
@@ -27,5 +29,8 @@ public interface OverriddenPlanCache {
 
     DefaultPlan getOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
 
+    // Resolve, in bulk, the overridden plans missing from the cache for that catalog version
+    void loadOverriddenPlans(final Collection<String> planNames, final StandaloneCatalog catalog, final InternalTenantContext context);
+
     void addDryRunPlan(final String planName, final Plan plan);
 }
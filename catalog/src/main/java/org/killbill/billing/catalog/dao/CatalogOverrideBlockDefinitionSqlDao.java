@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -30,6 +31,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 import org.skife.jdbi.v2.util.LongMapper;
 
 @KillBillSqlDaoStringTemplate
@@ -55,4 +57,8 @@ public interface CatalogOverrideBlockDefinitionSqlDao extends Transactional<Cata
     @SqlQuery
     public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(@Bind("targetTierDefRecordId") Long targetTierDefRecordId,
                                                                                 @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<CatalogOverrideBlockDefinitionModelDao> getByRecordIds(@BindIn("recordIds") final Collection<Long> recordIds,
+                                                                       @SmartBindBean final InternalTenantContext context);
 }
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.joda.time.DateTime;
@@ -37,4 +38,7 @@ public interface CatalogOverrideDao {
 
     public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(final Long tierDefRecordId, final InternalTenantContext context);
 
+    // Bulk version of the getters above: loads all definitions of these plans in a fixed number of queries
+    public CatalogOverrideDefinitions getOverriddenPlanDefinitions(final Collection<Long> planDefRecordIds, final InternalTenantContext context);
+
 }
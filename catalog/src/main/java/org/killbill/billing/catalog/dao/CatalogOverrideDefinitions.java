@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+//
+// Override definitions (phases, usages, tiers and blocks) of a set of overridden plans, as loaded in bulk by CatalogOverrideDao.
+// The lists follow the same ordering as the per record id queries (e.g. phases are ordered by phase number).
+//
+public class CatalogOverrideDefinitions {
+
+    private final Map<Long, List<CatalogOverridePhaseDefinitionModelDao>> phasesByPlanDefRecordId;
+    private final Map<Long, List<CatalogOverrideUsageDefinitionModelDao>> usagesByPhaseDefRecordId;
+    private final Map<Long, List<CatalogOverrideTierDefinitionModelDao>> tiersByUsageDefRecordId;
+    private final Map<Long, List<CatalogOverrideBlockDefinitionModelDao>> blocksByTierDefRecordId;
+
+    public CatalogOverrideDefinitions(final Map<Long, List<CatalogOverridePhaseDefinitionModelDao>> phasesByPlanDefRecordId,
+                                      final Map<Long, List<CatalogOverrideUsageDefinitionModelDao>> usagesByPhaseDefRecordId,
+                                      final Map<Long, List<CatalogOverrideTierDefinitionModelDao>> tiersByUsageDefRecordId,
+                                      final Map<Long, List<CatalogOverrideBlockDefinitionModelDao>> blocksByTierDefRecordId) {
+        this.phasesByPlanDefRecordId = phasesByPlanDefRecordId;
+        this.usagesByPhaseDefRecordId = usagesByPhaseDefRecordId;
+        this.tiersByUsageDefRecordId = tiersByUsageDefRecordId;
+        this.blocksByTierDefRecordId = blocksByTierDefRecordId;
+    }
+
+    public List<CatalogOverridePhaseDefinitionModelDao> getOverriddenPlanPhases(final Long planDefRecordId) {
+        return phasesByPlanDefRecordId.getOrDefault(planDefRecordId, Collections.emptyList());
+    }
+
+    public List<CatalogOverrideUsageDefinitionModelDao> getOverriddenPhaseUsages(final Long phaseDefRecordId) {
+        return usagesByPhaseDefRecordId.getOrDefault(phaseDefRecordId, Collections.emptyList());
+    }
+
+    public List<CatalogOverrideTierDefinitionModelDao> getOverriddenUsageTiers(final Long usageDefRecordId) {
+        return tiersByUsageDefRecordId.getOrDefault(usageDefRecordId, Collections.emptyList());
+    }
+
+    public List<CatalogOverrideBlockDefinitionModelDao> getOverriddenTierBlocks(final Long tierDefRecordId) {
+        return blocksByTierDefRecordId.getOrDefault(tierDefRecordId, Collections.emptyList());
+    }
+}
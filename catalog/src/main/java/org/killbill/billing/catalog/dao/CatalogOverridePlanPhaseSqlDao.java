@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.dao;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -48,4 +49,8 @@ public interface CatalogOverridePlanPhaseSqlDao extends Transactional<CatalogOve
     public Long getTargetPlanDefinition(@BindIn("keys") final Collection<String> concatPhaseNumAndPhaseDefRecordId,
                                         @Bind("targetCount") final Integer targetCount,
                                         @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<CatalogOverridePlanPhaseModelDao> getByTargetRecordIds(@BindIn("targetRecordIds") final Collection<Long> targetRecordIds,
+                                                                       @SmartBindBean final InternalTenantContext context);
 }
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -29,6 +30,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 import org.skife.jdbi.v2.util.LongMapper;
 
 @KillBillSqlDaoStringTemplate
@@ -46,4 +48,8 @@ public interface CatalogOverrideTierDefinitionSqlDao extends Transactional<Catal
     @SqlQuery
     public List<CatalogOverrideTierDefinitionModelDao> getOverriddenUsageTiers(@Bind("targetUsageDefRecordId") Long targetUsageDefRecordId,
                                                                                @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<CatalogOverrideTierDefinitionModelDao> getByRecordIds(@BindIn("recordIds") final Collection<Long> recordIds,
+                                                                      @SmartBindBean final InternalTenantContext context);
 }
@@ -18,7 +18,13 @@
 package org.killbill.billing.catalog.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import javax.inject.Inject;
 
@@ -367,6 +373,97 @@ public class DefaultCatalogOverrideDao implements CatalogOverrideDao {
         });
     }
 
+    @Override
+    public CatalogOverrideDefinitions getOverriddenPlanDefinitions(final Collection<Long> planDefRecordIds, final InternalTenantContext context) {
+        return dbi.inTransaction(new TransactionCallback<CatalogOverrideDefinitions>() {
+            @Override
+            public CatalogOverrideDefinitions inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                final CatalogOverridePlanPhaseSqlDao planPhaseSqlDao = handle.attach(CatalogOverridePlanPhaseSqlDao.class);
+                final CatalogOverridePhaseDefinitionSqlDao phaseDefinitionSqlDao = handle.attach(CatalogOverridePhaseDefinitionSqlDao.class);
+                final Map<Long, List<CatalogOverridePhaseDefinitionModelDao>> phasesByPlan = getDefinitionsByTargetRecordId(planDefRecordIds,
+                                                                                                                             recordIds -> planPhaseSqlDao.getByTargetRecordIds(recordIds, context),
+                                                                                                                             CatalogOverridePlanPhaseModelDao::getTargetPlanDefRecordId,
+                                                                                                                             CatalogOverridePlanPhaseModelDao::getPhaseDefRecordId,
+                                                                                                                             recordIds -> phaseDefinitionSqlDao.getByRecordIds(recordIds, context),
+                                                                                                                             CatalogOverridePhaseDefinitionModelDao::getRecordId);
+
+                final CatalogOverridePhaseUsageSqlDao phaseUsageSqlDao = handle.attach(CatalogOverridePhaseUsageSqlDao.class);
+                final CatalogOverrideUsageDefinitionSqlDao usageDefinitionSqlDao = handle.attach(CatalogOverrideUsageDefinitionSqlDao.class);
+                final Map<Long, List<CatalogOverrideUsageDefinitionModelDao>> usagesByPhase = getDefinitionsByTargetRecordId(getRecordIds(phasesByPlan, CatalogOverridePhaseDefinitionModelDao::getRecordId),
+                                                                                                                              recordIds -> phaseUsageSqlDao.getByTargetRecordIds(recordIds, context),
+                                                                                                                              CatalogOverridePhaseUsageModelDao::getTargetPhaseDefRecordId,
+                                                                                                                              CatalogOverridePhaseUsageModelDao::getUsageDefRecordId,
+                                                                                                                              recordIds -> usageDefinitionSqlDao.getByRecordIds(recordIds, context),
+                                                                                                                              CatalogOverrideUsageDefinitionModelDao::getRecordId);
+
+                final CatalogOverrideUsageTierSqlDao usageTierSqlDao = handle.attach(CatalogOverrideUsageTierSqlDao.class);
+                final CatalogOverrideTierDefinitionSqlDao tierDefinitionSqlDao = handle.attach(CatalogOverrideTierDefinitionSqlDao.class);
+                final Map<Long, List<CatalogOverrideTierDefinitionModelDao>> tiersByUsage = getDefinitionsByTargetRecordId(getRecordIds(usagesByPhase, CatalogOverrideUsageDefinitionModelDao::getRecordId),
+                                                                                                                            recordIds -> usageTierSqlDao.getByTargetRecordIds(recordIds, context),
+                                                                                                                            CatalogOverrideUsageTierModelDao::getTargetUsageDefRecordId,
+                                                                                                                            CatalogOverrideUsageTierModelDao::getTierDefRecordId,
+                                                                                                                            recordIds -> tierDefinitionSqlDao.getByRecordIds(recordIds, context),
+                                                                                                                            CatalogOverrideTierDefinitionModelDao::getRecordId);
+
+                final CatalogOverrideTierBlockSqlDao tierBlockSqlDao = handle.attach(CatalogOverrideTierBlockSqlDao.class);
+                final CatalogOverrideBlockDefinitionSqlDao blockDefinitionSqlDao = handle.attach(CatalogOverrideBlockDefinitionSqlDao.class);
+                final Map<Long, List<CatalogOverrideBlockDefinitionModelDao>> blocksByTier = getDefinitionsByTargetRecordId(getRecordIds(tiersByUsage, CatalogOverrideTierDefinitionModelDao::getRecordId),
+                                                                                                                             recordIds -> tierBlockSqlDao.getByTargetRecordIds(recordIds, context),
+                                                                                                                             CatalogOverrideTierBlockModelDao::getTargetTierDefRecordId,
+                                                                                                                             CatalogOverrideTierBlockModelDao::getBlockDefRecordId,
+                                                                                                                             recordIds -> blockDefinitionSqlDao.getByRecordIds(recordIds, context),
+                                                                                                                             CatalogOverrideBlockDefinitionModelDao::getRecordId);
+
+                return new CatalogOverrideDefinitions(phasesByPlan, usagesByPhase, tiersByUsage, blocksByTier);
+            }
+        });
+    }
+
+    // Two queries per level, regardless of the number of targets: the (ordered) mapping rows, then the definitions they point to
+    private static <M, D> Map<Long, List<D>> getDefinitionsByTargetRecordId(final Collection<Long> targetRecordIds,
+                                                                           final Function<Collection<Long>, List<M>> mappingsLoader,
+                                                                           final Function<M, Long> targetRecordIdGetter,
+                                                                           final Function<M, Long> definitionRecordIdGetter,
+                                                                           final Function<Collection<Long>, List<D>> definitionsLoader,
+                                                                           final Function<D, Long> recordIdGetter) {
+        final Map<Long, List<D>> result = new HashMap<>();
+        if (targetRecordIds.isEmpty()) {
+            return result;
+        }
+
+        final List<M> mappings = mappingsLoader.apply(targetRecordIds);
+        if (mappings.isEmpty()) {
+            return result;
+        }
+
+        final Set<Long> definitionRecordIds = new HashSet<>();
+        for (final M mapping : mappings) {
+            definitionRecordIds.add(definitionRecordIdGetter.apply(mapping));
+        }
+        final Map<Long, D> definitions = new HashMap<>();
+        for (final D definition : definitionsLoader.apply(definitionRecordIds)) {
+            definitions.put(recordIdGetter.apply(definition), definition);
+        }
+
+        for (final M mapping : mappings) {
+            final D definition = definitions.get(definitionRecordIdGetter.apply(mapping));
+            if (definition != null) {
+                result.computeIfAbsent(targetRecordIdGetter.apply(mapping), k -> new ArrayList<>()).add(definition);
+            }
+        }
+        return result;
+    }
+
+    private static <D> Set<Long> getRecordIds(final Map<Long, List<D>> definitionsByTarget, final Function<D, Long> recordIdGetter) {
+        final Set<Long> result = new HashSet<>();
+        for (final List<D> definitions : definitionsByTarget.values()) {
+            for (final D definition : definitions) {
+                result.add(recordIdGetter.apply(definition));
+            }
+        }
+        return result;
+    }
+
 
     private boolean isUsageOverrideListHasOnlyNull(List<UsagePriceOverride> usagePriceOverrides) {
         for (UsagePriceOverride override : usagePriceOverrides) {
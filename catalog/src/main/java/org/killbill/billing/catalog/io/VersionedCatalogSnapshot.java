@@ -0,0 +1,376 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.killbill.billing.catalog.CatalogEntityCollection;
+import org.killbill.billing.catalog.DefaultBlock;
+import org.killbill.billing.catalog.DefaultDuration;
+import org.killbill.billing.catalog.DefaultFixed;
+import org.killbill.billing.catalog.DefaultInternationalPrice;
+import org.killbill.billing.catalog.DefaultLimit;
+import org.killbill.billing.catalog.DefaultPlan;
+import org.killbill.billing.catalog.DefaultPlanPhase;
+import org.killbill.billing.catalog.DefaultPrice;
+import org.killbill.billing.catalog.DefaultPriceList;
+import org.killbill.billing.catalog.DefaultPriceListSet;
+import org.killbill.billing.catalog.DefaultProduct;
+import org.killbill.billing.catalog.DefaultRecurring;
+import org.killbill.billing.catalog.DefaultTier;
+import org.killbill.billing.catalog.DefaultTieredBlock;
+import org.killbill.billing.catalog.DefaultUnit;
+import org.killbill.billing.catalog.DefaultUsage;
+import org.killbill.billing.catalog.DefaultVersionedCatalog;
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.billing.catalog.rules.DefaultCaseBillingAlignment;
+import org.killbill.billing.catalog.rules.DefaultCaseCancelPolicy;
+import org.killbill.billing.catalog.rules.DefaultCaseChange;
+import org.killbill.billing.catalog.rules.DefaultCaseChangePlanAlignment;
+import org.killbill.billing.catalog.rules.DefaultCaseChangePlanPolicy;
+import org.killbill.billing.catalog.rules.DefaultCaseCreateAlignment;
+import org.killbill.billing.catalog.rules.DefaultCasePhase;
+import org.killbill.billing.catalog.rules.DefaultCasePriceList;
+import org.killbill.billing.catalog.rules.DefaultCaseStandardNaming;
+import org.killbill.billing.catalog.rules.DefaultPlanRules;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.commons.utils.annotation.VisibleForTesting;
+import org.killbill.xmlloader.ValidationError;
+import org.killbill.xmlloader.ValidationException;
+import org.killbill.xmlloader.XMLLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary (Java serialization) snapshot of a tenant {@link DefaultVersionedCatalog}, stored next to the catalog XMLs in the tenant KV store
+ * so that the catalog cache can be loaded without going through JAXB parsing.
+ * <p>
+ * Snapshots are signed (HMAC-SHA256) with a server-side secret: a snapshot is only used if it was signed with that secret, built from the
+ * exact same XMLs, by the same snapshot format and Kill Bill build. In any other case {@link #read} returns null and the caller should fall
+ * back to the XML loader. Even then, deserialization is restricted to the catalog classes and the deserialized catalog is validated again.
+ * <p>
+ * The build identifier comes from a resource filtered by Maven (see VersionedCatalogSnapshot.properties): when it isn't available
+ * (e.g. classes compiled outside of Maven), snapshots are not supported, see {@link #isSupported()}.
+ */
+public final class VersionedCatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionedCatalogSnapshot.class);
+
+    private static final int MAGIC = 0x4b424353;
+    // Should be bumped whenever the serialized form of the catalog classes changes in an incompatible way
+    private static final int FORMAT_VERSION = 2;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    // Classes reachable from a DefaultVersionedCatalog: anything else is rejected, both when writing and reading a snapshot
+    private static final Set<Class<?>> ALLOWED_CLASSES = Set.of(Object.class,
+                                                                Enum.class,
+                                                                Number.class,
+                                                                BigDecimal.class,
+                                                                BigInteger.class,
+                                                                ArrayList.class,
+                                                                TreeMap.class,
+                                                                Comparator.naturalOrder().getClass(),
+                                                                Date.class,
+                                                                Currency.class,
+                                                                DefaultVersionedCatalog.class,
+                                                                StandaloneCatalog.class,
+                                                                StandaloneCatalogWithPriceOverride.class,
+                                                                CatalogEntityCollection.class,
+                                                                DefaultBlock.class,
+                                                                DefaultDuration.class,
+                                                                DefaultFixed.class,
+                                                                DefaultInternationalPrice.class,
+                                                                DefaultLimit.class,
+                                                                DefaultPlan.class,
+                                                                DefaultPlanPhase.class,
+                                                                DefaultPrice.class,
+                                                                DefaultPriceList.class,
+                                                                DefaultPriceListSet.class,
+                                                                DefaultProduct.class,
+                                                                DefaultRecurring.class,
+                                                                DefaultTier.class,
+                                                                DefaultTieredBlock.class,
+                                                                DefaultUnit.class,
+                                                                DefaultUsage.class,
+                                                                DefaultPlanRules.class,
+                                                                DefaultCaseBillingAlignment.class,
+                                                                DefaultCaseCancelPolicy.class,
+                                                                DefaultCaseChange.class,
+                                                                DefaultCaseChangePlanAlignment.class,
+                                                                DefaultCaseChangePlanPolicy.class,
+                                                                DefaultCaseCreateAlignment.class,
+                                                                DefaultCasePhase.class,
+                                                                DefaultCasePriceList.class,
+                                                                DefaultCaseStandardNaming.class);
+
+    // Generous compared to real-life catalogs, but bounded
+    private static final long MAX_DEPTH = 100;
+    private static final long MAX_REFERENCES = 10_000_000;
+    private static final long MAX_STREAM_BYTES = 512 * 1024 * 1024;
+    private static final long MAX_ARRAY_LENGTH = 1_000_000;
+
+    @VisibleForTesting
+    static final ObjectInputFilter CLASS_FILTER = VersionedCatalogSnapshot::checkInput;
+
+    private static final String BUILD_ID = loadBuildId();
+
+    private VersionedCatalogSnapshot() {}
+
+    public static boolean isSupported() {
+        return BUILD_ID != null;
+    }
+
+    public static String getTenantKey(final boolean filterTemplateCatalog) {
+        return filterTemplateCatalog ? TenantInternalApi.CATALOG_SNAPSHOT_WITHOUT_TEMPLATES_KEY : TenantInternalApi.CATALOG_SNAPSHOT_WITH_TEMPLATES_KEY;
+    }
+
+    public static String write(final DefaultVersionedCatalog catalog,
+                               final Collection<String> catalogXMLs,
+                               final boolean filterTemplateCatalog,
+                               final Long tenantRecordId,
+                               final String secret) throws IOException {
+        return write(catalog, catalogXMLs, filterTemplateCatalog, tenantRecordId, secret, BUILD_ID);
+    }
+
+    @VisibleForTesting
+    static String write(final DefaultVersionedCatalog catalog,
+                        final Collection<String> catalogXMLs,
+                        final boolean filterTemplateCatalog,
+                        final Long tenantRecordId,
+                        final String secret,
+                        final String buildId) throws IOException {
+        if (buildId == null) {
+            throw new IllegalStateException("Catalog snapshots aren't supported by this build");
+        }
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalStateException("Catalog snapshots require a secret");
+        }
+
+        final ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new AllowListObjectOutputStream(new GZIPOutputStream(payloadStream))) {
+            out.writeObject(catalog);
+        }
+        final byte[] payload = payloadStream.toByteArray();
+
+        final ByteArrayOutputStream snapshotStream = new ByteArrayOutputStream(payload.length + MAC_LENGTH + 16);
+        try (final DataOutputStream out = new DataOutputStream(snapshotStream)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.write(mac(secret, buildId, catalogXMLs, filterTemplateCatalog, tenantRecordId, payload));
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        return Base64.getEncoder().encodeToString(snapshotStream.toByteArray());
+    }
+
+    public static DefaultVersionedCatalog read(final String snapshot,
+                                               final Collection<String> catalogXMLs,
+                                               final boolean filterTemplateCatalog,
+                                               final Long tenantRecordId,
+                                               final String secret) {
+        return read(snapshot, catalogXMLs, filterTemplateCatalog, tenantRecordId, secret, BUILD_ID);
+    }
+
+    @VisibleForTesting
+    static DefaultVersionedCatalog read(final String snapshot,
+                                        final Collection<String> catalogXMLs,
+                                        final boolean filterTemplateCatalog,
+                                        final Long tenantRecordId,
+                                        final String secret,
+                                        final String buildId) {
+        if (snapshot == null || buildId == null || secret == null || secret.isEmpty()) {
+            return null;
+        }
+
+        final DefaultVersionedCatalog catalog;
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.info("Ignoring catalog snapshot with unknown format for tenantRecordId='{}'", tenantRecordId);
+                return null;
+            }
+
+            final byte[] mac = new byte[MAC_LENGTH];
+            in.readFully(mac);
+            final int payloadLength = in.readInt();
+            if (payloadLength < 0 || payloadLength > in.available()) {
+                logger.warn("Ignoring truncated catalog snapshot for tenantRecordId='{}'", tenantRecordId);
+                return null;
+            }
+            final byte[] payload = new byte[payloadLength];
+            in.readFully(payload);
+
+            if (!MessageDigest.isEqual(mac, mac(secret, buildId, catalogXMLs, filterTemplateCatalog, tenantRecordId, payload))) {
+                // Stale snapshot (e.g. new catalog version uploaded since, Kill Bill upgrade, secret rotation) or not written by Kill Bill
+                logger.info("Ignoring stale or unsigned catalog snapshot for tenantRecordId='{}'", tenantRecordId);
+                return null;
+            }
+
+            try (final ObjectInputStream objectStream = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+                objectStream.setObjectInputFilter(CLASS_FILTER);
+                catalog = (DefaultVersionedCatalog) objectStream.readObject();
+            }
+        } catch (final IOException | ClassNotFoundException | RuntimeException e) {
+            logger.warn("Unable to read catalog snapshot for tenantRecordId='{}'", tenantRecordId, e);
+            return null;
+        }
+
+        try {
+            // Same initialization and validation as VersionedCatalogLoader: first each StandaloneCatalog, then the VersionedCatalog
+            for (final StaticCatalog version : catalog.getVersions()) {
+                ((StandaloneCatalog) version).initialize((StandaloneCatalog) version);
+            }
+            XMLLoader.initializeAndValidate(catalog);
+            return catalog;
+        } catch (final ValidationException e) {
+            logger.warn("Ignoring invalid catalog snapshot for tenantRecordId='{}'", tenantRecordId, e);
+            for (final ValidationError ve : e.getErrors()) {
+                logger.warn(ve.toString());
+            }
+            return null;
+        } catch (final RuntimeException e) {
+            logger.warn("Ignoring invalid catalog snapshot for tenantRecordId='{}'", tenantRecordId, e);
+            return null;
+        }
+    }
+
+    private static byte[] mac(final String secret,
+                              final String buildId,
+                              final Collection<String> catalogXMLs,
+                              final boolean filterTemplateCatalog,
+                              final Long tenantRecordId,
+                              final byte[] payload) {
+        final Mac mac;
+        try {
+            mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Snapshots don't survive upgrades, as the catalog classes (and their serialized form) may have changed
+        update(mac, String.valueOf(FORMAT_VERSION));
+        update(mac, buildId);
+        update(mac, String.valueOf(tenantRecordId));
+        mac.update((byte) (filterTemplateCatalog ? 1 : 0));
+        update(mac, String.valueOf(catalogXMLs.size()));
+        for (final String catalogXML : catalogXMLs) {
+            update(mac, catalogXML);
+        }
+        update(mac, payload);
+        return mac.doFinal();
+    }
+
+    private static void update(final Mac mac, final String value) {
+        update(mac, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void update(final Mac mac, final byte[] bytes) {
+        mac.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        mac.update(bytes);
+    }
+
+    private static ObjectInputFilter.Status checkInput(final ObjectInputFilter.FilterInfo filterInfo) {
+        if (filterInfo.depth() > MAX_DEPTH ||
+            filterInfo.references() > MAX_REFERENCES ||
+            filterInfo.streamBytes() > MAX_STREAM_BYTES ||
+            filterInfo.arrayLength() > MAX_ARRAY_LENGTH) {
+            return ObjectInputFilter.Status.REJECTED;
+        }
+        if (filterInfo.serialClass() == null) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        return isAllowed(filterInfo.serialClass()) ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+    }
+
+    private static boolean isAllowed(final Class<?> clazz) {
+        Class<?> componentType = clazz;
+        while (componentType.isArray()) {
+            componentType = componentType.getComponentType();
+        }
+        return componentType.isPrimitive() || ALLOWED_CLASSES.contains(componentType);
+    }
+
+    private static String loadBuildId() {
+        try (final InputStream in = VersionedCatalogSnapshot.class.getResourceAsStream("VersionedCatalogSnapshot.properties")) {
+            if (in == null) {
+                logger.warn("Missing VersionedCatalogSnapshot.properties, catalog snapshots are disabled");
+                return null;
+            }
+
+            final Properties properties = new Properties();
+            properties.load(in);
+            final String buildId = properties.getProperty("build.id");
+            // Unfiltered resource
+            if (buildId == null || buildId.contains("${")) {
+                logger.warn("Unknown build id '{}', catalog snapshots are disabled", buildId);
+                return null;
+            }
+            return buildId;
+        } catch (final IOException e) {
+            logger.warn("Unable to read VersionedCatalogSnapshot.properties, catalog snapshots are disabled", e);
+            return null;
+        }
+    }
+
+    // Fail early (rather than writing snapshots which could never be read back) if the catalog references a class outside of the allow list
+    private static final class AllowListObjectOutputStream extends ObjectOutputStream {
+
+        private AllowListObjectOutputStream(final OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(final Class<?> clazz) throws IOException {
+            if (!isAllowed(clazz)) {
+                throw new InvalidClassException(clazz.getName(), "Not allowed in catalog snapshots");
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.override;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -210,4 +211,9 @@ public class DefaultPriceOverride implements PriceOverride {
     public DefaultPlan getOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
         return overriddenPlanCache.getOverriddenPlan(planName, catalog, context);
     }
+
+    @Override
+    public void loadOverriddenPlans(final Collection<String> planNames, final StandaloneCatalog catalog, final InternalTenantContext context) {
+        overriddenPlanCache.loadOverriddenPlans(planNames, catalog, context);
+    }
 }
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.override;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.joda.time.DateTime;
@@ -35,4 +36,6 @@ public interface PriceOverride {
     DefaultPlan getOrCreateOverriddenPlan(final StandaloneCatalog catalog, final Plan parentPlan, final DateTime catalogEffectiveDate, final List<PlanPhasePriceOverride> overrides, final InternalCallContext context) throws CatalogApiException;
 
     DefaultPlan getOverriddenPlan(final String planName, final StandaloneCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
+
+    void loadOverriddenPlans(final Collection<String> planNames, final StandaloneCatalog catalog, final InternalTenantContext context);
 }
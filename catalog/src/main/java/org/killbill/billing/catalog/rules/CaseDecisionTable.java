@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.rules;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.CatalogEntity;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.api.Product;
+import org.killbill.billing.catalog.api.StaticCatalog;
+
+/**
+ * Index of an ordered array of rule cases, built once when the catalog is initialized.
+ * <p>
+ * The cases are arranged in a tree with one level per criterion (phase type, product, category, billing period and price list,
+ * twice for the change cases): each level has one branch per value found in the cases and one branch for the cases which don't
+ * specify that criterion. A lookup only follows the branches compatible with the input and returns the matching case which comes
+ * first in the array, i.e. the one the linear scan ({@link DefaultCase#getResult(DefaultCase[], PlanSpecifier, StaticCatalog)} and
+ * friends) would have picked.
+ * <p>
+ * If the input cannot be resolved against the catalog (unknown plan, product or price list), the lookup falls back to the linear scan,
+ * which throws (or not) exactly as before.
+ */
+final class CaseDecisionTable<T> {
+
+    private static final int PHASE_TYPE = 0;
+    private static final int PRICE_LIST = 4;
+
+    private final Object[] cases;
+    private final Object[][] criteria;
+    private final boolean[] constrained;
+    private final Node root;
+
+    private CaseDecisionTable(final Object[] cases, final Object[][] criteria, final int nbDimensions) {
+        this.cases = cases;
+        this.criteria = criteria;
+        this.constrained = new boolean[nbDimensions];
+        this.root = new Node();
+        for (int ordinal = 0; ordinal < cases.length; ordinal++) {
+            for (int dimension = 0; dimension < nbDimensions; dimension++) {
+                constrained[dimension] |= criteria[ordinal][dimension] != null;
+            }
+            root.add(criteria[ordinal], 0, ordinal);
+        }
+    }
+
+    static <K> CaseDecisionTable<K> forCases(final DefaultCase<K>[] cases) {
+        final DefaultCase<K>[] nonNullCases = cases != null ? cases : new DefaultCase[0];
+        final Object[][] criteria = new Object[nonNullCases.length][];
+        for (int i = 0; i < nonNullCases.length; i++) {
+            final DefaultCase<K> cur = nonNullCases[i];
+            criteria[i] = new Object[]{cur instanceof DefaultCasePhase ? ((DefaultCasePhase<K>) cur).phaseType : null,
+                                       cur.getProduct(),
+                                       cur.getProductCategory(),
+                                       cur.getBillingPeriod(),
+                                       cur.getPriceList()};
+        }
+        return new CaseDecisionTable<K>(nonNullCases, criteria, 5);
+    }
+
+    static <K> CaseDecisionTable<K> forChangeCases(final DefaultCaseChange<K>[] cases) {
+        final DefaultCaseChange<K>[] nonNullCases = cases != null ? cases : new DefaultCaseChange[0];
+        final Object[][] criteria = new Object[nonNullCases.length][];
+        for (int i = 0; i < nonNullCases.length; i++) {
+            final DefaultCaseChange<K> cur = nonNullCases[i];
+            criteria[i] = new Object[]{cur.getPhaseType(),
+                                       cur.getFromProduct(),
+                                       cur.getFromProductCategory(),
+                                       cur.getFromBillingPeriod(),
+                                       cur.getFromPriceList(),
+                                       cur.getToProduct(),
+                                       cur.getToProductCategory(),
+                                       cur.getToBillingPeriod(),
+                                       cur.getToPriceList()};
+        }
+        return new CaseDecisionTable<K>(nonNullCases, criteria, 9);
+    }
+
+    // See DefaultCase#getResult(DefaultCase[], PlanSpecifier, StaticCatalog)
+    @SuppressWarnings("unchecked")
+    T getResult(final PlanSpecifier planSpec, final StaticCatalog catalog) throws CatalogApiException {
+        if (cases.length == 0) {
+            return null;
+        }
+
+        final Object[] values = new Object[5];
+        try {
+            resolve(planSpec, catalog, values, 1, false);
+        } catch (final CatalogApiException e) {
+            return DefaultCase.getResult((DefaultCase<T>[]) cases, planSpec, catalog);
+        }
+        return findFirst(values);
+    }
+
+    // See DefaultCasePhase#getResult(DefaultCasePhase[], PlanPhaseSpecifier, StaticCatalog)
+    @SuppressWarnings("unchecked")
+    T getResult(final PlanPhaseSpecifier planPhase, final StaticCatalog catalog) throws CatalogApiException {
+        if (cases.length == 0) {
+            return null;
+        }
+
+        final Object[] values = new Object[5];
+        values[PHASE_TYPE] = planPhase.getPhaseType();
+        try {
+            resolve(new PlanSpecifier(planPhase), catalog, values, 1, false);
+        } catch (final CatalogApiException e) {
+            return DefaultCasePhase.getResult((DefaultCasePhase<T>[]) cases, planPhase, catalog);
+        }
+        return findFirst(values);
+    }
+
+    // See DefaultCaseChange#getResult(DefaultCaseChange[], PlanPhaseSpecifier, PlanSpecifier, StaticCatalog)
+    @SuppressWarnings("unchecked")
+    T getResult(final PlanPhaseSpecifier from, final PlanSpecifier to, final StaticCatalog catalog) throws CatalogApiException {
+        if (cases.length == 0) {
+            return null;
+        }
+
+        final Object[] values = new Object[9];
+        values[PHASE_TYPE] = from.getPhaseType();
+        try {
+            resolve(from, catalog, values, 1, true);
+            resolve(to, catalog, values, 5, true);
+        } catch (final CatalogApiException e) {
+            return DefaultCaseChange.getResult((DefaultCaseChange<T>[]) cases, from, to, catalog);
+        }
+        return findFirst(values);
+    }
+
+    // Same resolution as DefaultCase#satisfiesCase and DefaultCaseChange#getResult
+    private void resolve(final PlanSpecifier spec, final StaticCatalog catalog, final Object[] values, final int offset, final boolean isChange) throws CatalogApiException {
+        if (spec.getPlanName() != null) {
+            final Plan plan = catalog.findPlan(spec.getPlanName());
+            values[offset] = plan.getProduct();
+            values[offset + 1] = plan.getProduct().getCategory();
+            values[offset + 2] = plan.getRecurringBillingPeriod();
+            values[offset + 3] = plan.getPriceList();
+        } else {
+            final Product product = catalog.findProduct(spec.getProductName());
+            values[offset] = product;
+            values[offset + 1] = product.getCategory();
+            values[offset + 2] = spec.getBillingPeriod();
+            // The standard cases only look up the price list when one of them specifies it (and fail if there is none)
+            final boolean lookUpPriceList = isChange ? spec.getPriceListName() != null : constrained[PRICE_LIST];
+            values[offset + 3] = lookUpPriceList ? catalog.findPriceList(spec.getPriceListName()) : null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T findFirst(final Object[] values) {
+        final Object[] keys = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = key(values[i]);
+        }
+
+        final int ordinal = root.findFirst(keys, values, 0, Integer.MAX_VALUE);
+        return ordinal == Integer.MAX_VALUE ? null : (T) result(ordinal);
+    }
+
+    private boolean matches(final int ordinal, final Object[] values) {
+        // The tree is keyed by name for catalog entities (see key()), check the actual objects like the linear scan does
+        final Object[] caseCriteria = criteria[ordinal];
+        for (int i = 0; i < values.length; i++) {
+            if (caseCriteria[i] != null && !caseCriteria[i].equals(values[i])) {
+                return false;
+            }
+        }
+        return result(ordinal) != null;
+    }
+
+    private Object result(final int ordinal) {
+        final Object cur = cases[ordinal];
+        return cur instanceof DefaultCase ? ((DefaultCase<?>) cur).getResult() : ((DefaultCaseChange<?>) cur).getResult();
+    }
+
+    // Products and price lists are hashed on their name: their own hashCode walks the whole catalog entity
+    private static Object key(final Object value) {
+        return value instanceof CatalogEntity ? ((CatalogEntity) value).getName() : value;
+    }
+
+    private final class Node {
+
+        // First ordinal in that subtree (cases are added in order)
+        private int minOrdinal = Integer.MAX_VALUE;
+        // Leaves only
+        private int[] ordinals;
+        private int nbOrdinals;
+        // Inner nodes only
+        private Map<Object, Node> children;
+        private Node wildcard;
+
+        private void add(final Object[] caseCriteria, final int dimension, final int ordinal) {
+            if (minOrdinal == Integer.MAX_VALUE) {
+                minOrdinal = ordinal;
+            }
+
+            if (dimension == caseCriteria.length) {
+                if (ordinals == null) {
+                    ordinals = new int[1];
+                } else if (nbOrdinals == ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, nbOrdinals * 2);
+                }
+                ordinals[nbOrdinals++] = ordinal;
+                return;
+            }
+
+            final Object key = key(caseCriteria[dimension]);
+            final Node child;
+            if (key == null) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                child = wildcard;
+            } else {
+                if (children == null) {
+                    children = new HashMap<Object, Node>();
+                }
+                child = children.computeIfAbsent(key, k -> new Node());
+            }
+            child.add(caseCriteria, dimension + 1, ordinal);
+        }
+
+        // Returns the first matching ordinal lower than best, or best if there is none
+        private int findFirst(final Object[] keys, final Object[] values, final int dimension, final int best) {
+            if (minOrdinal >= best) {
+                return best;
+            }
+
+            if (dimension == keys.length) {
+                for (int i = 0; i < nbOrdinals && ordinals[i] < best; i++) {
+                    if (matches(ordinals[i], values)) {
+                        return ordinals[i];
+                    }
+                }
+                return best;
+            }
+
+            final Node specific = children == null || keys[dimension] == null ? null : children.get(keys[dimension]);
+            // Visit first the branch holding the earliest case, so that the other one can be pruned
+            if (specific != null && wildcard != null && wildcard.minOrdinal < specific.minOrdinal) {
+                return specific.findFirst(keys, values, dimension + 1, wildcard.findFirst(keys, values, dimension + 1, best));
+            }
+
+            int result = best;
+            if (specific != null) {
+                result = specific.findFirst(keys, values, dimension + 1, result);
+            }
+            if (wildcard != null) {
+                result = wildcard.findFirst(keys, values, dimension + 1, result);
+            }
+            return result;
+        }
+    }
+}
@@ -82,6 +82,9 @@ public class DefaultPlanRules extends ValidatingConfig<StandaloneCatalog> implem
     @XmlElement(name = "priceListCase", required = false)
     private DefaultCasePriceList[] priceListCase;
 
+    // Indexed view of the cases above, built in initialize (or lazily, e.g. after deserialization) and reset by the setters
+    private volatile CompiledRules compiledRules;
+
     // Required for deserialization
     public DefaultPlanRules() {
     }
@@ -124,19 +127,19 @@ public class DefaultPlanRules extends ValidatingConfig<StandaloneCatalog> implem
 
     @Override
     public PlanAlignmentCreate getPlanCreateAlignment(final PlanSpecifier specifier) throws CatalogApiException {
-        final PlanAlignmentCreate result = DefaultCase.getResult(createAlignmentCase, specifier, root);
+        final PlanAlignmentCreate result = getCompiledRules().createAlignment.getResult(specifier, root);
         return (result != null) ? result : PlanAlignmentCreate.START_OF_BUNDLE;
     }
 
     @Override
     public BillingActionPolicy getPlanCancelPolicy(final PlanPhaseSpecifier planPhase) throws CatalogApiException {
-        final BillingActionPolicy result = DefaultCasePhase.getResult(cancelCase, planPhase, root);
+        final BillingActionPolicy result = getCompiledRules().cancel.getResult(planPhase, root);
         return (result != null) ? result : BillingActionPolicy.END_OF_TERM;
     }
 
     @Override
     public BillingAlignment getBillingAlignment(final PlanPhaseSpecifier planPhase) throws CatalogApiException {
-        final BillingAlignment result = DefaultCasePhase.getResult(billingAlignmentCase, planPhase, root);
+        final BillingAlignment result = getCompiledRules().billingAlignment.getResult(planPhase, root);
         return (result != null) ? result : BillingAlignment.ACCOUNT;
     }
 
@@ -165,18 +168,18 @@ public class DefaultPlanRules extends ValidatingConfig<StandaloneCatalog> implem
 
     private PlanAlignmentChange getPlanChangeAlignment(final PlanPhaseSpecifier from,
                                                        final PlanSpecifier to) throws CatalogApiException {
-        final PlanAlignmentChange result = DefaultCaseChange.getResult(changeAlignmentCase, from, to, root);
+        final PlanAlignmentChange result = getCompiledRules().changeAlignment.getResult(from, to, root);
         return (result != null) ? result : PlanAlignmentChange.START_OF_BUNDLE;
     }
 
     private BillingActionPolicy getPlanChangePolicy(final PlanPhaseSpecifier from,
                                                     final PlanSpecifier to) throws CatalogApiException {
-        final BillingActionPolicy result = DefaultCaseChange.getResult(changeCase, from, to, root);
+        final BillingActionPolicy result = getCompiledRules().change.getResult(from, to, root);
         return (result != null) ? result : BillingActionPolicy.END_OF_TERM;
     }
 
     private DefaultPriceList findPriceList(final PlanSpecifier specifier) throws CatalogApiException {
-        DefaultPriceList result = DefaultCasePriceList.getResult(priceListCase, specifier, root);
+        DefaultPriceList result = getCompiledRules().priceList.getResult(specifier, root);
         if (result == null) {
             final String priceListName = specifier.getPlanName() != null ? root.findPlan(specifier.getPlanName()).getPriceList().getName() : specifier.getPriceListName();
             result = (DefaultPriceList) root.findPriceList(priceListName);
@@ -300,6 +303,17 @@ public class DefaultPlanRules extends ValidatingConfig<StandaloneCatalog> implem
         for (final DefaultCasePriceList cur : priceListCase) {
             cur.initialize(catalog);
         }
+
+        compiledRules = new CompiledRules(this);
+    }
+
+    private CompiledRules getCompiledRules() {
+        CompiledRules result = compiledRules;
+        if (result == null) {
+            result = new CompiledRules(this);
+            compiledRules = result;
+        }
+        return result;
     }
 
     /////////////////////////////////////////////////////////////////////////////////////
@@ -308,36 +322,61 @@ public class DefaultPlanRules extends ValidatingConfig<StandaloneCatalog> implem
 
     public DefaultPlanRules setChangeCase(final DefaultCaseChangePlanPolicy[] changeCase) {
         this.changeCase = changeCase;
+        this.compiledRules = null;
         return this;
     }
 
     public DefaultPlanRules setChangeAlignmentCase(
             final DefaultCaseChangePlanAlignment[] changeAlignmentCase) {
         this.changeAlignmentCase = changeAlignmentCase;
+        this.compiledRules = null;
         return this;
     }
 
     public DefaultPlanRules setCancelCase(final DefaultCaseCancelPolicy[] cancelCase) {
         this.cancelCase = cancelCase;
+        this.compiledRules = null;
         return this;
     }
 
     public DefaultPlanRules setCreateAlignmentCase(final DefaultCaseCreateAlignment[] createAlignmentCase) {
         this.createAlignmentCase = createAlignmentCase;
+        this.compiledRules = null;
         return this;
     }
 
     public DefaultPlanRules setBillingAlignmentCase(
             final DefaultCaseBillingAlignment[] billingAlignmentCase) {
         this.billingAlignmentCase = billingAlignmentCase;
+        this.compiledRules = null;
         return this;
     }
 
     public DefaultPlanRules setPriceListCase(final DefaultCasePriceList[] priceListCase) {
         this.priceListCase = priceListCase;
+        this.compiledRules = null;
         return this;
     }
 
+    private static final class CompiledRules {
+
+        private final CaseDecisionTable<BillingActionPolicy> change;
+        private final CaseDecisionTable<PlanAlignmentChange> changeAlignment;
+        private final CaseDecisionTable<BillingActionPolicy> cancel;
+        private final CaseDecisionTable<PlanAlignmentCreate> createAlignment;
+        private final CaseDecisionTable<BillingAlignment> billingAlignment;
+        private final CaseDecisionTable<DefaultPriceList> priceList;
+
+        private CompiledRules(final DefaultPlanRules planRules) {
+            this.change = CaseDecisionTable.forChangeCases(planRules.changeCase);
+            this.changeAlignment = CaseDecisionTable.forChangeCases(planRules.changeAlignmentCase);
+            this.cancel = CaseDecisionTable.forCases(planRules.cancelCase);
+            this.createAlignment = CaseDecisionTable.forCases(planRules.createAlignmentCase);
+            this.billingAlignment = CaseDecisionTable.forCases(planRules.billingAlignmentCase);
+            this.priceList = CaseDecisionTable.forCases(planRules.priceListCase);
+        }
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
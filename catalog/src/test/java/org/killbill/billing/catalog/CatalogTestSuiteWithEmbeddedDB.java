@@ -24,6 +24,7 @@ import org.killbill.billing.catalog.caching.PriceOverridePattern;
 import org.killbill.billing.catalog.dao.CatalogOverrideDao;
 import org.killbill.billing.catalog.glue.TestCatalogModuleWithEmbeddedDB;
 import org.killbill.billing.catalog.override.PriceOverride;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.commons.utils.io.Resources;
 import org.killbill.xmlloader.XMLLoader;
 import org.skife.jdbi.v2.IDBI;
@@ -45,6 +46,9 @@ public class CatalogTestSuiteWithEmbeddedDB extends GuicyKillbillTestSuiteWithEm
 
     @Inject PriceOverridePattern priceOverridePattern;
 
+    @Inject
+    protected CacheControllerDispatcher cacheControllerDispatcher;
+
     @BeforeClass(groups = "slow")
     protected void beforeClass() throws Exception {
         if (hasFailed()) {
@@ -38,6 +38,16 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
             public Integer getCatalogThreadNb() {
                 return null;
             }
+
+            @Override
+            public boolean isCatalogSnapshotEnabled() {
+                return false;
+            }
+
+            @Override
+            public String getCatalogSnapshotSecret() {
+                return null;
+            }
         }, tenantInternalApi, catalogCache, cacheInvalidationCallback, null);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(true, true, internalCallContext));
@@ -56,6 +66,16 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
             public Integer getCatalogThreadNb() {
                 return null;
             }
+
+            @Override
+            public boolean isCatalogSnapshotEnabled() {
+                return false;
+            }
+
+            @Override
+            public String getCatalogSnapshotSecret() {
+                return null;
+            }
         }, tenantInternalApi, catalogCache, cacheInvalidationCallback, null);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(true, true, internalCallContext));
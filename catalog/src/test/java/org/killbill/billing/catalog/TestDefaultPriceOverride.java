@@ -34,6 +34,8 @@ import org.killbill.billing.catalog.api.TieredBlockPriceOverride;
 import org.killbill.billing.catalog.api.Unit;
 import org.killbill.billing.catalog.api.UsagePriceOverride;
 import org.killbill.billing.catalog.api.UsageType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
@@ -177,6 +179,37 @@ public class TestDefaultPriceOverride extends CatalogTestSuiteWithEmbeddedDB {
         }
     }
 
+    @Test(groups = "slow")
+    public void testLoadOverriddenPlans() throws Exception {
+
+        final StandaloneCatalog catalog = getCatalog("SpyCarAdvanced.xml");
+        catalog.initialize(catalog);
+
+        final Plan plan = catalog.findPlan("discount-standard-monthly");
+        final List<String> overriddenPlanNames = new ArrayList<String>();
+        for (final BigDecimal recurringPrice : List.of(new BigDecimal("142.41"), new BigDecimal("151.98"))) {
+            final List<PlanPhasePriceOverride> overrides = List.of(new DefaultPlanPhasePriceOverride(plan.getAllPhases()[2].getName(), Currency.USD, null, recurringPrice, null));
+            overriddenPlanNames.add(priceOverride.getOrCreateOverriddenPlan(catalog, plan, new DateTime(catalog.getEffectiveDate()), overrides, internalCallContext).getName());
+        }
+
+        final CacheController<String, Plan> cacheController = cacheControllerDispatcher.getCacheController(CacheType.OVERRIDDEN_PLAN);
+        cacheController.removeAll();
+
+        // Unknown parent plan: skipped, and left to the regular loading path
+        final String unknownPlanName = "unknown-monthly:" + priceOverridePattern.getPlanParts(overriddenPlanNames.get(0))[1];
+        priceOverride.loadOverriddenPlans(List.of(overriddenPlanNames.get(0), overriddenPlanNames.get(1), unknownPlanName), catalog, internalCallContext);
+        assertEquals(cacheController.size(), 2);
+
+        for (final String overriddenPlanName : overriddenPlanNames) {
+            final Plan cachedPlan = priceOverride.getOverriddenPlan(overriddenPlanName, catalog, internalCallContext);
+            cacheController.removeAll();
+            final Plan loadedPlan = priceOverride.getOverriddenPlan(overriddenPlanName, catalog, internalCallContext);
+            assertEquals(cachedPlan.getName(), overriddenPlanName);
+            assertEquals(cachedPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.USD).compareTo(loadedPlan.getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.USD)), 0);
+        }
+        assertEquals(priceOverride.getOverriddenPlan(overriddenPlanNames.get(1), catalog, internalCallContext).getFinalPhase().getRecurring().getRecurringPrice().getPrice(Currency.USD).compareTo(new BigDecimal("151.98")), 0);
+    }
+
     private void assertInternationalPrice(final InternationalPrice newInternationalPrice, final InternationalPrice initInternationalPrice, final PlanPhasePriceOverride override, final boolean isFixed) throws CatalogApiException {
 
         if (initInternationalPrice.getPrices().length == 0) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.catalog;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.commons.utils.io.Resources;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestDefaultVersionedCatalog extends CatalogTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testVersionIndex() throws Exception {
+        final DefaultVersionedCatalog catalog = loadVersionedCatalog();
+        Assert.assertEquals(catalog.getVersions().size(), 4);
+
+        final List<Date> dates = new ArrayList<Date>();
+        for (final StaticCatalog version : catalog.getVersions()) {
+            final DateTime effectiveDate = new DateTime(version.getEffectiveDate());
+            dates.add(effectiveDate.minusMillis(1).toDate());
+            dates.add(effectiveDate.toDate());
+            dates.add(effectiveDate.plusMillis(1).toDate());
+            dates.add(effectiveDate.plusDays(3).toDate());
+        }
+        dates.add(new DateTime("2000-01-01T00:00:00Z").toDate());
+        dates.add(new DateTime("2030-01-01T00:00:00Z").toDate());
+
+        for (final Date date : dates) {
+            final int expectedVersionIndex = linearIndexOfVersionForDate(catalog, date);
+            Assert.assertEquals(catalog.getVersionIndex(date), expectedVersionIndex, date.toString());
+            Assert.assertSame(catalog.getVersion(date), catalog.getVersions().get(expectedVersionIndex), date.toString());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testPlanIndex() throws Exception {
+        final DefaultVersionedCatalog catalog = loadVersionedCatalog();
+
+        final Set<String> planNames = new LinkedHashSet<String>();
+        for (final StaticCatalog version : catalog.getVersions()) {
+            for (final Plan plan : version.getPlans()) {
+                planNames.add(plan.getName());
+            }
+        }
+        planNames.add("unknown-plan");
+
+        for (final String planName : planNames) {
+            for (int maxVersionIndex = -1; maxVersionIndex < catalog.getVersions().size(); maxVersionIndex++) {
+                Assert.assertEquals(catalog.getLatestVersionIndexForPlan(planName, maxVersionIndex), linearLatestVersionIndexForPlan(catalog, planName, maxVersionIndex), planName + " " + maxVersionIndex);
+            }
+            for (int versionIndex = 0; versionIndex < catalog.getVersions().size(); versionIndex++) {
+                Assert.assertSame(catalog.findPlan(planName, versionIndex), findPlanOrNull(catalog.getVersions().get(versionIndex), planName), planName + " " + versionIndex);
+            }
+        }
+
+        // shotgun-quarterly was only offered in the 2nd and 3rd versions
+        Assert.assertEquals(catalog.getLatestVersionIndexForPlan("shotgun-quarterly", 3), 2);
+        Assert.assertEquals(catalog.getLatestVersionIndexForPlan("shotgun-quarterly", 0), -1);
+    }
+
+    @Test(groups = "fast")
+    public void testFindPlanAndPhaseForDate() throws Exception {
+        final DefaultVersionedCatalog catalog = loadVersionedCatalog();
+
+        final Date date = new DateTime("2011-02-02T12:00:00Z").toDate();
+        Assert.assertSame(catalog.findPlan("shotgun-quarterly", date), catalog.getVersion(date).findPlan("shotgun-quarterly"));
+        final PlanPhase phase = catalog.findPhase("pistol-monthly-evergreen", date);
+        Assert.assertSame(phase, catalog.getVersion(date).findPhase("pistol-monthly-evergreen"));
+
+        final Date laterDate = new DateTime("2011-03-04T00:00:00Z").toDate();
+        try {
+            catalog.findPlan("shotgun-quarterly", laterDate);
+            Assert.fail();
+        } catch (final CatalogApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.CAT_NO_SUCH_PLAN.getCode());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testIndexIsRebuiltOnAdd() throws Exception {
+        final DefaultVersionedCatalog catalog = new DefaultVersionedCatalog();
+        final StandaloneCatalog v1 = getCatalog("versionedCatalog/WeaponsHireSmall-1.xml");
+        final StandaloneCatalog v2 = getCatalog("versionedCatalog/WeaponsHireSmall-2.xml");
+
+        catalog.add(v2);
+        Assert.assertEquals(catalog.getLatestVersionIndexForPlan("shotgun-quarterly", 0), 0);
+        Assert.assertNull(catalog.findPlan("pistol-monthly", 1));
+
+        // Inserted before v2
+        catalog.add(v1);
+        Assert.assertEquals(catalog.getLatestVersionIndexForPlan("shotgun-quarterly", 0), -1);
+        Assert.assertEquals(catalog.getLatestVersionIndexForPlan("shotgun-quarterly", 1), 1);
+        Assert.assertSame(catalog.findPlan("pistol-monthly", 0), v1.findPlan("pistol-monthly"));
+        Assert.assertSame(catalog.findPlan("pistol-monthly", 1), v2.findPlan("pistol-monthly"));
+    }
+
+    private DefaultVersionedCatalog loadVersionedCatalog() throws CatalogApiException {
+        return (DefaultVersionedCatalog) loader.loadDefaultCatalog(Resources.getResource("org/killbill/billing/catalog/versionedCatalog").toString());
+    }
+
+    private static int linearIndexOfVersionForDate(final DefaultVersionedCatalog catalog, final Date date) {
+        for (int i = catalog.getVersions().size() - 1; i >= 0; i--) {
+            if (catalog.getVersions().get(i).getEffectiveDate().getTime() <= date.getTime()) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int linearLatestVersionIndexForPlan(final DefaultVersionedCatalog catalog, final String planName, final int maxVersionIndex) {
+        for (int i = maxVersionIndex; i >= 0; i--) {
+            if (findPlanOrNull(catalog.getVersions().get(i), planName) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Plan findPlanOrNull(final StaticCatalog version, final String planName) {
+        try {
+            return version.findPlan(planName);
+        } catch (final CatalogApiException e) {
+            return null;
+        }
+    }
+}
@@ -25,8 +25,11 @@ import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -37,6 +40,8 @@ import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.Product;
 import org.killbill.billing.catalog.api.StaticCatalog;
 import org.killbill.billing.catalog.api.VersionedCatalog;
+import org.killbill.billing.catalog.io.VersionedCatalogSnapshot;
+import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.commons.utils.io.Resources;
 import org.killbill.commons.utils.io.CharStreams;
 import org.killbill.xmlloader.UriAccessor;
@@ -47,9 +52,18 @@ import org.testng.annotations.Test;
 
 public class TestDefaultCatalogCache extends CatalogTestSuiteNoDB {
 
+    private static final String SNAPSHOT_SECRET = "9d8b1c2e-catalog-snapshot-secret";
+
     private InternalTenantContext multiTenantContext;
     private InternalTenantContext otherMultiTenantContext;
 
+    @Override
+    protected KillbillConfigSource getConfigSource(final Map<String, String> extraProperties) {
+        final Map<String, String> allExtraProperties = new HashMap<>(extraProperties);
+        allExtraProperties.put("org.killbill.catalog.snapshot.secret", SNAPSHOT_SECRET);
+        return super.getConfigSource(null, allExtraProperties);
+    }
+
     @BeforeMethod(groups = "fast")
     protected void beforeMethod() throws Exception {
         if (hasFailed()) {
@@ -183,4 +197,48 @@ public class TestDefaultCatalogCache extends CatalogTestSuiteNoDB {
         // Verify the lookup with the other tenant
         Assert.assertEquals(catalogCache.getCatalog(true, true, false, otherMultiTenantContext), otherResult);
     }
+
+    //
+    // Verify the catalog is loaded from the snapshot persisted on the previous cache miss, and that unsigned snapshots are ignored
+    //
+    @Test(groups = "fast")
+    public void testTenantCatalogSnapshot() throws CatalogApiException, URISyntaxException, IOException {
+        final InputStream tenantInputCatalog = UriAccessor.accessUri(new URI(Resources.getResource("org/killbill/billing/catalog/SpyCarAdvanced.xml").toExternalForm()));
+        final String tenantCatalogXML = CharStreams.toString(new InputStreamReader(tenantInputCatalog, StandardCharsets.UTF_8));
+        Mockito.when(tenantInternalApi.getTenantCatalogs(Mockito.any(InternalTenantContext.class))).thenReturn(List.of(tenantCatalogXML));
+
+        final String snapshotKey = VersionedCatalogSnapshot.getTenantKey(true);
+        final AtomicReference<String> snapshot = new AtomicReference<>();
+        Mockito.clearInvocations(tenantInternalApi);
+        Mockito.doAnswer(invocation -> {
+            snapshot.set((String) invocation.getArguments()[1]);
+            return null;
+        }).when(tenantInternalApi).updateTenantValueForKey(Mockito.eq(snapshotKey), Mockito.anyString(), Mockito.any(InternalCallContext.class));
+        Mockito.when(tenantInternalApi.getTenantValuesForKey(Mockito.eq(snapshotKey), Mockito.any(InternalTenantContext.class)))
+               .thenAnswer(invocation -> snapshot.get() == null ? Collections.emptyList() : List.of(snapshot.get()));
+
+        // Snapshot written through the tenant user KV API (i.e. not signed with our secret), for the right XMLs but with a different catalog
+        final InputStream forgedInputCatalog = UriAccessor.accessUri(new URI(Resources.getResource("org/killbill/billing/catalog/SpyCarBasic.xml").toExternalForm()));
+        final String forgedCatalogXML = CharStreams.toString(new InputStreamReader(forgedInputCatalog, StandardCharsets.UTF_8));
+        final DefaultVersionedCatalog forgedCatalog = (DefaultVersionedCatalog) loader.load(List.of(forgedCatalogXML), true, multiTenantContext.getTenantRecordId());
+        final String forgedSnapshot = VersionedCatalogSnapshot.write(forgedCatalog, List.of(tenantCatalogXML), true, multiTenantContext.getTenantRecordId(), "guessed-secret");
+        snapshot.set(forgedSnapshot);
+
+        // First load ignores the forged snapshot, parses the XML and persists the (signed) snapshot
+        final VersionedCatalog result = catalogCache.getCatalog(true, true, false, multiTenantContext);
+        Assert.assertEquals(result.getVersions().get(0).getProducts().size(), 6);
+        Assert.assertNotNull(snapshot.get());
+        Assert.assertNotEquals(snapshot.get(), forgedSnapshot);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).updateTenantValueForKey(Mockito.eq(snapshotKey), Mockito.anyString(), Mockito.any(InternalCallContext.class));
+
+        // Next cache miss is served from the (valid) snapshot, which isn't re-written
+        catalogCache.clearCatalog(multiTenantContext);
+        final VersionedCatalog fromSnapshot = catalogCache.getCatalog(true, true, false, multiTenantContext);
+        Assert.assertNotSame(fromSnapshot, result);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).updateTenantValueForKey(Mockito.eq(snapshotKey), Mockito.anyString(), Mockito.any(InternalCallContext.class));
+        Assert.assertEquals(fromSnapshot.getCatalogName(), result.getCatalogName());
+        Assert.assertEquals(fromSnapshot.getVersions(), result.getVersions());
+        Assert.assertEquals(fromSnapshot.getVersions().get(0).getProducts().size(), 6);
+        Assert.assertEquals(((StandaloneCatalogWithPriceOverride) fromSnapshot.getVersions().get(0)).getTenantRecordId(), multiTenantContext.getTenantRecordId());
+    }
 }
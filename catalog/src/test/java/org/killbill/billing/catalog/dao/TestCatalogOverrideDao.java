@@ -208,5 +208,63 @@ public class TestCatalogOverrideDao extends CatalogTestSuiteWithEmbeddedDB {
         assertEquals(curTieredBlock.getMax().compareTo(tieredBlockPriceOverride.getMax()), 0);
     }
 
-}
+    @Test(groups = "slow")
+    public void testGetOverriddenPlanDefinitions() throws Exception {
+
+        final StandaloneCatalog catalog = getCatalog("SpyCarAdvanced.xml");
+
+        final Plan discountPlan = catalog.findPlan("discount-standard-monthly");
+        final PlanPhasePriceOverride[] discountOverrides = new PlanPhasePriceOverride[discountPlan.getAllPhases().length];
+        discountOverrides[0] = new DefaultPlanPhasePriceOverride(discountPlan.getAllPhases()[0].getName(), Currency.USD, BigDecimal.TEN, null, null);
+        discountOverrides[2] = new DefaultPlanPhasePriceOverride(discountPlan.getFinalPhase().getName(), Currency.USD, null, new BigDecimal("348.64"), null);
+        final CatalogOverridePlanDefinitionModelDao newDiscountPlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(discountPlan, new DateTime(catalog.getEffectiveDate()), discountOverrides, internalCallContext);
+
+        final Plan gasPlan = catalog.findPlan("gas-monthly");
+        final List<TieredBlockPriceOverride> tieredBlockPriceOverrides = List.of(new DefaultTieredBlockPriceOverride("gallons", new BigDecimal("1"), new BigDecimal(4), Currency.USD, new BigDecimal("100")));
+        final List<TierPriceOverride> tierPriceOverrides = List.of(new DefaultTierPriceOverride(tieredBlockPriceOverrides));
+        final List<UsagePriceOverride> usagePriceOverrides = List.of(new DefaultUsagePriceOverride("gas-monthly-in-arrear", UsageType.CONSUMABLE, tierPriceOverrides));
+        final PlanPhasePriceOverride[] gasOverrides = new PlanPhasePriceOverride[gasPlan.getAllPhases().length];
+        gasOverrides[0] = new DefaultPlanPhasePriceOverride(gasPlan.getFinalPhase().getName(), Currency.USD, BigDecimal.ZERO, new BigDecimal("348.64"), usagePriceOverrides);
+        final CatalogOverridePlanDefinitionModelDao newGasPlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(gasPlan, new DateTime(catalog.getEffectiveDate()), gasOverrides, internalCallContext);
+
+        final CatalogOverrideDefinitions definitions = catalogOverrideDao.getOverriddenPlanDefinitions(List.of(newDiscountPlan.getRecordId(), newGasPlan.getRecordId(), -1L), internalCallContext);
+
+        // Same definitions (and ordering) as the per record id lookups
+        for (final Long planDefRecordId : List.of(newDiscountPlan.getRecordId(), newGasPlan.getRecordId())) {
+            final List<CatalogOverridePhaseDefinitionModelDao> phases = catalogOverrideDao.getOverriddenPlanPhases(planDefRecordId, internalCallContext);
+            assertEquals(getRecordIds(definitions.getOverriddenPlanPhases(planDefRecordId)), getRecordIds(phases));
+            for (final CatalogOverridePhaseDefinitionModelDao phase : phases) {
+                final List<CatalogOverrideUsageDefinitionModelDao> usages = catalogOverrideDao.getOverriddenPhaseUsages(phase.getRecordId(), internalCallContext);
+                assertEquals(definitions.getOverriddenPhaseUsages(phase.getRecordId()).size(), usages.size());
+                for (final CatalogOverrideUsageDefinitionModelDao usage : usages) {
+                    final List<CatalogOverrideTierDefinitionModelDao> tiers = catalogOverrideDao.getOverriddenUsageTiers(usage.getRecordId(), internalCallContext);
+                    assertEquals(definitions.getOverriddenUsageTiers(usage.getRecordId()).size(), tiers.size());
+                    for (final CatalogOverrideTierDefinitionModelDao tier : tiers) {
+                        final List<CatalogOverrideBlockDefinitionModelDao> blocks = catalogOverrideDao.getOverriddenTierBlocks(tier.getRecordId(), internalCallContext);
+                        assertEquals(definitions.getOverriddenTierBlocks(tier.getRecordId()).size(), blocks.size());
+                    }
+                }
+            }
+        }
+        assertEquals(definitions.getOverriddenPlanPhases(newDiscountPlan.getRecordId()).size(), 2);
+
+        final CatalogOverridePhaseDefinitionModelDao gasPhase = definitions.getOverriddenPlanPhases(newGasPlan.getRecordId()).get(0);
+        final CatalogOverrideUsageDefinitionModelDao gasUsage = definitions.getOverriddenPhaseUsages(gasPhase.getRecordId()).get(0);
+        assertEquals(gasUsage.getParentUsageName(), "gas-monthly-in-arrear");
+        final CatalogOverrideTierDefinitionModelDao gasTier = definitions.getOverriddenUsageTiers(gasUsage.getRecordId()).get(0);
+        final CatalogOverrideBlockDefinitionModelDao gasBlock = definitions.getOverriddenTierBlocks(gasTier.getRecordId()).get(0);
+        assertEquals(gasBlock.getParentUnitName(), "gallons");
+        assertEquals(gasBlock.getPrice().compareTo(new BigDecimal(4)), 0);
+
+        assertTrue(definitions.getOverriddenPlanPhases(-1L).isEmpty());
+        assertTrue(catalogOverrideDao.getOverriddenPlanDefinitions(List.of(), internalCallContext).getOverriddenPlanPhases(newGasPlan.getRecordId()).isEmpty());
+    }
 
+    private static List<Long> getRecordIds(final List<CatalogOverridePhaseDefinitionModelDao> phases) {
+        final List<Long> result = new ArrayList<Long>();
+        for (final CatalogOverridePhaseDefinitionModelDao phase : phases) {
+            result.add(phase.getRecordId());
+        }
+        return result;
+    }
+}
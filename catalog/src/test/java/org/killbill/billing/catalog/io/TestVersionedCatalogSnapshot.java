@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.catalog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.catalog.CatalogTestSuiteNoDB;
+import org.killbill.billing.catalog.DefaultVersionedCatalog;
+import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.PlanChangeResult;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.commons.utils.io.Resources;
+import org.killbill.xmlloader.UriAccessor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestVersionedCatalogSnapshot extends CatalogTestSuiteNoDB {
+
+    private static final Long TENANT_RECORD_ID = 42L;
+    private static final String SECRET = "a1e5f3b0-catalog-snapshot-secret";
+
+    @Test(groups = "fast")
+    public void testRoundTrip() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalog = (DefaultVersionedCatalog) loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+
+        final String snapshot = VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, SECRET);
+        final DefaultVersionedCatalog fromSnapshot = VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, SECRET);
+        Assert.assertNotNull(fromSnapshot);
+
+        Assert.assertEquals(fromSnapshot.getCatalogName(), catalog.getCatalogName());
+        Assert.assertEquals(fromSnapshot.getVersions().size(), catalog.getVersions().size());
+        for (int i = 0; i < catalog.getVersions().size(); i++) {
+            final StandaloneCatalogWithPriceOverride expected = (StandaloneCatalogWithPriceOverride) catalog.getVersions().get(i);
+            final StandaloneCatalogWithPriceOverride actual = (StandaloneCatalogWithPriceOverride) fromSnapshot.getVersions().get(i);
+            actual.initialize(actual, priceOverride, internalCallContextFactory);
+
+            Assert.assertEquals(actual, expected);
+            Assert.assertEquals(actual.getTenantRecordId(), TENANT_RECORD_ID);
+            Assert.assertEquals(actual.findPlan("pistol-monthly").getAllPhases().length, expected.findPlan("pistol-monthly").getAllPhases().length);
+
+            // Plan rules are usable after the re-initialization
+            final PlanChangeResult expectedResult = expected.getPlanRules().getPlanChangeResult(new PlanPhaseSpecifier("pistol-monthly"),
+                                                                                                new PlanSpecifier("Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME));
+            final PlanChangeResult actualResult = actual.getPlanRules().getPlanChangeResult(new PlanPhaseSpecifier("pistol-monthly"),
+                                                                                            new PlanSpecifier("Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME));
+            Assert.assertEquals(actualResult.getPolicy(), expectedResult.getPolicy());
+            Assert.assertEquals(actualResult.getAlignment(), expectedResult.getAlignment());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testStaleSnapshot() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalog = (DefaultVersionedCatalog) loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final String snapshot = VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, SECRET);
+
+        // New catalog version uploaded
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs.subList(0, catalogXMLs.size() - 1), false, TENANT_RECORD_ID, SECRET));
+        // Different template filtering
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, true, TENANT_RECORD_ID, SECRET));
+        // Different tenant
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID + 1, SECRET));
+        // Missing snapshot
+        Assert.assertNull(VersionedCatalogSnapshot.read(null, catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+    }
+
+    @Test(groups = "fast")
+    public void testSnapshotFromOtherBuild() throws Exception {
+        // Filtered at build time
+        Assert.assertTrue(VersionedCatalogSnapshot.isSupported());
+
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalog = (DefaultVersionedCatalog) loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final String snapshot = VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, SECRET, "0.24.0-2026-01-01T00:00:00Z");
+
+        Assert.assertNotNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, SECRET, "0.24.0-2026-01-01T00:00:00Z"));
+        // Kill Bill upgrade (or any other build, the serialized form of the catalog classes may have changed)
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, SECRET, "0.24.1-2026-02-01T00:00:00Z"));
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+        // Unknown build
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, SECRET, null));
+    }
+
+    @Test(groups = "fast")
+    public void testInvalidSnapshot() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalog = (DefaultVersionedCatalog) loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final byte[] snapshot = Base64.getDecoder().decode(VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Unknown format version
+        final byte[] otherVersion = snapshot.clone();
+        otherVersion[7]++;
+        Assert.assertNull(VersionedCatalogSnapshot.read(Base64.getEncoder().encodeToString(otherVersion), catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Corrupted payload
+        final byte[] corrupted = snapshot.clone();
+        corrupted[corrupted.length - 10] ^= 0xFF;
+        Assert.assertNull(VersionedCatalogSnapshot.read(Base64.getEncoder().encodeToString(corrupted), catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Truncated snapshot
+        final byte[] truncated = new byte[snapshot.length / 2];
+        System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+        Assert.assertNull(VersionedCatalogSnapshot.read(Base64.getEncoder().encodeToString(truncated), catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Truncated snapshot, with a tampered payload length
+        final byte[] tamperedLength = truncated.clone();
+        tamperedLength[8 + 32] = 0x7F;
+        Assert.assertNull(VersionedCatalogSnapshot.read(Base64.getEncoder().encodeToString(tamperedLength), catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Not even Base64
+        Assert.assertNull(VersionedCatalogSnapshot.read("<catalog/>", catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+    }
+
+    @Test(groups = "fast")
+    public void testUnsignedSnapshot() throws Exception {
+        final List<String> catalogXMLs = getCatalogXMLs();
+        final DefaultVersionedCatalog catalog = (DefaultVersionedCatalog) loader.load(catalogXMLs, false, TENANT_RECORD_ID);
+        final String snapshot = VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, SECRET);
+
+        // Secret not configured (or rotated)
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, null));
+        Assert.assertNull(VersionedCatalogSnapshot.read(snapshot, catalogXMLs, false, TENANT_RECORD_ID, "other-secret"));
+        try {
+            VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, null);
+            Assert.fail();
+        } catch (final IllegalStateException expected) {
+        }
+
+        // Snapshot written by someone who doesn't know the secret (e.g. through the tenant KV API)
+        final String forged = VersionedCatalogSnapshot.write(catalog, catalogXMLs, false, TENANT_RECORD_ID, "guessed-secret");
+        Assert.assertNull(VersionedCatalogSnapshot.read(forged, catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+
+        // Header of a genuine snapshot, with the payload of another catalog
+        final List<String> otherCatalogXMLs = catalogXMLs.subList(0, 1);
+        final DefaultVersionedCatalog otherCatalog = (DefaultVersionedCatalog) loader.load(otherCatalogXMLs, false, TENANT_RECORD_ID);
+        final byte[] genuine = Base64.getDecoder().decode(snapshot);
+        final byte[] other = Base64.getDecoder().decode(VersionedCatalogSnapshot.write(otherCatalog, otherCatalogXMLs, false, TENANT_RECORD_ID, SECRET));
+        final byte[] spliced = other.clone();
+        System.arraycopy(genuine, 8, spliced, 8, 32);
+        Assert.assertNull(VersionedCatalogSnapshot.read(Base64.getEncoder().encodeToString(spliced), catalogXMLs, false, TENANT_RECORD_ID, SECRET));
+    }
+
+    @Test(groups = "fast")
+    public void testClassFilter() throws Exception {
+        // Catalog classes only
+        Assert.assertNotNull(deserialize(new ArrayList<>(List.of(new BigDecimal("1.5")))));
+        Assert.assertNull(deserialize(new HashMap<>(Map.of("key", "value"))));
+        Assert.assertNull(deserialize(new ArrayList<>(List.of(UUID.randomUUID()))));
+
+        // Bounded depth
+        ArrayList<Object> deep = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            deep = new ArrayList<>(List.of(deep));
+        }
+        Assert.assertNull(deserialize(deep));
+
+        // Bounded arrays
+        Assert.assertNull(deserialize(new long[2_000_000]));
+    }
+
+    private Object deserialize(final Serializable object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            in.setObjectInputFilter(VersionedCatalogSnapshot.CLASS_FILTER);
+            return in.readObject();
+        } catch (final InvalidClassException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private List<String> getCatalogXMLs() throws Exception {
+        return List.of(getCatalogXML("WeaponsHireSmall-1.xml"),
+                       getCatalogXML("WeaponsHireSmall-2.xml"),
+                       getCatalogXML("WeaponsHireSmall-3.xml"));
+    }
+
+    private String getCatalogXML(final String name) throws Exception {
+        return UriAccessor.accessUriAsString(Resources.getResource("org/killbill/billing/catalog/versionedCatalog/" + name).toExternalForm());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.killbill.billing.catalog.CatalogTestSuiteNoDB;
+import org.killbill.billing.catalog.DefaultPriceList;
+import org.killbill.billing.catalog.MockCatalog;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingAlignment;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PhaseType;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanAlignmentCreate;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PlanSpecifier;
+import org.killbill.billing.catalog.api.Product;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCaseDecisionTable extends CatalogTestSuiteNoDB {
+
+    private interface Lookup<T> {
+
+        T get() throws CatalogApiException;
+    }
+
+    private final Random random = new Random(42);
+
+    @Test(groups = "fast")
+    public void testMatchesLinearScan() throws CatalogApiException {
+        final MockCatalog catalog = new MockCatalog();
+        final List<Product> products = new ArrayList<>(catalog.getProducts());
+        final List<Plan> plans = new ArrayList<>(catalog.getPlans());
+        final List<DefaultPriceList> priceLists = new ArrayList<>(List.of(catalog.getPriceLists().getChildPriceLists()));
+        priceLists.add(catalog.getPriceLists().getDefaultPricelist());
+
+        for (int i = 0; i < 200; i++) {
+            final DefaultCaseCancelPolicy[] cancelCases = new DefaultCaseCancelPolicy[random.nextInt(30)];
+            for (int j = 0; j < cancelCases.length; j++) {
+                cancelCases[j] = new DefaultCaseCancelPolicy();
+                cancelCases[j].setPolicy(pick(BillingActionPolicy.values(), false));
+                cancelCases[j].setPhaseType(pick(PhaseType.values(), true));
+                cancelCases[j].setProduct(pick(products.toArray(new Product[0]), true));
+                cancelCases[j].setProductCategory(pick(ProductCategory.values(), true));
+                cancelCases[j].setBillingPeriod(pick(BillingPeriod.values(), true));
+                cancelCases[j].setPriceList(pick(priceLists.toArray(new DefaultPriceList[0]), true));
+            }
+            final DefaultCaseCreateAlignment[] createAlignmentCases = new DefaultCaseCreateAlignment[random.nextInt(30)];
+            for (int j = 0; j < createAlignmentCases.length; j++) {
+                createAlignmentCases[j] = new DefaultCaseCreateAlignment().setAlignment(pick(PlanAlignmentCreate.values(), false));
+                createAlignmentCases[j].setProduct(pick(products.toArray(new Product[0]), true));
+                createAlignmentCases[j].setProductCategory(pick(ProductCategory.values(), true));
+                createAlignmentCases[j].setBillingPeriod(pick(BillingPeriod.values(), true));
+                createAlignmentCases[j].setPriceList(pick(priceLists.toArray(new DefaultPriceList[0]), true));
+            }
+            final DefaultCaseChangePlanPolicy[] changeCases = new DefaultCaseChangePlanPolicy[random.nextInt(30)];
+            for (int j = 0; j < changeCases.length; j++) {
+                changeCases[j] = new DefaultCaseChangePlanPolicy().setPolicy(pick(BillingActionPolicy.values(), false));
+                changeCases[j].setPhaseType(pick(PhaseType.values(), true));
+                changeCases[j].setFromProduct(pick(products.toArray(new Product[0]), true));
+                changeCases[j].setFromProductCategory(pick(ProductCategory.values(), true));
+                changeCases[j].setFromBillingPeriod(pick(BillingPeriod.values(), true));
+                changeCases[j].setFromPriceList(pick(priceLists.toArray(new DefaultPriceList[0]), true));
+                changeCases[j].setToProduct(pick(products.toArray(new Product[0]), true));
+                changeCases[j].setToProductCategory(pick(ProductCategory.values(), true));
+                changeCases[j].setToBillingPeriod(pick(BillingPeriod.values(), true));
+                changeCases[j].setToPriceList(pick(priceLists.toArray(new DefaultPriceList[0]), true));
+            }
+
+            final CaseDecisionTable<BillingActionPolicy> cancelTable = CaseDecisionTable.forCases(cancelCases);
+            final CaseDecisionTable<PlanAlignmentCreate> createAlignmentTable = CaseDecisionTable.forCases(createAlignmentCases);
+            final CaseDecisionTable<BillingActionPolicy> changeTable = CaseDecisionTable.forChangeCases(changeCases);
+
+            for (int j = 0; j < 50; j++) {
+                final PlanPhaseSpecifier from = createSpecifier(plans, products, priceLists);
+                final PlanSpecifier to = createSpecifier(plans, products, priceLists);
+
+                assertSameResult(() -> cancelTable.getResult(from, catalog), () -> DefaultCasePhase.getResult(cancelCases, from, catalog));
+                assertSameResult(() -> createAlignmentTable.getResult(to, catalog), () -> DefaultCase.getResult(createAlignmentCases, to, catalog));
+                assertSameResult(() -> changeTable.getResult(from, to, catalog), () -> DefaultCaseChange.getResult(changeCases, from, to, catalog));
+            }
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testPlanRulesAreRecompiledOnUpdate() throws CatalogApiException {
+        final MockCatalog catalog = new MockCatalog();
+        final DefaultPlanRules planRules = (DefaultPlanRules) catalog.getPlanRules();
+        final PlanPhaseSpecifier spec = new PlanPhaseSpecifier(catalog.getPlans().iterator().next().getName(), PhaseType.EVERGREEN);
+
+        planRules.setBillingAlignmentCase(new DefaultCaseBillingAlignment[]{new DefaultCaseBillingAlignment().setAlignment(BillingAlignment.SUBSCRIPTION)});
+        Assert.assertEquals(planRules.getBillingAlignment(spec), BillingAlignment.SUBSCRIPTION);
+
+        final DefaultCaseBillingAlignment trialCase = new DefaultCaseBillingAlignment().setAlignment(BillingAlignment.BUNDLE);
+        trialCase.setPhaseType(PhaseType.TRIAL);
+        planRules.setBillingAlignmentCase(new DefaultCaseBillingAlignment[]{trialCase});
+        Assert.assertEquals(planRules.getBillingAlignment(spec), BillingAlignment.ACCOUNT);
+    }
+
+    private PlanPhaseSpecifier createSpecifier(final List<Plan> plans, final List<Product> products, final List<DefaultPriceList> priceLists) {
+        final PhaseType phaseType = pick(PhaseType.values(), true);
+        switch (random.nextInt(4)) {
+            case 0:
+                return new PlanPhaseSpecifier(plans.get(random.nextInt(plans.size())).getName(), phaseType);
+            case 1:
+                // Unknown entries and missing price lists are resolved lazily by the linear scan
+                return new PlanPhaseSpecifier(random.nextInt(10) == 0 ? "unknown" : products.get(random.nextInt(products.size())).getName(),
+                                              pick(BillingPeriod.values(), false),
+                                              random.nextInt(10) == 0 ? "unknown" : null,
+                                              phaseType);
+            default:
+                return new PlanPhaseSpecifier(products.get(random.nextInt(products.size())).getName(),
+                                              pick(BillingPeriod.values(), false),
+                                              priceLists.get(random.nextInt(priceLists.size())).getName(),
+                                              phaseType);
+        }
+    }
+
+    private <T> T pick(final T[] values, final boolean wildcard) {
+        // Wildcards half of the time, so that cases overlap
+        if (wildcard && random.nextBoolean()) {
+            return null;
+        }
+        return values[random.nextInt(values.length)];
+    }
+
+    private <T> void assertSameResult(final Lookup<T> compiled, final Lookup<T> linear) {
+        T expected = null;
+        CatalogApiException expectedException = null;
+        try {
+            expected = linear.get();
+        } catch (final CatalogApiException e) {
+            expectedException = e;
+        }
+
+        try {
+            final T result = compiled.get();
+            Assert.assertNull(expectedException, "Expected " + expectedException);
+            Assert.assertEquals(result, expected);
+        } catch (final CatalogApiException e) {
+            Assert.assertNotNull(expectedException, "Unexpected " + e);
+            Assert.assertEquals(e.getCode(), expectedException.getCode());
+        }
+    }
+}
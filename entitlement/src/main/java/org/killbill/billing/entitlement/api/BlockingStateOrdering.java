@@ -18,6 +18,7 @@
 package org.killbill.billing.entitlement.api;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -33,6 +34,7 @@ import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
+import org.joda.time.DateTime;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.BillingPeriod;
 import org.killbill.billing.catalog.api.Plan;
@@ -74,20 +76,55 @@ public class BlockingStateOrdering extends EntitlementOrderingBase {
 
     @VisibleForTesting
     void computeEvents(final LinkedList<UUID> allEntitlementUUIDs, final Collection<BlockingState> blockingStates, final InternalTenantContext internalTenantContext, final LinkedList<SubscriptionEvent> inputAndOutputResult) {
+        computeEvents(allEntitlementUUIDs, blockingStates, internalTenantContext, inputAndOutputResult, true);
+    }
+
+    @VisibleForTesting
+    void computeEvents(final LinkedList<UUID> allEntitlementUUIDs, final Collection<BlockingState> blockingStates, final InternalTenantContext internalTenantContext, final LinkedList<SubscriptionEvent> inputAndOutputResult, final boolean useMergePasses) {
         // Make sure the ordering is stable
         Collections.sort(allEntitlementUUIDs);
 
         final SupportForOlderVersionThan_0_17_X backwardCompatibleContext = new SupportForOlderVersionThan_0_17_X(inputAndOutputResult, blockingStates);
 
         // Trust the incoming ordering here: blocking states were sorted using ProxyBlockingStateDao#sortedCopy
-        for (final BlockingState currentBlockingState : blockingStates) {
-            final List<SubscriptionEvent> outputNewEvents = new ArrayList<SubscriptionEvent>();
-            final int index = insertFromBlockingEvent(allEntitlementUUIDs, currentBlockingState, inputAndOutputResult, backwardCompatibleContext, internalTenantContext, outputNewEvents);
-            insertAfterIndex(inputAndOutputResult, outputNewEvents, index);
+        if (useMergePasses && canUseMergePasses(allEntitlementUUIDs, blockingStates, inputAndOutputResult)) {
+            // Each run of blocking states with increasing effective dates (i.e. one run per entitlement stream) is merged in a single pass
+            MergePass mergePass = new MergePass(new ArrayList<SubscriptionEvent>(inputAndOutputResult), allEntitlementUUIDs, backwardCompatibleContext, internalTenantContext);
+            for (final BlockingState currentBlockingState : blockingStates) {
+                if (!mergePass.accepts(currentBlockingState)) {
+                    mergePass = new MergePass(mergePass.finish(), allEntitlementUUIDs, backwardCompatibleContext, internalTenantContext);
+                }
+                mergePass.insert(currentBlockingState);
+            }
+            final List<SubscriptionEvent> result = mergePass.finish();
+            inputAndOutputResult.clear();
+            inputAndOutputResult.addAll(result);
+        } else {
+            for (final BlockingState currentBlockingState : blockingStates) {
+                final List<SubscriptionEvent> outputNewEvents = new ArrayList<SubscriptionEvent>();
+                final int index = insertFromBlockingEvent(allEntitlementUUIDs, currentBlockingState, inputAndOutputResult, backwardCompatibleContext, internalTenantContext, outputNewEvents);
+                insertAfterIndex(inputAndOutputResult, outputNewEvents, index);
+            }
         }
         backwardCompatibleContext.addMissing_START_ENTITLEMENT(inputAndOutputResult, internalTenantContext);
     }
 
+    // The merge passes keep one state per entitlement: events or blocking states for unknown entitlements are left to the (failing) full scans
+    private boolean canUseMergePasses(final Collection<UUID> allEntitlementUUIDs, final Iterable<BlockingState> blockingStates, final Iterable<SubscriptionEvent> events) {
+        final Set<UUID> entitlementIds = new HashSet<UUID>(allEntitlementUUIDs);
+        for (final SubscriptionEvent event : events) {
+            if (!(event instanceof DefaultSubscriptionEvent) || !entitlementIds.contains(event.getEntitlementId())) {
+                return false;
+            }
+        }
+        for (final BlockingState blockingState : blockingStates) {
+            if (blockingState.getType() == BlockingStateType.SUBSCRIPTION && !entitlementIds.contains(blockingState.getBlockedId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // Returns the index and the newEvents generated from the incoming blocking state event. Those new events will all be created for the same effectiveDate and should be ordered.
     private int insertFromBlockingEvent(final Collection<UUID> allEntitlementUUIDs, final BlockingState currentBlockingState, final List<SubscriptionEvent> inputExistingEvents, final SupportForOlderVersionThan_0_17_X backwardCompatibleContext, final InternalTenantContext internalTenantContext, final Collection<SubscriptionEvent> outputNewEvents) {
         // Keep the current state per entitlement
@@ -105,54 +142,12 @@ public class BlockingStateOrdering extends EntitlementOrderingBase {
         DefaultSubscriptionEvent curInsertion = null;
         while (it.hasNext()) {
             final DefaultSubscriptionEvent cur = (DefaultSubscriptionEvent) it.next();
-            final int compEffectiveDate = currentBlockingState.getEffectiveDate().compareTo(cur.getEffectiveDateTime());
-
-            final boolean shouldContinue;
-            switch (compEffectiveDate) {
-                case -1:
-                    shouldContinue = false;
-                    break;
-                case 0:
-                    shouldContinue = compareBlockingStateWithNextSubscriptionEvent(currentBlockingState, cur) > 0;
-                    break;
-                case 1:
-                    shouldContinue = true;
-                    break;
-                default:
-                    // Make compiler happy
-                    throw new IllegalStateException("Cannot reach statement");
-            }
-            if (!shouldContinue) {
+            if (!shouldInsertAfter(currentBlockingState, cur)) {
                 break;
             }
             index++;
 
-            final TargetState curTargetState = targetStates.get(cur.getEntitlementId());
-            switch (cur.getSubscriptionEventType()) {
-                case START_ENTITLEMENT:
-                    curTargetState.setEntitlementStarted();
-                    break;
-                case STOP_ENTITLEMENT:
-                    curTargetState.setEntitlementStopped();
-                    break;
-                case START_BILLING:
-                    // For older subscriptions we miss the START_ENTITLEMENT (the START_BILLING marks both start of billing and entitlement)
-                    if (backwardCompatibleContext.isOlderEntitlement(cur.getEntitlementId())) {
-                        curTargetState.setEntitlementStarted();
-                    }
-                    curTargetState.setBillingStarted();
-                    break;
-                case PAUSE_BILLING:
-                case PAUSE_ENTITLEMENT:
-                case RESUME_ENTITLEMENT:
-                case RESUME_BILLING:
-                case SERVICE_STATE_CHANGE:
-                    curTargetState.addEntitlementEvent(cur);
-                    break;
-                case STOP_BILLING:
-                    curTargetState.setBillingStopped();
-                    break;
-            }
+            targetStates.get(cur.getEntitlementId()).addSubscriptionEvent(cur, backwardCompatibleContext);
             curInsertion = cur;
         }
 
@@ -175,6 +170,22 @@ public class BlockingStateOrdering extends EntitlementOrderingBase {
         return index;
     }
 
+    // Whether the blocking state should be inserted after that existing event (the scan stops at the first event for which this is false)
+    private boolean shouldInsertAfter(final BlockingState blockingState, final SubscriptionEvent cur) {
+        final int compEffectiveDate = blockingState.getEffectiveDate().compareTo(((DefaultSubscriptionEvent) cur).getEffectiveDateTime());
+        switch (compEffectiveDate) {
+            case -1:
+                return false;
+            case 0:
+                return compareBlockingStateWithNextSubscriptionEvent(blockingState, cur) > 0;
+            case 1:
+                return true;
+            default:
+                // Make compiler happy
+                throw new IllegalStateException("Cannot reach statement");
+        }
+    }
+
     private int compareBlockingStateWithNextSubscriptionEvent(final BlockingState blockingState, final SubscriptionEvent next) {
         final String serviceName = blockingState.getService();
 
@@ -386,6 +397,272 @@ public class BlockingStateOrdering extends EntitlementOrderingBase {
         }
     }
 
+    //
+    // Inserts a run of blocking states with increasing effective dates in a single forward pass over the stream. This yields the exact same result as
+    // calling insertFromBlockingEvent and insertAfterIndex for each blocking state, without rescanning the stream from the start every time:
+    // the scan for a blocking state always passes the events strictly before its effective date, so these events (and the state they lead to for
+    // each entitlement) are final for the rest of the run. Only the window of events at the current effective date is scanned again.
+    //
+    private final class MergePass {
+
+        private final Collection<UUID> allEntitlementUUIDs;
+        private final SupportForOlderVersionThan_0_17_X backwardCompatibleContext;
+        private final InternalTenantContext internalTenantContext;
+
+        // Events not reached yet, in their original order
+        private final List<SubscriptionEvent> input;
+        private final int[] nextInputIndexForSameEntitlement;
+        private int inputIndex;
+
+        // Events passed for good
+        private final List<SubscriptionEvent> output;
+        private final Map<EventKey, Integer> firstOutputIndex;
+
+        // Events at the current effective date (starting at windowStart), where the new events are inserted
+        private final List<SubscriptionEvent> window;
+        private int windowStart;
+
+        private final Map<UUID, EntitlementCursor> cursors;
+        private DateTime lastEffectiveDate;
+
+        private MergePass(final List<SubscriptionEvent> events,
+                          final Collection<UUID> allEntitlementUUIDs,
+                          final SupportForOlderVersionThan_0_17_X backwardCompatibleContext,
+                          final InternalTenantContext internalTenantContext) {
+            this.allEntitlementUUIDs = allEntitlementUUIDs;
+            this.backwardCompatibleContext = backwardCompatibleContext;
+            this.internalTenantContext = internalTenantContext;
+            this.input = events;
+            this.inputIndex = 0;
+            this.output = new ArrayList<SubscriptionEvent>(events.size());
+            this.firstOutputIndex = new HashMap<EventKey, Integer>();
+            this.window = new ArrayList<SubscriptionEvent>();
+            this.windowStart = 0;
+
+            this.cursors = new HashMap<UUID, EntitlementCursor>();
+            for (final UUID cur : allEntitlementUUIDs) {
+                cursors.put(cur, new EntitlementCursor(events.size()));
+            }
+            this.nextInputIndexForSameEntitlement = new int[events.size()];
+            for (int i = events.size() - 1; i >= 0; i--) {
+                final EntitlementCursor cursor = cursors.get(events.get(i).getEntitlementId());
+                nextInputIndexForSameEntitlement[i] = cursor.nextInputIndex;
+                cursor.nextInputIndex = i;
+            }
+        }
+
+        private boolean accepts(final BlockingState blockingState) {
+            return lastEffectiveDate == null || blockingState.getEffectiveDate().compareTo(lastEffectiveDate) >= 0;
+        }
+
+        private void insert(final BlockingState currentBlockingState) {
+            lastEffectiveDate = currentBlockingState.getEffectiveDate();
+
+            // Events strictly before the effective date are passed regardless of the blocking state
+            while (fillWindow(0) && currentBlockingState.getEffectiveDate().compareTo(((DefaultSubscriptionEvent) windowEvent(0)).getEffectiveDateTime()) > 0) {
+                moveToOutput();
+            }
+
+            // Find out where to insert, within the window
+            int offset = 0;
+            while (fillWindow(offset) && shouldInsertAfter(currentBlockingState, windowEvent(offset))) {
+                offset++;
+            }
+            final int index = output.size() + offset - 1;
+            final SubscriptionEvent curInsertion = offset > 0 ? windowEvent(offset - 1) : (output.isEmpty() ? null : output.get(output.size() - 1));
+
+            // Current state for each entitlement at the insertion point
+            final Map<UUID, TargetState> windowTargetStates = new HashMap<UUID, TargetState>();
+            for (int i = 0; i < offset; i++) {
+                final SubscriptionEvent cur = windowEvent(i);
+                getTargetState(windowTargetStates, cur.getEntitlementId()).addSubscriptionEvent(cur, backwardCompatibleContext);
+            }
+
+            final List<UUID> targetEntitlementIds = currentBlockingState.getType() == BlockingStateType.SUBSCRIPTION ?
+                                                    List.of(currentBlockingState.getBlockedId()) :
+                                                    List.copyOf(allEntitlementUUIDs);
+            final List<SubscriptionEvent> newEvents = new ArrayList<SubscriptionEvent>();
+            for (final UUID targetEntitlementId : targetEntitlementIds) {
+                final SubscriptionEvent[] prevNext = findPrevNext(targetEntitlementId, curInsertion);
+                final TargetState curTargetState = getTargetState(windowTargetStates, targetEntitlementId);
+
+                final List<SubscriptionEventType> eventTypes = curTargetState.addStateAndReturnEventTypes(currentBlockingState);
+                for (final SubscriptionEventType t : eventTypes) {
+                    newEvents.add(toSubscriptionEvent(prevNext[0], prevNext[1], targetEntitlementId, currentBlockingState, t, internalTenantContext));
+                }
+            }
+
+            if (index == -1 && fillWindow(0)) {
+                // See insertAfterIndex: events inserted in first position are added one by one at the head
+                Collections.reverse(newEvents);
+            }
+            window.addAll(windowStart + offset, newEvents);
+        }
+
+        private List<SubscriptionEvent> finish() {
+            final List<SubscriptionEvent> result = new ArrayList<SubscriptionEvent>(output.size() + window.size() - windowStart + input.size() - inputIndex);
+            result.addAll(output);
+            result.addAll(window.subList(windowStart, window.size()));
+            result.addAll(input.subList(inputIndex, input.size()));
+            return result;
+        }
+
+        // Same as BlockingStateOrdering#findPrevNext, using the per entitlement positions instead of scanning the whole stream
+        private SubscriptionEvent[] findPrevNext(final UUID targetEntitlementId, @Nullable final SubscriptionEvent insertionEvent) {
+            final SubscriptionEvent[] result = new DefaultSubscriptionEvent[2];
+            if (insertionEvent == null) {
+                result[0] = null;
+                result[1] = fillWindow(0) ? windowEvent(0) : null;
+                return result;
+            }
+
+            final EntitlementCursor cursor = cursors.get(targetEntitlementId);
+            // The lookup is based on the first event matching both the id and the event type
+            final Integer insertionOutputIndex = firstOutputIndex.get(new EventKey(insertionEvent));
+            if (insertionOutputIndex != null) {
+                final int prevPosition = cursor.lastOutputPositionAtOrBefore(insertionOutputIndex);
+                result[0] = prevPosition >= 0 ? output.get(prevPosition) : null;
+                final int nextPosition = cursor.firstOutputPositionAfter(insertionOutputIndex);
+                result[1] = nextPosition >= 0 ? output.get(nextPosition) : findNextFromWindow(targetEntitlementId, cursor, 0);
+            } else {
+                int insertionOffset = 0;
+                while (!new EventKey(windowEvent(insertionOffset)).equals(new EventKey(insertionEvent))) {
+                    insertionOffset++;
+                }
+                SubscriptionEvent prev = cursor.lastOutputPosition() >= 0 ? output.get(cursor.lastOutputPosition()) : null;
+                for (int i = insertionOffset; i >= 0; i--) {
+                    if (windowEvent(i).getEntitlementId().equals(targetEntitlementId)) {
+                        prev = windowEvent(i);
+                        break;
+                    }
+                }
+                result[0] = prev;
+                result[1] = findNextFromWindow(targetEntitlementId, cursor, insertionOffset + 1);
+            }
+            return result;
+        }
+
+        private SubscriptionEvent findNextFromWindow(final UUID targetEntitlementId, final EntitlementCursor cursor, final int fromOffset) {
+            for (int i = fromOffset; i < window.size() - windowStart; i++) {
+                if (windowEvent(i).getEntitlementId().equals(targetEntitlementId)) {
+                    return windowEvent(i);
+                }
+            }
+            // Past the window, the events are still in their original order
+            while (cursor.nextInputIndex < inputIndex) {
+                cursor.nextInputIndex = nextInputIndexForSameEntitlement[cursor.nextInputIndex];
+            }
+            return cursor.nextInputIndex < input.size() ? input.get(cursor.nextInputIndex) : null;
+        }
+
+        private TargetState getTargetState(final Map<UUID, TargetState> windowTargetStates, final UUID entitlementId) {
+            TargetState targetState = windowTargetStates.get(entitlementId);
+            if (targetState == null) {
+                targetState = new TargetState(cursors.get(entitlementId).targetState);
+                windowTargetStates.put(entitlementId, targetState);
+            }
+            return targetState;
+        }
+
+        private void moveToOutput() {
+            final SubscriptionEvent cur = window.get(windowStart++);
+            if (windowStart == window.size()) {
+                window.clear();
+                windowStart = 0;
+            }
+
+            final EntitlementCursor cursor = cursors.get(cur.getEntitlementId());
+            cursor.targetState.addSubscriptionEvent(cur, backwardCompatibleContext);
+            cursor.addOutputPosition(output.size());
+            firstOutputIndex.putIfAbsent(new EventKey(cur), output.size());
+            output.add(cur);
+        }
+
+        // Make sure the window contains the event at that offset, returns false if the stream is exhausted
+        private boolean fillWindow(final int offset) {
+            while (windowStart + offset >= window.size()) {
+                if (inputIndex == input.size()) {
+                    return false;
+                }
+                window.add(input.get(inputIndex++));
+            }
+            return true;
+        }
+
+        private SubscriptionEvent windowEvent(final int offset) {
+            return window.get(windowStart + offset);
+        }
+    }
+
+    // State of an entitlement as of the events passed by a MergePass
+    private static final class EntitlementCursor {
+
+        private final TargetState targetState;
+        private int[] outputPositions;
+        private int nbOutputPositions;
+        // Next input event for that entitlement (may lag behind the pass, see MergePass#findNextFromWindow)
+        private int nextInputIndex;
+
+        private EntitlementCursor(final int nbEvents) {
+            this.targetState = new TargetState();
+            this.outputPositions = new int[4];
+            this.nbOutputPositions = 0;
+            this.nextInputIndex = nbEvents;
+        }
+
+        private void addOutputPosition(final int position) {
+            if (nbOutputPositions == outputPositions.length) {
+                outputPositions = Arrays.copyOf(outputPositions, 2 * nbOutputPositions);
+            }
+            outputPositions[nbOutputPositions++] = position;
+        }
+
+        private int lastOutputPosition() {
+            return nbOutputPositions > 0 ? outputPositions[nbOutputPositions - 1] : -1;
+        }
+
+        private int lastOutputPositionAtOrBefore(final int position) {
+            final int i = Arrays.binarySearch(outputPositions, 0, nbOutputPositions, position);
+            final int lastIndex = i >= 0 ? i : -i - 2;
+            return lastIndex >= 0 ? outputPositions[lastIndex] : -1;
+        }
+
+        private int firstOutputPositionAfter(final int position) {
+            final int i = Arrays.binarySearch(outputPositions, 0, nbOutputPositions, position);
+            final int firstIndex = i >= 0 ? i + 1 : -i - 1;
+            return firstIndex < nbOutputPositions ? outputPositions[firstIndex] : -1;
+        }
+    }
+
+    // Events are identified by both their id and their type because of multiplexing
+    private static final class EventKey {
+
+        private final UUID id;
+        private final SubscriptionEventType type;
+
+        private EventKey(final SubscriptionEvent event) {
+            this.id = event.getId();
+            this.type = event.getSubscriptionEventType();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final EventKey that = (EventKey) o;
+            return id.equals(that.id) && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + type.hashCode();
+        }
+    }
+
     //
     // Internal class to keep the state associated with each subscription
     //
@@ -406,6 +683,43 @@ public class BlockingStateOrdering extends EntitlementOrderingBase {
             this.perServiceBlockingState = new HashMap<String, BlockingState>();
         }
 
+        public TargetState(final TargetState other) {
+            this.isEntitlementStarted = other.isEntitlementStarted;
+            this.isEntitlementStopped = other.isEntitlementStopped;
+            this.isBillingStarted = other.isBillingStarted;
+            this.isBillingStopped = other.isBillingStopped;
+            this.perServiceBlockingState = new HashMap<String, BlockingState>(other.perServiceBlockingState);
+        }
+
+        // Replay an existing event of the stream for that subscription
+        public void addSubscriptionEvent(final SubscriptionEvent cur, final SupportForOlderVersionThan_0_17_X backwardCompatibleContext) {
+            switch (cur.getSubscriptionEventType()) {
+                case START_ENTITLEMENT:
+                    setEntitlementStarted();
+                    break;
+                case STOP_ENTITLEMENT:
+                    setEntitlementStopped();
+                    break;
+                case START_BILLING:
+                    // For older subscriptions we miss the START_ENTITLEMENT (the START_BILLING marks both start of billing and entitlement)
+                    if (backwardCompatibleContext.isOlderEntitlement(cur.getEntitlementId())) {
+                        setEntitlementStarted();
+                    }
+                    setBillingStarted();
+                    break;
+                case PAUSE_BILLING:
+                case PAUSE_ENTITLEMENT:
+                case RESUME_ENTITLEMENT:
+                case RESUME_BILLING:
+                case SERVICE_STATE_CHANGE:
+                    addEntitlementEvent(cur);
+                    break;
+                case STOP_BILLING:
+                    setBillingStopped();
+                    break;
+            }
+        }
+
         public void setEntitlementStarted() {
             isEntitlementStarted = true;
         }
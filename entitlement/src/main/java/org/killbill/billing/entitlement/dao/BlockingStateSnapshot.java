@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.entitlement.api.BlockingStateType;
+
+/**
+ * All blocking states of an account, loaded with a single query and indexed by (blockable id, service).
+ * <p>
+ * The lookups mirror the queries in BlockingStateSqlDao.sql.stg, so results are the same whether or not a snapshot is used.
+ */
+final class BlockingStateSnapshot {
+
+    // Same ordering as the SQL queries (defaultOrderBy)
+    private static final Comparator<BlockingStateModelDao> EFFECTIVE_DATE_ORDERING = Comparator.comparing(BlockingStateModelDao::getEffectiveDate)
+                                                                                               .thenComparing(BlockingStateModelDao::getRecordId);
+
+    private static final BlockingStateModelDao[] EMPTY = new BlockingStateModelDao[0];
+
+    // Active states, ordered by effective date and record id
+    private final List<BlockingStateModelDao> activeStates;
+    // Active states per blockable id and service, ordered by effective date and record id
+    private final Map<UUID, Map<String, BlockingStateModelDao[]>> activeStatesByBlockableIdAndService;
+    // Services per blockable id having at least one block_billing state (active or not)
+    private final Map<UUID, Set<String>> blockBillingServicesByBlockableId;
+
+    BlockingStateSnapshot(final Collection<BlockingStateModelDao> statesIncludingDeleted) {
+        final List<BlockingStateModelDao> active = new ArrayList<>(statesIncludingDeleted.size());
+        final Map<UUID, Set<String>> blockBillingServices = new HashMap<>();
+        for (final BlockingStateModelDao state : statesIncludingDeleted) {
+            if (state.isActive()) {
+                active.add(state);
+            }
+            if (Boolean.TRUE.equals(state.getBlockBilling())) {
+                blockBillingServices.computeIfAbsent(state.getBlockableId(), k -> new HashSet<>()).add(state.getService());
+            }
+        }
+        // No-op in practice, as rows are already returned in that order
+        active.sort(EFFECTIVE_DATE_ORDERING);
+
+        final Map<UUID, Map<String, List<BlockingStateModelDao>>> grouped = new HashMap<>();
+        for (final BlockingStateModelDao state : active) {
+            grouped.computeIfAbsent(state.getBlockableId(), k -> new LinkedHashMap<>())
+                   .computeIfAbsent(state.getService(), k -> new ArrayList<>())
+                   .add(state);
+        }
+        final Map<UUID, Map<String, BlockingStateModelDao[]>> indexed = new HashMap<>(grouped.size());
+        for (final Map.Entry<UUID, Map<String, List<BlockingStateModelDao>>> entry : grouped.entrySet()) {
+            final Map<String, BlockingStateModelDao[]> perService = new LinkedHashMap<>(entry.getValue().size());
+            for (final Map.Entry<String, List<BlockingStateModelDao>> serviceEntry : entry.getValue().entrySet()) {
+                perService.put(serviceEntry.getKey(), serviceEntry.getValue().toArray(EMPTY));
+            }
+            indexed.put(entry.getKey(), perService);
+        }
+
+        this.activeStates = active;
+        this.activeStatesByBlockableIdAndService = indexed;
+        this.blockBillingServicesByBlockableId = blockBillingServices;
+    }
+
+    // See getByAccountRecordId
+    List<BlockingStateModelDao> getAll() {
+        return activeStates;
+    }
+
+    // See getByBlockingIds
+    List<BlockingStateModelDao> getByBlockableIds(final Iterable<UUID> blockableIds) {
+        final Set<UUID> ids = new HashSet<>();
+        blockableIds.forEach(ids::add);
+
+        final List<BlockingStateModelDao> result = new ArrayList<>();
+        for (final BlockingStateModelDao state : activeStates) {
+            if (ids.contains(state.getBlockableId())) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+
+    // See getBlockingStateForService
+    @Nullable
+    BlockingStateModelDao getForService(final UUID blockableId, final String service, final DateTime upTo) {
+        final BlockingStateModelDao[] states = getStates(blockableId, service);
+        final int nbStates = countUpTo(states, upTo);
+        return nbStates > 0 ? states[nbStates - 1] : null;
+    }
+
+    // See getBlockingState: for each service, the last state (highest record id) of that type up to the specified date
+    List<BlockingStateModelDao> getCurrentStates(final UUID blockableId, final BlockingStateType type, final DateTime upTo) {
+        final Map<String, BlockingStateModelDao[]> perService = activeStatesByBlockableIdAndService.get(blockableId);
+        if (perService == null) {
+            return new ArrayList<>();
+        }
+
+        final List<BlockingStateModelDao> result = new ArrayList<>(perService.size());
+        for (final BlockingStateModelDao[] states : perService.values()) {
+            BlockingStateModelDao current = null;
+            final int nbStates = countUpTo(states, upTo);
+            for (int i = 0; i < nbStates; i++) {
+                if (states[i].getType() == type && (current == null || states[i].getRecordId() > current.getRecordId())) {
+                    current = states[i];
+                }
+            }
+            if (current != null) {
+                result.add(current);
+            }
+        }
+        result.sort(EFFECTIVE_DATE_ORDERING);
+        return result;
+    }
+
+    // See getBlockingActiveForAccount: all states for the (service, blockable id) tuples having at least one block_billing state
+    List<BlockingStateModelDao> getBlockBillingHistory() {
+        final Map<String, Map<String, BlockingStateModelDao[]>> sorted = new TreeMap<>();
+        for (final Map.Entry<UUID, Set<String>> entry : blockBillingServicesByBlockableId.entrySet()) {
+            for (final String service : entry.getValue()) {
+                final BlockingStateModelDao[] states = getStates(entry.getKey(), service);
+                if (states.length > 0) {
+                    sorted.computeIfAbsent(service, k -> new TreeMap<>()).put(entry.getKey().toString(), states);
+                }
+            }
+        }
+
+        final List<BlockingStateModelDao> result = new ArrayList<>();
+        for (final Map<String, BlockingStateModelDao[]> perBlockableId : sorted.values()) {
+            for (final BlockingStateModelDao[] states : perBlockableId.values()) {
+                result.addAll(List.of(states));
+            }
+        }
+        return result;
+    }
+
+    private BlockingStateModelDao[] getStates(final UUID blockableId, final String service) {
+        final Map<String, BlockingStateModelDao[]> perService = activeStatesByBlockableIdAndService.get(blockableId);
+        if (perService == null) {
+            return EMPTY;
+        }
+        final BlockingStateModelDao[] states = perService.get(service);
+        return states == null ? EMPTY : states;
+    }
+
+    // Number of states with an effective date on or before upTo (states are sorted by effective date)
+    private static int countUpTo(final BlockingStateModelDao[] states, final DateTime upTo) {
+        int low = 0;
+        int high = states.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (states[mid].getEffectiveDate().isAfter(upTo)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -56,6 +56,7 @@ import org.killbill.billing.util.audit.dao.AuditDao;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.callcontext.CallContextSnapshots;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.dao.TableName;
@@ -133,6 +134,11 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
 
     @Override
     public BlockingState getBlockingStateForService(final UUID blockableId, final BlockingStateType blockingStateType, final String serviceName, final InternalTenantContext context) {
+        if (CallContextSnapshots.isEnabled(context)) {
+            final BlockingStateModelDao model = getSnapshot(context).getForService(blockableId, serviceName, clock.getUTCNow());
+            return (model != null && model.getType().equals(blockingStateType)) ? BlockingStateModelDao.toBlockingState(model) : null;
+        }
+
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             // Upper bound time limit is now
             final Date upTo = clock.getUTCNow().toDate();
@@ -143,6 +149,10 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
 
     @Override
     public List<BlockingState> getBlockingState(final UUID blockableId, final BlockingStateType blockingStateType, final DateTime upToDate, final InternalTenantContext context) {
+        if (CallContextSnapshots.isEnabled(context)) {
+            return toBlockingStates(getSnapshot(context).getCurrentStates(blockableId, blockingStateType, upToDate));
+        }
+
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             final BlockingStateSqlDao sqlDao = entitySqlDaoWrapperFactory.become(BlockingStateSqlDao.class);
             return getBlockingState(sqlDao, blockableId, blockingStateType, upToDate, context);
@@ -167,6 +177,10 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
 
     @Override
     public List<BlockingState> getBlockingAllForAccountRecordId(final VersionedCatalog catalog, final InternalTenantContext context) {
+        if (CallContextSnapshots.isEnabled(context)) {
+            return toBlockingStates(getSnapshot(context).getAll());
+        }
+
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             final List<BlockingStateModelDao> blockingStates = entitySqlDaoWrapperFactory
                     .become(BlockingStateSqlDao.class)
@@ -179,6 +193,10 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
 
     @Override
     public List<BlockingState> getBlockingActiveForAccount(final VersionedCatalog catalog, @Nullable final LocalDate cutoffDt, final InternalTenantContext context) {
+        if (CallContextSnapshots.isEnabled(context)) {
+            return toBlockingStates(getSnapshot(context).getBlockBillingHistory());
+        }
+
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             final List<BlockingStateModelDao> states = entitySqlDaoWrapperFactory
                     .become(BlockingStateSqlDao.class)
@@ -190,6 +208,10 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
     }
 
     public List<BlockingState> getByBlockingIds(final Iterable<UUID> blockableIds, final boolean includeDeletedEvents, final InternalTenantContext context) {
+        // Deleted states aren't part of the snapshot
+        if (!includeDeletedEvents && CallContextSnapshots.isEnabled(context)) {
+            return toBlockingStates(getSnapshot(context).getByBlockableIds(blockableIds));
+        }
 
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             final BlockingStateSqlDao sqlDao  = entitySqlDaoWrapperFactory.become(BlockingStateSqlDao.class);
@@ -202,6 +224,14 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
     
     @Override
     public void setBlockingStatesAndPostBlockingTransitionEvent(final Map<BlockingState, Optional<UUID>> states, final InternalCallContext context) {
+        try {
+            doSetBlockingStatesAndPostBlockingTransitionEvent(states, context);
+        } finally {
+            CallContextSnapshots.invalidate(BlockingStateSnapshot.class, context);
+        }
+    }
+
+    private void doSetBlockingStatesAndPostBlockingTransitionEvent(final Map<BlockingState, Optional<UUID>> states, final InternalCallContext context) {
         final boolean groupBusEvents = eventBus.shouldAggregateSubscriptionEvents(context);
 
         transactionalSqlDao.execute(false, entitySqlDaoWrapperFactory -> {
@@ -393,14 +423,18 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
 
     @Override
     public void unactiveBlockingState(final UUID id, final InternalCallContext context) {
-        transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
-            @Override
-            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final BlockingStateSqlDao sqlDao = entitySqlDaoWrapperFactory.become(BlockingStateSqlDao.class);
-                sqlDao.unactiveEvent(id.toString(), context);
-                return null;
-            }
-        });
+        try {
+            transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
+                @Override
+                public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    final BlockingStateSqlDao sqlDao = entitySqlDaoWrapperFactory.become(BlockingStateSqlDao.class);
+                    sqlDao.unactiveEvent(id.toString(), context);
+                    return null;
+                }
+            });
+        } finally {
+            CallContextSnapshots.invalidate(BlockingStateSnapshot.class, context);
+        }
     }
 
     @Override
@@ -414,6 +448,20 @@ public class DefaultBlockingStateDao extends EntityDaoBase<BlockingStateModelDao
         });
     }
 
+    // All blocking states of the account, loaded once per call (see CallContextSnapshots)
+    private BlockingStateSnapshot getSnapshot(final InternalTenantContext context) {
+        return CallContextSnapshots.getOrLoad(BlockingStateSnapshot.class,
+                                              context,
+                                              () -> transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> new BlockingStateSnapshot(entitySqlDaoWrapperFactory.become(BlockingStateSqlDao.class)
+                                                                                                                                                                       .getByAccountRecordIdIncludedDeleted(context))));
+    }
+
+    private static List<BlockingState> toBlockingStates(final Collection<BlockingStateModelDao> models) {
+        return models.stream()
+                .map(BlockingStateModelDao::toBlockingState)
+                .collect(Collectors.toList());
+    }
+
     private List<BlockingState> filterBlockingStates(final Collection<BlockingState> models, final UUID objectId, final BlockingStateType blockingStateType) {
         return models.stream()
                 .filter(input -> input.getBlockedId().equals(objectId) && input.getType().equals(blockingStateType))
@@ -254,11 +254,14 @@ public class ProxyBlockingStateDao implements BlockingStateDao {
     @Override
     public void setBlockingStatesAndPostBlockingTransitionEvent(final Map<BlockingState, Optional<UUID>> states, final InternalCallContext context) {
         delegate.setBlockingStatesAndPostBlockingTransitionEvent(states, context);
+        // Future blocking states are only notified on the bus once effective
+        eventsStreamBuilder.invalidateAccountEventsStreams(context);
     }
 
     @Override
     public void unactiveBlockingState(final UUID blockableId, final InternalCallContext context) {
         delegate.unactiveBlockingState(blockableId, context);
+        eventsStreamBuilder.invalidateAccountEventsStreams(context);
     }
 
     @Override
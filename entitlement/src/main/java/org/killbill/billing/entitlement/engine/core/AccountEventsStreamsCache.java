@@ -0,0 +1,308 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.engine.core;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.entitlement.AccountEventsStreams;
+import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.entitlement.api.EntitlementApiException;
+import org.killbill.billing.entitlement.api.svcs.DefaultAccountEventsStreams;
+import org.killbill.billing.events.AccountChangeInternalEvent;
+import org.killbill.billing.events.BlockingTransitionInternalEvent;
+import org.killbill.billing.events.SubscriptionInternalEvent;
+import org.killbill.billing.events.TenantConfigChangeInternalEvent;
+import org.killbill.billing.events.TenantConfigDeletionInternalEvent;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.config.definition.EntitlementConfig;
+import org.killbill.billing.util.entity.dao.DBRouterUntyped;
+import org.killbill.clock.Clock;
+import org.killbill.commons.eventbus.AllowConcurrentEvents;
+import org.killbill.commons.eventbus.Subscribe;
+
+/**
+ * Per account cache of the computed events streams (opt-in).
+ * <p>
+ * Entries are only used by calls which accept stale reads (read-only API calls, see {@link DBRouterUntyped#isStaleReadAllowed(InternalTenantContext)}),
+ * so that a call never sees data older than its own writes, and never by calls made with an {@link InternalCallContext} (i.e. which are about
+ * to write). They are invalidated by the bus events (and synchronously by the blocking state writes of this node), and expire at the next
+ * subscription or blocking state transition, since the streams are computed as of the time they were built.
+ * <p>
+ * The cached streams themselves are never handed out: callers get copies on top of their own subscription objects, since the user APIs
+ * (e.g. DefaultEntitlement#changePlan) rebuild the transitions of the subscription in place.
+ */
+@Singleton
+public class AccountEventsStreamsCache {
+
+    // Invalidation counters, to avoid caching streams loaded concurrently to an invalidation
+    private static final int NB_VERSION_STRIPES = 1024;
+
+    public interface AccountEventsStreamsLoader {
+
+        AccountEventsStreams load() throws EntitlementApiException;
+    }
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final SubscriptionBaseInternalApi subscriptionInternalApi;
+    private final Map<Long, CachedAccountEventsStreams> cachedAccountEventsStreams;
+    private final AtomicLongArray versions = new AtomicLongArray(NB_VERSION_STRIPES);
+
+    @Inject
+    public AccountEventsStreamsCache(final EntitlementConfig entitlementConfig, final Clock clock, final SubscriptionBaseInternalApi subscriptionInternalApi) {
+        this.enabled = entitlementConfig.isAccountEventsStreamsCacheEnabled();
+        this.ttlMillis = entitlementConfig.getAccountEventsStreamsCacheTtl().getMillis();
+        this.clock = clock;
+        this.subscriptionInternalApi = subscriptionInternalApi;
+
+        final int maxAccounts = entitlementConfig.getAccountEventsStreamsCacheMaxAccounts();
+        this.cachedAccountEventsStreams = new LinkedHashMap<Long, CachedAccountEventsStreams>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Entry<Long, CachedAccountEventsStreams> eldest) {
+                return size() > maxAccounts;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public AccountEventsStreams getOrLoad(final InternalTenantContext context, final AccountEventsStreamsLoader loader) throws EntitlementApiException {
+        if (!isCacheable(context)) {
+            return loader.load();
+        }
+
+        final DateTime now = clock.getUTCNow();
+        final CachedAccountEventsStreams cached = get(context, now);
+        if (cached != null) {
+            return copy(cached.accountEventsStreams, context);
+        }
+
+        final long version = getVersion(context.getAccountRecordId());
+        final AccountEventsStreams accountEventsStreams = loadFromRWInstance(loader);
+        final boolean isCached;
+        synchronized (cachedAccountEventsStreams) {
+            isCached = version == getVersion(context.getAccountRecordId());
+            if (isCached) {
+                cachedAccountEventsStreams.put(context.getAccountRecordId(),
+                                               new CachedAccountEventsStreams(accountEventsStreams, context.getTenantRecordId(), computeExpirationDate(accountEventsStreams, now)));
+            }
+        }
+        return isCached ? copy(accountEventsStreams, context) : accountEventsStreams;
+    }
+
+    // Only returns streams already cached for the account (built without the deleted events)
+    @Nullable
+    public EventsStream getIfPresent(final UUID entitlementId, final InternalTenantContext context) {
+        if (!isCacheable(context)) {
+            return null;
+        }
+
+        final CachedAccountEventsStreams cached = get(context, clock.getUTCNow());
+        if (cached == null) {
+            return null;
+        }
+
+        for (final Collection<EventsStream> eventsStreams : cached.accountEventsStreams.getEventsStreams().values()) {
+            for (final EventsStream eventsStream : eventsStreams) {
+                if (eventsStream.getEntitlementId().equals(entitlementId)) {
+                    return ((DefaultEventsStream) eventsStream).copy(newSubscriptionCopier(), context, clock.getUTCNow());
+                }
+            }
+        }
+        return null;
+    }
+
+    public void invalidate(@Nullable final Long accountRecordId) {
+        if (!enabled || accountRecordId == null) {
+            return;
+        }
+
+        synchronized (cachedAccountEventsStreams) {
+            versions.incrementAndGet(getStripe(accountRecordId));
+            cachedAccountEventsStreams.remove(accountRecordId);
+        }
+    }
+
+    public void invalidateTenant(@Nullable final Long tenantRecordId) {
+        if (!enabled || tenantRecordId == null) {
+            return;
+        }
+
+        synchronized (cachedAccountEventsStreams) {
+            cachedAccountEventsStreams.values().removeIf(cached -> tenantRecordId.equals(cached.tenantRecordId));
+            // Streams being loaded for that tenant might rely on the previous catalog
+            for (int i = 0; i < NB_VERSION_STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleSubscriptionEvent(final SubscriptionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleBlockingStateEvent(final BlockingTransitionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleAccountChangeEvent(final AccountChangeInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleTenantConfigChangeEvent(final TenantConfigChangeInternalEvent event) {
+        if (isCatalogKey(event.getKey())) {
+            invalidateTenant(event.getSearchKey2());
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleTenantConfigDeletionEvent(final TenantConfigDeletionInternalEvent event) {
+        if (isCatalogKey(event.getKey())) {
+            invalidateTenant(event.getSearchKey2());
+        }
+    }
+
+    private boolean isCacheable(final InternalTenantContext context) {
+        return enabled && context.getAccountRecordId() != null && !(context instanceof InternalCallContext) && DBRouterUntyped.isStaleReadAllowed(context);
+    }
+
+    private AccountEventsStreams copy(final AccountEventsStreams accountEventsStreams, final InternalTenantContext context) {
+        final DateTime utcNow = clock.getUTCNow();
+        // Shared across the bundle: the base subscription of each stream is also part of the subscriptions of the bundle
+        final UnaryOperator<SubscriptionBase> subscriptionCopier = newSubscriptionCopier();
+
+        final Map<UUID, Collection<SubscriptionBase>> subscriptionsPerBundle = new HashMap<>();
+        for (final Entry<UUID, Collection<SubscriptionBase>> entry : accountEventsStreams.getSubscriptions().entrySet()) {
+            subscriptionsPerBundle.put(entry.getKey(), entry.getValue().stream().map(subscriptionCopier).collect(Collectors.toList()));
+        }
+
+        final Map<UUID, Collection<EventsStream>> eventsStreamPerBundle = new HashMap<>();
+        for (final Entry<UUID, Collection<EventsStream>> entry : accountEventsStreams.getEventsStreams().entrySet()) {
+            final Collection<EventsStream> eventsStreams = new LinkedList<>();
+            for (final EventsStream eventsStream : entry.getValue()) {
+                eventsStreams.add(((DefaultEventsStream) eventsStream).copy(subscriptionCopier, context, utcNow));
+            }
+            eventsStreamPerBundle.put(entry.getKey(), eventsStreams);
+        }
+
+        return new DefaultAccountEventsStreams(accountEventsStreams.getAccount(), accountEventsStreams.getBundles().values(), subscriptionsPerBundle, eventsStreamPerBundle);
+    }
+
+    private UnaryOperator<SubscriptionBase> newSubscriptionCopier() {
+        final Map<UUID, SubscriptionBase> copies = new HashMap<>();
+        return subscription -> copies.computeIfAbsent(subscription.getId(), subscriptionId -> subscriptionInternalApi.copySubscription(subscription));
+    }
+
+    private CachedAccountEventsStreams get(final InternalTenantContext context, final DateTime now) {
+        final CachedAccountEventsStreams cached;
+        synchronized (cachedAccountEventsStreams) {
+            cached = cachedAccountEventsStreams.get(context.getAccountRecordId());
+        }
+        if (cached == null || !context.getTenantRecordId().equals(cached.tenantRecordId) || !now.isBefore(cached.expirationDate)) {
+            return null;
+        }
+        return cached;
+    }
+
+    private AccountEventsStreams loadFromRWInstance(final AccountEventsStreamsLoader loader) throws EntitlementApiException {
+        try {
+            // Don't cache data from the replica: it could predate the writes already invalidated
+            return (AccountEventsStreams) DBRouterUntyped.withRODBIAllowed(false, loader::load);
+        } catch (final EntitlementApiException | RuntimeException e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private DateTime computeExpirationDate(final AccountEventsStreams accountEventsStreams, final DateTime now) {
+        DateTime expirationDate = now.plus(ttlMillis);
+        for (final Collection<EventsStream> eventsStreams : accountEventsStreams.getEventsStreams().values()) {
+            for (final EventsStream eventsStream : eventsStreams) {
+                for (final SubscriptionBaseTransition transition : eventsStream.getSubscriptionBase().getAllTransitions(false)) {
+                    expirationDate = earliestFutureDate(expirationDate, transition.getEffectiveTransitionTime(), now);
+                }
+                for (final BlockingState blockingState : eventsStream.getBlockingStates(false)) {
+                    expirationDate = earliestFutureDate(expirationDate, blockingState.getEffectiveDate(), now);
+                }
+            }
+        }
+        return expirationDate;
+    }
+
+    private static DateTime earliestFutureDate(final DateTime expirationDate, @Nullable final DateTime candidate, final DateTime now) {
+        return candidate != null && candidate.isAfter(now) && candidate.isBefore(expirationDate) ? candidate : expirationDate;
+    }
+
+    private long getVersion(final Long accountRecordId) {
+        return versions.get(getStripe(accountRecordId));
+    }
+
+    private static int getStripe(final Long accountRecordId) {
+        return (int) (accountRecordId % NB_VERSION_STRIPES);
+    }
+
+    private static boolean isCatalogKey(@Nullable final String key) {
+        return key != null && key.startsWith(TenantKey.CATALOG.toString());
+    }
+
+    private static final class CachedAccountEventsStreams {
+
+        private final AccountEventsStreams accountEventsStreams;
+        private final Long tenantRecordId;
+        private final DateTime expirationDate;
+
+        private CachedAccountEventsStreams(final AccountEventsStreams accountEventsStreams, final Long tenantRecordId, final DateTime expirationDate) {
+            this.accountEventsStreams = accountEventsStreams;
+            this.tenantRecordId = tenantRecordId;
+            this.expirationDate = expirationDate;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -124,6 +125,20 @@ public class DefaultEventsStream implements EventsStream {
     		this(account, bundle, blockingStates, Collections.emptyList(), blockingChecker, baseSubscription, subscription, allSubscriptionsForBundle, defaultBillCycleDayLocal, contextWithValidAccountRecordId, utcNow);
     }
 
+    // Same stream (the account, bundle and blocking states are immutable), on top of copies of the subscriptions
+    DefaultEventsStream copy(final UnaryOperator<SubscriptionBase> subscriptionCopier, final InternalTenantContext contextWithValidAccountRecordId, final DateTime utcNow) {
+        return new DefaultEventsStream(account,
+                                       bundle,
+                                       blockingStates,
+                                       blockingStatesWithDeletedEvents,
+                                       blockingChecker,
+                                       baseSubscription != null ? subscriptionCopier.apply(baseSubscription) : null,
+                                       subscriptionCopier.apply(subscription),
+                                       allSubscriptionsForBundle.stream().map(subscriptionCopier).collect(Collectors.toList()),
+                                       defaultBillCycleDayLocal,
+                                       contextWithValidAccountRecordId,
+                                       utcNow);
+    }
     
     private void sanityChecks(@Nullable final ImmutableAccountData account,
                               @Nullable final SubscriptionBaseBundle bundle,
@@ -67,6 +67,7 @@ import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
 import org.killbill.billing.util.audit.dao.AuditDao;
 import org.killbill.billing.util.bcd.BillCycleDayCalculator;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.commons.utils.collect.Iterables;
@@ -89,6 +90,7 @@ public class EventsStreamBuilder {
     private final DefaultBlockingStateDao defaultBlockingStateDao;
     private final Clock clock;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AccountEventsStreamsCache accountEventsStreamsCache;
 
     @Inject
     public EventsStreamBuilder(final AccountInternalApi accountInternalApi,
@@ -103,13 +105,15 @@ public class EventsStreamBuilder {
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final NonEntityDao nonEntityDao,
                                final AuditDao auditDao,
-                               final InternalCallContextFactory internalCallContextFactory) {
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final AccountEventsStreamsCache accountEventsStreamsCache) {
         this.accountInternalApi = accountInternalApi;
         this.subscriptionInternalApi = subscriptionInternalApi;
         this.catalogInternalApi = catalogInternalApi;
         this.checker = checker;
         this.clock = clock;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.accountEventsStreamsCache = accountEventsStreamsCache;
         this.defaultBlockingStateDao = new DefaultBlockingStateDao(dbi, roDbi, clock, notificationQueueService, eventBus, cacheControllerDispatcher, nonEntityDao, auditDao, internalCallContextFactory);
         this.blockingStateDao = new OptimizedProxyBlockingStateDao(this, subscriptionInternalApi, dbi, roDbi, clock, notificationQueueService, eventBus, cacheControllerDispatcher, nonEntityDao, auditDao, internalCallContextFactory);
     }
@@ -131,20 +135,29 @@ public class EventsStreamBuilder {
     }
 
     public EventsStream buildForEntitlement(final UUID entitlementId, final TenantContext tenantContext) throws EntitlementApiException {
-        final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(entitlementId, ObjectType.SUBSCRIPTION, tenantContext);
+        // Calls made with a CallContext (e.g. DefaultEntitlement#refresh before a change of plan) are about to write: keep the InternalCallContext so that the cache is bypassed
+        final InternalTenantContext internalTenantContext = tenantContext instanceof CallContext ?
+                                                            internalCallContextFactory.createInternalCallContext(entitlementId, ObjectType.SUBSCRIPTION, (CallContext) tenantContext) :
+                                                            internalCallContextFactory.createInternalTenantContext(entitlementId, ObjectType.SUBSCRIPTION, tenantContext);
         return buildForEntitlement(entitlementId, false, internalTenantContext);
     }
 
     public AccountEventsStreams buildForAccount(final InternalTenantContext internalTenantContext) throws EntitlementApiException {
-        // Retrieve the subscriptions (map bundle id -> subscriptions)
-        final Map<UUID, List<SubscriptionBase>> subscriptions;
-        try {
-            final VersionedCatalog catalog = getCatalog(internalTenantContext);
-            subscriptions = subscriptionInternalApi.getSubscriptionsForAccount(catalog, null, internalTenantContext);
-            return buildForAccount(subscriptions, catalog, internalTenantContext);
-        } catch (final SubscriptionBaseApiException e) {
-            throw new EntitlementApiException(e);
-        }
+        return accountEventsStreamsCache.getOrLoad(internalTenantContext, () -> {
+            // Retrieve the subscriptions (map bundle id -> subscriptions)
+            final Map<UUID, List<SubscriptionBase>> subscriptions;
+            try {
+                final VersionedCatalog catalog = getCatalog(internalTenantContext);
+                subscriptions = subscriptionInternalApi.getSubscriptionsForAccount(catalog, null, internalTenantContext);
+                return buildForAccount(subscriptions, catalog, internalTenantContext);
+            } catch (final SubscriptionBaseApiException e) {
+                throw new EntitlementApiException(e);
+            }
+        });
+    }
+
+    public void invalidateAccountEventsStreams(final InternalTenantContext internalTenantContext) {
+        accountEventsStreamsCache.invalidate(internalTenantContext.getAccountRecordId());
     }
 
     // Special signature for ProxyBlockingStateDao to save a DAO call
@@ -280,6 +293,13 @@ public class EventsStreamBuilder {
     }
 
     public EventsStream buildForEntitlement(final UUID entitlementId, final boolean includeDeletedEvents, final InternalTenantContext internalTenantContext) throws EntitlementApiException {
+        if (!includeDeletedEvents) {
+            final EventsStream cachedEventsStream = accountEventsStreamsCache.getIfPresent(entitlementId, internalTenantContext);
+            if (cachedEventsStream != null) {
+                return cachedEventsStream;
+            }
+        }
+
         try {
             final SubscriptionBase subscription = subscriptionInternalApi.getSubscriptionFromId(entitlementId, includeDeletedEvents, internalTenantContext);
             return buildForEntitlement(subscription, includeDeletedEvents, internalTenantContext);
@@ -32,6 +32,7 @@ import org.killbill.billing.entitlement.block.BlockingChecker;
 import org.killbill.billing.entitlement.block.DefaultBlockingChecker;
 import org.killbill.billing.entitlement.dao.BlockingStateDao;
 import org.killbill.billing.entitlement.dao.ProxyBlockingStateDao;
+import org.killbill.billing.entitlement.engine.core.AccountEventsStreamsCache;
 import org.killbill.billing.entitlement.engine.core.EntitlementUtils;
 import org.killbill.billing.entitlement.engine.core.EventsStreamBuilder;
 import org.killbill.billing.entitlement.plugin.api.EntitlementPluginApi;
@@ -39,8 +40,10 @@ import org.killbill.billing.glue.EntitlementModule;
 import org.killbill.billing.junction.BlockingInternalApi;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.config.definition.EntitlementConfig;
 import org.killbill.billing.util.glue.KillBillModule;
 import org.killbill.billing.util.glue.SecurityModule;
+import org.skife.config.ConfigurationObjectFactory;
 
 import com.google.inject.TypeLiteral;
 
@@ -66,6 +69,7 @@ public class DefaultEntitlementModule extends KillBillModule implements Entitlem
         bind(EntitlementService.class).to(DefaultEntitlementService.class).asEagerSingleton();
         bind(EntitlementUtils.class).asEagerSingleton();
         bind(EventsStreamBuilder.class).asEagerSingleton();
+        installAccountEventsStreamsCache();
         installEntitlementPluginApi();
     }
 
@@ -94,6 +98,12 @@ public class DefaultEntitlementModule extends KillBillModule implements Entitlem
         bind(SubscriptionApi.class).to(DefaultSubscriptionApi.class).asEagerSingleton();
     }
 
+    protected void installAccountEventsStreamsCache() {
+        final EntitlementConfig entitlementConfig = new ConfigurationObjectFactory(skifeConfigSource).build(EntitlementConfig.class);
+        bind(EntitlementConfig.class).toInstance(entitlementConfig);
+        bind(AccountEventsStreamsCache.class).asEagerSingleton();
+    }
+
     public void installBlockingChecker() {
         bind(BlockingChecker.class).to(DefaultBlockingChecker.class).asEagerSingleton();
     }
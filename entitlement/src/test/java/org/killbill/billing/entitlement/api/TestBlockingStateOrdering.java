@@ -17,12 +17,18 @@
 
 package org.killbill.billing.entitlement.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.entitlement.DefaultEntitlementService;
 import org.killbill.billing.entitlement.EntitlementTestSuiteNoDB;
 import org.killbill.billing.junction.DefaultBlockingState;
@@ -333,6 +339,63 @@ public class TestBlockingStateOrdering extends EntitlementTestSuiteNoDB {
         Assert.assertEquals(allEvents.get(7).getSubscriptionEventType(), SubscriptionEventType.START_BILLING);
     }
 
+    // The merge passes must produce the exact same stream as the full scans, including the prev/next plans of the new events
+    @Test(groups = "fast")
+    public void testMergePassesMatchFullScans() throws Exception {
+        final long seed = System.currentTimeMillis();
+        final Random random = new Random(seed);
+        final DateTime now = clock.getUTCNow();
+        final SubscriptionEventType[] eventTypes = {SubscriptionEventType.START_BILLING, SubscriptionEventType.PHASE, SubscriptionEventType.CHANGE, SubscriptionEventType.STOP_BILLING};
+        final String[] services = {KILLBILL_SERVICES.ENTITLEMENT_SERVICE.getServiceName(), EntitlementOrderingBase.BILLING_SERVICE_NAME, "svc1", "svc2"};
+        final String[] entitlementStateNames = {DefaultEntitlementApi.ENT_STATE_START, DefaultEntitlementApi.ENT_STATE_CANCELLED, "stuff"};
+
+        for (int i = 0; i < 500; i++) {
+            final List<UUID> entitlementIds = new ArrayList<UUID>();
+            for (int j = 0; j <= random.nextInt(3); j++) {
+                entitlementIds.add(UUID.randomUUID());
+            }
+
+            final List<SubscriptionEvent> events = new ArrayList<SubscriptionEvent>();
+            for (final UUID entitlementId : entitlementIds) {
+                for (int j = 0; j <= random.nextInt(5); j++) {
+                    events.add(createEvent(entitlementId, eventTypes[random.nextInt(eventTypes.length)], now.plusDays(random.nextInt(6)), Mockito.mock(Plan.class)));
+                }
+            }
+            Collections.shuffle(events, random);
+            events.sort(Comparator.comparing(SubscriptionEvent::getEffectiveDate));
+            if (random.nextInt(4) == 0) {
+                // Same day events are not necessarily sorted by time
+                Collections.swap(events, 0, random.nextInt(events.size()));
+            }
+
+            // Account and bundle blocking states show up in the stream of each entitlement
+            final List<BlockingState> sharedBlockingStates = new ArrayList<BlockingState>();
+            for (int j = 0; j < random.nextInt(3); j++) {
+                final String service = services[1 + random.nextInt(services.length - 1)];
+                sharedBlockingStates.add(createBlockingState(UUID.randomUUID(), random.nextBoolean() ? BlockingStateType.ACCOUNT : BlockingStateType.SUBSCRIPTION_BUNDLE, "shared" + j, service,
+                                                             random.nextBoolean(), random.nextBoolean(), now.plusDays(random.nextInt(6))));
+            }
+            final Collection<BlockingState> blockingStates = new LinkedList<BlockingState>();
+            for (final UUID entitlementId : entitlementIds) {
+                final List<BlockingState> stream = new ArrayList<BlockingState>(sharedBlockingStates);
+                for (int j = 0; j < random.nextInt(5); j++) {
+                    final String service = services[random.nextInt(services.length)];
+                    final String stateName = service.equals(services[0]) ? entitlementStateNames[random.nextInt(entitlementStateNames.length)] : "state" + j;
+                    stream.add(createBlockingState(entitlementId, BlockingStateType.SUBSCRIPTION, stateName, service, random.nextBoolean(), random.nextBoolean(), now.plusDays(random.nextInt(6))));
+                }
+                stream.sort(Comparator.comparing(BlockingState::getEffectiveDate));
+                blockingStates.addAll(stream);
+            }
+
+            final LinkedList<SubscriptionEvent> fullScansEvents = new LinkedList<SubscriptionEvent>(events);
+            BlockingStateOrdering.INSTANCE.computeEvents(new LinkedList<UUID>(entitlementIds), blockingStates, internalCallContext, fullScansEvents, false);
+            final LinkedList<SubscriptionEvent> mergePassesEvents = new LinkedList<SubscriptionEvent>(events);
+            BlockingStateOrdering.INSTANCE.computeEvents(new LinkedList<UUID>(entitlementIds), blockingStates, internalCallContext, mergePassesEvents, true);
+
+            Assert.assertEquals(mergePassesEvents, fullScansEvents, "seed=" + seed + ", iteration=" + i);
+        }
+    }
+
     private BlockingState createBlockingState(final UUID blockedId,
                                               final BlockingStateType blockingStateType,
                                               final String stateName,
@@ -356,10 +419,15 @@ public class TestBlockingStateOrdering extends EntitlementTestSuiteNoDB {
 
     // Re-use SubscriptionEventOrdering method, as it's the input of BlockingStateOrdering
     private SubscriptionEvent createEvent(final UUID subscriptionId, final SubscriptionEventType type, final DateTime effectiveDate) {
+        return createEvent(subscriptionId, type, effectiveDate, null);
+    }
+
+    private SubscriptionEvent createEvent(final UUID subscriptionId, final SubscriptionEventType type, final DateTime effectiveDate, final Plan nextPlan) {
         final SubscriptionBaseTransition subscriptionBaseTransition = Mockito.mock(SubscriptionBaseTransition.class);
         Mockito.when(subscriptionBaseTransition.getId()).thenReturn(UUID.randomUUID());
         Mockito.when(subscriptionBaseTransition.getSubscriptionId()).thenReturn(subscriptionId);
         Mockito.when(subscriptionBaseTransition.getEffectiveTransitionTime()).thenReturn(effectiveDate);
+        Mockito.when(subscriptionBaseTransition.getNextPlan()).thenReturn(nextPlan);
         return SubscriptionEventOrdering.toSubscriptionEvent(subscriptionBaseTransition, type, internalCallContext);
     }
 
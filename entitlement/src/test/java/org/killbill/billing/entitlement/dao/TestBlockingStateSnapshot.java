@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.entitlement.EntitlementTestSuiteWithEmbeddedDB;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.entitlement.api.BlockingStateType;
+import org.killbill.billing.junction.DefaultBlockingState;
+import org.killbill.billing.util.callcontext.CallContextSnapshots;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestBlockingStateSnapshot extends EntitlementTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow", description = "Verify lookups served by the snapshot match the SQL queries")
+    public void testSnapshotMatchesQueries() throws Exception {
+        final UUID accountId = createAccount(getAccountData(1)).getId();
+        final UUID bundleId = UUID.randomUUID();
+        final UUID subscriptionId = UUID.randomUUID();
+
+        clock.setDay(new LocalDate(2012, 4, 1));
+        final DateTime start = clock.getUTCNow();
+
+        setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD1", "overdue", true, false, true, start), true);
+        setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "STATE1", "other", false, false, false, start), true);
+        setBlockingState(new DefaultBlockingState(bundleId, BlockingStateType.SUBSCRIPTION_BUNDLE, "PAUSED", "other", false, true, false, start), true);
+        setBlockingState(new DefaultBlockingState(subscriptionId, BlockingStateType.SUBSCRIPTION, "ENT_STARTED", "entitlement", false, false, false, start), true);
+
+        clock.addDays(1);
+        setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD2", "overdue", true, true, true, clock.getUTCNow()), true);
+        setBlockingState(new DefaultBlockingState(bundleId, BlockingStateType.SUBSCRIPTION_BUNDLE, "BILLING_PAUSED", "billing", false, false, true, clock.getUTCNow()), true);
+
+        // Future states
+        setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD3", "overdue", false, false, false, clock.getUTCNow().plusDays(10)), false);
+        setBlockingState(new DefaultBlockingState(subscriptionId, BlockingStateType.SUBSCRIPTION, "ENT_CANCELLED", "entitlement", true, true, false, clock.getUTCNow().plusDays(20)), false);
+
+        // Deleted states are skipped, but still count for getBlockingActiveForAccount
+        final BlockingState billingPaused = findByStateName("BILLING_PAUSED");
+        blockingStateDao.unactiveBlockingState(billingPaused.getId(), internalCallContext);
+
+        for (final DateTime upTo : List.of(start.minusDays(1), start, clock.getUTCNow(), clock.getUTCNow().plusDays(15), clock.getUTCNow().plusDays(30))) {
+            for (final UUID blockableId : List.of(accountId, bundleId, subscriptionId, UUID.randomUUID())) {
+                for (final BlockingStateType type : BlockingStateType.values()) {
+                    Assert.assertEquals(withSnapshots(() -> toIds(blockingStateDao.getBlockingState(blockableId, type, upTo, internalCallContext))),
+                                        toIds(blockingStateDao.getBlockingState(blockableId, type, upTo, internalCallContext)));
+                }
+            }
+        }
+        for (final UUID blockableId : List.of(accountId, bundleId, subscriptionId)) {
+            for (final String service : List.of("overdue", "other", "billing", "entitlement")) {
+                final BlockingState expected = blockingStateDao.getBlockingStateForService(blockableId, BlockingStateType.ACCOUNT, service, internalCallContext);
+                final BlockingState actual = withSnapshots(() -> blockingStateDao.getBlockingStateForService(blockableId, BlockingStateType.ACCOUNT, service, internalCallContext));
+                Assert.assertEquals(actual == null ? null : actual.getId(), expected == null ? null : expected.getId());
+            }
+        }
+
+        Assert.assertEquals(withSnapshots(() -> toIds(blockingStateDao.getBlockingAllForAccountRecordId(catalog, internalCallContext))),
+                            toIds(blockingStateDao.getBlockingAllForAccountRecordId(catalog, internalCallContext)));
+        Assert.assertEquals(withSnapshots(() -> toIds(blockingStateDao.getByBlockingIds(List.of(bundleId, subscriptionId), false, internalCallContext))),
+                            toIds(blockingStateDao.getByBlockingIds(List.of(bundleId, subscriptionId), false, internalCallContext)));
+        Assert.assertEquals(withSnapshots(() -> toIds(blockingStateDao.getByBlockingIds(List.of(bundleId), true, internalCallContext))),
+                            toIds(blockingStateDao.getByBlockingIds(List.of(bundleId), true, internalCallContext)));
+        // The SQL ordering isn't fully specified within a (service, blockable id) tuple
+        Assert.assertEqualsNoOrder(withSnapshots(() -> toIds(blockingStateDao.getBlockingActiveForAccount(catalog, null, internalCallContext))).toArray(),
+                                   toIds(blockingStateDao.getBlockingActiveForAccount(catalog, null, internalCallContext)).toArray());
+    }
+
+    @Test(groups = "slow", description = "Verify writes are visible to subsequent reads in the same scope")
+    public void testSnapshotInvalidatedOnWrite() throws Exception {
+        final UUID accountId = createAccount(getAccountData(1)).getId();
+
+        clock.setDay(new LocalDate(2012, 4, 1));
+        setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD1", "overdue", true, false, false, clock.getUTCNow()), true);
+
+        withSnapshots(() -> {
+            Assert.assertEquals(blockingStateDao.getBlockingStateForService(accountId, BlockingStateType.ACCOUNT, "overdue", internalCallContext).getStateName(), "OD1");
+
+            clock.addDays(1);
+            setBlockingState(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD2", "overdue", true, false, false, clock.getUTCNow()), true);
+            Assert.assertEquals(blockingStateDao.getBlockingStateForService(accountId, BlockingStateType.ACCOUNT, "overdue", internalCallContext).getStateName(), "OD2");
+
+            blockingStateDao.unactiveBlockingState(findByStateName("OD2").getId(), internalCallContext);
+            Assert.assertEquals(blockingStateDao.getBlockingStateForService(accountId, BlockingStateType.ACCOUNT, "overdue", internalCallContext).getStateName(), "OD1");
+            return null;
+        });
+    }
+
+    private void setBlockingState(final BlockingState blockingState, final boolean isEffective) {
+        if (isEffective) {
+            testListener.pushExpectedEvent(NextEvent.BLOCK);
+        }
+        blockingStateDao.setBlockingStatesAndPostBlockingTransitionEvent(Map.of(blockingState, Optional.empty()), internalCallContext);
+        assertListenerStatus();
+    }
+
+    private BlockingState findByStateName(final String stateName) {
+        return blockingStateDao.getBlockingAllForAccountRecordId(catalog, internalCallContext)
+                               .stream()
+                               .filter(state -> stateName.equals(state.getStateName()))
+                               .findFirst()
+                               .orElseThrow();
+    }
+
+    private static List<UUID> toIds(final List<BlockingState> states) {
+        return states.stream().map(BlockingState::getId).collect(Collectors.toList());
+    }
+
+    private interface SnapshotCallback<T> {
+
+        T execute() throws Exception;
+    }
+
+    private static <T> T withSnapshots(final SnapshotCallback<T> callback) throws Exception {
+        try (final CallContextSnapshots.Scope ignored = CallContextSnapshots.openScope()) {
+            return callback.execute();
+        }
+    }
+}
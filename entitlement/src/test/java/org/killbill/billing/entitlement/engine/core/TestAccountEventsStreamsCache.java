@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.engine.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.entitlement.AccountEventsStreams;
+import org.killbill.billing.entitlement.EntitlementTestSuiteWithEmbeddedDB;
+import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.DefaultEntitlement;
+import org.killbill.billing.entitlement.api.DefaultEntitlementSpecifier;
+import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.Entitlement.EntitlementState;
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.entity.dao.DBRouterUntyped;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestAccountEventsStreamsCache extends EntitlementTestSuiteWithEmbeddedDB {
+
+    @Inject
+    private AccountEventsStreamsCache accountEventsStreamsCache;
+
+    @Override
+    protected KillbillConfigSource getConfigSource(final Map<String, String> extraProperties) {
+        final Map<String, String> allExtraProperties = new HashMap<String, String>(extraProperties);
+        allExtraProperties.put("org.killbill.entitlement.accountEventsStreamsCache.enabled", "true");
+        return super.getConfigSource(allExtraProperties);
+    }
+
+    @Test(groups = "slow")
+    public void testCachedForReadOnlyCalls() throws Throwable {
+        clock.setDay(new LocalDate(2013, 8, 7));
+        final Account account = createAccount(getAccountData(7));
+        final UUID entitlementId = createBaseEntitlement(account);
+        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(account.getId(), callContext);
+
+        final InternalCallContext writeContext = internalCallContextFactory.createInternalCallContext(account.getId(), callContext);
+
+        DBRouterUntyped.withRODBIAllowed(true, () -> {
+            final AccountEventsStreams accountEventsStreams = eventsStreamBuilder.buildForAccount(context);
+            Assert.assertNotNull(accountEventsStreamsCache.getIfPresent(entitlementId, context));
+
+            // Each caller gets its own copy of the cached streams
+            final AccountEventsStreams otherAccountEventsStreams = eventsStreamBuilder.buildForAccount(context);
+            Assert.assertNotSame(otherAccountEventsStreams, accountEventsStreams);
+            Assert.assertNotSame(getEventsStream(otherAccountEventsStreams).getSubscriptionBase(), getEventsStream(accountEventsStreams).getSubscriptionBase());
+            Assert.assertEquals(getEventsStream(otherAccountEventsStreams).getEntitlementState(), getEventsStream(accountEventsStreams).getEntitlementState());
+
+            // Subscription reads are served from the account streams
+            final EventsStream eventsStream = eventsStreamBuilder.buildForEntitlement(entitlementId, false, context);
+            Assert.assertEquals(eventsStream.getEntitlementId(), entitlementId);
+            Assert.assertNotSame(eventsStream.getSubscriptionBase(), getEventsStream(accountEventsStreams).getSubscriptionBase());
+
+            // Not for calls which are about to write
+            Assert.assertNull(accountEventsStreamsCache.getIfPresent(entitlementId, writeContext));
+            return null;
+        });
+
+        // Not for calls which might have written
+        Assert.assertNull(accountEventsStreamsCache.getIfPresent(entitlementId, context));
+    }
+
+    @Test(groups = "slow")
+    public void testChangePlanThroughCachedEntitlement() throws Throwable {
+        clock.setDay(new LocalDate(2013, 8, 7));
+        final Account account = createAccount(getAccountData(7));
+        final UUID entitlementId = createBaseEntitlement(account);
+        clock.addDeltaFromReality(1000); // Make sure CHANGE does not collide with CREATE
+        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(account.getId(), callContext);
+
+        DBRouterUntyped.withRODBIAllowed(true, () -> {
+            final EventsStream otherReader = getEventsStream(eventsStreamBuilder.buildForAccount(context));
+            final int nbTransitions = otherReader.getSubscriptionBase().getAllTransitions(false).size();
+            Assert.assertEquals(otherReader.getSubscriptionBase().getLastActivePlan().getName(), "shotgun-monthly");
+
+            // Built from the cached streams
+            final Entitlement entitlement = entitlementApi.getEntitlementForId(entitlementId, false, callContext);
+            Assert.assertNotNull(accountEventsStreamsCache.getIfPresent(entitlementId, context));
+            Assert.assertNotSame(((DefaultEntitlement) entitlement).getSubscriptionBase(), otherReader.getSubscriptionBase());
+
+            testListener.pushExpectedEvent(NextEvent.CHANGE);
+            final PlanPhaseSpecifier planPhaseSpecifier = new PlanPhaseSpecifier("Assault-Rifle", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME);
+            final Entitlement changedEntitlement = entitlement.changePlan(new DefaultEntitlementSpecifier(planPhaseSpecifier), Collections.emptyList(), callContext);
+            assertListenerStatus();
+            Assert.assertEquals(changedEntitlement.getLastActivePlan().getName(), "assault-rifle-monthly");
+
+            // The stream of the other reader is left untouched
+            Assert.assertEquals(otherReader.getSubscriptionBase().getLastActivePlan().getName(), "shotgun-monthly");
+            Assert.assertEquals(otherReader.getSubscriptionBase().getAllTransitions(false).size(), nbTransitions);
+            return null;
+        });
+
+        // Subsequent read-only calls see the new plan
+        DBRouterUntyped.withRODBIAllowed(true, () -> {
+            Assert.assertEquals(getCachedEventsStream(context).getSubscriptionBase().getLastActivePlan().getName(), "assault-rifle-monthly");
+            return null;
+        });
+    }
+
+    @Test(groups = "slow")
+    public void testNoStaleReadAfterWriteInSameCall() throws Throwable {
+        clock.setDay(new LocalDate(2013, 8, 7));
+        final Account account = createAccount(getAccountData(7));
+        final UUID entitlementId = createBaseEntitlement(account);
+        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(account.getId(), callContext);
+
+        DBRouterUntyped.withRODBIAllowed(true, () -> {
+            Assert.assertEquals(eventsStreamBuilder.buildForEntitlement(entitlementId, false, context).getEntitlementState(), EntitlementState.ACTIVE);
+            Assert.assertEquals(getCachedEventsStream(context).getEntitlementState(), EntitlementState.ACTIVE);
+
+            testListener.pushExpectedEvents(NextEvent.CANCEL, NextEvent.BLOCK);
+            final Entitlement entitlement = entitlementApi.getEntitlementForId(entitlementId, false, callContext);
+            entitlement.cancelEntitlementWithDate(null, true, Collections.emptyList(), callContext);
+            assertListenerStatus();
+
+            Assert.assertEquals(eventsStreamBuilder.buildForEntitlement(entitlementId, false, context).getEntitlementState(), EntitlementState.CANCELLED);
+            return null;
+        });
+
+        // Subsequent read-only calls see the new state as well
+        DBRouterUntyped.withRODBIAllowed(true, () -> {
+            Assert.assertEquals(getCachedEventsStream(context).getEntitlementState(), EntitlementState.CANCELLED);
+            return null;
+        });
+    }
+
+    @Test(groups = "slow")
+    public void testExpiresAtNextTransition() throws Throwable {
+        clock.setDay(new LocalDate(2013, 8, 7));
+        final Account account = createAccount(getAccountData(7));
+        final UUID entitlementId = createBaseEntitlement(account);
+        final InternalTenantContext context = internalCallContextFactory.createInternalTenantContext(account.getId(), callContext);
+
+        DBRouterUntyped.withRODBIAllowed(true, () -> eventsStreamBuilder.buildForAccount(context));
+        Assert.assertNotNull(DBRouterUntyped.withRODBIAllowed(true, () -> accountEventsStreamsCache.getIfPresent(entitlementId, context)));
+
+        // End of the trial
+        testListener.pushExpectedEvent(NextEvent.PHASE);
+        clock.addDays(30);
+        assertListenerStatus();
+
+        Assert.assertNull(DBRouterUntyped.withRODBIAllowed(true, () -> accountEventsStreamsCache.getIfPresent(entitlementId, context)));
+    }
+
+    private EventsStream getCachedEventsStream(final InternalTenantContext context) throws Exception {
+        return getEventsStream(eventsStreamBuilder.buildForAccount(context));
+    }
+
+    private EventsStream getEventsStream(final AccountEventsStreams accountEventsStreams) {
+        return accountEventsStreams.getEventsStreams().values().iterator().next().iterator().next();
+    }
+
+    private UUID createBaseEntitlement(final Account account) throws Exception {
+        final PlanPhaseSpecifier planPhaseSpecifier = new PlanPhaseSpecifier("Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME, null);
+        testListener.pushExpectedEvents(NextEvent.CREATE, NextEvent.BLOCK);
+        final UUID entitlementId = entitlementApi.createBaseEntitlement(account.getId(), new DefaultEntitlementSpecifier(planPhaseSpecifier), account.getExternalKey(), null, null, false, true, Collections.emptyList(), callContext);
+        assertListenerStatus();
+        return entitlementId;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -36,6 +37,7 @@ import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -81,6 +83,7 @@ import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
 import org.killbill.billing.invoice.dao.InvoiceModelDao;
 import org.killbill.billing.invoice.dao.InvoiceModelDaoHelper;
 import org.killbill.billing.invoice.dao.InvoiceParentChildModelDao;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
 import org.killbill.billing.invoice.dao.InvoiceTrackingModelDao;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata;
@@ -109,12 +112,14 @@ import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.config.definition.InvoiceConfig;
 import org.killbill.billing.util.globallocker.LockerType;
+import org.killbill.billing.util.metrics.TenantTimers;
 import org.killbill.billing.util.optimizer.BusOptimizer;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLock;
 import org.killbill.commons.locker.GlobalLocker;
 import org.killbill.commons.locker.LockFailedException;
+import org.killbill.commons.metrics.api.MetricRegistry;
 import org.killbill.commons.utils.Joiner;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.commons.utils.collect.Iterables;
@@ -122,6 +127,7 @@ import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,6 +158,7 @@ public class InvoiceDispatcher {
     private final InvoiceConfig invoiceConfig;
     private final ParkedAccountsManager parkedAccountsManager;
     private final InvoiceOptimizer invoiceOptimizer;
+    private final MetricRegistry metricRegistry;
 
     @Inject
     public InvoiceDispatcher(final InvoiceGenerator generator,
@@ -167,7 +174,8 @@ public class InvoiceDispatcher {
                              final InvoiceConfig invoiceConfig,
                              final Clock clock,
                              final InvoiceOptimizer invoiceOptimizer,
-                             final ParkedAccountsManager parkedAccountsManager) {
+                             final ParkedAccountsManager parkedAccountsManager,
+                             final MetricRegistry metricRegistry) {
         this.generator = generator;
         this.billingApi = billingApi;
         this.subscriptionApi = SubscriptionApi;
@@ -182,6 +190,7 @@ public class InvoiceDispatcher {
         this.notificationQueueService = notificationQueueService;
         this.invoiceConfig = invoiceConfig;
         this.parkedAccountsManager = parkedAccountsManager;
+        this.metricRegistry = metricRegistry;
     }
 
     public void processAccountBCDChange(final UUID accountId, final InternalCallContext internalCallContext) {
@@ -192,6 +201,18 @@ public class InvoiceDispatcher {
         }
     }
 
+    /**
+     * Invalidate the billing watermarks after a change which could affect invoicing
+     *
+     * @param subscriptionIds the subscription ids, or null for all the subscriptions of the account
+     * @param context         the call context
+     */
+    public void clearSubscriptionWatermarks(@Nullable final Collection<UUID> subscriptionIds, final InternalCallContext context) {
+        if (invoiceConfig.isSubscriptionWatermarkEnabled(context)) {
+            invoiceDao.clearSubscriptionWatermarks(subscriptionIds, context);
+        }
+    }
+
     public void processSubscriptionStartRequestedDate(final RequestedSubscriptionInternalEvent transition, final InternalCallContext context) {
         final long dryRunNotificationTime = invoiceConfig.getDryRunNotificationSchedule(context).getMillis();
         final boolean isInvoiceNotificationEnabled = dryRunNotificationTime > 0;
@@ -353,6 +374,7 @@ public class InvoiceDispatcher {
         PLUGINS_COMPLETION_CALL,
         COMMIT_INVOICE,
         SET_CHARGE_THROUGH_DT,
+        SET_FUTURE_NOTIFICATIONS,
     }
 
     private List<Invoice> processAccountInternal(final boolean isApiCall,
@@ -379,6 +401,7 @@ public class InvoiceDispatcher {
         final DryRunInfo dryRunInfo = isDryRun ? new DryRunInfo(dryRunArguments.getDryRunType(), dryRunInfoDate) : null;
 
         final Map<InvoiceTiming, Long> invoiceTimings = new HashMap<>();
+        final long processStartNano = System.nanoTime();
         try {
 
             long startNano = System.nanoTime();
@@ -443,7 +466,7 @@ public class InvoiceDispatcher {
                 }
             }
 
-            printInvoiceTiming(invoiceTimings);
+            recordInvoiceTimings(accountId, isDryRun, System.nanoTime() - processStartNano, invoiceTimings, context);
             return result;
         } catch (final CatalogApiException e) {
             log.warn("Failed to retrieve BillingEvents for accountId='{}', dryRunArguments='{}'", accountId, dryRunArguments, e);
@@ -469,7 +492,22 @@ public class InvoiceDispatcher {
         }
     }
 
-    private void printInvoiceTiming(final Map<InvoiceTiming, Long> invoiceTimings) {
+    private void recordInvoiceTimings(final UUID accountId, final boolean isDryRun, final long totalNano, final Map<InvoiceTiming, Long> invoiceTimings, final InternalCallContext context) {
+        final String invoiceTimingsAsString = invoiceTimingsToString(invoiceTimings);
+        log.info(invoiceTimingsAsString);
+
+        for (final Entry<InvoiceTiming, Long> entry : invoiceTimings.entrySet()) {
+            TenantTimers.timer(metricRegistry, "kb_invoice." + entry.getKey().name().toLowerCase(Locale.US), context, isDryRun).update(entry.getValue(), TimeUnit.NANOSECONDS);
+        }
+        TenantTimers.timer(metricRegistry, "kb_invoice.total", context, isDryRun).update(totalNano, TimeUnit.NANOSECONDS);
+
+        final TimeSpan slowAccountThreshold = invoiceConfig.getSlowAccountThreshold(context);
+        if (slowAccountThreshold.getMillis() > 0 && totalNano / NANO_TO_MILLI_SEC >= slowAccountThreshold.getMillis()) {
+            log.warn("Slow invoice run for accountId='{}', dryRun='{}', total={} mSec, {}", accountId, isDryRun, totalNano / NANO_TO_MILLI_SEC, invoiceTimingsAsString);
+        }
+    }
+
+    private String invoiceTimingsToString(final Map<InvoiceTiming, Long> invoiceTimings) {
         boolean first = true;
         final StringBuilder tmp = new StringBuilder("Invoice timings: ");
         for (final InvoiceTiming key : InvoiceTiming.values()) {
@@ -483,7 +521,7 @@ public class InvoiceDispatcher {
             tmp.append(" mSec");
             first = false;
         }
-        log.info(tmp.toString());
+        return tmp.toString();
     }
 
     // Return a map of subscriptionId / localDate identifying what is the next upcoming billing transition (PHASE, PAUSE, ..)
@@ -656,7 +694,9 @@ public class InvoiceDispatcher {
 
         if (priorCallResult.getRescheduleDate() != null) {
             final FutureAccountNotifications futureAccountNotifications = createNextFutureNotificationDate(priorCallResult.getRescheduleDate(), billingEvents, internalCallContext);
+            startNano = System.nanoTime();
             setFutureNotifications(account, futureAccountNotifications, internalCallContext);
+            invoiceTimings.put(InvoiceTiming.SET_FUTURE_NOTIFICATIONS, System.nanoTime() - startNano);
             return null;
         }
 
@@ -686,7 +726,10 @@ public class InvoiceDispatcher {
             startNano = System.nanoTime();
             setChargedThroughDatesNoExceptions(invoiceWithMetadata.getChargeThroughDates(), internalCallContext);
             invoiceTimings.put(InvoiceTiming.SET_CHARGE_THROUGH_DT, System.nanoTime() - startNano);
+            startNano = System.nanoTime();
             setFutureNotifications(account, futureAccountNotifications, internalCallContext);
+            invoiceTimings.put(InvoiceTiming.SET_FUTURE_NOTIFICATIONS, System.nanoTime() - startNano);
+            setSubscriptionWatermarksNoExceptions(invoiceWithMetadata.getSubscriptionWatermarks(), internalCallContext);
             postEvent(event);
             return null;
         }
@@ -764,6 +807,8 @@ public class InvoiceDispatcher {
             setChargedThroughDatesNoExceptions(invoiceWithMetadata.getChargeThroughDates(), internalCallContext);
             invoiceTimings.put(InvoiceTiming.SET_CHARGE_THROUGH_DT, System.nanoTime() - startNano);
 
+            setSubscriptionWatermarksNoExceptions(invoiceWithMetadata.getSubscriptionWatermarks(), internalCallContext);
+
             success = true;
 
         } finally {
@@ -1096,6 +1141,15 @@ public class InvoiceDispatcher {
         }
     }
 
+    // Watermarks are only an optimization (a missing or stale watermark never leads to a subscription being wrongly skipped)
+    private void setSubscriptionWatermarksNoExceptions(final List<InvoiceSubscriptionWatermarkModelDao> subscriptionWatermarks, final InternalCallContext context) {
+        try {
+            invoiceDao.setSubscriptionWatermarks(subscriptionWatermarks, context);
+        } catch (final RuntimeException e) {
+            log.warn("Failed to set subscription watermarks", e);
+        }
+    }
+
     private void setChargedThroughDates(final Map<DateTime, List<UUID>> chargeThroughDates, final InternalCallContext context) throws InvoiceApiException {
         try {
             subscriptionApi.setChargedThroughDates(chargeThroughDates, context);
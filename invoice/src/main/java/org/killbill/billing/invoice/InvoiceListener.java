@@ -19,6 +19,7 @@
 
 package org.killbill.billing.invoice;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -101,6 +102,7 @@ public class InvoiceListener extends RetryableService implements InvoiceListener
                                                          return;
                                                      }
                                                      final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+                                                     dispatcher.clearSubscriptionWatermarks(List.of(event.getSubscriptionId()), context);
                                                      dispatcher.processSubscriptionForInvoiceGeneration(event, context);
                                                  } catch (final InvoiceApiException e) {
                                                      log.warn("Unable to process event {}", event, e);
@@ -119,6 +121,8 @@ public class InvoiceListener extends RetryableService implements InvoiceListener
                                                  try {
                                                      final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
                                                      final UUID accountId = accountApi.getByRecordId(event.getSearchKey1(), context);
+                                                     // Blocking states can be set at the account, bundle or subscription level
+                                                     dispatcher.clearSubscriptionWatermarks(null, context);
                                                      dispatcher.processAccountFromNotificationOrBusEvent(accountId, null, null, false, context);
                                                  } catch (final InvoiceApiException e) {
                                                      log.warn("Unable to process event {}", event, e);
@@ -153,6 +157,7 @@ public class InvoiceListener extends RetryableService implements InvoiceListener
                                              public void run(final DefaultInvoiceAdjustmentEvent event) {
                                                  try {
                                                      final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "AdjustParentInvoice", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+                                                     dispatcher.clearSubscriptionWatermarks(null, context);
                                                      final Account account = accountApi.getAccountById(event.getAccountId(), context);
 
                                                      // catch children invoices and populate the parent summary invoice
@@ -177,6 +182,8 @@ public class InvoiceListener extends RetryableService implements InvoiceListener
 
 
                                                  final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+                                                 // Covers the catalog overrides (price overrides are attached to the subscription creation or change)
+                                                 dispatcher.clearSubscriptionWatermarks(List.of(event.getSubscriptionId()), context);
                                                  dispatcher.processSubscriptionStartRequestedDate(event, context);
                                              }
                                          });
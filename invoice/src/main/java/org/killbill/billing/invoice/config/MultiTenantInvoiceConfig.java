@@ -84,6 +84,34 @@ public class MultiTenantInvoiceConfig extends MultiTenantConfigBase implements I
         return isUsageZeroAmountDisabled();
     }
 
+    @Override
+    public boolean isUsageDailyRollupEnabled() {
+        return staticConfig.isUsageDailyRollupEnabled();
+    }
+
+    @Override
+    public boolean isUsageDailyRollupEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isUsageDailyRollupEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isUsageDailyRollupEnabled();
+    }
+
+    @Override
+    public boolean isUsageStreamingEnabled() {
+        return staticConfig.isUsageStreamingEnabled();
+    }
+
+    @Override
+    public boolean isUsageStreamingEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isUsageStreamingEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isUsageStreamingEnabled();
+    }
+
     @Override
     public boolean isUsageMissingLenient() {
         return staticConfig.isUsageMissingLenient();
@@ -159,6 +187,53 @@ public class MultiTenantInvoiceConfig extends MultiTenantConfigBase implements I
         return staticConfig.isEmailNotificationsEnabled();
     }
 
+    @Override
+    public boolean isParallelItemGenerationEnabled() {
+        return staticConfig.isParallelItemGenerationEnabled();
+    }
+
+    @Override
+    public boolean isParallelItemGenerationEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isParallelItemGenerationEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isParallelItemGenerationEnabled();
+    }
+
+    @Override
+    public int getParallelItemGenerationThreadNb() {
+        return staticConfig.getParallelItemGenerationThreadNb();
+    }
+
+    @Override
+    public boolean isArrayBackedItemTreeEnabled() {
+        return staticConfig.isArrayBackedItemTreeEnabled();
+    }
+
+    @Override
+    public boolean isArrayBackedItemTreeEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isArrayBackedItemTreeEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isArrayBackedItemTreeEnabled();
+    }
+
+    @Override
+    public boolean isSubscriptionWatermarkEnabled() {
+        return staticConfig.isSubscriptionWatermarkEnabled();
+    }
+
+    @Override
+    public boolean isSubscriptionWatermarkEnabled(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("isSubscriptionWatermarkEnabled", tenantContext);
+        if (result != null) {
+            return Boolean.parseBoolean(result);
+        }
+        return isSubscriptionWatermarkEnabled();
+    }
+
     @Override
     public int getMaxGlobalLockRetries() {
         return staticConfig.getMaxGlobalLockRetries();
@@ -276,6 +351,20 @@ public class MultiTenantInvoiceConfig extends MultiTenantConfigBase implements I
         return getRescheduleIntervalOnLock();
     }
 
+    @Override
+    public TimeSpan getSlowAccountThreshold() {
+        return staticConfig.getSlowAccountThreshold();
+    }
+
+    @Override
+    public TimeSpan getSlowAccountThreshold(final InternalTenantContext tenantContext) {
+        final String result = getStringTenantConfig("getSlowAccountThreshold", tenantContext);
+        if (result != null) {
+            return new TimeSpan(result);
+        }
+        return getSlowAccountThreshold();
+    }
+
     @Override
     protected Class<? extends KillbillConfig> getConfigClass() {
         return InvoiceConfig.class;
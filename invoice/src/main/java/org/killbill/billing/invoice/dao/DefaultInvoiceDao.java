@@ -70,6 +70,7 @@ import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.invoice.notification.ParentInvoiceCommitmentPoster;
 import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.billing.tag.TagInternalApi;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
@@ -97,6 +98,7 @@ import org.killbill.bus.api.BusEvent;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
 import org.killbill.commons.utils.collect.Sets;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -159,6 +161,11 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         this.objectIdCacheController = cacheControllerDispatcher.getCacheController(CacheType.OBJECT_ID);
         this.nonEntityDao = nonEntityDao;
         this.parentInvoiceCommitmentPoster = parentInvoiceCommitmentPoster;
+        // InvoiceSubscriptionWatermarkSqlDao is not an EntitySqlDao, so its mapper isn't registered by IDBISetup
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceSubscriptionWatermarkModelDao.class));
+        if (roDbi != dbi) {
+            ((DBI) roDbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceSubscriptionWatermarkModelDao.class));
+        }
     }
 
     @Override
@@ -1430,6 +1437,45 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public List<InvoiceSubscriptionWatermarkModelDao> getSubscriptionWatermarks(final InternalTenantContext context) {
+        return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> entitySqlDaoWrapperFactory.getHandle().attach(InvoiceSubscriptionWatermarkSqlDao.class).getByAccountRecordId(context));
+    }
+
+    @Override
+    public void setSubscriptionWatermarks(final List<InvoiceSubscriptionWatermarkModelDao> watermarks, final InternalCallContext context) {
+        if (watermarks.isEmpty()) {
+            return;
+        }
+
+        transactionalSqlDao.execute(false, entitySqlDaoWrapperFactory -> {
+            final InvoiceSubscriptionWatermarkSqlDao transactional = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceSubscriptionWatermarkSqlDao.class);
+            final List<String> subscriptionIds = watermarks.stream()
+                                                           .map(watermark -> watermark.getSubscriptionId().toString())
+                                                           .collect(Collectors.toUnmodifiableList());
+            transactional.deleteBySubscriptionIds(subscriptionIds, context);
+            transactional.create(watermarks, context);
+            return null;
+        });
+    }
+
+    @Override
+    public void clearSubscriptionWatermarks(@Nullable final Collection<UUID> subscriptionIds, final InternalCallContext context) {
+        if (subscriptionIds != null && subscriptionIds.isEmpty()) {
+            return;
+        }
+
+        transactionalSqlDao.execute(false, entitySqlDaoWrapperFactory -> {
+            final InvoiceSubscriptionWatermarkSqlDao transactional = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceSubscriptionWatermarkSqlDao.class);
+            if (subscriptionIds == null) {
+                transactional.deleteByAccountRecordId(context);
+            } else {
+                transactional.deleteBySubscriptionIds(subscriptionIds.stream().map(UUID::toString).collect(Collectors.toUnmodifiableList()), context);
+            }
+            return null;
+        });
+    }
+
     @Override
     public List<AuditLogWithHistory> getInvoiceAuditLogsWithHistoryForId(final UUID invoiceId, final AuditLevel auditLevel, final InternalTenantContext context) {
         return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
@@ -19,6 +19,7 @@
 package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -239,6 +240,24 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoiceTrackingModelDao> getTrackingsByDateRange(LocalDate startDate, LocalDate endDate, InternalCallContext context);
 
+    List<InvoiceSubscriptionWatermarkModelDao> getSubscriptionWatermarks(InternalTenantContext context);
+
+    /**
+     * Replace the watermarks of the subscriptions specified
+     *
+     * @param watermarks the new watermarks
+     * @param context    the call context
+     */
+    void setSubscriptionWatermarks(List<InvoiceSubscriptionWatermarkModelDao> watermarks, InternalCallContext context);
+
+    /**
+     * Invalidate the watermarks of the subscriptions specified
+     *
+     * @param subscriptionIds the subscription ids, or null to invalidate all the watermarks of the account
+     * @param context         the call context
+     */
+    void clearSubscriptionWatermarks(@Nullable Collection<UUID> subscriptionIds, InternalCallContext context);
+
     List<AuditLogWithHistory> getInvoiceAuditLogsWithHistoryForId(final UUID invoiceId, final AuditLevel auditLevel, final InternalTenantContext context);
 
     List<AuditLogWithHistory> getInvoiceItemAuditLogsWithHistoryForId(final UUID invoiceItemId, final AuditLevel auditLevel, final InternalTenantContext context);
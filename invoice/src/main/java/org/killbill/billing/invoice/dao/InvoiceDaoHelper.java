@@ -46,10 +46,14 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoiceStatus;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.commons.utils.collect.Iterables;
 import org.killbill.billing.util.dao.CounterMappings;
+import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
@@ -61,10 +65,14 @@ public class InvoiceDaoHelper {
     private static final Logger log = LoggerFactory.getLogger(InvoiceDaoHelper.class);
 
     private final InternalCallContextFactory internalCallContextFactory;
+    private final NonEntityDao nonEntityDao;
+    private final CacheController<String, Long> recordIdCacheController;
 
     @Inject
-    public InvoiceDaoHelper(final InternalCallContextFactory internalCallContextFactory) {
+    public InvoiceDaoHelper(final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao, final CacheControllerDispatcher cacheControllerDispatcher) {
         this.internalCallContextFactory = internalCallContextFactory;
+        this.nonEntityDao = nonEntityDao;
+        this.recordIdCacheController = cacheControllerDispatcher.getCacheController(CacheType.RECORD_ID);
     }
 
     /**
@@ -499,10 +507,13 @@ public class InvoiceDaoHelper {
             parentInvoiceByParentInvoiceId.put(parentInvoice.getId(), parentInvoice);
         }
 
+        // DAO: retrieve the parent account record ids in bulk (the parent invoices were retrieved for the child tenant, so no need to check the tenant again)
+        final Map<UUID, Long> parentAccountRecordIds = nonEntityDao.retrieveRecordIdsFromObjectsInTransaction(parentInvoicesGroupedByParentAccountId.keySet(), ObjectType.ACCOUNT, recordIdCacheController, entitySqlDaoWrapperFactory.getHandle());
+
         // DAO: populate the parent invoices in bulk
         for (final Entry<UUID, List<InvoiceModelDao>> entry : parentInvoicesGroupedByParentAccountId.entrySet()) {
             final List<InvoiceModelDao> parentInvoicesForOneParentAccountId = entry.getValue();
-            final Long parentAccountRecordId = internalCallContextFactory.getRecordIdFromObject(entry.getKey(), ObjectType.ACCOUNT, internalCallContextFactory.createTenantContext(childContext));
+            final Long parentAccountRecordId = parentAccountRecordIds.get(entry.getKey());
             final InternalTenantContext parentContext = internalCallContextFactory.createInternalTenantContext(childContext.getTenantRecordId(), parentAccountRecordId);
             // Note the misnomer here, populateChildren simply populates the content of these invoices (unrelated to HA)
             populateChildren(parentInvoicesForOneParentAccountId, invoicesTags, entitySqlDaoWrapperFactory, parentContext);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Per-subscription watermark written after a successful invoice run: the subscription does not need to be
+ * re-invoiced for target dates strictly before {@code billedThroughDate} (or any date when null), as long as its billing
+ * events and invoice items still match {@code fingerprint}.
+ */
+public class InvoiceSubscriptionWatermarkModelDao {
+
+    private Long recordId;
+    private UUID subscriptionId;
+    private LocalDate billedThroughDate;
+    private String fingerprint;
+    private DateTime createdDate;
+    private Long accountRecordId;
+    private Long tenantRecordId;
+
+    public InvoiceSubscriptionWatermarkModelDao() { /* For the DAO mapper */ }
+
+    public InvoiceSubscriptionWatermarkModelDao(final UUID subscriptionId, @Nullable final LocalDate billedThroughDate, final String fingerprint, final DateTime createdDate) {
+        this.subscriptionId = subscriptionId;
+        this.billedThroughDate = billedThroughDate;
+        this.fingerprint = fingerprint;
+        this.createdDate = createdDate;
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public LocalDate getBilledThroughDate() {
+        return billedThroughDate;
+    }
+
+    public void setBilledThroughDate(final LocalDate billedThroughDate) {
+        this.billedThroughDate = billedThroughDate;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(final String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(final DateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public void setAccountRecordId(final Long accountRecordId) {
+        this.accountRecordId = accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    public void setTenantRecordId(final Long tenantRecordId) {
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvoiceSubscriptionWatermarkModelDao)) {
+            return false;
+        }
+        final InvoiceSubscriptionWatermarkModelDao that = (InvoiceSubscriptionWatermarkModelDao) o;
+        return Objects.equals(subscriptionId, that.subscriptionId) &&
+               Objects.equals(billedThroughDate, that.billedThroughDate) &&
+               Objects.equals(fingerprint, that.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(subscriptionId, billedThroughDate, fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return "InvoiceSubscriptionWatermarkModelDao{" +
+               "subscriptionId=" + subscriptionId +
+               ", billedThroughDate=" + billedThroughDate +
+               ", fingerprint='" + fingerprint + '\'' +
+               '}';
+    }
+}
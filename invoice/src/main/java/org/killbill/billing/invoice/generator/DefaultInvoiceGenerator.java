@@ -20,7 +20,9 @@ package org.killbill.billing.invoice.generator;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -39,6 +41,7 @@ import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoiceStatus;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
 import org.killbill.billing.invoice.generator.InvoiceItemGenerator.InvoiceGeneratorResult;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
 import org.killbill.billing.invoice.model.DefaultInvoice;
@@ -106,9 +109,17 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
                     .findFirst().ifPresent(input -> invoice.addInvoiceItems(input.getInvoiceItems()));
         }
 
+        // Must be computed before the next recurring dates get filtered by InvoiceWithMetadata
+        final Map<UUID, LocalDate> perSubscriptionNextRecurringDate = new HashMap<>();
+        for (final Entry<UUID, SubscriptionFutureNotificationDates> entry : perSubscriptionFutureNotificationDates.entrySet()) {
+            perSubscriptionNextRecurringDate.put(entry.getKey(), entry.getValue().getNextRecurringDate());
+        }
+        final List<InvoiceSubscriptionWatermarkModelDao> subscriptionWatermarks = existingInvoices.computeSubscriptionWatermarks(events, invoice, adjustedTargetDate, perSubscriptionNextRecurringDate, context);
+
         return new InvoiceWithMetadata(invoice,
                                        usageItemsWithTrackingIds.getTrackingIds(),
                                        perSubscriptionFutureNotificationDates,
+                                       subscriptionWatermarks,
                                        config.isUsageZeroAmountDisabled(context),
                                        context);
     }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceItemGeneratorExecutor.PerSubscriptionTask;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
 import org.killbill.billing.invoice.model.InvalidDateSequenceException;
@@ -78,10 +80,12 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
     private static final Logger log = LoggerFactory.getLogger(FixedAndRecurringInvoiceItemGenerator.class);
 
     private final InvoiceConfig config;
+    private final InvoiceItemGeneratorExecutor executor;
 
     @Inject
-    public FixedAndRecurringInvoiceItemGenerator(final InvoiceConfig config, final Clock clock) {
+    public FixedAndRecurringInvoiceItemGenerator(final InvoiceConfig config, final Clock clock, final InvoiceItemGeneratorExecutor executor) {
         this.config = config;
+        this.executor = executor;
     }
 
     public InvoiceGeneratorResult generateItems(final ImmutableAccountData account, final UUID invoiceId, final BillingEventSet eventSet,
@@ -94,7 +98,12 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
 
         final InvoicePruner invoicePruner = new InvoicePruner(existingInvoices);
         final Set<UUID> toBeIgnored = invoicePruner.getFullyRepairedItemsClosure();
-        final AccountItemTree accountItemTree = new AccountItemTree(account.getId(), invoiceId);
+        // Subscriptions unchanged since their last watermark would not generate anything new
+        final Set<UUID> unchangedSubscriptionIds = existingInvoices.getUnchangedSubscriptionIds(eventSet, targetDate, internalCallContext);
+        if (!unchangedSubscriptionIds.isEmpty()) {
+            toBeIgnored.addAll(getItemIdsForSubscriptions(existingInvoices.getInvoices(), unchangedSubscriptionIds));
+        }
+        final AccountItemTree accountItemTree = new AccountItemTree(account.getId(), invoiceId, config.isArrayBackedItemTreeEnabled(internalCallContext));
         for (final Invoice invoice : existingInvoices.getInvoices()) {
             for (final InvoiceItem item : invoice.getInvoiceItems()) {
                 if (toBeIgnored.contains(item.getId())) {
@@ -112,28 +121,37 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
         }
 
         // Generate list of proposed invoice items based on billing events from junction-- proposed items are ALL items since beginning of time
+        final boolean isParallel = executor.isEnabled(internalCallContext);
         final List<InvoiceItem> proposedItems = new ArrayList<>();
-        processRecurringBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate, internalCallContext);
-        processFixedBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems, internalCallContext);
+        if (isParallel) {
+            processRecurringBillingEventsInParallel(invoiceId, account.getId(), eventSet, unchangedSubscriptionIds, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate, internalCallContext);
+        } else {
+            processRecurringBillingEvents(invoiceId, account.getId(), eventSet, unchangedSubscriptionIds, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate, internalCallContext);
+        }
+        processFixedBillingEvents(invoiceId, account.getId(), eventSet, unchangedSubscriptionIds, targetDate, targetCurrency, proposedItems, internalCallContext);
 
 
         existingInvoices.filterProposedItems(proposedItems, eventSet, internalCallContext);
 
         try {
-            accountItemTree.mergeWithProposedItems(proposedItems);
+            if (isParallel) {
+                accountItemTree.mergeWithProposedItems(proposedItems, executor);
+            } else {
+                accountItemTree.mergeWithProposedItems(proposedItems);
+            }
         } catch (final IllegalStateException e) {
             // Proposed items have already been logged
             throw new InvoiceApiException(e, ErrorCode.UNEXPECTED_ERROR, String.format("ILLEGAL INVOICING STATE accountItemTree=%s", accountItemTree.toString()));
         }
 
-        final List<InvoiceItem> resultingItems = accountItemTree.getResultingItemList();
+        final List<InvoiceItem> resultingItems = isParallel ? accountItemTree.getResultingItemList(executor) : accountItemTree.getResultingItemList();
         safetyBounds(resultingItems, createdItemsPerDayPerSubscription, internalCallContext);
 
         return new InvoiceGeneratorResult(resultingItems, Collections.emptySet());
     }
 
     private void processRecurringBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events,
-                                               final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
+                                               final Set<UUID> unchangedSubscriptionIds, final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
                                                final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
                                                final InternalCallContext internalCallContext) throws InvoiceApiException {
         if (events.isEmpty()) {
@@ -149,22 +167,108 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
             final BillingEvent thisEvent = nextEvent;
             nextEvent = eventIt.next();
             if (!events.getSubscriptionIdsWithAutoInvoiceOff().
-                    contains(thisEvent.getSubscriptionId())) { // don't consider events for subscriptions that have auto_invoice_off
+                    contains(thisEvent.getSubscriptionId()) && // don't consider events for subscriptions that have auto_invoice_off
+                !unchangedSubscriptionIds.contains(thisEvent.getSubscriptionId())) {
                 final BillingEvent adjustedNextEvent = (thisEvent.getSubscriptionId() == nextEvent.getSubscriptionId()) ? nextEvent : null;
                 final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, thisEvent, adjustedNextEvent, targetDate, currency, invoiceItemGeneratorLogger, perSubscriptionFutureNotificationDate, internalCallContext);
                 proposedItems.addAll(newProposedItems);
             }
         }
-        final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, nextEvent, null, targetDate, currency, invoiceItemGeneratorLogger, perSubscriptionFutureNotificationDate, internalCallContext);
+        if (!unchangedSubscriptionIds.contains(nextEvent.getSubscriptionId())) {
+            final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, nextEvent, null, targetDate, currency, invoiceItemGeneratorLogger, perSubscriptionFutureNotificationDate, internalCallContext);
+            proposedItems.addAll(newProposedItems);
+        }
+
+        invoiceItemGeneratorLogger.logItems();
+    }
+
+    // Same as processRecurringBillingEvents, with the events of each subscription processed in parallel (results are merged in the original order)
+    private void processRecurringBillingEventsInParallel(final UUID invoiceId, final UUID accountId, final BillingEventSet events,
+                                                         final Set<UUID> unchangedSubscriptionIds, final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
+                                                         final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
+                                                         final InternalCallContext internalCallContext) throws InvoiceApiException {
+        if (events.isEmpty()) {
+            return;
+        }
 
-        proposedItems.addAll(newProposedItems);
+        // Pretty-print the generated invoice items from the junction events
+        final InvoiceItemGeneratorLogger invoiceItemGeneratorLogger = new InvoiceItemGeneratorLogger(invoiceId, accountId, "recurring", log);
+
+        // Billing events are ordered by subscription
+        final List<List<BillingEvent>> perSubscriptionEvents = new ArrayList<>();
+        List<BillingEvent> curSubscriptionEvents = null;
+        for (final BillingEvent event : events) {
+            if (curSubscriptionEvents == null || !curSubscriptionEvents.get(0).getSubscriptionId().equals(event.getSubscriptionId())) {
+                curSubscriptionEvents = new ArrayList<>();
+                perSubscriptionEvents.add(curSubscriptionEvents);
+            }
+            curSubscriptionEvents.add(event);
+        }
+
+        final List<PerSubscriptionTask<RecurringItemsResult>> tasks = new ArrayList<>(perSubscriptionEvents.size());
+        for (int i = 0; i < perSubscriptionEvents.size(); i++) {
+            final List<BillingEvent> subscriptionEvents = perSubscriptionEvents.get(i);
+            final boolean isLastSubscription = i == perSubscriptionEvents.size() - 1;
+            final UUID subscriptionId = subscriptionEvents.get(0).getSubscriptionId();
+            if (unchangedSubscriptionIds.contains(subscriptionId)) {
+                continue;
+            }
+            // Each task only sees (and updates) the notification dates of its own subscription
+            final Map<UUID, SubscriptionFutureNotificationDates> subscriptionFutureNotificationDate = new HashMap<>();
+            if (perSubscriptionFutureNotificationDate.get(subscriptionId) != null) {
+                subscriptionFutureNotificationDate.put(subscriptionId, perSubscriptionFutureNotificationDate.get(subscriptionId));
+            }
+            tasks.add(() -> {
+                final InvoiceItemGeneratorLogger subscriptionLogger = new InvoiceItemGeneratorLogger(invoiceId, accountId, "recurring", log);
+                final List<InvoiceItem> subscriptionProposedItems = new ArrayList<>();
+                for (int j = 0; j < subscriptionEvents.size(); j++) {
+                    final BillingEvent thisEvent = subscriptionEvents.get(j);
+                    final boolean isLastEvent = j == subscriptionEvents.size() - 1;
+                    // Mimic processRecurringBillingEvents: the very last event is always processed
+                    if (!(isLastSubscription && isLastEvent) &&
+                        events.getSubscriptionIdsWithAutoInvoiceOff().contains(thisEvent.getSubscriptionId())) {
+                        continue;
+                    }
+                    final BillingEvent nextEvent = isLastEvent ? null : subscriptionEvents.get(j + 1);
+                    final BillingEvent adjustedNextEvent = (nextEvent != null && thisEvent.getSubscriptionId() == nextEvent.getSubscriptionId()) ? nextEvent : null;
+                    subscriptionProposedItems.addAll(processRecurringEvent(invoiceId, accountId, thisEvent, adjustedNextEvent, targetDate, currency, subscriptionLogger, subscriptionFutureNotificationDate, internalCallContext));
+                }
+                return new RecurringItemsResult(subscriptionProposedItems, subscriptionFutureNotificationDate, subscriptionLogger);
+            });
+        }
+
+        for (final RecurringItemsResult result : executor.invokeAll(tasks)) {
+            proposedItems.addAll(result.proposedItems);
+            perSubscriptionFutureNotificationDate.putAll(result.perSubscriptionFutureNotificationDate);
+            invoiceItemGeneratorLogger.append(result.invoiceItemGeneratorLogger);
+        }
 
         invoiceItemGeneratorLogger.logItems();
     }
 
+    private static final class RecurringItemsResult {
+
+        private final List<InvoiceItem> proposedItems;
+        private final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate;
+        private final InvoiceItemGeneratorLogger invoiceItemGeneratorLogger;
+
+        private RecurringItemsResult(final List<InvoiceItem> proposedItems,
+                                     final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
+                                     final InvoiceItemGeneratorLogger invoiceItemGeneratorLogger) {
+            this.proposedItems = proposedItems;
+            this.perSubscriptionFutureNotificationDate = perSubscriptionFutureNotificationDate;
+            this.invoiceItemGeneratorLogger = invoiceItemGeneratorLogger;
+        }
+    }
+
     @VisibleForTesting
     void processFixedBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final LocalDate targetDate,
                                    final Currency currency, final List<InvoiceItem> proposedItems, final InternalCallContext internalCallContext) throws InvoiceApiException {
+        processFixedBillingEvents(invoiceId, accountId, events, Collections.emptySet(), targetDate, currency, proposedItems, internalCallContext);
+    }
+
+    private void processFixedBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final Set<UUID> unchangedSubscriptionIds, final LocalDate targetDate,
+                                           final Currency currency, final List<InvoiceItem> proposedItems, final InternalCallContext internalCallContext) throws InvoiceApiException {
         if (events.isEmpty()) {
             return;
         }
@@ -177,7 +281,8 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
         final Iterator<BillingEvent> eventIt = events.iterator();
         while (eventIt.hasNext()) {
             final BillingEvent thisEvent = eventIt.next();
-            if (thisEvent.getTransitionType() == BCD_CHANGE) {
+            if (thisEvent.getTransitionType() == BCD_CHANGE ||
+                unchangedSubscriptionIds.contains(thisEvent.getSubscriptionId())) {
                 continue;
             }
 
@@ -195,6 +300,29 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
         invoiceItemGeneratorLogger.logItems();
     }
 
+    // Existing items of the specified subscriptions, including the adjustments pointing to them
+    private static Set<UUID> getItemIdsForSubscriptions(final Iterable<Invoice> invoices, final Set<UUID> subscriptionIds) {
+        final Set<UUID> itemIds = new HashSet<>();
+        final List<InvoiceItem> linkedItems = new ArrayList<>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                if (item.getSubscriptionId() != null) {
+                    if (subscriptionIds.contains(item.getSubscriptionId())) {
+                        itemIds.add(item.getId());
+                    }
+                } else if (item.getLinkedItemId() != null) {
+                    linkedItems.add(item);
+                }
+            }
+        }
+        for (final InvoiceItem item : linkedItems) {
+            if (itemIds.contains(item.getLinkedItemId())) {
+                itemIds.add(item.getId());
+            }
+        }
+        return itemIds;
+    }
+
     @VisibleForTesting
     boolean isSameDayAndSameSubscription(final InvoiceItem prevComputedFixedItem, final BillingEvent currentBillingEvent, final InternalCallContext internalCallContext) {
 
@@ -101,20 +101,31 @@ public abstract class InvoiceItemGenerator {
             }
         }
 
+        // Used to merge the output of the loggers of the tasks generating items in parallel
+        public void append(final InvoiceItemGeneratorLogger other) {
+            if (!enabled || other.logStringBuilder == null) {
+                return;
+            }
+
+            getLogStringBuilder().append(other.logStringBuilder);
+        }
+
         public void logItems() {
             if (enabled && logStringBuilder != null) {
-                delegate.debug(getLogStringBuilder().toString());
+                delegate.debug(new StringBuilder("Proposed ").append(type)
+                                                             .append(" items for invoiceId='")
+                                                             .append(invoiceId)
+                                                             .append("', accountId='")
+                                                             .append(accountId)
+                                                             .append("'")
+                                                             .append(logStringBuilder)
+                                                             .toString());
             }
         }
 
         private StringBuilder getLogStringBuilder() {
             if (logStringBuilder == null) {
-                logStringBuilder = new StringBuilder("Proposed ").append(type)
-                                                                 .append(" items for invoiceId='")
-                                                                 .append(invoiceId)
-                                                                 .append("', accountId='")
-                                                                 .append(accountId)
-                                                                 .append("'");
+                logStringBuilder = new StringBuilder();
             }
 
             return logStringBuilder;
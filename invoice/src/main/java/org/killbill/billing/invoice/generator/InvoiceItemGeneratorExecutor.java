@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
+
+/**
+ * Bounded fork-join pool used to generate (and merge) the invoice items of the subscriptions of an account in parallel
+ * (see {@code org.killbill.invoice.parallel.enabled}).
+ * <p>
+ * Results are always returned in the order of the submitted tasks, so that callers can merge them exactly like the sequential code would.
+ */
+public class InvoiceItemGeneratorExecutor {
+
+    private final InvoiceConfig config;
+
+    private volatile ForkJoinPool forkJoinPool;
+
+    @Inject
+    public InvoiceItemGeneratorExecutor(final InvoiceConfig config) {
+        this.config = config;
+    }
+
+    public boolean isEnabled(final InternalTenantContext context) {
+        return config.isParallelItemGenerationEnabled(context);
+    }
+
+    public <T> List<T> invokeAll(final List<PerSubscriptionTask<T>> tasks) throws InvoiceApiException {
+        final List<ForkJoinTask<TaskResult<T>>> submittedTasks = new ArrayList<>(tasks.size());
+        for (final PerSubscriptionTask<T> task : tasks) {
+            // Failures are returned (not thrown) so that the original exception is re-thrown as is in the calling thread
+            submittedTasks.add(getForkJoinPool().submit(() -> {
+                try {
+                    return new TaskResult<T>(task.call(), null);
+                } catch (final InvoiceApiException | RuntimeException | Error e) {
+                    return new TaskResult<T>(null, e);
+                }
+            }));
+        }
+
+        final List<T> results = new ArrayList<>(tasks.size());
+        Throwable failure = null;
+        for (final ForkJoinTask<TaskResult<T>> submittedTask : submittedTasks) {
+            // Wait for all tasks, even on failure, to not leave any task running in the background
+            final TaskResult<T> taskResult = submittedTask.join();
+            if (failure == null && taskResult.failure != null) {
+                failure = taskResult.failure;
+            }
+            results.add(taskResult.result);
+        }
+
+        if (failure instanceof InvoiceApiException) {
+            throw (InvoiceApiException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return results;
+    }
+
+    public void runAll(final List<Runnable> tasks) {
+        final List<PerSubscriptionTask<Void>> callables = new ArrayList<>(tasks.size());
+        for (final Runnable task : tasks) {
+            callables.add(() -> {
+                task.run();
+                return null;
+            });
+        }
+        try {
+            invokeAll(callables);
+        } catch (final InvoiceApiException e) {
+            // Runnables can't throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ForkJoinPool getForkJoinPool() {
+        if (forkJoinPool == null) {
+            synchronized (this) {
+                if (forkJoinPool == null) {
+                    // Worker threads are daemon threads: the pool doesn't need to be shutdown
+                    forkJoinPool = new ForkJoinPool(config.getParallelItemGenerationThreadNb(),
+                                                    pool -> {
+                                                        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                                                        thread.setName("invoice-item-generator-" + thread.getPoolIndex());
+                                                        return thread;
+                                                    },
+                                                    null,
+                                                    false);
+                }
+            }
+        }
+        return forkJoinPool;
+    }
+
+    public interface PerSubscriptionTask<T> {
+
+        T call() throws InvoiceApiException;
+    }
+
+    private static final class TaskResult<T> {
+
+        private final T result;
+        private final Throwable failure;
+
+        private TaskResult(final T result, final Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+        }
+    }
+}
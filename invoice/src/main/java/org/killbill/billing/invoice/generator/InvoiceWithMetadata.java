@@ -40,6 +40,7 @@ import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoiceStatus;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
 import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.commons.utils.collect.Iterables;
 
@@ -50,6 +51,7 @@ public class InvoiceWithMetadata {
     private DefaultInvoice invoice;
     private final Set<TrackingRecordId> trackingIds;
     private final Map<DateTime, List<UUID>> chargedThroughDates;
+    private final List<InvoiceSubscriptionWatermarkModelDao> subscriptionWatermarks;
     private final boolean filterZeroUsageItems;
 
     public InvoiceWithMetadata(final DefaultInvoice originalInvoice,
@@ -57,6 +59,16 @@ public class InvoiceWithMetadata {
                                final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDates,
                                final boolean filterZeroUsageItems,
                                final InternalCallContext context) {
+        this(originalInvoice, trackingIds, perSubscriptionFutureNotificationDates, Collections.emptyList(), filterZeroUsageItems, context);
+    }
+
+    public InvoiceWithMetadata(final DefaultInvoice originalInvoice,
+                               final Set<TrackingRecordId> trackingIds,
+                               final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDates,
+                               final List<InvoiceSubscriptionWatermarkModelDao> subscriptionWatermarks,
+                               final boolean filterZeroUsageItems,
+                               final InternalCallContext context) {
+        this.subscriptionWatermarks = subscriptionWatermarks;
         this.filterZeroUsageItems = filterZeroUsageItems;
         this.invoice = originalInvoice;
         this.chargedThroughDates = computeChargedThroughDates(originalInvoice, context);
@@ -178,6 +190,10 @@ public class InvoiceWithMetadata {
         return chargedThroughDates;
     }
 
+    public List<InvoiceSubscriptionWatermarkModelDao> getSubscriptionWatermarks() {
+        return subscriptionWatermarks;
+    }
+
     public static class TrackingRecordId {
 
         private final String trackingId;
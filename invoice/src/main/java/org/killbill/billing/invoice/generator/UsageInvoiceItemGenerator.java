@@ -17,9 +17,11 @@
 
 package org.killbill.billing.invoice.generator;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -46,6 +48,7 @@ import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceItemGeneratorExecutor.PerSubscriptionTask;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.TrackingRecordId;
 import org.killbill.billing.invoice.optimizer.InvoiceOptimizerBase.AccountInvoices;
@@ -70,11 +73,13 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
 
     private final RawUsageOptimizer rawUsageOptimizer;
     private final InvoiceConfig invoiceConfig;
+    private final InvoiceItemGeneratorExecutor executor;
 
     @Inject
-    public UsageInvoiceItemGenerator(final RawUsageOptimizer rawUsageOptimizer, final InvoiceConfig invoiceConfig) {
+    public UsageInvoiceItemGenerator(final RawUsageOptimizer rawUsageOptimizer, final InvoiceConfig invoiceConfig, final InvoiceItemGeneratorExecutor executor) {
         this.rawUsageOptimizer = rawUsageOptimizer;
         this.invoiceConfig = invoiceConfig;
+        this.executor = executor;
     }
 
 
@@ -101,68 +106,97 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
 
             final boolean isDryRun = dryRunInfo != null;
             RawUsageOptimizerResult rawUsgRes = null;
-            List<BillingEvent> curEvents = new ArrayList<>();
-            UUID curSubscriptionId = null;
-            while (events.hasNext()) {
-                final BillingEvent event = events.next();
-                // Skip events that are posterior to the targetDate
-                final LocalDate eventLocalEffectiveDate = internalCallContext.toLocalDate(event.getEffectiveDate());
-                if (eventLocalEffectiveDate.isAfter(targetDate)) {
-                    continue;
-                }
+            try {
+                final List<List<BillingEvent>> perSubscriptionEvents = new ArrayList<>();
+                List<BillingEvent> curEvents = null;
+                UUID curSubscriptionId = null;
+                while (events.hasNext()) {
+                    final BillingEvent event = events.next();
+                    // Skip events that are posterior to the targetDate
+                    final LocalDate eventLocalEffectiveDate = internalCallContext.toLocalDate(event.getEffectiveDate());
+                    if (eventLocalEffectiveDate.isAfter(targetDate)) {
+                        continue;
+                    }
+
+                    // Optimize to do the usage query only once after we know there are indeed some usage items
+                    if (rawUsgRes == null && event.getUsages().stream().anyMatch(input -> input.getBillingMode() == BillingMode.IN_ARREAR)) {
+                        final Iterable<InvoiceItem> existingUsageItems = perSubscriptionInArrearUsageItems.values().stream()
+                                .flatMap(Collection::stream)
+                                .collect(Collectors.toUnmodifiableList());
+
+                        rawUsgRes = rawUsageOptimizer.getInArrearUsage(minBillingEventDate, targetDate, existingUsageItems, eventSet.getUsages(), eventSet, dryRunInfo, internalCallContext);
+
+                        // Check existingInvoices#cutoffDate <= rawUsgRes#rawUsageStartDate + 1 P, where P = max{all Periods available} (e.g MONTHLY)
+                        // To make it simpler we check existingInvoices#cutoffDate <= rawUsgRes#rawUsageStartDate, and warn if this is not the case
+                        // (this mean we push folks to configure their system in such a way that we read (existing invoices) a bit too much as
+                        // opposed to not enough, leading to double invoicing.
+                        //
+                        // Ask Kill Bill team for an optimal configuration based on your use case ;-)
+                        if (existingInvoices.getCutoffDate() != null && existingInvoices.getCutoffDate().toDateTimeAtStartOfDay(DateTimeZone.UTC).compareTo(rawUsgRes.getRawUsageStartDate()) > 0) {
+                            log.warn("Detected an invoice cuttOff date={}, and usage optimized start date= {} that could lead to some issues", existingInvoices.getCutoffDate(), rawUsgRes.getRawUsageStartDate());
+                        }
 
-                // Optimize to do the usage query only once after we know there are indeed some usage items
-                if (rawUsgRes == null && event.getUsages().stream().anyMatch(input -> input.getBillingMode() == BillingMode.IN_ARREAR)) {
-                    final Iterable<InvoiceItem> existingUsageItems = perSubscriptionInArrearUsageItems.values().stream()
-                            .flatMap(Collection::stream)
-                            .collect(Collectors.toUnmodifiableList());
-
-                    rawUsgRes = rawUsageOptimizer.getInArrearUsage(minBillingEventDate, targetDate, existingUsageItems, eventSet.getUsages(), dryRunInfo, internalCallContext);
-
-                    // Check existingInvoices#cutoffDate <= rawUsgRes#rawUsageStartDate + 1 P, where P = max{all Periods available} (e.g MONTHLY)
-                    // To make it simpler we check existingInvoices#cutoffDate <= rawUsgRes#rawUsageStartDate, and warn if this is not the case
-                    // (this mean we push folks to configure their system in such a way that we read (existing invoices) a bit too much as
-                    // opposed to not enough, leading to double invoicing.
-                    //
-                    // Ask Kill Bill team for an optimal configuration based on your use case ;-)
-                    if (existingInvoices.getCutoffDate() != null && existingInvoices.getCutoffDate().toDateTimeAtStartOfDay(DateTimeZone.UTC).compareTo(rawUsgRes.getRawUsageStartDate()) > 0) {
-                        log.warn("Detected an invoice cuttOff date={}, and usage optimized start date= {} that could lead to some issues", existingInvoices.getCutoffDate(), rawUsgRes.getRawUsageStartDate());
                     }
 
-                }
+                    // None of the billing events report any usage IN_ARREAR sections
+                    if (rawUsgRes == null) {
+                        continue;
+                    }
 
-                // None of the billing events report any usage IN_ARREAR sections
-                if (rawUsgRes == null) {
-                    continue;
+                    final UUID subscriptionId = event.getSubscriptionId();
+                    if (curSubscriptionId == null || !curSubscriptionId.equals(subscriptionId)) {
+                        curEvents = new ArrayList<>();
+                        perSubscriptionEvents.add(curEvents);
+                    }
+                    curSubscriptionId = subscriptionId;
+                    curEvents.add(event);
                 }
 
+                if (rawUsgRes != null && rawUsgRes.isStreamed()) {
+                    // Consume the usage stream in order (billing events are ordered by UUID#compareTo, which differs from the string ordering)
+                    perSubscriptionEvents.sort(Comparator.comparing(input -> input.get(0).getSubscriptionId().toString()));
+                }
 
+                final List<SubscriptionUsageInArrearItemsAndNextNotificationDate> subscriptionResults;
+                final List<InvoiceItemGeneratorLogger> subscriptionLoggers;
+                // The raw usage stream can only be consumed sequentially
+                if (rawUsgRes != null && !rawUsgRes.isStreamed() && perSubscriptionEvents.size() > 1 && executor.isEnabled(internalCallContext)) {
+                    final RawUsageOptimizerResult finalRawUsgRes = rawUsgRes;
+                    subscriptionLoggers = new ArrayList<>(perSubscriptionEvents.size());
+                    final List<PerSubscriptionTask<SubscriptionUsageInArrearItemsAndNextNotificationDate>> tasks = new ArrayList<>(perSubscriptionEvents.size());
+                    for (final List<BillingEvent> subscriptionEvents : perSubscriptionEvents) {
+                        final InvoiceItemGeneratorLogger subscriptionLogger = new InvoiceItemGeneratorLogger(invoiceId, account.getId(), "usage", log);
+                        subscriptionLoggers.add(subscriptionLogger);
+                        tasks.add(() -> {
+                            try {
+                                return computeMissingUsageInvoiceItems(account, invoiceId, subscriptionEvents, finalRawUsgRes, perSubscriptionInArrearUsageItems, targetDate, usageDetailMode, subscriptionLogger, isDryRun, internalCallContext);
+                            } catch (final CatalogApiException e) {
+                                throw new InvoiceApiException(e);
+                            }
+                        });
+                    }
+                    subscriptionResults = executor.invokeAll(tasks);
+                } else {
+                    subscriptionLoggers = null;
+                    subscriptionResults = new ArrayList<>(perSubscriptionEvents.size());
+                    for (final List<BillingEvent> subscriptionEvents : perSubscriptionEvents) {
+                        subscriptionResults.add(computeMissingUsageInvoiceItems(account, invoiceId, subscriptionEvents, rawUsgRes, perSubscriptionInArrearUsageItems, targetDate, usageDetailMode, invoiceItemGeneratorLogger, isDryRun, internalCallContext));
+                    }
+                }
 
-                final UUID subscriptionId = event.getSubscriptionId();
-                if (curSubscriptionId != null && !curSubscriptionId.equals(subscriptionId)) {
-                    final SubscriptionUsageInArrear subscriptionUsageInArrear = new SubscriptionUsageInArrear(account.getId(), invoiceId, curEvents, rawUsgRes.getRawUsage(), rawUsgRes.getExistingTrackingIds(), targetDate, rawUsgRes.getRawUsageStartDate(), usageDetailMode, invoiceConfig, internalCallContext);
-                    final List<InvoiceItem> usageInArrearItems = perSubscriptionInArrearUsageItems.get(curSubscriptionId);
-
-                    final SubscriptionUsageInArrearItemsAndNextNotificationDate subscriptionResult = subscriptionUsageInArrear.computeMissingUsageInvoiceItems(usageInArrearItems != null ? usageInArrearItems : Collections.emptyList(), invoiceItemGeneratorLogger, isDryRun);
+                for (int i = 0; i < perSubscriptionEvents.size(); i++) {
+                    final UUID subscriptionId = perSubscriptionEvents.get(i).get(0).getSubscriptionId();
+                    final SubscriptionUsageInArrearItemsAndNextNotificationDate subscriptionResult = subscriptionResults.get(i);
                     final List<InvoiceItem> newInArrearUsageItems = subscriptionResult.getInvoiceItems();
                     items.addAll(newInArrearUsageItems);
                     trackingIds.addAll(subscriptionResult.getTrackingIds());
-
-                    updatePerSubscriptionNextNotificationUsageDate(curSubscriptionId, subscriptionResult.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
-                    curEvents = new ArrayList<>();
+                    updatePerSubscriptionNextNotificationUsageDate(subscriptionId, subscriptionResult.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
+                    if (subscriptionLoggers != null) {
+                        invoiceItemGeneratorLogger.append(subscriptionLoggers.get(i));
+                    }
                 }
-                curSubscriptionId = subscriptionId;
-                curEvents.add(event);
-            }
-            if (curSubscriptionId != null) {
-                final SubscriptionUsageInArrear subscriptionUsageInArrear = new SubscriptionUsageInArrear(account.getId(), invoiceId, curEvents, rawUsgRes.getRawUsage(), rawUsgRes.getExistingTrackingIds(), targetDate, rawUsgRes.getRawUsageStartDate(), usageDetailMode, invoiceConfig, internalCallContext);
-                final List<InvoiceItem> usageInArrearItems = perSubscriptionInArrearUsageItems.get(curSubscriptionId);
-
-                final SubscriptionUsageInArrearItemsAndNextNotificationDate subscriptionResult = subscriptionUsageInArrear.computeMissingUsageInvoiceItems(usageInArrearItems != null ? usageInArrearItems : Collections.emptyList(), invoiceItemGeneratorLogger, isDryRun);
-                final List<InvoiceItem> newInArrearUsageItems = subscriptionResult.getInvoiceItems();
-                items.addAll(newInArrearUsageItems);
-                trackingIds.addAll(subscriptionResult.getTrackingIds());
-                updatePerSubscriptionNextNotificationUsageDate(curSubscriptionId, subscriptionResult.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
+            } finally {
+                closeQuietly(rawUsgRes);
             }
             invoiceItemGeneratorLogger.logItems();
 
@@ -172,6 +206,33 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
         }
     }
 
+    private SubscriptionUsageInArrearItemsAndNextNotificationDate computeMissingUsageInvoiceItems(final ImmutableAccountData account,
+                                                                                                  final UUID invoiceId,
+                                                                                                  final List<BillingEvent> subscriptionEvents,
+                                                                                                  final RawUsageOptimizerResult rawUsgRes,
+                                                                                                  final Map<UUID, List<InvoiceItem>> perSubscriptionInArrearUsageItems,
+                                                                                                  final LocalDate targetDate,
+                                                                                                  final UsageDetailMode usageDetailMode,
+                                                                                                  final InvoiceItemGeneratorLogger invoiceItemGeneratorLogger,
+                                                                                                  final boolean isDryRun,
+                                                                                                  final InternalCallContext internalCallContext) throws CatalogApiException, InvoiceApiException {
+        final UUID subscriptionId = subscriptionEvents.get(0).getSubscriptionId();
+        final SubscriptionUsageInArrear subscriptionUsageInArrear = new SubscriptionUsageInArrear(account.getId(), invoiceId, subscriptionEvents, rawUsgRes.getRawUsage(subscriptionId), rawUsgRes.getExistingTrackingIds(), targetDate, rawUsgRes.getRawUsageStartDate(), usageDetailMode, invoiceConfig, internalCallContext);
+        final List<InvoiceItem> usageInArrearItems = perSubscriptionInArrearUsageItems.get(subscriptionId);
+        return subscriptionUsageInArrear.computeMissingUsageInvoiceItems(usageInArrearItems != null ? usageInArrearItems : Collections.emptyList(), invoiceItemGeneratorLogger, isDryRun);
+    }
+
+    private void closeQuietly(@Nullable final RawUsageOptimizerResult rawUsgRes) {
+        if (rawUsgRes == null) {
+            return;
+        }
+        try {
+            rawUsgRes.close();
+        } catch (final IOException e) {
+            log.warn("Failed to close raw usage stream", e);
+        }
+    }
+
     private DateTime getMinBillingEventDate(final BillingEventSet eventSet, final InternalCallContext internalCallContext) {
         DateTime minDate = null;
         for (final BillingEvent cur : eventSet) {
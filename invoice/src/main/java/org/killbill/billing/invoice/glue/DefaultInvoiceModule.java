@@ -41,6 +41,7 @@ import org.killbill.billing.invoice.dao.InvoiceDaoHelper;
 import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
 import org.killbill.billing.invoice.generator.FixedAndRecurringInvoiceItemGenerator;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
+import org.killbill.billing.invoice.generator.InvoiceItemGeneratorExecutor;
 import org.killbill.billing.invoice.generator.UsageInvoiceItemGenerator;
 import org.killbill.billing.invoice.notification.DefaultNextBillingDateNotifier;
 import org.killbill.billing.invoice.notification.DefaultNextBillingDatePoster;
@@ -128,6 +129,7 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         bind(InvoiceGenerator.class).to(DefaultInvoiceGenerator.class).asEagerSingleton();
         bind(FixedAndRecurringInvoiceItemGenerator.class).asEagerSingleton();
         bind(UsageInvoiceItemGenerator.class).asEagerSingleton();
+        bind(InvoiceItemGeneratorExecutor.class).asEagerSingleton();
     }
 
     protected void installInvoicePluginApi() {
@@ -29,6 +29,7 @@ import org.joda.time.LocalDate;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.IndexedVersionedCatalog;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanPhase;
 import org.killbill.billing.catalog.api.StaticCatalog;
@@ -150,7 +151,11 @@ public class InvoiceItemFactory {
                     // Finding the right entry would require some expensive operations which are probably not worth it for this use case.
                     Plan plan = null;
                     final List<StaticCatalog> versions = catalog.getVersions();
-                    for (int i = versions.size() - 1; i >= 0; i--) {
+                    if (catalog instanceof IndexedVersionedCatalog) {
+                        final int versionIndex = ((IndexedVersionedCatalog) catalog).getLatestVersionIndexForPlan(planName, versions.size() - 1);
+                        plan = versionIndex >= 0 ? ((IndexedVersionedCatalog) catalog).findPlan(planName, versionIndex) : null;
+                    }
+                    for (int i = versions.size() - 1; plan == null && i >= 0; i--) {
                         final StaticCatalog curVersion = versions.get(i);
                         try {
                             plan = curVersion.findPlan(planName);
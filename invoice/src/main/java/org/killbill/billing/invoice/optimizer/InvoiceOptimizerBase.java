@@ -19,14 +19,20 @@ package org.killbill.billing.invoice.optimizer;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.dao.InvoiceDao;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
 import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
 import org.killbill.billing.util.config.definition.InvoiceConfig;
@@ -48,17 +54,27 @@ public abstract class InvoiceOptimizerBase implements InvoiceOptimizer {
         this.invoiceConfig = invoiceConfig;
     }
 
+    protected SubscriptionWatermarks getSubscriptionWatermarks(final InternalCallContext callContext) {
+        return invoiceConfig.isSubscriptionWatermarkEnabled(callContext) ? new SubscriptionWatermarks(invoiceDao.getSubscriptionWatermarks(callContext)) : null;
+    }
+
     public static class AccountInvoices {
 
         protected final LocalDate cutoffDate;
         protected final LocalDate beCutoffDate;
         protected final List<Invoice> invoices;
+        protected final SubscriptionWatermarks subscriptionWatermarks;
 
         @VisibleForTesting
         public AccountInvoices(final LocalDate cutoffDate, final LocalDate beCutoffDate, final List<Invoice> invoices) {
+            this(cutoffDate, beCutoffDate, invoices, null);
+        }
+
+        public AccountInvoices(final LocalDate cutoffDate, final LocalDate beCutoffDate, final List<Invoice> invoices, @Nullable final SubscriptionWatermarks subscriptionWatermarks) {
             this.cutoffDate = cutoffDate;
             this.invoices = invoices;
             this.beCutoffDate = beCutoffDate;
+            this.subscriptionWatermarks = subscriptionWatermarks;
         }
 
         public AccountInvoices() {
@@ -80,5 +96,18 @@ public abstract class InvoiceOptimizerBase implements InvoiceOptimizer {
         // Default noop
         public void filterProposedItems(final List<InvoiceItem> proposedItems, final BillingEventSet eventSet, final InternalCallContext internalCallContext) {
         }
+
+        // Subscriptions whose fixed and recurring items can be skipped (empty when the watermarks are disabled)
+        public Set<UUID> getUnchangedSubscriptionIds(final BillingEventSet eventSet, final LocalDate targetDate, final InternalTenantContext context) {
+            return subscriptionWatermarks != null ? subscriptionWatermarks.getUnchangedSubscriptionIds(eventSet, invoices, targetDate, context) : Collections.emptySet();
+        }
+
+        public List<InvoiceSubscriptionWatermarkModelDao> computeSubscriptionWatermarks(final BillingEventSet eventSet,
+                                                                                       @Nullable final Invoice newInvoice,
+                                                                                       final LocalDate targetDate,
+                                                                                       final Map<UUID, LocalDate> perSubscriptionNextRecurringDate,
+                                                                                       final InternalCallContext context) {
+            return subscriptionWatermarks != null ? subscriptionWatermarks.computeWatermarks(eventSet, invoices, newInvoice, targetDate, perSubscriptionNextRecurringDate, context) : Collections.emptyList();
+        }
     }
 }
@@ -18,15 +18,17 @@
 package org.killbill.billing.invoice.optimizer;
 
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
-import java.util.NavigableSet;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
@@ -84,7 +86,7 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
         for (final InvoiceModelDao invoiceModelDao : invoicesByAccount) {
             existingInvoices.add(new DefaultInvoice(invoiceModelDao));
         }
-        return new AccountInvoicesExp(cutoffDt, beCutoffDt, existingInvoices);
+        return new AccountInvoicesExp(cutoffDt, beCutoffDt, existingInvoices, getSubscriptionWatermarks(callContext));
     }
 
     @Override
@@ -107,6 +109,10 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
             super(cutoffDate, beCutoffDate, invoices);
         }
 
+        public AccountInvoicesExp(final LocalDate cutoffDate, final LocalDate beCutoffDate, final List<Invoice> invoices, @Nullable final SubscriptionWatermarks subscriptionWatermarks) {
+            super(cutoffDate, beCutoffDate, invoices, subscriptionWatermarks);
+        }
+
         public AccountInvoicesExp() {
             super();
         }
@@ -122,6 +128,8 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
                 final Map<String, BillingMode> billingModes = new HashMap<>();
                 // Comes from the PlanPhase
                 final Map<String, BillingPeriod> billingPeriods = new HashMap<>();
+                // Start dates of the existing RECURRING items, per subscription (built once instead of scanning all invoices for each proposed item)
+                final Map<UUID, Set<LocalDate>> existingRecurringStartDates = indexExistingRecurringStartDates();
                 final List<InvoiceItem> filtered = proposedItems.stream().filter(invoiceItem -> {
                     if (invoiceItem.getInvoiceItemType() == InvoiceItemType.FIXED) {
                         return invoiceItem.getStartDate().compareTo(cutoffDate) >= 0;
@@ -139,12 +147,11 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
                         // we could end up with the wrong billing event (and therefore billing mode). Therefore, the complexity.
                         // (all this because catalog is not available in this layer)
                         //
-                        final Iterator<BillingEvent> it = ((NavigableSet<BillingEvent>) eventSet).descendingIterator();
-                        while (it.hasNext()) {
-                            final BillingEvent be = it.next();
-                            if (!be.getSubscriptionId().equals(invoiceItem.getSubscriptionId()) /* wrong subscription ID */ ||
-                                    /* Not the correct plan */
-                                !(be.getPlan() != null && be.getPlan().getName().equals(invoiceItem.getPlanName())) ||
+                        final List<BillingEvent> subscriptionEvents = eventSet.getSubscriptionEvents(invoiceItem.getSubscriptionId());
+                        final ListIterator<BillingEvent> it = subscriptionEvents.listIterator(subscriptionEvents.size());
+                        while (it.hasPrevious()) {
+                            final BillingEvent be = it.previous();
+                            if (!(be.getPlan() != null && be.getPlan().getName().equals(invoiceItem.getPlanName())) /* Not the correct plan */ ||
                                     /* Whether in-advance or in-arrear (what we are trying to find out), the 'be' we want is the one where ii.endDate >= be.effDt */
                                 invoiceItem.getEndDate().compareTo(internalCallContext.toLocalDate(be.getEffectiveDate())) < 0) {
                                 continue;
@@ -162,19 +169,11 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
                         (billingMode == BillingMode.IN_ARREAR && invoiceItem.getEndDate().compareTo(cutoffDate) >= 0)) {
                         return true;
                     } else {
-                        for (final Invoice inv : invoices) {
-                            final boolean existingItemExists = inv.getInvoiceItems().stream()
-                                    // If we find a similar item in the 'existing' list, i.e same subscription, same start date,
-                                    // we keep it so it cancels out in the tree later.
-                                    // We don't include the end date to catch trailing pro-ration (early cancellation)
-                                    .anyMatch(item -> (item.getInvoiceItemType() == InvoiceItemType.RECURRING &&
-                                                       item.getSubscriptionId().equals(invoiceItem.getSubscriptionId()) &&
-                                                       item.getStartDate().compareTo(invoiceItem.getStartDate()) == 0));
-                            if (existingItemExists) {
-                                return true;
-                            }
-                        }
-                        return false;
+                        // If we find a similar item in the 'existing' list, i.e same subscription, same start date,
+                        // we keep it so it cancels out in the tree later.
+                        // We don't include the end date to catch trailing pro-ration (early cancellation)
+                        final Set<LocalDate> existingStartDates = existingRecurringStartDates.get(invoiceItem.getSubscriptionId());
+                        return existingStartDates != null && existingStartDates.contains(invoiceItem.getStartDate());
                     }
                 }).collect(Collectors.toUnmodifiableList());
 
@@ -182,5 +181,17 @@ public class InvoiceOptimizerExp extends InvoiceOptimizerBase {
                 proposedItems.addAll(filtered);
             }
         }
+
+        private Map<UUID, Set<LocalDate>> indexExistingRecurringStartDates() {
+            final Map<UUID, Set<LocalDate>> result = new HashMap<>();
+            for (final Invoice invoice : invoices) {
+                for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                    if (item.getInvoiceItemType() == InvoiceItemType.RECURRING && item.getSubscriptionId() != null) {
+                        result.computeIfAbsent(item.getSubscriptionId(), k -> new HashSet<>()).add(item.getStartDate());
+                    }
+                }
+            }
+            return result;
+        }
     }
 }
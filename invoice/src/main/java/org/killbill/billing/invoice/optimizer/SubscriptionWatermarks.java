@@ -0,0 +1,268 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.optimizer;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+
+/**
+ * Per-subscription billing watermarks of an account.
+ * <p>
+ * A watermark records, for a given subscription, the date up to which the last invoice run billed it (the next recurring date, or the
+ * next billing event if sooner), along with a fingerprint of its billing events and (fixed and recurring) invoice items. As long as
+ * the target date is before that date and the fingerprint is unchanged, generating the fixed and recurring items of the subscription
+ * again would not produce anything new, and it can be skipped.
+ * <p>
+ * The fingerprint makes the scheme safe regardless of the invalidation (subscription, blocking or adjustment events): any change to the
+ * inputs of the generation (new event, price override, blocking, adjustment, voided invoice, optimizer cutoff, ...) shows up in it.
+ * Subscriptions with usage sections are never skipped, as their items depend on usage records.
+ */
+public class SubscriptionWatermarks {
+
+    private static final Set<InvoiceItemType> FINGERPRINTED_ITEM_TYPES = Set.of(InvoiceItemType.FIXED,
+                                                                                InvoiceItemType.RECURRING,
+                                                                                InvoiceItemType.REPAIR_ADJ,
+                                                                                InvoiceItemType.ITEM_ADJ);
+
+    private final Map<UUID, InvoiceSubscriptionWatermarkModelDao> watermarks;
+
+    // The unchanged subscriptions are needed by both the generator and the watermark computation of the same run
+    private BillingEventSet lastEvents;
+    private LocalDate lastTargetDate;
+    private Set<UUID> lastUnchangedSubscriptionIds;
+
+    public SubscriptionWatermarks(final Iterable<InvoiceSubscriptionWatermarkModelDao> watermarks) {
+        this.watermarks = new HashMap<>();
+        for (final InvoiceSubscriptionWatermarkModelDao watermark : watermarks) {
+            this.watermarks.put(watermark.getSubscriptionId(), watermark);
+        }
+    }
+
+    /**
+     * @param events     the billing events of the account
+     * @param invoices   the existing invoices of the account
+     * @param targetDate the (adjusted) target date of the run
+     * @param context    the tenant context
+     * @return the subscriptions whose fixed and recurring items don't need to be generated again
+     */
+    public Set<UUID> getUnchangedSubscriptionIds(final BillingEventSet events, final Iterable<Invoice> invoices, final LocalDate targetDate, final InternalTenantContext context) {
+        if (events == lastEvents && targetDate.equals(lastTargetDate)) {
+            return lastUnchangedSubscriptionIds;
+        }
+
+        final Set<UUID> unchangedSubscriptionIds;
+        if (watermarks.isEmpty()) {
+            unchangedSubscriptionIds = Collections.emptySet();
+        } else {
+            unchangedSubscriptionIds = new HashSet<>();
+            final Map<UUID, List<BillingEvent>> perSubscriptionEvents = getEligibleEvents(events, context);
+            final Map<UUID, List<InvoiceItem>> perSubscriptionItems = getItemsPerSubscription(invoices, null);
+            for (final Map.Entry<UUID, List<BillingEvent>> entry : perSubscriptionEvents.entrySet()) {
+                final InvoiceSubscriptionWatermarkModelDao watermark = watermarks.get(entry.getKey());
+                if (watermark == null ||
+                    (watermark.getBilledThroughDate() != null && !targetDate.isBefore(watermark.getBilledThroughDate()))) {
+                    continue;
+                }
+
+                final String fingerprint = computeFingerprint(entry.getValue(), perSubscriptionItems.getOrDefault(entry.getKey(), Collections.emptyList()));
+                if (fingerprint.equals(watermark.getFingerprint())) {
+                    unchangedSubscriptionIds.add(entry.getKey());
+                }
+            }
+        }
+
+        lastEvents = events;
+        lastTargetDate = targetDate;
+        lastUnchangedSubscriptionIds = unchangedSubscriptionIds;
+        return unchangedSubscriptionIds;
+    }
+
+    /**
+     * @param events                           the billing events of the account
+     * @param invoices                         the existing invoices of the account
+     * @param newInvoice                       the invoice generated by the run, if any
+     * @param targetDate                       the (adjusted) target date of the run
+     * @param perSubscriptionNextRecurringDate the next recurring dates computed by the run (before they get filtered)
+     * @param context                          the call context
+     * @return the new watermarks of the subscriptions which were not skipped by the run
+     */
+    public List<InvoiceSubscriptionWatermarkModelDao> computeWatermarks(final BillingEventSet events,
+                                                                        final Iterable<Invoice> invoices,
+                                                                        @Nullable final Invoice newInvoice,
+                                                                        final LocalDate targetDate,
+                                                                        final Map<UUID, LocalDate> perSubscriptionNextRecurringDate,
+                                                                        final InternalCallContext context) {
+        final Set<UUID> unchangedSubscriptionIds = getUnchangedSubscriptionIds(events, invoices, targetDate, context);
+        final Map<UUID, List<BillingEvent>> perSubscriptionEvents = getEligibleEvents(events, context);
+        final Map<UUID, List<InvoiceItem>> perSubscriptionItems = getItemsPerSubscription(invoices, newInvoice);
+
+        final List<InvoiceSubscriptionWatermarkModelDao> result = new ArrayList<>();
+        for (final Map.Entry<UUID, List<BillingEvent>> entry : perSubscriptionEvents.entrySet()) {
+            if (unchangedSubscriptionIds.contains(entry.getKey())) {
+                continue;
+            }
+
+            LocalDate billedThroughDate = perSubscriptionNextRecurringDate.get(entry.getKey());
+            for (final BillingEvent event : entry.getValue()) {
+                final LocalDate eventDate = context.toLocalDate(event.getEffectiveDate());
+                if (eventDate.isAfter(targetDate)) {
+                    if (billedThroughDate == null || eventDate.isBefore(billedThroughDate)) {
+                        billedThroughDate = eventDate;
+                    }
+                    break;
+                }
+            }
+
+            final String fingerprint = computeFingerprint(entry.getValue(), perSubscriptionItems.getOrDefault(entry.getKey(), Collections.emptyList()));
+            result.add(new InvoiceSubscriptionWatermarkModelDao(entry.getKey(), billedThroughDate, fingerprint, context.getCreatedDate()));
+        }
+        return result;
+    }
+
+    // Events of the subscriptions which can be skipped (i.e. not AUTO_INVOICING_OFF and without usage), per subscription
+    private static Map<UUID, List<BillingEvent>> getEligibleEvents(final BillingEventSet events, final InternalTenantContext context) {
+        final Map<UUID, List<BillingEvent>> perSubscriptionEvents = new LinkedHashMap<>();
+        final Set<UUID> ineligibleSubscriptionIds = new HashSet<>(events.getSubscriptionIdsWithAutoInvoiceOff());
+        for (final BillingEvent event : events) {
+            if (ineligibleSubscriptionIds.contains(event.getSubscriptionId())) {
+                continue;
+            }
+            if (hasUsages(event)) {
+                ineligibleSubscriptionIds.add(event.getSubscriptionId());
+                perSubscriptionEvents.remove(event.getSubscriptionId());
+                continue;
+            }
+            perSubscriptionEvents.computeIfAbsent(event.getSubscriptionId(), k -> new ArrayList<>()).add(event);
+        }
+        return perSubscriptionEvents;
+    }
+
+    private static boolean hasUsages(final BillingEvent event) {
+        try {
+            return !event.getUsages().isEmpty();
+        } catch (final CatalogApiException e) {
+            // Be conservative
+            return true;
+        }
+    }
+
+    // Adjustments don't carry a subscription id, they are attached to the subscription of the item they point to
+    private static Map<UUID, List<InvoiceItem>> getItemsPerSubscription(final Iterable<Invoice> invoices, @Nullable final Invoice newInvoice) {
+        // Items of a re-used draft invoice may show up twice
+        final Map<UUID, InvoiceItem> itemsById = new LinkedHashMap<>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                itemsById.put(item.getId(), item);
+            }
+        }
+        if (newInvoice != null) {
+            for (final InvoiceItem item : newInvoice.getInvoiceItems()) {
+                itemsById.put(item.getId(), item);
+            }
+        }
+
+        final Map<UUID, List<InvoiceItem>> perSubscriptionItems = new HashMap<>();
+        for (final InvoiceItem item : itemsById.values()) {
+            if (!FINGERPRINTED_ITEM_TYPES.contains(item.getInvoiceItemType())) {
+                continue;
+            }
+
+            UUID subscriptionId = item.getSubscriptionId();
+            if (subscriptionId == null && item.getLinkedItemId() != null) {
+                final InvoiceItem linkedItem = itemsById.get(item.getLinkedItemId());
+                subscriptionId = linkedItem != null ? linkedItem.getSubscriptionId() : null;
+            }
+            if (subscriptionId != null) {
+                perSubscriptionItems.computeIfAbsent(subscriptionId, k -> new ArrayList<>()).add(item);
+            }
+        }
+        return perSubscriptionItems;
+    }
+
+    static String computeFingerprint(final Iterable<BillingEvent> subscriptionEvents, final List<InvoiceItem> subscriptionItems) {
+        final StringBuilder tmp = new StringBuilder();
+        for (final BillingEvent event : subscriptionEvents) {
+            tmp.append(event.getEffectiveDate()).append('|')
+               .append(event.getTotalOrdering()).append('|')
+               .append(event.getTransitionType()).append('|')
+               .append(event.getPlan() != null ? event.getPlan().getName() : null).append('|')
+               .append(event.getPlanPhase() != null ? event.getPlanPhase().getName() : null).append('|')
+               .append(event.getBillingPeriod()).append('|')
+               .append(event.getBillCycleDayLocal()).append('|')
+               .append(event.getBillingAlignment()).append('|')
+               .append(event.getQuantity()).append('|')
+               .append(toString(event.getFixedPrice())).append('|')
+               .append(toString(event.getRecurringPrice())).append('|')
+               .append(event.getCurrency()).append('|')
+               .append(event.getCatalogEffectiveDate()).append('\n');
+        }
+
+        final List<InvoiceItem> sortedItems = new ArrayList<>(subscriptionItems);
+        sortedItems.sort(Comparator.comparing(InvoiceItem::getId));
+        for (final InvoiceItem item : sortedItems) {
+            tmp.append(item.getId()).append('|')
+               .append(item.getInvoiceItemType()).append('|')
+               .append(item.getInvoiceId()).append('|')
+               .append(item.getStartDate()).append('|')
+               .append(item.getEndDate()).append('|')
+               .append(toString(item.getAmount())).append('|')
+               .append(item.getLinkedItemId()).append('\n');
+        }
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(tmp.toString().getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(2 * digest.length);
+            for (final byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Amounts read from disk have a different scale than the ones generated in memory
+    private static String toString(@Nullable final BigDecimal amount) {
+        return amount == null ? null : amount.stripTrailingZeros().toPlainString();
+    }
+}
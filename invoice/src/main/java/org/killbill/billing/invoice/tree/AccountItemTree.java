@@ -20,15 +20,19 @@
 package org.killbill.billing.invoice.tree;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceItemGeneratorExecutor;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.commons.utils.collect.Iterables;
 
@@ -39,7 +43,7 @@ import org.killbill.commons.utils.collect.Iterables;
  * associated to a given subscription. That also means that invoice item adjustment which cross subscriptions
  * can't be correctly handled when they compete with other forms of adjustments.
  * <p/>
- * <p>The class is not thread safe, there is no such use case today, and there is a lifecyle to respect:
+ * <p>The class is not thread safe (the subscription trees are independent though, and can be merged in parallel), and there is a lifecyle to respect:
  * <ul>
  * <li>Add existing invoice items
  * <li>Build the tree,
@@ -51,6 +55,7 @@ public class AccountItemTree {
 
     private final UUID accountId;
     private final UUID targetInvoiceId;
+    private final boolean useArrayBackedTree;
     private final Map<UUID, SubscriptionItemTree> subscriptionItemTree;
     private final List<InvoiceItem> allExistingItems;
     private final List<InvoiceItem> pendingItemAdj;
@@ -58,8 +63,18 @@ public class AccountItemTree {
     private boolean isBuilt;
 
     public AccountItemTree(final UUID accountId, final UUID targetInvoiceId) {
+        this(accountId, targetInvoiceId, false);
+    }
+
+    /**
+     * @param accountId          the account id
+     * @param targetInvoiceId    the new invoice id being generated
+     * @param useArrayBackedTree whether the subscription trees are backed by primitive arrays instead of linked nodes
+     */
+    public AccountItemTree(final UUID accountId, final UUID targetInvoiceId, final boolean useArrayBackedTree) {
         this.accountId = accountId;
         this.targetInvoiceId = targetInvoiceId;
+        this.useArrayBackedTree = useArrayBackedTree;
         this.subscriptionItemTree = new HashMap<UUID, SubscriptionItemTree>();
         this.isBuilt = false;
         this.allExistingItems = new LinkedList<InvoiceItem>();
@@ -72,16 +87,20 @@ public class AccountItemTree {
     public void build() {
         Preconditions.checkState(!isBuilt);
 
+        addPendingItemAdj();
+        for (final SubscriptionItemTree tree : subscriptionItemTree.values()) {
+            tree.build();
+        }
+        isBuilt = true;
+    }
+
+    private void addPendingItemAdj() {
         if (!pendingItemAdj.isEmpty()) {
             for (final InvoiceItem item : pendingItemAdj) {
                 addExistingItem(item, true);
             }
             pendingItemAdj.clear();
         }
-        for (final SubscriptionItemTree tree : subscriptionItemTree.values()) {
-            tree.build();
-        }
-        isBuilt = true;
     }
 
     /**
@@ -119,7 +138,7 @@ public class AccountItemTree {
         }
 
         if (!subscriptionItemTree.containsKey(subscriptionId)) {
-            subscriptionItemTree.put(subscriptionId, new SubscriptionItemTree(subscriptionId, targetInvoiceId));
+            subscriptionItemTree.put(subscriptionId, new SubscriptionItemTree(subscriptionId, targetInvoiceId, useArrayBackedTree));
         }
         final SubscriptionItemTree tree = subscriptionItemTree.get(subscriptionId);
         tree.addItem(existingItem);
@@ -141,7 +160,7 @@ public class AccountItemTree {
             final UUID subscriptionId = getSubscriptionId(item, null);
             SubscriptionItemTree tree = subscriptionItemTree.get(subscriptionId);
             if (tree == null) {
-                tree = new SubscriptionItemTree(subscriptionId, targetInvoiceId);
+                tree = new SubscriptionItemTree(subscriptionId, targetInvoiceId, useArrayBackedTree);
                 subscriptionItemTree.put(subscriptionId, tree);
             }
             tree.mergeProposedItem(item);
@@ -152,6 +171,48 @@ public class AccountItemTree {
         }
     }
 
+    /**
+     * Same as {@link #mergeWithProposedItems(List)}, but each subscription tree is built and merged in parallel.
+     *
+     * @param proposedItems list of proposed item that should be merged with current existing view
+     * @param executor      executor running the per-subscription merges
+     */
+    public void mergeWithProposedItems(final List<InvoiceItem> proposedItems, final InvoiceItemGeneratorExecutor executor) {
+        Preconditions.checkState(!isBuilt);
+
+        addPendingItemAdj();
+        final Set<UUID> existingSubscriptionIds = new HashSet<UUID>(subscriptionItemTree.keySet());
+
+        // Trees are created in the same order as in the sequential version, to keep the same (map) ordering of the resulting items
+        final Map<UUID, List<InvoiceItem>> perSubscriptionProposedItems = new HashMap<UUID, List<InvoiceItem>>();
+        for (final InvoiceItem item : proposedItems) {
+            final UUID subscriptionId = getSubscriptionId(item, null);
+            if (!subscriptionItemTree.containsKey(subscriptionId)) {
+                subscriptionItemTree.put(subscriptionId, new SubscriptionItemTree(subscriptionId, targetInvoiceId, useArrayBackedTree));
+            }
+            perSubscriptionProposedItems.computeIfAbsent(subscriptionId, k -> new LinkedList<InvoiceItem>()).add(item);
+        }
+
+        final List<Runnable> tasks = new ArrayList<Runnable>(subscriptionItemTree.size());
+        for (final Entry<UUID, SubscriptionItemTree> entry : subscriptionItemTree.entrySet()) {
+            final SubscriptionItemTree tree = entry.getValue();
+            final boolean isExistingTree = existingSubscriptionIds.contains(entry.getKey());
+            final List<InvoiceItem> treeProposedItems = perSubscriptionProposedItems.getOrDefault(entry.getKey(), Collections.emptyList());
+            tasks.add(() -> {
+                if (isExistingTree) {
+                    tree.build();
+                    tree.flatten(true);
+                }
+                for (final InvoiceItem item : treeProposedItems) {
+                    tree.mergeProposedItem(item);
+                }
+                tree.buildForMerge();
+            });
+        }
+        executor.runAll(tasks);
+        isBuilt = true;
+    }
+
     /**
      * @return the resulting list of items that should be written to disk
      */
@@ -166,6 +227,29 @@ public class AccountItemTree {
         return result;
     }
 
+    /**
+     * Same as {@link #getResultingItemList()}, but the view of each subscription tree is computed in parallel.
+     *
+     * @param executor executor computing the per-subscription views
+     * @return the resulting list of items that should be written to disk
+     */
+    public List<InvoiceItem> getResultingItemList(final InvoiceItemGeneratorExecutor executor) {
+        final List<SubscriptionItemTree> trees = new ArrayList<SubscriptionItemTree>(subscriptionItemTree.values());
+        final List<List<InvoiceItem>> simplifiedViews = new ArrayList<List<InvoiceItem>>(Collections.nCopies(trees.size(), null));
+        final List<Runnable> tasks = new ArrayList<Runnable>(trees.size());
+        for (int i = 0; i < trees.size(); i++) {
+            final int index = i;
+            tasks.add(() -> simplifiedViews.set(index, trees.get(index).getView()));
+        }
+        executor.runAll(tasks);
+
+        final List<InvoiceItem> result = new ArrayList<InvoiceItem>();
+        for (final List<InvoiceItem> simplifiedView : simplifiedViews) {
+            result.addAll(simplifiedView);
+        }
+        return result;
+    }
+
     public UUID getAccountId() {
         return accountId;
     }
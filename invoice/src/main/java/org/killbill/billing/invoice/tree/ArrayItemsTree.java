@@ -0,0 +1,616 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.tree;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.tree.Item.ItemAction;
+import org.killbill.commons.utils.Preconditions;
+
+/**
+ * ItemsTree backed by primitive arrays.
+ * <p/>
+ * Each node is an index in arrays holding its start and end dates (as epoch days) and the indexes of its parent, left child and right sibling
+ * (children are kept sorted by start date). Items are stored in a single pool and chained per node through their indexes.
+ * <p/>
+ * The insertion, split, build and merge logic is the same as the one of {@link ItemsNodeInterval} and {@link ItemsInterval}
+ * (see the comments there), without allocating node objects and lists of items for each interval. The arrays are reused when the tree is cleared.
+ */
+class ArrayItemsTree implements ItemsTree {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    // Nodes
+    private int nbNodes;
+    private int[] starts;
+    private int[] ends;
+    private int[] parents;
+    private int[] leftChildren;
+    private int[] rightSiblings;
+    private int[] firstItems;
+    private int[] lastItems;
+    private int[] nbItems;
+
+    // Items pool
+    private int poolSize;
+    private Item[] items;
+    private int[] nextItems;
+
+    ArrayItemsTree() {
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.parents = new int[INITIAL_CAPACITY];
+        this.leftChildren = new int[INITIAL_CAPACITY];
+        this.rightSiblings = new int[INITIAL_CAPACITY];
+        this.firstItems = new int[INITIAL_CAPACITY];
+        this.lastItems = new int[INITIAL_CAPACITY];
+        this.nbItems = new int[INITIAL_CAPACITY];
+        this.items = new Item[INITIAL_CAPACITY];
+        this.nextItems = new int[INITIAL_CAPACITY];
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, 0, poolSize, null);
+        poolSize = 0;
+        nbNodes = 0;
+        // The root interval is computed as nodes get added
+        newNode(NONE, Integer.MAX_VALUE, Integer.MIN_VALUE);
+    }
+
+    @Override
+    public void addExistingItem(final Item item) {
+        addNode(ROOT, toEpochDay(item.getStartDate()), toEpochDay(item.getEndDate()), item, null);
+    }
+
+    @Override
+    public void addAdjustment(final InvoiceItem adjustment) {
+        final UUID targetId = adjustment.getLinkedItemId();
+
+        final Item targetItem = findItem(ROOT, targetId);
+        Preconditions.checkNotNull(targetItem, "Unable to find item interval for id='%s', tree=%s", targetId, this);
+
+        final BigDecimal adjustmentAmount = adjustment.getAmount().negate();
+        targetItem.incrementAdjustedAmount(adjustmentAmount);
+    }
+
+    @Override
+    public void buildForExistingItems(final Collection<Item> output, final UUID targetInvoiceId) {
+        // Sanity on the tree
+        validateTree(ROOT);
+        build(output, targetInvoiceId, false);
+    }
+
+    @Override
+    public void addProposedItem(final Item item, final Collection<Item> output) {
+        addNode(ROOT, toEpochDay(item.getStartDate()), toEpochDay(item.getEndDate()), item, output);
+    }
+
+    @Override
+    public void mergeExistingAndProposed(final Collection<Item> output, final UUID targetInvoiceId) {
+        build(output, targetInvoiceId, true);
+    }
+
+    @Override
+    public ItemsNodeInterval getRoot() {
+        final ItemsNodeInterval root = new ItemsNodeInterval();
+        if (leftChildren[ROOT] != NONE) {
+            root.start = toLocalDate(starts[ROOT]);
+            root.end = toLocalDate(ends[ROOT]);
+        }
+        copyChildren(ROOT, root);
+        return root;
+    }
+
+    private void copyChildren(final int node, final ItemsNodeInterval copy) {
+        NodeInterval prevChildCopy = null;
+        for (int child = leftChildren[node]; child != NONE; child = rightSiblings[child]) {
+            final ItemsNodeInterval childCopy = new ItemsNodeInterval(copy, toLocalDate(starts[child]), toLocalDate(ends[child]));
+            for (int cur = firstItems[child]; cur != NONE; cur = nextItems[cur]) {
+                childCopy.getItemsInterval().add(items[cur]);
+            }
+            if (prevChildCopy == null) {
+                copy.leftChild = childCopy;
+            } else {
+                prevChildCopy.rightSibling = childCopy;
+            }
+            prevChildCopy = childCopy;
+            copyChildren(child, childCopy);
+        }
+    }
+
+    //
+    // Insertion: newItems is null when adding existing items and holds the proposed items kept outside of the tree otherwise
+    //
+
+    private boolean addNode(final int node, final int newStart, final int newEnd, final Item newItem, final Collection<Item> newItems) {
+        // We've found a exact node matching that new interval
+        if (node != ROOT && newStart == starts[node] && newEnd == ends[node]) {
+            return onExistingNode(node, newItem, newItems);
+        }
+
+        // Initialize (or update) the root interval
+        if (node == ROOT) {
+            starts[ROOT] = Math.min(starts[ROOT], newStart);
+            ends[ROOT] = Math.max(ends[ROOT], newEnd);
+        }
+
+        int prevChild = NONE;
+        int curChild = leftChildren[node];
+        while (curChild != NONE) {
+            if (newStart < starts[curChild]) {
+                if (newEnd <= starts[curChild]) {
+                    // New interval is strictly prior curChild, insert before
+                    return insertNode(node, prevChild, curChild, newStart, newEnd, newItem, newItems);
+                } else {
+                    // New interval starts prior curChild, but overlaps, split on the curChild#start
+                    return addSplitNodes(node, newStart, newEnd, newItem, starts[curChild], newItems);
+                }
+            } else if (newEnd <= ends[curChild]) {
+                // New interval is contained within curChild, recurse to have curChild become the parent
+                return addNode(curChild, newStart, newEnd, newItem, newItems);
+            } else if (newStart < ends[curChild]) {
+                // New interval starts after curChild#start, but overlaps curChild, split on the curChild#end
+                return addSplitNodes(node, newStart, newEnd, newItem, ends[curChild], newItems);
+            } else {
+                // Go to next child and try again...
+                prevChild = curChild;
+                curChild = rightSiblings[curChild];
+            }
+        }
+        // We reached to end (or there is no child), this node belongs after the last child, insert
+        return insertNode(node, prevChild, NONE, newStart, newEnd, newItem, newItems);
+    }
+
+    private boolean addSplitNodes(final int node, final int newStart, final int newEnd, final Item newItem, final int splitDate, final Collection<Item> newItems) {
+        if (splitDate <= newStart || splitDate >= newEnd) {
+            throw new IllegalStateException(String.format("Unexpected item split with startDate='%s' and endDate='%s', splitDate='%s'",
+                                                          toLocalDate(newStart), toLocalDate(newEnd), toLocalDate(splitDate)));
+        }
+
+        final Item[] splitItems = newItem.split(toLocalDate(splitDate));
+        addNode(node, newStart, splitDate, splitItems[0], newItems);
+        return addNode(node, splitDate, newEnd, splitItems[1], newItems);
+    }
+
+    private boolean insertNode(final int parent, final int prevNode, final int nextNode, final int newStart, final int newEnd, final Item newItem, final Collection<Item> newItems) {
+        if (!shouldInsertNode(parent, newStart, newEnd, newItem, newItems)) {
+            return false;
+        }
+
+        final int newNode = newNode(parent, newStart, newEnd);
+        addItem(newNode, newItem);
+        if (prevNode == NONE) {
+            leftChildren[parent] = newNode;
+        } else {
+            rightSiblings[prevNode] = newNode;
+        }
+        rightSiblings[newNode] = nextNode;
+        return true;
+    }
+
+    private boolean onExistingNode(final int existingNode, final Item item, final Collection<Item> newItems) {
+        if (newItems == null) {
+            // There is no new node added but instead we just populated the list of items for the already existing node
+            addItem(existingNode, item);
+            return false;
+        }
+
+        // If we receive a new proposed that is the same kind as the reversed existing (current node),
+        // we match existing and proposed. If not, we keep the proposed item as-is outside of the tree.
+        if (isSameKind(existingNode, item)) {
+            cancelItems(existingNode, item);
+            return true;
+        } else {
+            newItems.add(item);
+            return false;
+        }
+    }
+
+    private boolean shouldInsertNode(final int insertionNode, final int newStart, final int newEnd, final Item item, final Collection<Item> newItems) {
+        if (newItems == null) {
+            // Always want to insert node in the tree when we find the right place.
+            return true;
+        }
+
+        // If this new node is about to be inserted at the root level, this means the proposed item overlaps any
+        // existing item. We keep these as-is, outside of the tree (unless the interval is empty).
+        if (insertionNode == ROOT) {
+            if (newStart != newEnd) {
+                newItems.add(item);
+            }
+            return false;
+        }
+
+        // If we receive a new proposed that is the same kind as the reversed existing (parent node),
+        // we want to insert it to generate a piece of repair. If not, we keep the proposed item as-is outside of the tree.
+        final boolean result = isSameKind(insertionNode, item);
+        if (!result) {
+            newItems.add(item);
+        }
+        return result;
+    }
+
+    private boolean isSameKind(final int node, final Item item) {
+        Preconditions.checkState(nbItems[node] == 1, "Expected existing node to have only one item");
+        return items[firstItems[node]].isSameKind(item);
+    }
+
+    private void cancelItems(final int node, final Item item) {
+        Preconditions.checkState((item.getAction() == ItemAction.ADD), "item.getAction != ADD");
+        Preconditions.checkState(nbItems[node] == 1, "items.size() != 1");
+        Preconditions.checkState((items[firstItems[node]].getAction() == ItemAction.CANCEL), "item.get(0).getAction() != CANCEL");
+        firstItems[node] = NONE;
+        lastItems[node] = NONE;
+        nbItems[node] = 0;
+    }
+
+    //
+    // Build
+    //
+
+    private void build(final Collection<Item> output, final UUID targetInvoiceId, final boolean mergeMode) {
+        final List<Item> tmpOutput = new ArrayList<Item>(output);
+        output.clear();
+        build(ROOT, tmpOutput, targetInvoiceId, mergeMode);
+        ItemsNodeInterval.joinSplitItems(tmpOutput, output);
+    }
+
+    private void build(final int node, final Collection<Item> output, final UUID targetInvoiceId, final boolean mergeMode) {
+        if (leftChildren[node] == NONE) {
+            final Item item = getResultingItem(node, mergeMode);
+            if (item != null) {
+                output.add(item);
+            }
+            return;
+        }
+
+        int curDate = starts[node];
+        for (int curChild = leftChildren[node]; curChild != NONE; curChild = rightSiblings[curChild]) {
+            if (starts[curChild] > curDate) {
+                buildForMissingInterval(node, curDate, starts[curChild], targetInvoiceId, output, mergeMode);
+            }
+            build(curChild, output, targetInvoiceId, mergeMode);
+            // Note that skip to child endDate, meaning that we always consider the child [start end]
+            curDate = ends[curChild];
+        }
+
+        // Finally if there is a hole at the end, we build the missing piece from ourselves
+        if (curDate < ends[node]) {
+            buildForMissingInterval(node, curDate, ends[node], targetInvoiceId, output, mergeMode);
+        }
+    }
+
+    private void buildForMissingInterval(final int node, final int startDate, final int endDate, final UUID targetInvoiceId, final Collection<Item> output, final boolean mergeMode) {
+        final Item item = getResultingItem(node, mergeMode);
+        if (item == null) {
+            return;
+        }
+        if (targetInvoiceId == null) {
+            output.add(item);
+            return;
+        }
+
+        // Prorate (build phase) or repair (merge phase) this item, as needed
+        final InvoiceItem proratedInvoiceItem = item.toProratedInvoiceItem(toLocalDate(startDate), toLocalDate(endDate));
+        // Keep track of the repaired amount for this item
+        item.incrementCurrentRepairedAmount(proratedInvoiceItem.getAmount().abs());
+        output.add(new Item(proratedInvoiceItem, targetInvoiceId, item.getAction()));
+    }
+
+    private Item getResultingItem(final int node, final boolean mergeMode) {
+        if (mergeMode) {
+            checkNodeState(nbItems[node] <= 1, "Too many items=%s", node);
+            return findItem(node, ItemAction.CANCEL);
+        } else {
+            return getResulting_ADD_Item(node);
+        }
+    }
+
+    private Item getResulting_ADD_Item(final int node) {
+        checkNodeState(nbItems[node] <= 2, "Double billing detected: %s", node);
+
+        Item item = null;
+        Item cancelItem = null;
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].getAction() == ItemAction.ADD) {
+                checkNodeState(item == null, "Double billing detected: %s", node);
+                item = items[cur];
+            } else if (cancelItem == null) {
+                cancelItem = items[cur];
+            }
+        }
+
+        // Double billing sanity check across nodes
+        if (item != null) {
+            final Set<UUID> addItemsCancelled = new HashSet<>();
+            if (cancelItem != null) {
+                Preconditions.checkState(cancelItem.getLinkedId() != null, "Invalid CANCEL item=%s", cancelItem);
+                if (cancelItem.getLinkedId().equals(item.getId())) {
+                    // Cancelling pair, we don't return anything
+                    item = null;
+                } else {
+                    addItemsCancelled.add(cancelItem.getLinkedId());
+                }
+            }
+            final Set<UUID> addItemsToBeCancelled = new HashSet<>();
+            checkDoubleBilling(node, addItemsCancelled, addItemsToBeCancelled);
+        }
+
+        return item;
+    }
+
+    private void checkDoubleBilling(final int node, final Set<UUID> addItemsCancelled, final Set<UUID> addItemsToBeCancelled) {
+        final int parent = parents[node];
+        if (parent == NONE) {
+            Preconditions.checkState(addItemsCancelled.equals(addItemsToBeCancelled), "Double billing detected: addItemsCancelled=%s, addItemsToBeCancelled=%s", addItemsCancelled, addItemsToBeCancelled);
+            return;
+        }
+
+        final Item parentAddItem = getResulting_ADD_Item(parent);
+        if (parentAddItem != null) {
+            Preconditions.checkState(parentAddItem.getId() != null, "Invalid ADD item=%s", parentAddItem);
+            addItemsToBeCancelled.add(parentAddItem.getId());
+
+            // Old behavior compatibility for full item adjustment (Temp code should go away as move in time)
+            // discard as double billing potential old full item adj data that looks like REPAIR
+            if (parentAddItem.isFullyAdjusted()) {
+                addItemsCancelled.add(parentAddItem.getId());
+            }
+        }
+
+        final Item parentCancelItem = findItem(parent, ItemAction.CANCEL);
+        if (parentCancelItem != null) {
+            Preconditions.checkState(parentCancelItem.getLinkedId() != null, "Invalid CANCEL item=%s", parentCancelItem);
+            addItemsCancelled.add(parentCancelItem.getLinkedId());
+        }
+
+        checkDoubleBilling(parent, addItemsCancelled, addItemsToBeCancelled);
+    }
+
+    //
+    // This is not strictly necessary -- just there to add a layer of sanity on what our tree contains (see ItemsNodeInterval#validateTree)
+    //
+    private void validateTree(final int node) {
+        if (node != ROOT) {
+            validateNode(node);
+        }
+        for (int curChild = leftChildren[node]; curChild != NONE; curChild = rightSiblings[curChild]) {
+            validateTree(curChild);
+        }
+    }
+
+    private void validateNode(final int node) {
+        final int leftChild = leftChildren[node];
+
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            final Item curCancelItem = items[cur];
+            if (curCancelItem.getAction() != ItemAction.CANCEL) {
+                continue;
+            }
+
+            // Sanity: cancelled items should only be in the same node or parents
+            if (leftChild != NONE) {
+                final Item cancelledItem = findCancelledItem(leftChild, curCancelItem.getLinkedId());
+                Preconditions.checkState(cancelledItem == null, "Invalid cancelledItem=%s for cancelItem=%s", cancelledItem, curCancelItem);
+            }
+
+            // Sanity: make sure the CANCEL item points to an ADD item
+            Preconditions.checkState(findCancelledItem(ROOT, curCancelItem.getLinkedId()) != null, "Missing cancelledItem for cancelItem=%s", curCancelItem);
+        }
+
+        int cur = firstItems[node];
+        while (cur != NONE) {
+            final Item curAddItem = items[cur];
+            // Items can be removed below, but the unlinked item still points to its next one
+            cur = nextItems[cur];
+            if (curAddItem.getAction() != ItemAction.ADD) {
+                continue;
+            }
+
+            // Sanity: verify the item hasn't been repaired too much
+            if (leftChild != NONE) {
+                final BigDecimal totalRepaired = getRepairedAmount(leftChild, curAddItem.getId(), BigDecimal.ZERO);
+                Preconditions.checkState(curAddItem.getNetAmount().compareTo(totalRepaired) >= 0, "Item %s overly repaired", curAddItem);
+            }
+
+            // Old behavior compatibility for full item adjustment (Temp code should go away as move in time)
+            // If we see a fully adjusted item and an existing child (one ADD item), we discard the fully adjusted item
+            // in such a way that we are left with the child that will look like the proposed and nothing will be generated.
+            if (curAddItem.isFullyAdjusted() &&
+                leftChild != NONE &&
+                nbItems[leftChild] == 1 &&
+                items[firstItems[leftChild]].getAction() == ItemAction.ADD) {
+                removeItem(node, curAddItem);
+            }
+        }
+    }
+
+    // Depth first search, from the specified node, of the ADD item with the specified id
+    private Item findCancelledItem(final int node, final UUID linkedId) {
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].getAction() == ItemAction.ADD && items[cur].getId().equals(linkedId)) {
+                return items[cur];
+            }
+        }
+        for (int curChild = leftChildren[node]; curChild != NONE; curChild = rightSiblings[curChild]) {
+            final Item result = findCancelledItem(curChild, linkedId);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    // Sum, from the specified node and its children, of the CANCEL items pointing to the specified id
+    private BigDecimal getRepairedAmount(final int node, final UUID targetId, final BigDecimal curRepairedAmount) {
+        BigDecimal result = curRepairedAmount;
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].getAction() == ItemAction.CANCEL && items[cur].getLinkedId().equals(targetId)) {
+                result = result.add(items[cur].getAmount());
+                break;
+            }
+        }
+        for (int curChild = leftChildren[node]; curChild != NONE; curChild = rightSiblings[curChild]) {
+            result = getRepairedAmount(curChild, targetId, result);
+        }
+        return result;
+    }
+
+    // Depth first search, from the specified node, of the item with the specified id
+    private Item findItem(final int node, final UUID targetId) {
+        Item result = null;
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].getId().equals(targetId)) {
+                checkNodeState(result == null, "Too many items matching id='" + targetId + "' among items='%s'", node);
+                result = items[cur];
+            }
+        }
+        if (result != null) {
+            return result;
+        }
+        for (int curChild = leftChildren[node]; curChild != NONE; curChild = rightSiblings[curChild]) {
+            result = findItem(curChild, targetId);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private Item findItem(final int node, final ItemAction action) {
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].getAction() == action) {
+                return items[cur];
+            }
+        }
+        return null;
+    }
+
+    private void checkNodeState(final boolean expression, final String errorMessageTemplate, final int node) {
+        // The list of items is only built on failures
+        if (!expression) {
+            throw new IllegalStateException(String.format(errorMessageTemplate, getItems(node)));
+        }
+    }
+
+    private List<Item> getItems(final int node) {
+        final List<Item> result = new ArrayList<Item>(nbItems[node]);
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            result.add(items[cur]);
+        }
+        return result;
+    }
+
+    //
+    // Storage
+    //
+
+    private int newNode(final int parent, final int start, final int end) {
+        if (nbNodes == starts.length) {
+            final int newCapacity = nbNodes * 2;
+            starts = Arrays.copyOf(starts, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+            parents = Arrays.copyOf(parents, newCapacity);
+            leftChildren = Arrays.copyOf(leftChildren, newCapacity);
+            rightSiblings = Arrays.copyOf(rightSiblings, newCapacity);
+            firstItems = Arrays.copyOf(firstItems, newCapacity);
+            lastItems = Arrays.copyOf(lastItems, newCapacity);
+            nbItems = Arrays.copyOf(nbItems, newCapacity);
+        }
+
+        final int node = nbNodes++;
+        starts[node] = start;
+        ends[node] = end;
+        parents[node] = parent;
+        leftChildren[node] = NONE;
+        rightSiblings[node] = NONE;
+        firstItems[node] = NONE;
+        lastItems[node] = NONE;
+        nbItems[node] = 0;
+        return node;
+    }
+
+    private void addItem(final int node, final Item item) {
+        if (poolSize == items.length) {
+            items = Arrays.copyOf(items, poolSize * 2);
+            nextItems = Arrays.copyOf(nextItems, poolSize * 2);
+        }
+
+        final int cur = poolSize++;
+        items[cur] = item;
+        nextItems[cur] = NONE;
+        if (lastItems[node] == NONE) {
+            firstItems[node] = cur;
+        } else {
+            nextItems[lastItems[node]] = cur;
+        }
+        lastItems[node] = cur;
+        nbItems[node]++;
+    }
+
+    // Same semantics as List#remove(Object): the first equal item is unlinked
+    private void removeItem(final int node, final Item item) {
+        int prev = NONE;
+        for (int cur = firstItems[node]; cur != NONE; cur = nextItems[cur]) {
+            if (items[cur].equals(item)) {
+                if (prev == NONE) {
+                    firstItems[node] = nextItems[cur];
+                } else {
+                    nextItems[prev] = nextItems[cur];
+                }
+                if (lastItems[node] == cur) {
+                    lastItems[node] = prev;
+                }
+                nbItems[node]--;
+                return;
+            }
+            prev = cur;
+        }
+    }
+
+    private static int toEpochDay(final LocalDate date) {
+        return (int) java.time.LocalDate.of(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth()).toEpochDay();
+    }
+
+    private static LocalDate toLocalDate(final int epochDay) {
+        final java.time.LocalDate date = java.time.LocalDate.ofEpochDay(epochDay);
+        return new LocalDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ArrayItemsTree{");
+        sb.append("nbNodes=").append(nbNodes);
+        sb.append(", items=").append(Arrays.asList(items).subList(0, poolSize));
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.tree;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import org.killbill.billing.invoice.api.InvoiceItem;
+
+/**
+ * Intervals of items backing a SubscriptionItemTree.
+ *
+ * @see NodeItemsTree
+ * @see ArrayItemsTree
+ */
+interface ItemsTree {
+
+    /**
+     * Add existing item into the tree
+     *
+     * @param item an existing item
+     */
+    void addExistingItem(Item item);
+
+    /**
+     * Add the adjustment amount on the item specified by the linked item id.
+     *
+     * @param adjustment the item adjustment
+     */
+    void addAdjustment(InvoiceItem adjustment);
+
+    /**
+     * @param output          result list of built items
+     * @param targetInvoiceId the new invoice id being generated
+     * @see ItemsNodeInterval#buildForExistingItems(Collection, UUID)
+     */
+    void buildForExistingItems(Collection<Item> output, UUID targetInvoiceId);
+
+    /**
+     * @param item   a new proposed item
+     * @param output result list where the proposed items that should be kept as such (outside of the tree) are added
+     * @see ItemsNodeInterval#addProposedItem(ItemsNodeInterval)
+     */
+    void addProposedItem(Item item, Collection<Item> output);
+
+    /**
+     * @param output          result list of built items
+     * @param targetInvoiceId the new invoice id being generated
+     * @see ItemsNodeInterval#mergeExistingAndProposed(Collection, UUID)
+     */
+    void mergeExistingAndProposed(Collection<Item> output, UUID targetInvoiceId);
+
+    /**
+     * Remove all the intervals (and their items) from the tree.
+     */
+    void clear();
+
+    /**
+     * @return the root of the tree, as an {@link ItemsNodeInterval} (used for printing and serialization)
+     */
+    ItemsNodeInterval getRoot();
+}
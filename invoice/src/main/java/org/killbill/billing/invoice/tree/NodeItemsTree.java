@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.tree;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import org.killbill.billing.invoice.api.InvoiceItem;
+
+/**
+ * Default ItemsTree, made of linked {@link ItemsNodeInterval} nodes.
+ */
+class NodeItemsTree implements ItemsTree {
+
+    private ItemsNodeInterval root = new ItemsNodeInterval();
+
+    @Override
+    public void addExistingItem(final Item item) {
+        root.addExistingItem(new ItemsNodeInterval(root, item));
+    }
+
+    @Override
+    public void addAdjustment(final InvoiceItem adjustment) {
+        root.addAdjustment(adjustment);
+    }
+
+    @Override
+    public void buildForExistingItems(final Collection<Item> output, final UUID targetInvoiceId) {
+        root.buildForExistingItems(output, targetInvoiceId);
+    }
+
+    @Override
+    public void addProposedItem(final Item item, final Collection<Item> output) {
+        for (final ItemsNodeInterval cur : root.addProposedItem(new ItemsNodeInterval(root, item))) {
+            output.addAll(cur.getItems());
+        }
+    }
+
+    @Override
+    public void mergeExistingAndProposed(final Collection<Item> output, final UUID targetInvoiceId) {
+        root.mergeExistingAndProposed(output, targetInvoiceId);
+    }
+
+    @Override
+    public void clear() {
+        root = new ItemsNodeInterval();
+    }
+
+    @Override
+    public ItemsNodeInterval getRoot() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+}
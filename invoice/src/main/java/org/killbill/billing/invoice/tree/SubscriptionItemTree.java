@@ -46,7 +46,7 @@ public class SubscriptionItemTree {
     private final UUID targetInvoiceId;
     private final UUID subscriptionId;
 
-    private ItemsNodeInterval root = new ItemsNodeInterval();
+    private final ItemsTree root;
     private boolean isBuilt = false;
     private boolean isMerged = false;
 
@@ -72,8 +72,18 @@ public class SubscriptionItemTree {
 
     // targetInvoiceId is the new invoice id being generated
     public SubscriptionItemTree(final UUID subscriptionId, final UUID targetInvoiceId) {
+        this(subscriptionId, targetInvoiceId, false);
+    }
+
+    /**
+     * @param subscriptionId     the subscription id
+     * @param targetInvoiceId    the new invoice id being generated
+     * @param useArrayBackedTree whether the intervals are stored in primitive arrays (see {@link ArrayItemsTree}) instead of linked nodes
+     */
+    public SubscriptionItemTree(final UUID subscriptionId, final UUID targetInvoiceId, final boolean useArrayBackedTree) {
         this.subscriptionId = subscriptionId;
         this.targetInvoiceId = targetInvoiceId;
+        this.root = useArrayBackedTree ? new ArrayItemsTree() : new NodeItemsTree();
     }
 
     /**
@@ -90,12 +100,12 @@ public class SubscriptionItemTree {
                     // Nothing to repair -- https://github.com/killbill/killbill/issues/783
                     existingIgnoredItems.add(invoiceItem);
                 } else {
-                    root.addExistingItem(new ItemsNodeInterval(root, new Item(invoiceItem, targetInvoiceId, ItemAction.ADD)));
+                    root.addExistingItem(new Item(invoiceItem, targetInvoiceId, ItemAction.ADD));
                 }
                 break;
 
             case REPAIR_ADJ:
-                root.addExistingItem(new ItemsNodeInterval(root, new Item(invoiceItem, targetInvoiceId, ItemAction.CANCEL)));
+                root.addExistingItem(new Item(invoiceItem, targetInvoiceId, ItemAction.CANCEL));
                 break;
 
             case FIXED:
@@ -145,10 +155,10 @@ public class SubscriptionItemTree {
             build();
         }
 
-        root = new ItemsNodeInterval();
+        root.clear();
         for (final Item item : items) {
             Preconditions.checkState(item.getAction() == ItemAction.ADD);
-            root.addExistingItem(new ItemsNodeInterval(root, new Item(item, reverse ? ItemAction.CANCEL : ItemAction.ADD)));
+            root.addExistingItem(new Item(item, reverse ? ItemAction.CANCEL : ItemAction.ADD));
         }
         items.clear();
         isBuilt = false;
@@ -171,10 +181,7 @@ public class SubscriptionItemTree {
         switch (invoiceItem.getInvoiceItemType()) {
             case RECURRING:
                 // merged means we've either matched the proposed to an existing, or triggered a repair
-                final List<ItemsNodeInterval> newNodes = root.addProposedItem(new ItemsNodeInterval(root, new Item(invoiceItem, targetInvoiceId, ItemAction.ADD)));
-                for (final ItemsNodeInterval cur : newNodes) {
-                    items.addAll(cur.getItems());
-                }
+                root.addProposedItem(new Item(invoiceItem, targetInvoiceId, ItemAction.ADD), items);
                 break;
 
             case FIXED:
@@ -288,6 +295,6 @@ public class SubscriptionItemTree {
 
     @VisibleForTesting
     ItemsNodeInterval getRoot() {
-        return root;
+        return root.getRoot();
     }
 }
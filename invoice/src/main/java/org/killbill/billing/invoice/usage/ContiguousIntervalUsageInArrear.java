@@ -56,6 +56,7 @@ import org.killbill.billing.invoice.model.UsageInvoiceItem;
 import org.killbill.billing.invoice.usage.details.UsageInArrearAggregate;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.killbill.billing.usage.api.AggregatedRawUsageRecord;
 import org.killbill.billing.usage.api.RawUsageRecord;
 import org.killbill.billing.usage.api.RolledUpUnit;
 import org.killbill.commons.utils.Preconditions;
@@ -450,7 +451,7 @@ public abstract class ContiguousIntervalUsageInArrear {
                     if (prevRawUsage.getDate().compareTo(prevDate) >= 0 &&
                         (prevRawUsage.getDate().compareTo(curDate) < 0 || isUsageForCancellationDay)) {
                         final BigDecimal currentAmount = perRangeUnitToAmount.get(prevRawUsage.getUnitType());
-                        final BigDecimal updatedAmount = computeUpdatedAmount(currentAmount, prevRawUsage.getAmount());
+                        final BigDecimal updatedAmount = computeUpdatedAmount(currentAmount, prevRawUsage);
                         perRangeUnitToAmount.put(prevRawUsage.getUnitType(), updatedAmount);
                         trackingIds.add(new TrackingRecordId(prevRawUsage.getTrackingId(), invoiceId, prevRawUsage.getSubscriptionId(), prevRawUsage.getUnitType(), internalTenantContext.toLocalDate(prevRawUsage.getDate())));
                         prevRawUsage = null;
@@ -477,7 +478,7 @@ public abstract class ContiguousIntervalUsageInArrear {
                         }
 
                         final BigDecimal currentAmount = perRangeUnitToAmount.get(curRawUsage.getUnitType());
-                        final BigDecimal updatedAmount = computeUpdatedAmount(currentAmount, curRawUsage.getAmount());
+                        final BigDecimal updatedAmount = computeUpdatedAmount(currentAmount, curRawUsage);
                         perRangeUnitToAmount.put(curRawUsage.getUnitType(), updatedAmount);
                         trackingIds.add(new TrackingRecordId(curRawUsage.getTrackingId(), invoiceId, curRawUsage.getSubscriptionId(), curRawUsage.getUnitType(), internalTenantContext.toLocalDate(curRawUsage.getDate())));
                     }
@@ -539,17 +540,18 @@ public abstract class ContiguousIntervalUsageInArrear {
      * Based on usage type compute new amount
      *
      * @param currentAmount
-     * @param newAmount
+     * @param rawUsage     raw usage record, or daily aggregate of raw usage records
      * @return
      */
-    private BigDecimal computeUpdatedAmount(@Nullable BigDecimal currentAmount, @Nullable BigDecimal newAmount) {
+    private BigDecimal computeUpdatedAmount(@Nullable BigDecimal currentAmount, final RawUsageRecord rawUsage) {
         currentAmount = currentAmount == null ? BigDecimal.ZERO : currentAmount;
-        newAmount = newAmount == null ? BigDecimal.ZERO : newAmount;
 
         if (usage.getUsageType() == UsageType.CAPACITY) {
-            return currentAmount.max(newAmount);
+            final BigDecimal newAmount = rawUsage instanceof AggregatedRawUsageRecord ? ((AggregatedRawUsageRecord) rawUsage).getMaxAmount() : rawUsage.getAmount();
+            return currentAmount.max(newAmount == null ? BigDecimal.ZERO : newAmount);
         } else /* UsageType.CONSUMABLE */ {
-            return currentAmount.add(newAmount);
+            final BigDecimal newAmount = rawUsage.getAmount();
+            return currentAmount.add(newAmount == null ? BigDecimal.ZERO : newAmount);
         }
     }
 
@@ -17,6 +17,8 @@
 
 package org.killbill.billing.invoice.usage;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,6 +28,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -45,6 +48,7 @@ import org.killbill.billing.invoice.dao.InvoiceTrackingModelDao;
 import org.killbill.billing.invoice.generator.InvoiceDateUtils;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.TrackingRecordId;
 import org.killbill.billing.invoice.model.UsageInvoiceItem;
+import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.usage.InternalUserApi;
 import org.killbill.billing.usage.api.RawUsageRecord;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
@@ -73,7 +77,7 @@ public class RawUsageOptimizer {
         this.clock = clock;
     }
 
-    public RawUsageOptimizerResult getInArrearUsage(final DateTime firstEventStartDate, final LocalDate targetDate, final Iterable<InvoiceItem> existingUsageItems, final Map<String, Usage> knownUsage, @Nullable final DryRunInfo dryRunInfo, final InternalCallContext internalCallContext) {
+    public RawUsageOptimizerResult getInArrearUsage(final DateTime firstEventStartDate, final LocalDate targetDate, final Iterable<InvoiceItem> existingUsageItems, final Map<String, Usage> knownUsage, final Iterable<BillingEvent> billingEvents, @Nullable final DryRunInfo dryRunInfo, final InternalCallContext internalCallContext) {
 
         // The idea is that if we need to come up with a DateTime we use the largest possible based on the provided LocalDate to return enough points and have the usage invoice code filter what is not relevant.
         final DateTime targetDateMax = targetDate.plusDays(1).toDateTimeAtStartOfDay(DateTimeZone.UTC).minus(Period.millis(1));
@@ -82,14 +86,28 @@ public class RawUsageOptimizer {
         log.debug("RawUsageOptimizerResult accountRecordId='{}', configRawUsagePreviousPeriod='{}', firstEventStartDate='{}', optimizedStartDate='{}',  targetDate='{}'",
                   internalCallContext.getAccountRecordId(), configRawUsagePreviousPeriod, firstEventStartDate, optimizedStartDate, targetDate);
 
-        final List<RawUsageRecord> rawUsageData = usageApi.getRawUsageForAccount(optimizedStartDate, targetDateMax, dryRunInfo, internalCallContext);
-
         final List<InvoiceTrackingModelDao> trackingIds = invoiceDao.getTrackingsByDateRange(optimizedStartDate.toLocalDate(), targetDate, internalCallContext);
         final Set<TrackingRecordId> existingTrackingIds = new HashSet<>();
         for (final InvoiceTrackingModelDao invoiceTrackingModelDao : trackingIds) {
             existingTrackingIds.add(new TrackingRecordId(invoiceTrackingModelDao.getTrackingId(), invoiceTrackingModelDao.getInvoiceId(), invoiceTrackingModelDao.getSubscriptionId(), invoiceTrackingModelDao.getUnitType(), invoiceTrackingModelDao.getRecordDate()));
         }
-        return new RawUsageOptimizerResult(optimizedStartDate, rawUsageData, existingTrackingIds);
+
+        if (config.isUsageDailyRollupEnabled(internalCallContext)) {
+            // Billing transitions can split a day in several billing intervals: the raw usage of these days is needed
+            final Set<LocalDate> billingEventDays = new HashSet<>();
+            for (final BillingEvent billingEvent : billingEvents) {
+                billingEventDays.add(new LocalDate(billingEvent.getEffectiveDate(), DateTimeZone.UTC));
+            }
+            final List<RawUsageRecord> rawUsageData = usageApi.getAggregatedUsageForAccount(optimizedStartDate, targetDateMax, billingEventDays, dryRunInfo, internalCallContext);
+            return new RawUsageOptimizerResult(optimizedStartDate, rawUsageData, existingTrackingIds);
+        } else if (config.isUsageStreamingEnabled(internalCallContext)) {
+            // The stream is opened last, to not leak it if anything above fails
+            final SubscriptionRawUsageReader rawUsageReader = new SubscriptionRawUsageReader(usageApi.getRawUsageStreamForAccount(optimizedStartDate, targetDateMax, dryRunInfo, internalCallContext));
+            return new RawUsageOptimizerResult(optimizedStartDate, rawUsageReader, existingTrackingIds);
+        } else {
+            final List<RawUsageRecord> rawUsageData = usageApi.getRawUsageForAccount(optimizedStartDate, targetDateMax, dryRunInfo, internalCallContext);
+            return new RawUsageOptimizerResult(optimizedStartDate, rawUsageData, existingTrackingIds);
+        }
     }
 
     @VisibleForTesting
@@ -204,15 +222,26 @@ public class RawUsageOptimizer {
         return false;
     }
 
-    public static class RawUsageOptimizerResult {
+    public static class RawUsageOptimizerResult implements Closeable {
 
         private final DateTime rawUsageStartDate;
+        // Either the whole raw usage for the account, or a reader over the raw usage stream
         private final List<RawUsageRecord> rawUsage;
+        private final SubscriptionRawUsageReader rawUsageReader;
         private final Set<TrackingRecordId> existingTrackingIds;
 
         public RawUsageOptimizerResult(final DateTime rawUsageStartDate, final List<RawUsageRecord> rawUsage, final Set<TrackingRecordId> existingTrackingIds) {
+            this(rawUsageStartDate, rawUsage, null, existingTrackingIds);
+        }
+
+        public RawUsageOptimizerResult(final DateTime rawUsageStartDate, final SubscriptionRawUsageReader rawUsageReader, final Set<TrackingRecordId> existingTrackingIds) {
+            this(rawUsageStartDate, null, rawUsageReader, existingTrackingIds);
+        }
+
+        private RawUsageOptimizerResult(final DateTime rawUsageStartDate, @Nullable final List<RawUsageRecord> rawUsage, @Nullable final SubscriptionRawUsageReader rawUsageReader, final Set<TrackingRecordId> existingTrackingIds) {
             this.rawUsageStartDate = rawUsageStartDate;
             this.rawUsage = rawUsage;
+            this.rawUsageReader = rawUsageReader;
             this.existingTrackingIds = existingTrackingIds;
         }
 
@@ -220,12 +249,27 @@ public class RawUsageOptimizer {
             return rawUsageStartDate;
         }
 
-        public List<RawUsageRecord> getRawUsage() {
-            return rawUsage;
+        /**
+         * @return whether the raw usage is streamed, in which case the subscriptions should be requested in the order of their id (string representation)
+         */
+        public boolean isStreamed() {
+            return rawUsageReader != null;
+        }
+
+        // Might return usage for other subscriptions as well (SubscriptionUsageInArrear filters them out)
+        public List<RawUsageRecord> getRawUsage(final UUID subscriptionId) {
+            return rawUsageReader != null ? rawUsageReader.getRawUsage(subscriptionId) : rawUsage;
         }
 
         public Set<TrackingRecordId> getExistingTrackingIds() {
             return existingTrackingIds;
         }
+
+        @Override
+        public void close() throws IOException {
+            if (rawUsageReader != null) {
+                rawUsageReader.close();
+            }
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.usage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.util.entity.Pagination;
+
+/**
+ * Reads a stream of raw usage ordered by subscription id (string representation) one subscription at a time.
+ * <p>
+ * Subscriptions are expected to be requested in the same order as the stream: records of the subscriptions that are skipped
+ * (e.g. because they don't have any in-arrear usage billing event) are buffered until requested.
+ */
+public class SubscriptionRawUsageReader implements Closeable {
+
+    private final Pagination<RawUsageRecord> rawUsage;
+    private final Iterator<RawUsageRecord> iterator;
+    private final Map<UUID, List<RawUsageRecord>> skippedRawUsage;
+    private final Set<UUID> readSubscriptionIds;
+
+    private RawUsageRecord next;
+
+    public SubscriptionRawUsageReader(final Pagination<RawUsageRecord> rawUsage) {
+        this.rawUsage = rawUsage;
+        this.iterator = rawUsage.iterator();
+        this.skippedRawUsage = new HashMap<>();
+        this.readSubscriptionIds = new HashSet<>();
+    }
+
+    public List<RawUsageRecord> getRawUsage(final UUID subscriptionId) {
+        readSubscriptionIds.add(subscriptionId);
+
+        final List<RawUsageRecord> skipped = skippedRawUsage.remove(subscriptionId);
+        if (skipped != null) {
+            return skipped;
+        }
+
+        final String subscriptionIdAsString = subscriptionId.toString();
+        final List<RawUsageRecord> result = new ArrayList<>();
+        while (next != null || iterator.hasNext()) {
+            final RawUsageRecord cur = next != null ? next : iterator.next();
+            final int comparison = cur.getSubscriptionId().toString().compareTo(subscriptionIdAsString);
+            if (comparison > 0) {
+                next = cur;
+                break;
+            }
+            next = null;
+
+            if (comparison == 0) {
+                result.add(cur);
+            } else if (readSubscriptionIds.contains(cur.getSubscriptionId())) {
+                // We would otherwise silently drop that usage
+                throw new IllegalStateException(String.format("Raw usage stream is not ordered by subscription: record for subscriptionId='%s' read after subscriptionId='%s'",
+                                                              cur.getSubscriptionId(), subscriptionId));
+            } else {
+                skippedRawUsage.computeIfAbsent(cur.getSubscriptionId(), k -> new ArrayList<>()).add(cur);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        rawUsage.close();
+    }
+}
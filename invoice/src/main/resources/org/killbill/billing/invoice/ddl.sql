@@ -252,4 +252,18 @@ CREATE TABLE invoice_billing_events (
     PRIMARY KEY(record_id)
 ) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
 CREATE UNIQUE INDEX invoice_billing_events_invoice_id ON invoice_billing_events(invoice_id);
-CREATE INDEX invoice_billing_events_tenant_account_record_id ON invoice_billing_events(tenant_record_id, account_record_id);
\ No newline at end of file
+CREATE INDEX invoice_billing_events_tenant_account_record_id ON invoice_billing_events(tenant_record_id, account_record_id);
+
+DROP TABLE IF EXISTS invoice_subscription_watermarks;
+CREATE TABLE invoice_subscription_watermarks (
+    record_id serial unique,
+    subscription_id varchar(36) NOT NULL,
+    billed_through_date date DEFAULT NULL,
+    fingerprint varchar(64) NOT NULL,
+    created_date datetime NOT NULL,
+    account_record_id bigint /*! unsigned */ not null,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX invoice_subscription_watermarks_subscription_id ON invoice_subscription_watermarks(subscription_id);
+CREATE INDEX invoice_subscription_watermarks_tenant_account_record_id ON invoice_subscription_watermarks(tenant_record_id, account_record_id);
@@ -55,6 +55,9 @@ import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.util.api.TagDefinitionApiException;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.SystemTags;
+import org.killbill.commons.metrics.api.MetricRegistry;
+import org.killbill.commons.metrics.api.Timer;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
 import org.mockito.Mockito;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.tweak.HandleCallback;
@@ -83,7 +86,7 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
 
         dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, invoiceDao,
                                            internalCallContextFactory,  invoicePluginDispatcher, locker, bus,
-                                           notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager);
+                                           notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, new NoOpMetricRegistry());
 
     }
 
@@ -107,7 +110,7 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
 
         final InvoiceDispatcher dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, invoiceDao,
                                                                    internalCallContextFactory, invoicePluginDispatcher, locker, bus,
-                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager);
+                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, new NoOpMetricRegistry());
 
         Invoice invoice = processAccountFromNotificationOrBusEventAndAssertResult(accountId, target, new DryRunFutureDateArguments(), false, context);
 
@@ -127,6 +130,38 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
         Assert.assertEquals(invoices.size(), 1);
     }
 
+    @Test(groups = "slow")
+    public void testInvoiceTimingMetrics() throws InvoiceApiException, AccountApiException, CatalogApiException, SubscriptionBaseApiException {
+        final UUID accountId = account.getId();
+
+        final BillingEventSet events = new MockBillingEventSet();
+        final Plan plan = MockPlan.createBicycleNoTrialEvergreen1USD();
+        final PlanPhase planPhase = MockPlanPhase.create1USDMonthlyEvergreen();
+        final DateTime effectiveDate = clock.getUTCNow().minusDays(1);
+        events.add(invoiceUtil.createMockBillingEvent(account, subscription, effectiveDate, plan, planPhase,
+                                                      null, BigDecimal.ONE, Currency.USD, BillingPeriod.MONTHLY, 1,
+                                                      BillingMode.IN_ADVANCE, "", 1L, SubscriptionBaseTransitionType.CREATE));
+
+        Mockito.when(billingApi.getBillingEventsForAccountAndUpdateAccountBCD(Mockito.<UUID>any(), Mockito.<DryRunArguments>any(), Mockito.<LocalDate>any(), Mockito.<InternalCallContext>any())).thenReturn(events);
+
+        final MetricRegistry metricRegistry = Mockito.mock(MetricRegistry.class);
+        Mockito.when(metricRegistry.timer(Mockito.anyString())).thenReturn(Mockito.mock(Timer.class));
+        final InvoiceDispatcher dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, invoiceDao,
+                                                                   internalCallContextFactory, invoicePluginDispatcher, locker, bus,
+                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, metricRegistry);
+
+        final LocalDate target = internalCallContext.toLocalDate(effectiveDate);
+        dispatcher.processAccountFromNotificationOrBusEvent(accountId, target, new DryRunFutureDateArguments(), false, context);
+        Mockito.verify(metricRegistry).timer("kb_invoice.total." + context.getTenantRecordId() + ".dryRun");
+        Mockito.verify(metricRegistry).timer("kb_invoice.billing_events." + context.getTenantRecordId() + ".dryRun");
+        Mockito.verify(metricRegistry).timer("kb_invoice.invoice_generation." + context.getTenantRecordId() + ".dryRun");
+
+        dispatcher.processAccountFromNotificationOrBusEvent(accountId, target, null, false, context);
+        Mockito.verify(metricRegistry).timer("kb_invoice.total." + context.getTenantRecordId() + ".live");
+        Mockito.verify(metricRegistry).timer("kb_invoice.fetch_invoices." + context.getTenantRecordId() + ".live");
+        Mockito.verify(metricRegistry).timer("kb_invoice.commit_invoice." + context.getTenantRecordId() + ".live");
+    }
+
     @Test(groups = "slow")
     public void testWithParking() throws InvoiceApiException, AccountApiException, CatalogApiException, SubscriptionBaseApiException, TagDefinitionApiException {
         final UUID accountId = account.getId();
@@ -147,7 +182,7 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
 
         final InvoiceDispatcher dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, invoiceDao,
                                                                    internalCallContextFactory, invoicePluginDispatcher, locker, bus,
-                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager);
+                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, new NoOpMetricRegistry());
 
         // Verify initial tags state for account
         Assert.assertTrue(tagUserApi.getTagsForAccount(accountId, true, callContext).isEmpty());
@@ -298,7 +333,7 @@ public class TestInvoiceDispatcher extends InvoiceTestSuiteWithEmbeddedDB {
         Mockito.when(billingApi.getBillingEventsForAccountAndUpdateAccountBCD(Mockito.<UUID>any(), Mockito.<DryRunArguments>any(), Mockito.<LocalDate>any(), Mockito.<InternalCallContext>any())).thenReturn(events);
         final InvoiceDispatcher dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi, invoiceDao,
                                                                    internalCallContextFactory, invoicePluginDispatcher, locker, bus,
-                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager);
+                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, new NoOpMetricRegistry());
         final Invoice invoice = processAccountFromNotificationOrBusEventAndAssertResult(account.getId(), new LocalDate("2012-07-30"), null, false, context);
         Assert.assertNotNull(invoice);
 
@@ -86,6 +86,7 @@ import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.optimizer.BusOptimizer;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLocker;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.mockito.Mockito;
 import org.skife.jdbi.v2.IDBI;
@@ -236,7 +237,7 @@ public class TestInvoiceHelper {
     public Invoice generateInvoice(final UUID accountId, @Nullable final LocalDate targetDate, @Nullable final DryRunArguments dryRunArguments, final InternalCallContext internalCallContext) throws InvoiceApiException {
         final InvoiceDispatcher dispatcher = new InvoiceDispatcher(generator, accountApi, billingApi, subscriptionApi,
                                                                    invoiceDao, internalCallContextFactory, invoicePluginDispatcher, locker, eventBus,
-                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager);
+                                                                   notificationQueueService, invoiceConfig, clock, invoiceOptimizer, parkedAccountsManager, new NoOpMetricRegistry());
 
         final List<Invoice> result = dispatcher.processAccountFromNotificationOrBusEvent(accountId, targetDate, dryRunArguments, false, internalCallContext);
         Assert.assertEquals(result.size(), 1);
@@ -21,6 +21,7 @@ package org.killbill.billing.invoice.dao;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -481,6 +482,19 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public List<InvoiceSubscriptionWatermarkModelDao> getSubscriptionWatermarks(final InternalTenantContext context) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void setSubscriptionWatermarks(final List<InvoiceSubscriptionWatermarkModelDao> watermarks, final InternalCallContext context) {
+    }
+
+    @Override
+    public void clearSubscriptionWatermarks(@Nullable final Collection<UUID> subscriptionIds, final InternalCallContext context) {
+    }
+
     @Override
     public List<AuditLogWithHistory> getInvoiceAuditLogsWithHistoryForId(final UUID invoiceId, final AuditLevel auditLevel, final InternalTenantContext context) {
         return null;
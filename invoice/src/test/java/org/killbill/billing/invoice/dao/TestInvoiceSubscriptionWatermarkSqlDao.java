@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestInvoiceSubscriptionWatermarkSqlDao extends InvoiceTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testSetAndClearWatermarks() {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final UUID subscriptionId3 = UUID.randomUUID();
+
+        invoiceDao.setSubscriptionWatermarks(List.of(new InvoiceSubscriptionWatermarkModelDao(subscriptionId1, new LocalDate(2020, 2, 1), "fp1", clock.getUTCNow()),
+                                                     new InvoiceSubscriptionWatermarkModelDao(subscriptionId2, new LocalDate(2020, 2, 15), "fp2", clock.getUTCNow()),
+                                                     new InvoiceSubscriptionWatermarkModelDao(subscriptionId3, null, "fp3", clock.getUTCNow())),
+                                             internalCallContext);
+        List<InvoiceSubscriptionWatermarkModelDao> watermarks = invoiceDao.getSubscriptionWatermarks(internalCallContext);
+        Assert.assertEquals(watermarks.size(), 3);
+        Assert.assertEquals(watermarks.get(0).getSubscriptionId(), subscriptionId1);
+        Assert.assertEquals(watermarks.get(0).getBilledThroughDate(), new LocalDate(2020, 2, 1));
+        Assert.assertEquals(watermarks.get(0).getFingerprint(), "fp1");
+        Assert.assertNull(watermarks.get(2).getBilledThroughDate());
+
+        // Existing watermarks are replaced
+        invoiceDao.setSubscriptionWatermarks(List.of(new InvoiceSubscriptionWatermarkModelDao(subscriptionId1, new LocalDate(2020, 3, 1), "fp1bis", clock.getUTCNow())), internalCallContext);
+        watermarks = invoiceDao.getSubscriptionWatermarks(internalCallContext);
+        Assert.assertEquals(watermarks.size(), 3);
+        final InvoiceSubscriptionWatermarkModelDao watermark1 = watermarks.stream().filter(input -> input.getSubscriptionId().equals(subscriptionId1)).findFirst().orElseThrow();
+        Assert.assertEquals(watermark1.getBilledThroughDate(), new LocalDate(2020, 3, 1));
+        Assert.assertEquals(watermark1.getFingerprint(), "fp1bis");
+
+        invoiceDao.clearSubscriptionWatermarks(List.of(subscriptionId2), internalCallContext);
+        watermarks = invoiceDao.getSubscriptionWatermarks(internalCallContext);
+        Assert.assertEquals(watermarks.stream().map(InvoiceSubscriptionWatermarkModelDao::getSubscriptionId).collect(Collectors.toSet()), Set.of(subscriptionId1, subscriptionId3));
+
+        invoiceDao.clearSubscriptionWatermarks(null, internalCallContext);
+        Assert.assertTrue(invoiceDao.getSubscriptionWatermarks(internalCallContext).isEmpty());
+    }
+}
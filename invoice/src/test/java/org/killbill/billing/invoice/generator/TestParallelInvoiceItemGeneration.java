@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.catalog.DefaultPrice;
+import org.killbill.billing.catalog.MockInternationalPrice;
+import org.killbill.billing.catalog.MockPlan;
+import org.killbill.billing.catalog.MockPlanPhase;
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.invoice.MockBillingEventSet;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
+import org.killbill.billing.invoice.optimizer.InvoiceOptimizerBase.AccountInvoices;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.killbill.billing.util.config.definition.InvoiceConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verifies that the parallel mode (org.killbill.invoice.parallel.enabled) generates exactly the same invoices as the sequential one
+public class TestParallelInvoiceItemGeneration extends InvoiceTestSuiteNoDB {
+
+    private static final int NB_SUBSCRIPTIONS = 50;
+
+    @Test(groups = "fast")
+    public void testParallelGenerationMatchesSequentialGeneration() throws Exception {
+        final Account account = invoiceUtil.createAccount(callContext);
+        final DefaultInvoiceGenerator sequentialGenerator = createGenerator(invoiceConfig);
+        final DefaultInvoiceGenerator parallelGenerator = createGenerator(createParallelInvoiceConfig());
+
+        final List<SubscriptionBase> subscriptions = new ArrayList<>();
+        for (int i = 0; i < NB_SUBSCRIPTIONS; i++) {
+            subscriptions.add(invoiceUtil.createSubscription());
+        }
+
+        final BillingEventSet events = new MockBillingEventSet();
+        long totalOrdering = 1;
+        for (int i = 0; i < NB_SUBSCRIPTIONS; i++) {
+            final LocalDate startDate = new LocalDate(2020, 1, 1 + i % 28);
+            final BillingPeriod billingPeriod = i % 5 == 0 ? BillingPeriod.ANNUAL : BillingPeriod.MONTHLY;
+            events.add(createEvent(account, subscriptions.get(i), startDate, BigDecimal.valueOf(10 + i), billingPeriod, 1 + i % 28, totalOrdering++, SubscriptionBaseTransitionType.CREATE));
+        }
+
+        // No existing invoice
+        final LocalDate firstTargetDate = new LocalDate(2020, 4, 1);
+        final InvoiceWithMetadata firstSequentialInvoice = sequentialGenerator.generateInvoice(account, events, new AccountInvoices(), null, firstTargetDate, Currency.USD, null, internalCallContext);
+        final InvoiceWithMetadata firstParallelInvoice = parallelGenerator.generateInvoice(account, events, new AccountInvoices(), null, firstTargetDate, Currency.USD, null, internalCallContext);
+        assertSameInvoice(firstParallelInvoice, firstSequentialInvoice);
+
+        // Past changes for some subscriptions (to trigger repairs) and new periods for all of them
+        for (int i = 0; i < NB_SUBSCRIPTIONS; i += 3) {
+            events.add(createEvent(account, subscriptions.get(i), new LocalDate(2020, 3, 15), BigDecimal.valueOf(100 + i), BillingPeriod.MONTHLY, 15, totalOrdering++, SubscriptionBaseTransitionType.CHANGE));
+        }
+        final List<Invoice> existingInvoices = List.of(firstSequentialInvoice.getInvoice());
+        final LocalDate secondTargetDate = new LocalDate(2020, 6, 1);
+        final InvoiceWithMetadata secondSequentialInvoice = sequentialGenerator.generateInvoice(account, events, new AccountInvoices(null, null, existingInvoices), null, secondTargetDate, Currency.USD, null, internalCallContext);
+        final InvoiceWithMetadata secondParallelInvoice = parallelGenerator.generateInvoice(account, events, new AccountInvoices(null, null, existingInvoices), null, secondTargetDate, Currency.USD, null, internalCallContext);
+        Assert.assertTrue(secondSequentialInvoice.getInvoice().getInvoiceItems().stream().anyMatch(input -> input.getInvoiceItemType() == InvoiceItemType.REPAIR_ADJ));
+        assertSameInvoice(secondParallelInvoice, secondSequentialInvoice);
+    }
+
+    private DefaultInvoiceGenerator createGenerator(final InvoiceConfig config) {
+        final InvoiceItemGeneratorExecutor executor = new InvoiceItemGeneratorExecutor(config);
+        return new DefaultInvoiceGenerator(clock,
+                                           config,
+                                           new FixedAndRecurringInvoiceItemGenerator(config, clock, executor),
+                                           new UsageInvoiceItemGenerator(rawUsageOptimizer, config, executor));
+    }
+
+    private InvoiceConfig createParallelInvoiceConfig() {
+        return (InvoiceConfig) Proxy.newProxyInstance(InvoiceConfig.class.getClassLoader(),
+                                                      new Class[]{InvoiceConfig.class},
+                                                      (proxy, method, args) -> {
+                                                          if ("isParallelItemGenerationEnabled".equals(method.getName())) {
+                                                              return true;
+                                                          }
+                                                          try {
+                                                              return method.invoke(invoiceConfig, args);
+                                                          } catch (final InvocationTargetException e) {
+                                                              throw e.getCause();
+                                                          }
+                                                      });
+    }
+
+    private BillingEvent createEvent(final Account account, final SubscriptionBase subscription, final LocalDate effectiveDate,
+                                     final BigDecimal recurringPrice, final BillingPeriod billingPeriod, final int billCycleDayLocal,
+                                     final long totalOrdering, final SubscriptionBaseTransitionType type) {
+        final Plan plan = new MockPlan();
+        final PlanPhase phase = new MockPlanPhase(new MockInternationalPrice(new DefaultPrice(recurringPrice, Currency.USD)), null, billingPeriod);
+        return invoiceUtil.createMockBillingEvent(account, subscription, effectiveDate.toDateTimeAtStartOfDay(), plan, phase,
+                                                  null, recurringPrice, Currency.USD, billingPeriod, billCycleDayLocal,
+                                                  BillingMode.IN_ADVANCE, "Test", totalOrdering, type);
+    }
+
+    private void assertSameInvoice(final InvoiceWithMetadata actual, final InvoiceWithMetadata expected) {
+        Assert.assertNotNull(expected.getInvoice());
+        Assert.assertNotNull(actual.getInvoice());
+
+        // Ids of new items are random: compare everything else, in order
+        final List<InvoiceItem> actualItems = actual.getInvoice().getInvoiceItems();
+        final List<InvoiceItem> expectedItems = expected.getInvoice().getInvoiceItems();
+        Assert.assertEquals(actualItems.size(), expectedItems.size());
+        for (int i = 0; i < expectedItems.size(); i++) {
+            Assert.assertEquals(toComparableString(actualItems.get(i)), toComparableString(expectedItems.get(i)));
+        }
+
+        final Map<UUID, SubscriptionFutureNotificationDates> actualDates = actual.getPerSubscriptionFutureNotificationDates();
+        final Map<UUID, SubscriptionFutureNotificationDates> expectedDates = expected.getPerSubscriptionFutureNotificationDates();
+        Assert.assertEquals(new ArrayList<>(actualDates.keySet()), new ArrayList<>(expectedDates.keySet()));
+        for (final Entry<UUID, SubscriptionFutureNotificationDates> entry : expectedDates.entrySet()) {
+            Assert.assertEquals(actualDates.get(entry.getKey()).getNextRecurringDate(), entry.getValue().getNextRecurringDate());
+            Assert.assertEquals(actualDates.get(entry.getKey()).getNextUsageDates(), entry.getValue().getNextUsageDates());
+        }
+    }
+
+    private String toComparableString(final InvoiceItem item) {
+        return String.join("|",
+                           String.valueOf(item.getInvoiceItemType()),
+                           String.valueOf(item.getSubscriptionId()),
+                           String.valueOf(item.getPlanName()),
+                           String.valueOf(item.getPhaseName()),
+                           String.valueOf(item.getStartDate()),
+                           String.valueOf(item.getEndDate()),
+                           String.valueOf(item.getAmount()),
+                           String.valueOf(item.getRate()),
+                           String.valueOf(item.getLinkedItemId()));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.catalog.DefaultPrice;
+import org.killbill.billing.catalog.MockInternationalPrice;
+import org.killbill.billing.catalog.MockPlan;
+import org.killbill.billing.catalog.MockPlanPhase;
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.invoice.MockBillingEventSet;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.dao.InvoiceSubscriptionWatermarkModelDao;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.ItemAdjInvoiceItem;
+import org.killbill.billing.invoice.optimizer.InvoiceOptimizerBase.AccountInvoices;
+import org.killbill.billing.invoice.optimizer.SubscriptionWatermarks;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+// Verifies that subscriptions skipped thanks to their watermark (org.killbill.invoice.watermark.enabled) don't change the generated invoices
+public class TestSubscriptionWatermarkGeneration extends InvoiceTestSuiteNoDB {
+
+    private static final int NB_SUBSCRIPTIONS = 10;
+
+    @Test(groups = "fast")
+    public void testUnchangedSubscriptionsAreSkipped() throws Exception {
+        final Account account = invoiceUtil.createAccount(callContext);
+
+        final List<SubscriptionBase> subscriptions = new ArrayList<>();
+        final BillingEventSet events = new MockBillingEventSet();
+        long totalOrdering = 1;
+        for (int i = 0; i < NB_SUBSCRIPTIONS; i++) {
+            subscriptions.add(invoiceUtil.createSubscription());
+            events.add(createEvent(account, subscriptions.get(i), new LocalDate(2020, 1, 1), BigDecimal.valueOf(10 + i), 1, totalOrdering++, SubscriptionBaseTransitionType.CREATE));
+        }
+
+        // First run: nothing to skip, all subscriptions get a watermark
+        final LocalDate firstTargetDate = new LocalDate(2020, 1, 1);
+        final InvoiceWithMetadata firstInvoice = generator.generateInvoice(account, events, withWatermarks(Collections.emptyList(), Collections.emptyList()), null, firstTargetDate, Currency.USD, null, internalCallContext);
+        Assert.assertEquals(firstInvoice.getInvoice().getInvoiceItems().size(), NB_SUBSCRIPTIONS);
+        final List<InvoiceSubscriptionWatermarkModelDao> firstWatermarks = firstInvoice.getSubscriptionWatermarks();
+        Assert.assertEquals(firstWatermarks.size(), NB_SUBSCRIPTIONS);
+        for (final InvoiceSubscriptionWatermarkModelDao watermark : firstWatermarks) {
+            Assert.assertEquals(watermark.getBilledThroughDate(), new LocalDate(2020, 2, 1));
+        }
+
+        // Mid-period change for the first subscription only
+        final UUID changedSubscriptionId = subscriptions.get(0).getId();
+        events.add(createEvent(account, subscriptions.get(0), new LocalDate(2020, 1, 15), BigDecimal.valueOf(100), 1, totalOrdering++, SubscriptionBaseTransitionType.CHANGE));
+        final List<Invoice> existingInvoices = List.of(firstInvoice.getInvoice());
+        final LocalDate secondTargetDate = new LocalDate(2020, 1, 15);
+
+        final AccountInvoices accountInvoices = withWatermarks(existingInvoices, firstWatermarks);
+        final Set<UUID> unchangedSubscriptionIds = accountInvoices.getUnchangedSubscriptionIds(events, secondTargetDate, internalCallContext);
+        Assert.assertEquals(unchangedSubscriptionIds.size(), NB_SUBSCRIPTIONS - 1);
+        Assert.assertFalse(unchangedSubscriptionIds.contains(changedSubscriptionId));
+
+        final InvoiceWithMetadata secondInvoice = generator.generateInvoice(account, events, accountInvoices, null, secondTargetDate, Currency.USD, null, internalCallContext);
+        final InvoiceWithMetadata secondInvoiceWithoutWatermarks = generator.generateInvoice(account, events, new AccountInvoices(null, null, existingInvoices), null, secondTargetDate, Currency.USD, null, internalCallContext);
+        assertSameItems(secondInvoice, secondInvoiceWithoutWatermarks);
+        Assert.assertTrue(secondInvoice.getInvoice().getInvoiceItems().stream().anyMatch(input -> input.getInvoiceItemType() == InvoiceItemType.REPAIR_ADJ));
+        // Only the changed subscription gets a new watermark
+        Assert.assertEquals(secondInvoice.getSubscriptionWatermarks().size(), 1);
+        Assert.assertEquals(secondInvoice.getSubscriptionWatermarks().get(0).getSubscriptionId(), changedSubscriptionId);
+        Assert.assertEquals(secondInvoice.getSubscriptionWatermarks().get(0).getBilledThroughDate(), new LocalDate(2020, 2, 1));
+
+        // Once the watermark is reached, nothing is skipped anymore
+        final LocalDate thirdTargetDate = new LocalDate(2020, 2, 1);
+        Assert.assertTrue(withWatermarks(existingInvoices, firstWatermarks).getUnchangedSubscriptionIds(events, thirdTargetDate, internalCallContext).isEmpty());
+    }
+
+    @Test(groups = "fast")
+    public void testAdjustmentInvalidatesWatermark() throws Exception {
+        final Account account = invoiceUtil.createAccount(callContext);
+
+        final BillingEventSet events = new MockBillingEventSet();
+        final SubscriptionBase subscription = invoiceUtil.createSubscription();
+        events.add(createEvent(account, subscription, new LocalDate(2020, 1, 1), BigDecimal.TEN, 1, 1, SubscriptionBaseTransitionType.CREATE));
+
+        final InvoiceWithMetadata firstInvoice = generator.generateInvoice(account, events, withWatermarks(Collections.emptyList(), Collections.emptyList()), null, new LocalDate(2020, 1, 1), Currency.USD, null, internalCallContext);
+        final List<InvoiceSubscriptionWatermarkModelDao> watermarks = firstInvoice.getSubscriptionWatermarks();
+        final LocalDate targetDate = new LocalDate(2020, 1, 20);
+        Assert.assertEquals(withWatermarks(List.of(firstInvoice.getInvoice()), watermarks).getUnchangedSubscriptionIds(events, targetDate, internalCallContext), Set.of(subscription.getId()));
+
+        // Item adjustments don't carry the subscription id, they are matched through the adjusted item
+        final InvoiceItem recurringItem = firstInvoice.getInvoice().getInvoiceItems().get(0);
+        final DefaultInvoice adjustmentInvoice = new DefaultInvoice(account.getId(), targetDate, targetDate, Currency.USD);
+        adjustmentInvoice.addInvoiceItem(new ItemAdjInvoiceItem(recurringItem, targetDate, BigDecimal.ONE.negate(), Currency.USD));
+        Assert.assertTrue(withWatermarks(List.of(firstInvoice.getInvoice(), adjustmentInvoice), watermarks).getUnchangedSubscriptionIds(events, targetDate, internalCallContext).isEmpty());
+    }
+
+    private AccountInvoices withWatermarks(final List<Invoice> invoices, final List<InvoiceSubscriptionWatermarkModelDao> watermarks) {
+        return new AccountInvoices(null, null, invoices, new SubscriptionWatermarks(watermarks));
+    }
+
+    private BillingEvent createEvent(final Account account, final SubscriptionBase subscription, final LocalDate effectiveDate,
+                                     final BigDecimal recurringPrice, final int billCycleDayLocal,
+                                     final long totalOrdering, final SubscriptionBaseTransitionType type) {
+        final Plan plan = new MockPlan();
+        final PlanPhase phase = new MockPlanPhase(new MockInternationalPrice(new DefaultPrice(recurringPrice, Currency.USD)), null, BillingPeriod.MONTHLY);
+        return invoiceUtil.createMockBillingEvent(account, subscription, effectiveDate.toDateTimeAtStartOfDay(), plan, phase,
+                                                  null, recurringPrice, Currency.USD, BillingPeriod.MONTHLY, billCycleDayLocal,
+                                                  BillingMode.IN_ADVANCE, "Test", totalOrdering, type);
+    }
+
+    private void assertSameItems(final InvoiceWithMetadata actual, final InvoiceWithMetadata expected) {
+        // Ids of new items are random: compare everything else, regardless of the order
+        Assert.assertEquals(toComparableStrings(actual.getInvoice().getInvoiceItems()), toComparableStrings(expected.getInvoice().getInvoiceItems()));
+        final Map<UUID, LocalDate> actualDates = actual.getPerSubscriptionFutureNotificationDates().entrySet().stream()
+                                                       .filter(entry -> entry.getValue().getNextRecurringDate() != null)
+                                                       .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getNextRecurringDate()));
+        final Map<UUID, LocalDate> expectedDates = expected.getPerSubscriptionFutureNotificationDates().entrySet().stream()
+                                                           .filter(entry -> entry.getValue().getNextRecurringDate() != null)
+                                                           .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getNextRecurringDate()));
+        // Skipped subscriptions don't get a notification date (it was already recorded by the run which set their watermark)
+        for (final Map.Entry<UUID, LocalDate> entry : actualDates.entrySet()) {
+            Assert.assertEquals(entry.getValue(), expectedDates.get(entry.getKey()));
+        }
+        Assert.assertEquals(new HashSet<>(actualDates.values()), new HashSet<>(expectedDates.values()));
+    }
+
+    private List<String> toComparableStrings(final List<InvoiceItem> items) {
+        return items.stream()
+                    .map(item -> String.join("|",
+                                             String.valueOf(item.getInvoiceItemType()),
+                                             String.valueOf(item.getSubscriptionId()),
+                                             String.valueOf(item.getStartDate()),
+                                             String.valueOf(item.getEndDate()),
+                                             String.valueOf(item.getAmount()),
+                                             String.valueOf(item.getLinkedItemId())))
+                    .sorted()
+                    .collect(Collectors.toUnmodifiableList());
+    }
+}
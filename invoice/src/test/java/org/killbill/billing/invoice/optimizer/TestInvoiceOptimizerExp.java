@@ -478,6 +478,44 @@ public class TestInvoiceOptimizerExp extends InvoiceTestSuiteNoDB {
     }
 
 
+    @Test(groups = "fast")
+    public void testInAdvanceP0MWithOtherSubscriptions() {
+
+        final LocalDate startDate = new LocalDate(2021, 2, 1);
+        final LocalDate targetDate = new LocalDate(2021, 5, 1);
+
+        // Proposed: invoice from 2021-2-1 -> 2021-6-1
+        final List<InvoiceItem> proposedItems = new ArrayList<InvoiceItem>();
+        final Invoice proposed = createInvoice(targetDate);
+        proposedItems.add(createItem(proposed.getId(), BigDecimal.TEN, BigDecimal.TEN, new LocalDate(2021, 3, 1), new LocalDate(2021, 4, 1)));
+        proposedItems.add(createItem(proposed.getId(), BigDecimal.TEN, BigDecimal.TEN, new LocalDate(2021, 4, 1), new LocalDate(2021, 5, 1)));
+        proposedItems.add(createItem(proposed.getId(), BigDecimal.TEN, BigDecimal.TEN, new LocalDate(2021, 5, 1), new LocalDate(2021, 6, 1)));
+
+        // P0M
+        final LocalDate cutoffDate = targetDate;
+        // Existing: items for the same periods but other subscriptions, plus 2021-3-1 -> 2021-4-1 for our subscription
+        final List<Invoice> existing = new ArrayList<Invoice>();
+        final Invoice invoice = createInvoice(cutoffDate);
+        for (int i = 0; i < 10; i++) {
+            invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), account.getId(), UUID.randomUUID(), UUID.randomUUID(), productName, planName, phaseName, null,
+                                                            new LocalDate(2021, 4, 1), new LocalDate(2021, 5, 1), BigDecimal.TEN, BigDecimal.TEN, Currency.USD));
+        }
+        invoice.addInvoiceItem(createItem(invoice.getId(), BigDecimal.TEN, BigDecimal.TEN, new LocalDate(2021, 3, 1), new LocalDate(2021, 4, 1)));
+        existing.add(invoice);
+
+        final DefaultBillingEventSet billingEvents = new DefaultBillingEventSet(false, false, false);
+        billingEvents.add(createBillingEvent(startDate, BillingMode.IN_ADVANCE, SubscriptionBaseTransitionType.CREATE));
+
+        final AccountInvoicesExp test = new AccountInvoicesExp(cutoffDate, null, existing);
+        test.filterProposedItems(proposedItems, billingEvents, internalCallContext);
+        Assert.assertEquals(proposedItems.size(), 2);
+        // Matches the existing item of our subscription
+        Assert.assertEquals(proposedItems.get(0).getStartDate(), new LocalDate(2021, 3, 1));
+        // New proposed item (the existing items starting on 2021-4-1 belong to other subscriptions)
+        Assert.assertEquals(proposedItems.get(1).getStartDate(), new LocalDate(2021, 5, 1));
+    }
+
+
     private InvoiceItem createItem(final UUID invoiceId, final BigDecimal amount, final BigDecimal rate, final LocalDate startDate, final LocalDate endDate) {
         final RecurringInvoiceItem item = new RecurringInvoiceItem(invoiceId, account.getId(), subscription.getBundleId(), subscription.getId(), productName, planName, phaseName, null, startDate, endDate,
                                                                    amount, rate, Currency.USD);
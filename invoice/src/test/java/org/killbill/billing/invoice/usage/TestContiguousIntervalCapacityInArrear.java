@@ -42,6 +42,7 @@ import org.killbill.billing.invoice.usage.details.UsageCapacityInArrearAggregate
 import org.killbill.billing.invoice.usage.details.UsageInArrearTierUnitDetail;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.usage.api.svcs.DefaultAggregatedRawUsage;
 import org.killbill.billing.usage.api.svcs.DefaultRawUsage;
 import org.killbill.billing.util.config.definition.InvoiceConfig.UsageDetailMode;
 import org.testng.annotations.Test;
@@ -235,6 +236,31 @@ public class TestContiguousIntervalCapacityInArrear extends TestUsageInArrearBas
         assertTrue(result.get(1).getEndDate().compareTo(endDate) == 0);
     }
 
+    @Test(groups = "fast")
+    public void testGetRolledUpUsageWithAggregatedUsage() throws Exception {
+        final DefaultUnit unit = new DefaultUnit().setName("unit");
+        final DefaultLimit limit = new DefaultLimit().setUnit(unit).setMax(BigDecimal.valueOf(-1));
+        final DefaultTier tier = createDefaultTierWithLimits(BigDecimal.TEN, limit);
+        final DefaultUsage usage = createCapacityInArrearUsage(usageName, BillingPeriod.MONTHLY, tier);
+
+        final LocalDate t0 = new LocalDate(2015, 03, BCD);
+        final BillingEvent eventT0 = createMockBillingEvent(t0.toDateTimeAtStartOfDay(DateTimeZone.UTC), BillingPeriod.MONTHLY, Collections.<Usage>emptyList(), catalogEffectiveDate);
+        final LocalDate t1 = new LocalDate(2015, 04, BCD);
+        final BillingEvent eventT1 = createMockBillingEvent(t1.toDateTimeAtStartOfDay(DateTimeZone.UTC), BillingPeriod.MONTHLY, Collections.<Usage>emptyList(), catalogEffectiveDate);
+
+        // Daily aggregate of 3 records (5, 20 and 5): the capacity is the largest record, not the sum
+        final RawUsageRecord aggregated = new DefaultAggregatedRawUsage(subscriptionId, new LocalDate(2015, 03, 20).toDateTimeAtStartOfDay(DateTimeZone.UTC), new LocalDate(2015, 03, 20).toDateTimeAtStartOfDay(DateTimeZone.UTC).plusHours(10),
+                                                                        "unit", BigDecimal.valueOf(30L), BigDecimal.valueOf(20L), 3L, "tracking-1");
+        final RawUsageRecord raw = new DefaultRawUsage(subscriptionId, new LocalDate(2015, 03, 25).toDateTimeAtStartOfDay(DateTimeZone.UTC), "unit", BigDecimal.valueOf(15L), "tracking-2");
+
+        final ContiguousIntervalUsageInArrear intervalCapacityInArrear = createContiguousIntervalCapacityInArrear(usage, List.of(aggregated, raw), t1, true, eventT0, eventT1);
+
+        final List<RolledUpUsageWithMetadata> rolledUpUsage = intervalCapacityInArrear.getRolledUpUsage().getUsage();
+        assertEquals(rolledUpUsage.size(), 1);
+        assertEquals(rolledUpUsage.get(0).getRolledUpUnits().size(), 1);
+        assertEquals(rolledUpUsage.get(0).getRolledUpUnits().get(0).getAmount().compareTo(BigDecimal.valueOf(20L)), 0);
+    }
+
     @Test(groups = "fast")
     public void testMultipleItemsAndTiersAggregateMode() throws Exception {
         testMultipleItemsAndTiers(UsageDetailMode.AGGREGATE);
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.usage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.usage.api.svcs.DefaultRawUsage;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestSubscriptionRawUsageReader extends InvoiceTestSuiteNoDB {
+
+    private static final DateTime START_DATE = new DateTime(2020, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    @Test(groups = "fast")
+    public void testReadInOrder() throws IOException {
+        final List<UUID> subscriptionIds = createSortedSubscriptionIds(3);
+        final List<RawUsageRecord> rawUsage = createRawUsage(subscriptionIds, 4);
+
+        try (final SubscriptionRawUsageReader reader = new SubscriptionRawUsageReader(new DefaultPagination<>((long) rawUsage.size(), rawUsage.iterator()))) {
+            for (int i = 0; i < subscriptionIds.size(); i++) {
+                Assert.assertEquals(reader.getRawUsage(subscriptionIds.get(i)), rawUsage.subList(4 * i, 4 * (i + 1)));
+            }
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testReadWithSkippedAndMissingSubscriptions() throws IOException {
+        final List<UUID> subscriptionIds = createSortedSubscriptionIds(4);
+        // No usage for the third subscription
+        final List<RawUsageRecord> rawUsage = createRawUsage(List.of(subscriptionIds.get(0), subscriptionIds.get(1), subscriptionIds.get(3)), 2);
+
+        try (final SubscriptionRawUsageReader reader = new SubscriptionRawUsageReader(new DefaultPagination<>((long) rawUsage.size(), rawUsage.iterator()))) {
+            // First subscription skipped (e.g. no in-arrear billing event)
+            Assert.assertEquals(reader.getRawUsage(subscriptionIds.get(1)), rawUsage.subList(2, 4));
+            Assert.assertTrue(reader.getRawUsage(subscriptionIds.get(2)).isEmpty());
+            Assert.assertEquals(reader.getRawUsage(subscriptionIds.get(3)), rawUsage.subList(4, 6));
+            // Requested out of order: served from the buffered records
+            Assert.assertEquals(reader.getRawUsage(subscriptionIds.get(0)), rawUsage.subList(0, 2));
+            Assert.assertTrue(reader.getRawUsage(UUID.randomUUID()).isEmpty());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testReadUnorderedStream() throws IOException {
+        final List<UUID> subscriptionIds = createSortedSubscriptionIds(2);
+        final List<RawUsageRecord> rawUsage = createRawUsage(subscriptionIds, 1);
+        // Records for the first subscription show up again after the second one
+        rawUsage.addAll(createRawUsage(List.of(subscriptionIds.get(0)), 1));
+
+        try (final SubscriptionRawUsageReader reader = new SubscriptionRawUsageReader(new DefaultPagination<>((long) rawUsage.size(), rawUsage.iterator()))) {
+            Assert.assertEquals(reader.getRawUsage(subscriptionIds.get(0)), rawUsage.subList(0, 1));
+            try {
+                reader.getRawUsage(subscriptionIds.get(1));
+                Assert.fail("Stream isn't ordered");
+            } catch (final IllegalStateException ignored) {
+            }
+        }
+    }
+
+    private List<UUID> createSortedSubscriptionIds(final int nbSubscriptions) {
+        final List<UUID> subscriptionIds = new ArrayList<>();
+        for (int i = 0; i < nbSubscriptions; i++) {
+            subscriptionIds.add(UUID.randomUUID());
+        }
+        subscriptionIds.sort(Comparator.comparing(UUID::toString));
+        return subscriptionIds;
+    }
+
+    private List<RawUsageRecord> createRawUsage(final Iterable<UUID> subscriptionIds, final int nbRecordsPerSubscription) {
+        final List<RawUsageRecord> rawUsage = new ArrayList<>();
+        for (final UUID subscriptionId : subscriptionIds) {
+            for (int i = 0; i < nbRecordsPerSubscription; i++) {
+                rawUsage.add(new DefaultRawUsage(subscriptionId, START_DATE.plusDays(i), "unit", BigDecimal.TEN, UUID.randomUUID().toString()));
+            }
+        }
+        return rawUsage;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModel;
+
+@ApiModel(value = "UsageStreamSummary")
+public class UsageStreamSummaryJson {
+
+    private final long nbRecords;
+    private final long nbRecorded;
+    private final long nbDuplicates;
+    private final long nbRejected;
+    private final long nbBatches;
+
+    @JsonCreator
+    public UsageStreamSummaryJson(@JsonProperty("nbRecords") final long nbRecords,
+                                  @JsonProperty("nbRecorded") final long nbRecorded,
+                                  @JsonProperty("nbDuplicates") final long nbDuplicates,
+                                  @JsonProperty("nbRejected") final long nbRejected,
+                                  @JsonProperty("nbBatches") final long nbBatches) {
+        this.nbRecords = nbRecords;
+        this.nbRecorded = nbRecorded;
+        this.nbDuplicates = nbDuplicates;
+        this.nbRejected = nbRejected;
+        this.nbBatches = nbBatches;
+    }
+
+    public long getNbRecords() {
+        return nbRecords;
+    }
+
+    public long getNbRecorded() {
+        return nbRecorded;
+    }
+
+    public long getNbDuplicates() {
+        return nbDuplicates;
+    }
+
+    public long getNbRejected() {
+        return nbRejected;
+    }
+
+    public long getNbBatches() {
+        return nbBatches;
+    }
+}
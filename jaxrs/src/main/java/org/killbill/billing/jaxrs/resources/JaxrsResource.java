@@ -155,6 +155,8 @@ public interface JaxrsResource {
 
     String QUERY_AUTO_COMMIT = "autoCommit";
 
+    String QUERY_BATCH_SIZE = "batchSize";
+
     String QUERY_NOTIFICATION_CALLBACK = "cb";
 
     String PAGINATION = "pagination";
@@ -17,15 +17,25 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
@@ -50,14 +60,18 @@ import org.killbill.billing.jaxrs.json.RolledUpUsageJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UnitUsageRecordJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UsageRecordJson;
+import org.killbill.billing.jaxrs.json.UsageRecordResultJson;
+import org.killbill.billing.jaxrs.json.UsageStreamSummaryJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.InvoicePaymentApi;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.usage.api.BulkUsageUserApi;
 import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
 import org.killbill.billing.usage.api.UsageApiException;
+import org.killbill.billing.usage.api.UsageRecordResult;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
@@ -70,6 +84,8 @@ import org.killbill.commons.utils.collect.Iterables;
 import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.api.annotation.TimedResource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -82,7 +98,11 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Api(value = JaxrsResource.USAGES_PATH, description = "Operations on usage", tags="Usage")
 public class UsageResource extends JaxRsResourceBase {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_STREAM_BATCH_SIZE = 10000;
+
     private final UsageUserApi usageUserApi;
+    private final BulkUsageUserApi bulkUsageUserApi;
     private final EntitlementApi entitlementApi;
 
     @Inject
@@ -92,6 +112,7 @@ public class UsageResource extends JaxRsResourceBase {
                          final AuditUserApi auditUserApi,
                          final AccountUserApi accountUserApi,
                          final UsageUserApi usageUserApi,
+                         final BulkUsageUserApi bulkUsageUserApi,
                          final PaymentApi paymentApi,
                          final InvoicePaymentApi invoicePaymentApi,
                          final EntitlementApi entitlementApi,
@@ -99,6 +120,7 @@ public class UsageResource extends JaxRsResourceBase {
                          final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, invoicePaymentApi, null, clock, context);
         this.usageUserApi = usageUserApi;
+        this.bulkUsageUserApi = bulkUsageUserApi;
         this.entitlementApi = entitlementApi;
     }
 
@@ -117,20 +139,7 @@ public class UsageResource extends JaxRsResourceBase {
                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException,
                                                                                         AccountApiException,
                                                                                         UsageApiException {
-        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
-        verifyNonNullOrEmpty(json.getSubscriptionId(), "SubscriptionUsageRecordJson subscriptionId needs to be set",
-                             json.getUnitUsageRecords(), "SubscriptionUsageRecordJson unitUsageRecords needs to be set");
-        Preconditions.checkArgument(!json.getUnitUsageRecords().isEmpty(), "json.getUnitUsageRecords() is empty");
-
-        for (final UnitUsageRecordJson unitUsageRecordJson : json.getUnitUsageRecords()) {
-            verifyNonNullOrEmpty(unitUsageRecordJson.getUnitType(), "UnitUsageRecordJson unitType need to be set");
-            Preconditions.checkArgument(Iterables.size(unitUsageRecordJson.getUsageRecords()) > 0,
-                                        "UnitUsageRecordJson usageRecords must have at least one element.");
-            for (final UsageRecordJson usageRecordJson : unitUsageRecordJson.getUsageRecords()) {
-                verifyNonNull(usageRecordJson.getAmount(), "UsageRecordJson amount needs to be set");
-                verifyNonNull(usageRecordJson.getRecordDate(), "UsageRecordJson recordDate needs to be set");
-            }
-        }
+        verifyUsageRecord(json);
         final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
         // Verify subscription exists..
         final Entitlement entitlement = entitlementApi.getEntitlementForId(json.getSubscriptionId(), false, callContext);
@@ -147,6 +156,150 @@ public class UsageResource extends JaxRsResourceBase {
         return Response.status(Status.CREATED).build();
     }
 
+    @TimedResource
+    @POST
+    @Path("/bulk")
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage for multiple subscriptions", response = UsageRecordResultJson.class, responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 201, message = "Successfully recorded usage data, see the status of each record"),
+                           @ApiResponse(code = 400, message = "Invalid subscription (e.g. inactive)")})
+    public Response recordUsages(final List<SubscriptionUsageRecordJson> json,
+                                 @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                 @HeaderParam(HDR_REASON) final String reason,
+                                 @HeaderParam(HDR_COMMENT) final String comment,
+                                 @javax.ws.rs.core.Context final HttpServletRequest request,
+                                 @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException {
+        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson list should be specified");
+        for (final SubscriptionUsageRecordJson subscriptionUsageRecordJson : json) {
+            verifyUsageRecord(subscriptionUsageRecordJson);
+        }
+
+        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
+        // Verify each subscription only once, and before recording anything
+        if (!getSubscriptionsWithUsageAfterEndDate(json, callContext).isEmpty()) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        final List<SubscriptionUsageRecord> records = json.stream()
+                                                          .map(SubscriptionUsageRecordJson::toSubscriptionUsageRecord)
+                                                          .collect(Collectors.toUnmodifiableList());
+        final List<UsageRecordResultJson> result = bulkUsageUserApi.recordRolledUpUsage(records, callContext)
+                                                                   .stream()
+                                                                   .map(UsageRecordResultJson::new)
+                                                                   .collect(Collectors.toUnmodifiableList());
+        return Response.status(Status.CREATED).entity(result).build();
+    }
+
+    @TimedResource
+    @POST
+    @Path("/stream")
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage from a stream of newline-delimited SubscriptionUsageRecord", response = UsageStreamSummaryJson.class)
+    @ApiResponses(value = {@ApiResponse(code = 201, message = "Successfully recorded usage data, see the summary"),
+                           @ApiResponse(code = 400, message = "Invalid usage record, records from previous batches have been recorded")})
+    public Response recordUsageStream(final InputStream body,
+                                      @QueryParam(QUERY_BATCH_SIZE) @DefaultValue("1000") final Integer batchSize,
+                                      @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                      @HeaderParam(HDR_REASON) final String reason,
+                                      @HeaderParam(HDR_COMMENT) final String comment,
+                                      @javax.ws.rs.core.Context final HttpServletRequest request,
+                                      @javax.ws.rs.core.Context final UriInfo uriInfo) throws EntitlementApiException, IOException {
+        Preconditions.checkArgument(batchSize > 0 && batchSize <= MAX_STREAM_BATCH_SIZE, "batchSize must be between 1 and " + MAX_STREAM_BATCH_SIZE);
+        final CallContext callContext = context.createCallContextNoAccountId(createdBy, reason, comment, request);
+
+        // Records are bound one at a time as the body is read, and written every batchSize records: memory only depends on the batch size
+        final UsageStreamProgress progress = new UsageStreamProgress();
+        final List<SubscriptionUsageRecordJson> batch = new ArrayList<>(batchSize);
+        // Previous batches are committed: every error reports how far the stream went, so that the client knows where to resume
+        try (final MappingIterator<SubscriptionUsageRecordJson> records = mapper.readerFor(SubscriptionUsageRecordJson.class).readValues(body)) {
+            while (records.hasNextValue()) {
+                final SubscriptionUsageRecordJson json = records.nextValue();
+                verifyUsageRecord(json);
+                batch.add(json);
+                progress.nbRecords++;
+                if (batch.size() == batchSize) {
+                    recordUsageBatch(batch, progress, callContext);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                recordUsageBatch(batch, progress, callContext);
+            }
+        } catch (final JsonProcessingException e) {
+            throw new IllegalArgumentException(String.format("Invalid usage record after record %s (%s): %s", progress.nbRecords, progress.describeCommitted(), e.getOriginalMessage()), e);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid usage record after record %s (%s): %s", progress.nbRecords, progress.describeCommitted(), e.getMessage()), e);
+        } catch (final EntitlementApiException e) {
+            // Keep the code, for the status of the response
+            throw new EntitlementApiException(e, e.getCode(), String.format("Unable to record usage after record %s (%s): %s", progress.nbRecords, progress.describeCommitted(), e.getMessage()));
+        } catch (final IOException e) {
+            throw new IOException(String.format("Unable to read usage records after record %s (%s)", progress.nbRecords, progress.describeCommitted()), e);
+        }
+
+        return Response.status(Status.CREATED).entity(progress.toJson()).build();
+    }
+
+    private void recordUsageBatch(final List<SubscriptionUsageRecordJson> batch, final UsageStreamProgress progress, final CallContext callContext) throws EntitlementApiException {
+        // Unlike the bulk endpoint, part of the stream has already been recorded: skip the records of inactive subscriptions instead of failing the whole request
+        final Set<UUID> rejectedSubscriptionIds = getSubscriptionsWithUsageAfterEndDate(batch, callContext);
+        final List<SubscriptionUsageRecord> records = new ArrayList<>(batch.size());
+        for (final SubscriptionUsageRecordJson json : batch) {
+            if (rejectedSubscriptionIds.contains(json.getSubscriptionId())) {
+                progress.nbRejected++;
+            } else {
+                records.add(json.toSubscriptionUsageRecord());
+            }
+        }
+
+        if (!records.isEmpty()) {
+            for (final UsageRecordResult result : bulkUsageUserApi.recordRolledUpUsage(records, callContext)) {
+                if (result.getStatus() == UsageRecordResult.Status.DUPLICATE) {
+                    progress.nbDuplicates++;
+                } else {
+                    progress.nbRecorded++;
+                }
+            }
+        }
+        progress.nbBatches++;
+    }
+
+    private Set<UUID> getSubscriptionsWithUsageAfterEndDate(final Iterable<SubscriptionUsageRecordJson> records, final CallContext callContext) throws EntitlementApiException {
+        final Map<UUID, DateTime> highestRecordDatePerSubscription = new HashMap<>();
+        for (final SubscriptionUsageRecordJson json : records) {
+            highestRecordDatePerSubscription.merge(json.getSubscriptionId(),
+                                                   getHighestRecordDate(json.getUnitUsageRecords()),
+                                                   (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+
+        final Set<UUID> result = new HashSet<>();
+        for (final Entry<UUID, DateTime> entry : highestRecordDatePerSubscription.entrySet()) {
+            final Entitlement entitlement = entitlementApi.getEntitlementForId(entry.getKey(), false, callContext);
+            if (entitlement.getEffectiveEndDate() != null && entitlement.getEffectiveEndDate().compareTo(entry.getValue()) < 0) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private void verifyUsageRecord(final SubscriptionUsageRecordJson json) {
+        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson body should be specified");
+        verifyNonNullOrEmpty(json.getSubscriptionId(), "SubscriptionUsageRecordJson subscriptionId needs to be set",
+                             json.getUnitUsageRecords(), "SubscriptionUsageRecordJson unitUsageRecords needs to be set");
+        Preconditions.checkArgument(!json.getUnitUsageRecords().isEmpty(), "json.getUnitUsageRecords() is empty");
+
+        for (final UnitUsageRecordJson unitUsageRecordJson : json.getUnitUsageRecords()) {
+            verifyNonNullOrEmpty(unitUsageRecordJson.getUnitType(), "UnitUsageRecordJson unitType need to be set");
+            Preconditions.checkArgument(Iterables.size(unitUsageRecordJson.getUsageRecords()) > 0,
+                                        "UnitUsageRecordJson usageRecords must have at least one element.");
+            for (final UsageRecordJson usageRecordJson : unitUsageRecordJson.getUsageRecords()) {
+                verifyNonNull(usageRecordJson.getAmount(), "UsageRecordJson amount needs to be set");
+                verifyNonNull(usageRecordJson.getRecordDate(), "UsageRecordJson recordDate needs to be set");
+            }
+        }
+    }
+
     @VisibleForTesting
     DateTime getHighestRecordDate(final List<UnitUsageRecordJson> records) {
         return records.stream()
@@ -211,5 +364,20 @@ public class UsageResource extends JaxRsResourceBase {
         return Response.status(Status.OK).entity(result).build();
     }
 
-}
+    private static final class UsageStreamProgress {
 
+        private long nbRecords;
+        private long nbRecorded;
+        private long nbDuplicates;
+        private long nbRejected;
+        private long nbBatches;
+
+        private String describeCommitted() {
+            return String.format("%s records recorded, %s duplicates, %s rejected in %s batches", nbRecorded, nbDuplicates, nbRejected, nbBatches);
+        }
+
+        private UsageStreamSummaryJson toJson() {
+            return new UsageStreamSummaryJson(nbRecords, nbRecorded, nbDuplicates, nbRejected, nbBatches);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.UUID;
+
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.usage.api.UsageRecordResult;
+import org.killbill.billing.usage.api.UsageRecordResult.Status;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestUsageRecordResultJson extends JaxrsTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testJson() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String trackingId = UUID.randomUUID().toString();
+
+        final UsageRecordResultJson usageRecordResultJson = new UsageRecordResultJson(new UsageRecordResult(subscriptionId, trackingId, Status.DUPLICATE));
+        Assert.assertEquals(usageRecordResultJson.getSubscriptionId(), subscriptionId);
+        Assert.assertEquals(usageRecordResultJson.getTrackingId(), trackingId);
+        Assert.assertEquals(usageRecordResultJson.getStatus(), Status.DUPLICATE);
+
+        final String asJson = mapper.writeValueAsString(usageRecordResultJson);
+        Assert.assertTrue(asJson.contains("\"status\":\"DUPLICATE\""));
+        final UsageRecordResultJson fromJson = mapper.readValue(asJson, UsageRecordResultJson.class);
+        Assert.assertEquals(fromJson.getSubscriptionId(), subscriptionId);
+        Assert.assertEquals(fromJson.getTrackingId(), trackingId);
+        Assert.assertEquals(fromJson.getStatus(), Status.DUPLICATE);
+    }
+}
@@ -17,14 +17,34 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.Response;
 
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.EntitlementApi;
+import org.killbill.billing.entitlement.api.EntitlementApiException;
 import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UnitUsageRecordJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UsageRecordJson;
+import org.killbill.billing.jaxrs.json.UsageRecordResultJson;
+import org.killbill.billing.jaxrs.json.UsageStreamSummaryJson;
+import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.usage.api.BulkUsageUserApi;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UsageRecordResult;
+import org.killbill.billing.usage.api.UsageRecordResult.Status;
+import org.killbill.billing.util.callcontext.CallContext;
 import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -39,6 +59,7 @@ public class TestUsageResource extends JaxrsTestSuiteNoDB {
                 null, // auditUserApi
                 null, // accountUserApi
                 null, // usageUserApi
+                null, // bulkUsageUserApi
                 null, // paymentApi
                 null, // invoicePaymentApi
                 null, // entitlementApi
@@ -81,4 +102,169 @@ public class TestUsageResource extends JaxrsTestSuiteNoDB {
 
         Assert.assertTrue(result.compareTo(new LocalDate(2018, 04, 18).toDateTimeAtStartOfDay()) == 0);
     }
+
+    // The cancelled subscription ended on 2018-01-01
+    private EntitlementApi createEntitlementApi(final UUID subscriptionId, final UUID cancelledSubscriptionId) throws EntitlementApiException {
+        final EntitlementApi entitlementApi = Mockito.mock(EntitlementApi.class);
+        final Entitlement entitlement = Mockito.mock(Entitlement.class);
+        Mockito.when(entitlementApi.getEntitlementForId(Mockito.eq(subscriptionId), Mockito.eq(false), Mockito.any())).thenReturn(entitlement);
+        final Entitlement cancelledEntitlement = Mockito.mock(Entitlement.class);
+        Mockito.when(cancelledEntitlement.getEffectiveEndDate()).thenReturn(new LocalDate(2018, 1, 1).toDateTimeAtStartOfDay());
+        Mockito.when(entitlementApi.getEntitlementForId(Mockito.eq(cancelledSubscriptionId), Mockito.eq(false), Mockito.any())).thenReturn(cancelledEntitlement);
+        return entitlementApi;
+    }
+
+    // Records whose tracking id ends with 1 are reported as duplicates
+    private BulkUsageUserApi createBulkUsageUserApi(final List<List<SubscriptionUsageRecord>> batches) {
+        final BulkUsageUserApi bulkUsageUserApi = Mockito.mock(BulkUsageUserApi.class);
+        Mockito.when(bulkUsageUserApi.recordRolledUpUsage(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            final List<SubscriptionUsageRecord> records = invocation.getArgument(0);
+            batches.add(records);
+            final List<UsageRecordResult> results = new ArrayList<>();
+            for (final SubscriptionUsageRecord record : records) {
+                results.add(new UsageRecordResult(record.getSubscriptionId(), record.getTrackingId(), record.getTrackingId().endsWith("1") ? Status.DUPLICATE : Status.RECORDED));
+            }
+            return results;
+        });
+        return bulkUsageUserApi;
+    }
+
+    private Context createContext() {
+        final Context context = Mockito.mock(Context.class);
+        Mockito.when(context.createCallContextNoAccountId(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(Mockito.mock(CallContext.class));
+        return context;
+    }
+
+    private SubscriptionUsageRecordJson createRecord(final UUID subscriptionId, final String trackingId, final LocalDate recordDate) {
+        final List<UsageRecordJson> usageRecords = List.of(new UsageRecordJson(recordDate.toDateTimeAtStartOfDay(), BigDecimal.TEN));
+        return new SubscriptionUsageRecordJson(subscriptionId, trackingId, List.of(new UnitUsageRecordJson("foo", usageRecords)));
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsages() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final UUID cancelledSubscriptionId = UUID.randomUUID();
+        final EntitlementApi entitlementApi = createEntitlementApi(subscriptionId, cancelledSubscriptionId);
+        final List<List<SubscriptionUsageRecord>> batches = new ArrayList<>();
+        final UsageResource usageResource = new UsageResource(null, null, null, null, null, null, createBulkUsageUserApi(batches), null, null, entitlementApi, null, createContext());
+
+        // Usage before the end date of the cancelled subscription is accepted
+        final List<SubscriptionUsageRecordJson> json = List.of(createRecord(subscriptionId, "tracking-0", new LocalDate(2018, 3, 4)),
+                                                               createRecord(subscriptionId, "tracking-1", new LocalDate(2018, 3, 5)),
+                                                               createRecord(cancelledSubscriptionId, "tracking-2", new LocalDate(2017, 12, 31)));
+        final Response response = usageResource.recordUsages(json, "test", null, null, null, null);
+        Assert.assertEquals(response.getStatus(), 201);
+
+        // One status per record, in order
+        @SuppressWarnings("unchecked")
+        final List<UsageRecordResultJson> results = (List<UsageRecordResultJson>) response.getEntity();
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).getSubscriptionId(), subscriptionId);
+        Assert.assertEquals(results.get(0).getTrackingId(), "tracking-0");
+        Assert.assertEquals(results.get(0).getStatus(), Status.RECORDED);
+        Assert.assertEquals(results.get(1).getTrackingId(), "tracking-1");
+        Assert.assertEquals(results.get(1).getStatus(), Status.DUPLICATE);
+        Assert.assertEquals(results.get(2).getSubscriptionId(), cancelledSubscriptionId);
+        Assert.assertEquals(results.get(2).getStatus(), Status.RECORDED);
+
+        // Single call to the API, and each subscription is only looked up once
+        Assert.assertEquals(batches.size(), 1);
+        Mockito.verify(entitlementApi, Mockito.times(1)).getEntitlementForId(Mockito.eq(subscriptionId), Mockito.eq(false), Mockito.any());
+        Mockito.verify(entitlementApi, Mockito.times(1)).getEntitlementForId(Mockito.eq(cancelledSubscriptionId), Mockito.eq(false), Mockito.any());
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsagesAfterEndDate() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final UUID cancelledSubscriptionId = UUID.randomUUID();
+        final BulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(new ArrayList<>());
+        final UsageResource usageResource = new UsageResource(null, null, null, null, null, null, bulkUsageUserApi, null, null, createEntitlementApi(subscriptionId, cancelledSubscriptionId), null, createContext());
+
+        // The entitlement ended before the second usage record of the cancelled subscription
+        final List<SubscriptionUsageRecordJson> json = List.of(createRecord(subscriptionId, "tracking-0", new LocalDate(2018, 3, 4)),
+                                                               createRecord(cancelledSubscriptionId, "tracking-2", new LocalDate(2017, 12, 31)),
+                                                               createRecord(cancelledSubscriptionId, "tracking-3", new LocalDate(2018, 1, 2)));
+        final Response response = usageResource.recordUsages(json, "test", null, null, null, null);
+        Assert.assertEquals(response.getStatus(), 400);
+
+        // Nothing is recorded, not even the usage of the active subscription
+        Mockito.verify(bulkUsageUserApi, Mockito.never()).recordRolledUpUsage(Mockito.any(), Mockito.any());
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsageStream() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final UUID cancelledSubscriptionId = UUID.randomUUID();
+
+        final EntitlementApi entitlementApi = createEntitlementApi(subscriptionId, cancelledSubscriptionId);
+        final List<List<SubscriptionUsageRecord>> batches = new ArrayList<>();
+        final BulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(batches);
+        final UsageResource usageResource = new UsageResource(null, null, null, null, null, null, bulkUsageUserApi, null, null, entitlementApi, null, createContext());
+
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            final List<UsageRecordJson> usageRecords = List.of(new UsageRecordJson(new LocalDate(2018, 3, 4).toDateTimeAtStartOfDay(), BigDecimal.valueOf(i)));
+            final SubscriptionUsageRecordJson record = new SubscriptionUsageRecordJson(i == 4 ? cancelledSubscriptionId : subscriptionId,
+                                                                                       "tracking-" + i,
+                                                                                       List.of(new UnitUsageRecordJson("foo", usageRecords)));
+            body.append(mapper.writeValueAsString(record)).append('\n');
+        }
+
+        final Response response = usageResource.recordUsageStream(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), 2, "test", null, null, null, null);
+        Assert.assertEquals(response.getStatus(), 201);
+        final UsageStreamSummaryJson summary = (UsageStreamSummaryJson) response.getEntity();
+        Assert.assertEquals(summary.getNbRecords(), 5);
+        Assert.assertEquals(summary.getNbRecorded(), 3);
+        Assert.assertEquals(summary.getNbDuplicates(), 1);
+        Assert.assertEquals(summary.getNbRejected(), 1);
+        Assert.assertEquals(summary.getNbBatches(), 3);
+
+        // The last batch only had a rejected record
+        Assert.assertEquals(batches.stream().map(List::size).collect(Collectors.toList()), List.of(2, 2));
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsageStreamWithInvalidRecord() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final List<List<SubscriptionUsageRecord>> batches = new ArrayList<>();
+        final UsageResource usageResource = new UsageResource(null, null, null, null, null, null, createBulkUsageUserApi(batches), null, null, createEntitlementApi(subscriptionId, UUID.randomUUID()), null, createContext());
+
+        // The first batch is recorded, the fourth record has no usage
+        final String body = mapper.writeValueAsString(createRecord(subscriptionId, "tracking-0", new LocalDate(2018, 3, 4))) + '\n' +
+                            mapper.writeValueAsString(createRecord(subscriptionId, "tracking-2", new LocalDate(2018, 3, 4))) + '\n' +
+                            mapper.writeValueAsString(createRecord(subscriptionId, "tracking-4", new LocalDate(2018, 3, 4))) + '\n' +
+                            mapper.writeValueAsString(new SubscriptionUsageRecordJson(subscriptionId, "tracking-6", List.of())) + '\n';
+        try {
+            usageResource.recordUsageStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 2, "test", null, null, null, null);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("after record 3 (2 records recorded, 0 duplicates, 0 rejected in 1 batches)"), e.getMessage());
+        }
+        Assert.assertEquals(batches.size(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testRecordUsageStreamWithUnknownSubscription() throws Exception {
+        final UUID subscriptionId = UUID.randomUUID();
+        final UUID unknownSubscriptionId = UUID.randomUUID();
+        final EntitlementApi entitlementApi = createEntitlementApi(subscriptionId, UUID.randomUUID());
+        Mockito.when(entitlementApi.getEntitlementForId(Mockito.eq(unknownSubscriptionId), Mockito.eq(false), Mockito.any()))
+               .thenThrow(new EntitlementApiException(ErrorCode.SUB_INVALID_SUBSCRIPTION_ID, unknownSubscriptionId));
+        final List<List<SubscriptionUsageRecord>> batches = new ArrayList<>();
+        final UsageResource usageResource = new UsageResource(null, null, null, null, null, null, createBulkUsageUserApi(batches), null, null, entitlementApi, null, createContext());
+
+        // The second batch references an unknown subscription
+        final String body = mapper.writeValueAsString(createRecord(subscriptionId, "tracking-0", new LocalDate(2018, 3, 4))) + '\n' +
+                            mapper.writeValueAsString(createRecord(subscriptionId, "tracking-1", new LocalDate(2018, 3, 4))) + '\n' +
+                            mapper.writeValueAsString(createRecord(unknownSubscriptionId, "tracking-2", new LocalDate(2018, 3, 4))) + '\n';
+        try {
+            usageResource.recordUsageStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 2, "test", null, null, null, null);
+            Assert.fail();
+        } catch (final EntitlementApiException e) {
+            // Same code, so that the response status doesn't change
+            Assert.assertEquals(e.getCode(), ErrorCode.SUB_INVALID_SUBSCRIPTION_ID.getCode());
+            Assert.assertTrue(e.getMessage().contains("after record 3 (1 records recorded, 1 duplicates, 0 rejected in 1 batches)"), e.getMessage());
+        }
+        Assert.assertEquals(batches.size(), 1);
+    }
 }
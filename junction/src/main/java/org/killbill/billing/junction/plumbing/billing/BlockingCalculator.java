@@ -20,6 +20,7 @@
 package org.killbill.billing.junction.plumbing.billing;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -110,13 +111,10 @@ public class BlockingCalculator {
             }
         }
 
-        // Group billing events per subscriptionId
-        final Map<UUID, SortedSet<BillingEvent>> perSubscriptionBillingEvents = new HashMap<UUID, SortedSet<BillingEvent>>();
+        // Group billing events per subscriptionId (they are sorted by subscription first, no need to sort them again)
+        final Map<UUID, List<BillingEvent>> perSubscriptionBillingEvents = new HashMap<UUID, List<BillingEvent>>();
         for (final BillingEvent event : billingEvents) {
-            if (!perSubscriptionBillingEvents.containsKey(event.getSubscriptionId())) {
-                perSubscriptionBillingEvents.put(event.getSubscriptionId(), new TreeSet<BillingEvent>());
-            }
-            perSubscriptionBillingEvents.get(event.getSubscriptionId()).add(event);
+            perSubscriptionBillingEvents.computeIfAbsent(event.getSubscriptionId(), k -> new ArrayList<BillingEvent>()).add(event);
         }
 
         for (final Entry<UUID, List<SubscriptionBase>> entry : subscriptionsForAccount.entrySet()) {
@@ -134,7 +132,7 @@ public class BlockingCalculator {
                 final List<BlockingState> aggregateSubscriptionBlockingEvents = getAggregateBlockingEventsPerSubscription(subscription.getEndDate(), subscriptionBlockingEvents, bundleBlockingEvents, accountBlockingEvents);
                 final List<DisabledDuration> accountBlockingDurations = createBlockingDurations(aggregateSubscriptionBlockingEvents);
 
-                final SortedSet<BillingEvent> subscriptionBillingEvents = perSubscriptionBillingEvents.getOrDefault(subscription.getId(), Collections.emptySortedSet());
+                final List<BillingEvent> subscriptionBillingEvents = perSubscriptionBillingEvents.getOrDefault(subscription.getId(), Collections.emptyList());
 
                 final SortedSet<BillingEvent> newEvents = createNewEvents(accountBlockingDurations, subscriptionBillingEvents, context);
                 billingEventsToAdd.addAll(newEvents);
@@ -145,10 +143,7 @@ public class BlockingCalculator {
         }
 
         billingEvents.addAll(billingEventsToAdd);
-
-        for (final BillingEvent eventToRemove : billingEventsToRemove) {
-            billingEvents.remove(eventToRemove);
-        }
+        billingEvents.removeAll(billingEventsToRemove);
 
         return !(billingEventsToAdd.isEmpty() && billingEventsToRemove.isEmpty());
     }
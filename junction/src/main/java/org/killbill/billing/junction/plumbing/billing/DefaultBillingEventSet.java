@@ -18,11 +18,18 @@
 
 package org.killbill.billing.junction.plumbing.billing;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -31,21 +38,38 @@ import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.Usage;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.commons.utils.Preconditions;
 
-public class DefaultBillingEventSet extends TreeSet<BillingEvent> implements SortedSet<BillingEvent>, BillingEventSet {
+/**
+ * Array backed set of billing events: events are appended as they are computed and the array is sorted once, on the first read.
+ * <p>
+ * As with a {@link TreeSet}, events comparing equal are only kept once (the first one added wins), but because the sort is deferred
+ * {@link #add(BillingEvent)} doesn't report such duplicates. Concurrent reads are safe once the set has been populated.
+ */
+public class DefaultBillingEventSet extends AbstractSet<BillingEvent> implements BillingEventSet {
 
-    private static final long serialVersionUID = 1L;
+    private static final BillingEvent[] NO_EVENTS = new BillingEvent[0];
 
     private final boolean accountAutoInvoiceOff;
     private final boolean accountAutoInvoiceDraft;
     private final boolean accountAutoInvoiceReuseDraft;
     private final List<UUID> subscriptionIdsWithAutoInvoiceOff;
 
+    private BillingEvent[] events;
+    private int nbEvents;
+    private volatile boolean sorted;
+    // Range [start, end) of the events of each subscription in the sorted array, computed on demand
+    private volatile Map<UUID, int[]> subscriptionRanges;
+    private int modCount;
+
     public DefaultBillingEventSet(final boolean accountAutoInvoiceOff, final boolean accountAutoInvoiceDraft, final boolean accountAutoInvoiceReuseDraft) {
         this.accountAutoInvoiceOff = accountAutoInvoiceOff;
         this.accountAutoInvoiceDraft = accountAutoInvoiceDraft;
         this.accountAutoInvoiceReuseDraft = accountAutoInvoiceReuseDraft;
         this.subscriptionIdsWithAutoInvoiceOff = new ArrayList<UUID>();
+        this.events = NO_EVENTS;
+        this.nbEvents = 0;
+        this.sorted = true;
     }
 
     @Override
@@ -83,10 +107,301 @@ public class DefaultBillingEventSet extends TreeSet<BillingEvent> implements Sor
         return result;
     }
 
+    /**
+     * The returned list is a view on the events of the subscription, only valid until the set is modified.
+     */
+    @Override
+    public List<BillingEvent> getSubscriptionEvents(final UUID subscriptionId) {
+        ensureSorted();
+        Map<UUID, int[]> ranges = subscriptionRanges;
+        if (ranges == null) {
+            synchronized (this) {
+                if (subscriptionRanges == null) {
+                    subscriptionRanges = computeSubscriptionRanges();
+                }
+                ranges = subscriptionRanges;
+            }
+        }
+
+        final int[] range = ranges.get(subscriptionId);
+        if (range == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(events).subList(range[0], range[1]));
+    }
+
+    @Override
+    public boolean add(final BillingEvent event) {
+        Preconditions.checkNotNull(event, "billing event cannot be null");
+        if (sorted && nbEvents > 0) {
+            final int comp = events[nbEvents - 1].compareTo(event);
+            if (comp == 0) {
+                return false;
+            }
+            sorted = comp < 0;
+        }
+        if (nbEvents == events.length) {
+            events = Arrays.copyOf(events, Math.max(16, nbEvents + (nbEvents >> 1)));
+        }
+        events[nbEvents++] = event;
+        modified();
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (!(o instanceof BillingEvent)) {
+            return false;
+        }
+        ensureSorted();
+        final int index = indexOf((BillingEvent) o);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        ensureSorted();
+        final boolean[] toRemove = new boolean[nbEvents];
+        boolean found = false;
+        for (final Object o : c) {
+            final int index = o instanceof BillingEvent ? indexOf((BillingEvent) o) : -1;
+            if (index >= 0) {
+                toRemove[index] = true;
+                found = true;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+
+        // Single compaction pass
+        int n = 0;
+        for (int i = 0; i < nbEvents; i++) {
+            if (!toRemove[i]) {
+                events[n++] = events[i];
+            }
+        }
+        Arrays.fill(events, n, nbEvents, null);
+        nbEvents = n;
+        modified();
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof BillingEvent)) {
+            return false;
+        }
+        ensureSorted();
+        return indexOf((BillingEvent) o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(events, 0, nbEvents, null);
+        nbEvents = 0;
+        sorted = true;
+        modified();
+    }
+
+    @Override
+    public int size() {
+        ensureSorted();
+        return nbEvents;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nbEvents == 0;
+    }
+
+    @Override
+    public Iterator<BillingEvent> iterator() {
+        ensureSorted();
+        return new Iterator<BillingEvent>() {
+
+            private int cursor = 0;
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < nbEvents;
+            }
+
+            @Override
+            public BillingEvent next() {
+                checkForComodification();
+                if (cursor >= nbEvents) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = cursor;
+                return events[cursor++];
+            }
+
+            @Override
+            public void remove() {
+                Preconditions.checkState(lastReturned >= 0, "next() has not been called");
+                checkForComodification();
+                removeAt(lastReturned);
+                cursor = lastReturned;
+                lastReturned = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super BillingEvent> comparator() {
+        // Natural ordering
+        return null;
+    }
+
+    @Override
+    public BillingEvent first() {
+        ensureSorted();
+        if (nbEvents == 0) {
+            throw new NoSuchElementException();
+        }
+        return events[0];
+    }
+
+    @Override
+    public BillingEvent last() {
+        ensureSorted();
+        if (nbEvents == 0) {
+            throw new NoSuchElementException();
+        }
+        return events[nbEvents - 1];
+    }
+
+    // The ranges below are read-only snapshots, not views
+
+    @Override
+    public SortedSet<BillingEvent> subSet(final BillingEvent fromElement, final BillingEvent toElement) {
+        return Collections.unmodifiableSortedSet(new TreeSet<BillingEvent>(this).subSet(fromElement, toElement));
+    }
+
+    @Override
+    public SortedSet<BillingEvent> headSet(final BillingEvent toElement) {
+        return Collections.unmodifiableSortedSet(new TreeSet<BillingEvent>(this).headSet(toElement));
+    }
+
+    @Override
+    public SortedSet<BillingEvent> tailSet(final BillingEvent fromElement) {
+        return Collections.unmodifiableSortedSet(new TreeSet<BillingEvent>(this).tailSet(fromElement));
+    }
+
     @Override
     public String toString() {
         return "DefaultBillingEventSet [accountAutoInvoiceOff=" + accountAutoInvoiceOff
                + ", subscriptionIdsWithAutoInvoiceOff=" + subscriptionIdsWithAutoInvoiceOff + ", Events="
                + super.toString() + "]";
     }
+
+    private void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        synchronized (this) {
+            if (sorted) {
+                return;
+            }
+            mergeSort(Arrays.copyOf(events, nbEvents), events, 0, nbEvents);
+
+            // Drop the duplicates (the sort is stable, the first one added is kept)
+            int n = 0;
+            for (int i = 0; i < nbEvents; i++) {
+                if (n == 0 || events[n - 1].compareTo(events[i]) != 0) {
+                    events[n++] = events[i];
+                }
+            }
+            Arrays.fill(events, n, nbEvents, null);
+            nbEvents = n;
+            sorted = true;
+        }
+    }
+
+    private Map<UUID, int[]> computeSubscriptionRanges() {
+        // Events are sorted by subscription first
+        final Map<UUID, int[]> ranges = new HashMap<>();
+        int start = 0;
+        for (int i = 1; i <= nbEvents; i++) {
+            if (i == nbEvents || !events[i].getSubscriptionId().equals(events[start].getSubscriptionId())) {
+                ranges.put(events[start].getSubscriptionId(), new int[]{start, i});
+                start = i;
+            }
+        }
+        return ranges;
+    }
+
+    private int indexOf(final BillingEvent event) {
+        int low = 0;
+        int high = nbEvents - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int comp = events[mid].compareTo(event);
+            if (comp < 0) {
+                low = mid + 1;
+            } else if (comp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(final int index) {
+        System.arraycopy(events, index + 1, events, index, nbEvents - index - 1);
+        events[--nbEvents] = null;
+        modified();
+    }
+
+    private void modified() {
+        modCount++;
+        subscriptionRanges = null;
+    }
+
+    // Stable merge sort: unlike Arrays#sort, it doesn't reject comparisons violating the Comparable contract, which
+    // DefaultBillingEvent#compareTo does for simultaneous (un)blocking events. Both arrays must have the same content initially.
+    private static void mergeSort(final BillingEvent[] src, final BillingEvent[] dest, final int low, final int high) {
+        final int length = high - low;
+        if (length < 7) {
+            for (int i = low + 1; i < high; i++) {
+                for (int j = i; j > low && dest[j - 1].compareTo(dest[j]) > 0; j--) {
+                    final BillingEvent tmp = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = tmp;
+                }
+            }
+            return;
+        }
+
+        final int mid = (low + high) >>> 1;
+        mergeSort(dest, src, low, mid);
+        mergeSort(dest, src, mid, high);
+
+        if (src[mid - 1].compareTo(src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, low, length);
+            return;
+        }
+        for (int i = low, p = low, q = mid; i < high; i++) {
+            if (q >= high || (p < mid && src[p].compareTo(src[q]) <= 0)) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
 }
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -58,8 +59,11 @@ import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.bcd.BillCycleDayCalculator;
+import org.killbill.billing.util.callcontext.CallContextSnapshots;
+import org.killbill.billing.util.metrics.TenantTimers;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
+import org.killbill.commons.metrics.api.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,23 +79,32 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
     private final CatalogInternalApi catalogInternalApi;
     private final BlockingCalculator blockCalculator;
     private final TagInternalApi tagApi;
+    private final MetricRegistry metricRegistry;
 
     @Inject
     public DefaultInternalBillingApi(final AccountInternalApi accountApi,
                                      final SubscriptionBaseInternalApi subscriptionApi,
                                      final BlockingCalculator blockCalculator,
                                      final CatalogInternalApi catalogInternalApi,
-                                     final TagInternalApi tagApi) {
+                                     final TagInternalApi tagApi,
+                                     final MetricRegistry metricRegistry) {
         this.accountApi = accountApi;
         this.subscriptionApi = subscriptionApi;
         this.catalogInternalApi = catalogInternalApi;
         this.blockCalculator = blockCalculator;
         this.tagApi = tagApi;
+        this.metricRegistry = metricRegistry;
     }
 
     @Override
     public BillingEventSet getBillingEventsForAccountAndUpdateAccountBCD(final UUID accountId, final DryRunArguments dryRunArguments, @Nullable final LocalDate cutoffDt, final InternalCallContext context) throws CatalogApiException, AccountApiException, SubscriptionBaseApiException {
+        // Blocking states are loaded once for the whole computation
+        try (final CallContextSnapshots.Scope ignored = CallContextSnapshots.openScope()) {
+            return getBillingEventsForAccountAndUpdateAccountBCDWithinScope(accountId, dryRunArguments, cutoffDt, context);
+        }
+    }
 
+    private BillingEventSet getBillingEventsForAccountAndUpdateAccountBCDWithinScope(final UUID accountId, final DryRunArguments dryRunArguments, @Nullable final LocalDate cutoffDt, final InternalCallContext context) throws CatalogApiException, AccountApiException, SubscriptionBaseApiException {
         long iniTs = System.nanoTime();
 
         final VersionedCatalog fullCatalog = catalogInternalApi.getFullCatalog(true, true, context);
@@ -130,13 +143,19 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
             eventsToString(logStringBuilder, result);
         }
 
+        final long totalNano = System.nanoTime() - iniTs;
         logStringBuilder.append(String.format("%nBilling Events total=%d mSec, subs=%d mSec, bs=%d mSec",
-                                              (System.nanoTime() - iniTs) / NANO_TO_MILLI_SEC,
+                                              totalNano / NANO_TO_MILLI_SEC,
                                               (subsAfterTs - subsIniTs) / NANO_TO_MILLI_SEC,
                                               (bsAfterTs - bsIniTs) / NANO_TO_MILLI_SEC));
 
         log.info(logStringBuilder.toString());
 
+        final boolean isDryRun = dryRunArguments != null;
+        TenantTimers.timer(metricRegistry, "kb_billing_events.total", context, isDryRun).update(totalNano, TimeUnit.NANOSECONDS);
+        TenantTimers.timer(metricRegistry, "kb_billing_events.subscriptions", context, isDryRun).update(subsAfterTs - subsIniTs, TimeUnit.NANOSECONDS);
+        TenantTimers.timer(metricRegistry, "kb_billing_events.blocking_states", context, isDryRun).update(bsAfterTs - bsIniTs, TimeUnit.NANOSECONDS);
+
         return result;
     }
 
@@ -17,9 +17,14 @@
 
 package org.killbill.billing.junction.plumbing.billing;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.ErrorCode;
@@ -94,4 +99,77 @@ public class TestDefaultBillingEventSet extends JunctionTestSuiteNoDB {
             Assert.assertTrue(e.getMessage().contains("Failed to retrieve usage section for billing event"));
         }
     }
+
+    @Test(groups = "fast")
+    public void testMatchesTreeSetSemantics() throws CatalogApiException {
+        final Random random = new Random(1234);
+        final DateTime startDate = new DateTime(2022, 1, 1, 0, 0);
+        final SubscriptionBaseTransitionType[] types = {SubscriptionBaseTransitionType.CREATE,
+                                                        SubscriptionBaseTransitionType.CHANGE,
+                                                        SubscriptionBaseTransitionType.PHASE,
+                                                        SubscriptionBaseTransitionType.CANCEL};
+
+        for (int i = 0; i < 50; i++) {
+            final List<UUID> subscriptionIds = new ArrayList<>();
+            for (int j = 0; j < 1 + random.nextInt(5); j++) {
+                subscriptionIds.add(UUID.randomUUID());
+            }
+
+            final List<BillingEvent> events = new ArrayList<>();
+            for (int j = 0; j < random.nextInt(100); j++) {
+                if (!events.isEmpty() && random.nextInt(10) == 0) {
+                    // Duplicate
+                    events.add(events.get(random.nextInt(events.size())));
+                } else {
+                    events.add(createEvent(subscription(subscriptionIds.get(random.nextInt(subscriptionIds.size()))),
+                                           startDate.plusDays(random.nextInt(30)),
+                                           types[random.nextInt(types.length)],
+                                           random.nextInt(3)));
+                }
+            }
+
+            final TreeSet<BillingEvent> expected = new TreeSet<>();
+            final DefaultBillingEventSet billingEventSet = new DefaultBillingEventSet(false, false, false);
+            for (final BillingEvent event : events) {
+                expected.add(event);
+                billingEventSet.add(event);
+            }
+            assertSameEvents(billingEventSet, expected, subscriptionIds);
+
+            // Remove a few events, one by one, in bulk and through the iterator
+            final List<BillingEvent> toRemove = events.stream().filter(event -> random.nextInt(4) == 0).collect(Collectors.toList());
+            if (!toRemove.isEmpty()) {
+                Assert.assertEquals(billingEventSet.remove(toRemove.get(0)), expected.remove(toRemove.get(0)));
+            }
+            Assert.assertEquals(billingEventSet.removeAll(toRemove), expected.removeAll(toRemove));
+            final Iterator<BillingEvent> it = billingEventSet.iterator();
+            while (it.hasNext()) {
+                final BillingEvent event = it.next();
+                if (random.nextBoolean()) {
+                    it.remove();
+                    expected.remove(event);
+                }
+            }
+            assertSameEvents(billingEventSet, expected, subscriptionIds);
+        }
+    }
+
+    private void assertSameEvents(final DefaultBillingEventSet billingEventSet, final TreeSet<BillingEvent> expected, final Iterable<UUID> subscriptionIds) {
+        Assert.assertEquals(billingEventSet.size(), expected.size());
+        Assert.assertEquals(billingEventSet.isEmpty(), expected.isEmpty());
+        Assert.assertEquals(new ArrayList<>(billingEventSet), new ArrayList<>(expected));
+        if (!expected.isEmpty()) {
+            Assert.assertSame(billingEventSet.first(), expected.first());
+            Assert.assertSame(billingEventSet.last(), expected.last());
+        }
+        for (final BillingEvent event : expected) {
+            Assert.assertTrue(billingEventSet.contains(event));
+        }
+        for (final UUID subscriptionId : subscriptionIds) {
+            final List<BillingEvent> expectedSubscriptionEvents = expected.stream()
+                                                                          .filter(event -> subscriptionId.equals(event.getSubscriptionId()))
+                                                                          .collect(Collectors.toList());
+            Assert.assertEquals(billingEventSet.getSubscriptionEvents(subscriptionId), expectedSubscriptionEvents);
+        }
+    }
 }
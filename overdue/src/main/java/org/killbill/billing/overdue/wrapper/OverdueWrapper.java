@@ -33,6 +33,7 @@ import org.killbill.billing.overdue.calculator.BillingStateCalculator;
 import org.killbill.billing.overdue.config.api.BillingState;
 import org.killbill.billing.overdue.config.api.OverdueException;
 import org.killbill.billing.overdue.config.api.OverdueStateSet;
+import org.killbill.billing.util.callcontext.CallContextSnapshots;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.clock.Clock;
@@ -88,7 +89,9 @@ public class OverdueWrapper {
         try {
             lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), overdueable.getId().toString(), MAX_LOCK_RETRIES);
 
-            refreshWithLock(effectiveDate, context);
+            try (final CallContextSnapshots.Scope ignored = CallContextSnapshots.openScope()) {
+                refreshWithLock(effectiveDate, context);
+            }
         } catch (final LockFailedException e) {
             log.warn("Failed to process overdue for accountId='{}'", overdueable.getId(), e);
         } finally {
@@ -124,7 +127,9 @@ public class OverdueWrapper {
         try {
             lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), overdueable.getId().toString(), MAX_LOCK_RETRIES);
 
-            clearWithLock(effectiveDate, context);
+            try (final CallContextSnapshots.Scope ignored = CallContextSnapshots.openScope()) {
+                clearWithLock(effectiveDate, context);
+            }
         } catch (final LockFailedException e) {
             log.warn("Failed to clear overdue for accountId='{}'", overdueable.getId(), e);
         } finally {
@@ -164,6 +164,11 @@ public class MultiTenantPaymentConfig extends MultiTenantConfigBase implements P
         return staticConfig.getPaymentPluginThreadNb();
     }
 
+    @Override
+    public int getPaymentPluginInfoParallelism() {
+        return staticConfig.getPaymentPluginInfoParallelism();
+    }
+
     @Override
     public int getMaxGlobalLockRetries() {
         return staticConfig.getMaxGlobalLockRetries();
@@ -23,16 +23,26 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import org.apache.shiro.util.ThreadContext;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.AccountInternalApi;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -52,6 +62,7 @@ import org.killbill.billing.payment.dao.PaymentModelDao;
 import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
 import org.killbill.billing.payment.dao.PluginPropertySerializer;
 import org.killbill.billing.payment.dao.PluginPropertySerializer.PluginPropertySerializerException;
+import org.killbill.billing.payment.dispatcher.CallableWithRequestData;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApiException;
 import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
@@ -59,9 +70,11 @@ import org.killbill.billing.payment.retry.DefaultRetryService;
 import org.killbill.billing.payment.retry.PaymentRetryNotificationKey;
 import org.killbill.billing.platform.api.KillbillService.KILLBILL_SERVICES;
 import org.killbill.billing.tag.TagInternalApi;
+import org.killbill.billing.util.UUIDs;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.definition.PaymentConfig;
 import org.killbill.commons.utils.collect.Iterables;
 import org.killbill.commons.utils.collect.MultiValueHashMap;
 import org.killbill.commons.utils.collect.MultiValueMap;
@@ -71,6 +84,7 @@ import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.EntityPagina
 import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.SourcePaginationBuilder;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLocker;
+import org.killbill.commons.request.Request;
 import org.killbill.notificationq.api.NotificationEvent;
 import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueue;
@@ -78,6 +92,7 @@ import org.killbill.notificationq.api.NotificationQueueService;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPagination;
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPaginationFromPlugins;
@@ -92,6 +107,8 @@ public class PaymentRefresher extends ProcessorBase {
 
     private final NotificationQueueService notificationQueueService;
     private final IncompletePaymentTransactionTask incompletePaymentTransactionTask;
+    private final PaymentConfig paymentConfig;
+    private final PaymentExecutors paymentExecutors;
 
     @Inject
     public PaymentRefresher(final PaymentPluginServiceRegistration paymentPluginServiceRegistration,
@@ -103,10 +120,14 @@ public class PaymentRefresher extends ProcessorBase {
                             final InvoiceInternalApi invoiceApi,
                             final Clock clock,
                             final NotificationQueueService notificationQueueService,
-                            final IncompletePaymentTransactionTask incompletePaymentTransactionTask) {
+                            final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                            final PaymentConfig paymentConfig,
+                            final PaymentExecutors paymentExecutors) {
         super(paymentPluginServiceRegistration, accountUserApi, paymentDao, tagUserApi, locker, internalCallContextFactory, invoiceApi, clock);
         this.notificationQueueService = notificationQueueService;
         this.incompletePaymentTransactionTask = incompletePaymentTransactionTask;
+        this.paymentConfig = paymentConfig;
+        this.paymentExecutors = paymentExecutors;
     }
 
     protected boolean invokeJanitor(final UUID accountId,
@@ -180,30 +201,13 @@ public class PaymentRefresher extends ProcessorBase {
         final List<PaymentModelDao> paymentsModelDao = paymentDao.getPaymentsForAccount(accountId, tenantContext);
         final List<PaymentTransactionModelDao> transactionsModelDao = paymentDao.getTransactionsForAccount(accountId, tenantContext);
 
-        final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<>();
-        final Collection<UUID> absentPlugins = new HashSet<>();
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId = withPluginInfo ?
+                                                                                   getPaymentTransactionInfoPluginsByPaymentId(paymentsModelDao, context, tenantContext) :
+                                                                                   Collections.emptyMap();
         final List<Payment> transformedPayments = paymentsModelDao
                 .stream()
-                .map(paymentModelDao -> {
-                    List<PaymentTransactionInfoPlugin> pluginInfo = null;
-
-                    if (withPluginInfo) {
-                        PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
-                        if (pluginApi == null && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
-                            try {
-                                pluginApi = getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), true, tenantContext);
-                                paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), pluginApi);
-                            } catch (final PaymentApiException e) {
-                                log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
-                                absentPlugins.add(paymentModelDao.getPaymentMethodId());
-                            }
-                        }
-
-                        pluginInfo = getPaymentTransactionInfoPluginsIfNeeded(pluginApi, paymentModelDao, context);
-                    }
-
-                    return toPayment(paymentModelDao, transactionsModelDao, pluginInfo, withAttempts, isApiPayment, tenantContext);
-                }).collect(Collectors.toUnmodifiableList());
+                .map(paymentModelDao -> toPayment(paymentModelDao, transactionsModelDao, pluginInfoByPaymentId.get(paymentModelDao.getId()), withAttempts, isApiPayment, tenantContext))
+                .collect(Collectors.toUnmodifiableList());
 
         // Copy the transformed list, so the transformation function is applied once (otherwise, the Janitor could be invoked multiple times)
         return List.copyOf(transformedPayments);
@@ -620,6 +624,100 @@ public class PaymentRefresher extends ProcessorBase {
         return tenantContextWithAccountRecordId;
     }
 
+    // Each plugin call is a gateway round trip: the calls are fanned out over the plugin executor, keeping at most getPaymentPluginInfoParallelism()
+    // of them in flight for this request (a new call is submitted as soon as one completes), so that the latency is roughly the one of the slowest call
+    // rather than the sum. Plugin info which cannot be retrieved within the plugin timeout is treated like a failing call (missing from the result).
+    private Map<UUID, List<PaymentTransactionInfoPlugin>> getPaymentTransactionInfoPluginsByPaymentId(final Collection<PaymentModelDao> paymentsModelDao, final TenantContext context, final InternalTenantContext tenantContext) {
+        final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<>();
+        final Collection<UUID> absentPlugins = new HashSet<>();
+        final List<PaymentModelDao> paymentsWithPlugin = new ArrayList<>();
+        for (final PaymentModelDao paymentModelDao : paymentsModelDao) {
+            PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
+            if (pluginApi == null && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
+                try {
+                    pluginApi = getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), true, tenantContext);
+                    paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), pluginApi);
+                } catch (final PaymentApiException e) {
+                    log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
+                    absentPlugins.add(paymentModelDao.getPaymentMethodId());
+                }
+            }
+            if (pluginApi != null) {
+                paymentsWithPlugin.add(paymentModelDao);
+            }
+        }
+
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> result = new HashMap<>();
+        final ExecutorService pluginExecutor = paymentExecutors.getPluginExecutorService();
+        final int parallelism = paymentConfig.getPaymentPluginInfoParallelism();
+        if (pluginExecutor == null || parallelism <= 1 || paymentsWithPlugin.size() <= 1) {
+            for (final PaymentModelDao paymentModelDao : paymentsWithPlugin) {
+                result.put(paymentModelDao.getId(), getPaymentTransactionInfoPluginsIfNeeded(paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId()), paymentModelDao, context));
+            }
+            return result;
+        }
+
+        final long timeoutNanos = TimeUnit.NANOSECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
+        final CompletionService<List<PaymentTransactionInfoPlugin>> completionService = new ExecutorCompletionService<>(pluginExecutor);
+        // Ordered by submission, i.e. by deadline
+        final Map<Future<List<PaymentTransactionInfoPlugin>>, PluginInfoCall> inFlight = new LinkedHashMap<>();
+        final Iterator<PaymentModelDao> toSubmit = paymentsWithPlugin.iterator();
+        while (toSubmit.hasNext() || !inFlight.isEmpty()) {
+            while (inFlight.size() < parallelism && toSubmit.hasNext()) {
+                final PaymentModelDao paymentModelDao = toSubmit.next();
+                final PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
+                // Wrap the callable to keep the original requestId (see PluginDispatcher)
+                final Future<List<PaymentTransactionInfoPlugin>> future = completionService.submit(new CallableWithRequestData<>(Request.getPerThreadRequestData(),
+                                                                                                                                 UUIDs.getRandom(),
+                                                                                                                                 ThreadContext.getSecurityManager(),
+                                                                                                                                 ThreadContext.getSubject(),
+                                                                                                                                 MDC.getCopyOfContextMap(),
+                                                                                                                                 () -> getPaymentTransactionInfoPluginsIfNeeded(pluginApi, paymentModelDao, context)));
+                inFlight.put(future, new PluginInfoCall(paymentModelDao.getId(), System.nanoTime() + timeoutNanos));
+            }
+
+            final Entry<Future<List<PaymentTransactionInfoPlugin>>, PluginInfoCall> oldest = inFlight.entrySet().iterator().next();
+            try {
+                final Future<List<PaymentTransactionInfoPlugin>> completed = completionService.poll(Math.max(0, oldest.getValue().deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    log.warn("Timeout retrieving plugin info for payment " + oldest.getValue().paymentId);
+                    oldest.getKey().cancel(true);
+                    inFlight.remove(oldest.getKey());
+                    continue;
+                }
+
+                // Null for calls which have timed out already (cancelled)
+                final PluginInfoCall call = inFlight.remove(completed);
+                if (call != null) {
+                    try {
+                        result.put(call.paymentId, completed.get());
+                    } catch (final ExecutionException e) {
+                        log.warn("Unable to retrieve plugin info for payment " + call.paymentId, e.getCause());
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while retrieving plugin info for account payments");
+                for (final Future<List<PaymentTransactionInfoPlugin>> future : inFlight.keySet()) {
+                    future.cancel(true);
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static final class PluginInfoCall {
+
+        private final UUID paymentId;
+        private final long deadlineNanos;
+
+        private PluginInfoCall(final UUID paymentId, final long deadlineNanos) {
+            this.paymentId = paymentId;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
     // Used in bulk get API (getAccountPayments / getPayments)
     private List<PaymentTransactionInfoPlugin> getPaymentTransactionInfoPluginsIfNeeded(@Nullable final PaymentPluginApi pluginApi, final PaymentModelDao paymentModelDao, final TenantContext context) {
         if (pluginApi == null) {
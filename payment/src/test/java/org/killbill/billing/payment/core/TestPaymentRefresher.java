@@ -17,12 +17,21 @@
 
 package org.killbill.billing.payment.core;
 
+import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.awaitility.Awaitility;
 import org.joda.time.DateTime;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.payment.PaymentTestSuiteNoDB;
 import org.killbill.billing.payment.api.DefaultPayment;
 import org.killbill.billing.payment.api.Payment;
@@ -30,11 +39,15 @@ import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.api.PaymentAttempt;
 import org.killbill.billing.payment.api.PaymentTransaction;
 import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.dao.PaymentModelDao;
+import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApiException;
 import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
 import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.config.definition.PaymentConfig;
 import org.killbill.commons.utils.collect.Iterables;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
@@ -91,6 +104,10 @@ public class TestPaymentRefresher extends PaymentTestSuiteNoDB {
     }
 
     private PaymentRefresher createPaymentRefresher(final Pagination<PaymentTransactionInfoPlugin> infoPlugins) throws PaymentApiException, PaymentPluginApiException {
+        return createPaymentRefresher(infoPlugins, paymentConfig);
+    }
+
+    private PaymentRefresher createPaymentRefresher(final Pagination<PaymentTransactionInfoPlugin> infoPlugins, final PaymentConfig paymentConfig) throws PaymentApiException, PaymentPluginApiException {
         final PaymentPluginApi paymentPluginApi = createPaymentPluginApi(infoPlugins);
         Mockito.when(paymentPluginRegistrar.getPaymentPluginApi(PLUGIN_NAME)).thenReturn(paymentPluginApi);
 
@@ -103,7 +120,9 @@ public class TestPaymentRefresher extends PaymentTestSuiteNoDB {
                                                              invoiceApi,
                                                              clock,
                                                              null, // notificationQueueService
-                                                             null /* incompletePaymentTransactionTask */);
+                                                             null, // incompletePaymentTransactionTask
+                                                             paymentConfig,
+                                                             paymentExecutors);
         final PaymentRefresher toMock = Mockito.spy(result);
         Mockito.doReturn(anyPayment())
                .when(toMock).toPayment(Mockito.any(UUID.class),
@@ -142,4 +161,150 @@ public class TestPaymentRefresher extends PaymentTestSuiteNoDB {
                               Mockito.anyBoolean(),
                               Mockito.any(InternalTenantContext.class));
     }
+
+    // Returns the id of the (single) transaction of each payment, by payment id
+    private Map<UUID, UUID> createAccountPayments(final UUID accountId, final int nbPayments) {
+        final Map<UUID, UUID> transactionIdByPaymentId = new HashMap<>();
+        final DateTime utcNow = clock.getUTCNow();
+        for (int i = 0; i < nbPayments; i++) {
+            final PaymentModelDao paymentModelDao = new PaymentModelDao(utcNow, utcNow, accountId, UUIDs.randomUUID(), UUIDs.randomUUID().toString());
+            final PaymentTransactionModelDao transactionModelDao = new PaymentTransactionModelDao(utcNow, utcNow, null, UUIDs.randomUUID().toString(),
+                                                                                                  paymentModelDao.getId(), TransactionType.AUTHORIZE, utcNow,
+                                                                                                  TransactionStatus.SUCCESS, BigDecimal.TEN, Currency.USD,
+                                                                                                  "success", "");
+            paymentDao.insertPaymentWithFirstTransaction(paymentModelDao, transactionModelDao, internalCallContext);
+            transactionIdByPaymentId.put(paymentModelDao.getId(), transactionModelDao.getId());
+        }
+        return transactionIdByPaymentId;
+    }
+
+    private void registerPaymentPluginApi(final PaymentPluginApi paymentPluginApi) throws PaymentApiException {
+        Mockito.when(paymentPluginRegistrar.getPaymentPluginApi(Mockito.any(UUID.class), Mockito.anyBoolean(), Mockito.any(InternalTenantContext.class)))
+               .thenReturn(paymentPluginApi);
+    }
+
+    @Test(groups = "fast")
+    public void testGetAccountPaymentsFetchesPluginInfoInParallel() throws Exception {
+        final int nbPayments = paymentConfig.getPaymentPluginInfoParallelism();
+        final UUID accountId = UUIDs.randomUUID();
+        createAccountPayments(accountId, nbPayments);
+
+        // Each plugin call only returns once all of them are in flight
+        final CountDownLatch allInFlight = new CountDownLatch(nbPayments);
+        final AtomicInteger nbInFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final PaymentPluginApi paymentPluginApi = Mockito.mock(PaymentPluginApi.class);
+        Mockito.when(paymentPluginApi.getPaymentInfo(Mockito.any(UUID.class), Mockito.any(UUID.class), Mockito.anyIterable(), Mockito.any()))
+               .thenAnswer(invocation -> {
+                   maxInFlight.accumulateAndGet(nbInFlight.incrementAndGet(), Math::max);
+                   allInFlight.countDown();
+                   allInFlight.await(1, TimeUnit.SECONDS);
+                   nbInFlight.decrementAndGet();
+                   return Collections.emptyList();
+               });
+        registerPaymentPluginApi(paymentPluginApi);
+
+        final PaymentRefresher refresher = createPaymentRefresher(createInfoPlugins());
+        final List<Payment> payments = refresher.getAccountPayments(accountId, true, false, true, callContext, internalCallContext);
+
+        Assert.assertEquals(payments.size(), nbPayments);
+        Assert.assertEquals(maxInFlight.get(), nbPayments);
+        Mockito.verify(paymentPluginApi, Mockito.times(nbPayments)).getPaymentInfo(Mockito.any(UUID.class), Mockito.any(UUID.class), Mockito.anyIterable(), Mockito.any());
+    }
+
+    @Test(groups = "fast")
+    public void testGetAccountPaymentsKeepsPluginInfoCallsInFlight() throws Exception {
+        // Lower than the number of plugin threads, so that the limit is the one enforced by the refresher
+        final int parallelism = 3;
+        final PaymentConfig limitedPaymentConfig = Mockito.spy(paymentConfig);
+        Mockito.doReturn(parallelism).when(limitedPaymentConfig).getPaymentPluginInfoParallelism();
+
+        final int nbPayments = 2 * parallelism + 2;
+        final UUID accountId = UUIDs.randomUUID();
+        createAccountPayments(accountId, nbPayments);
+
+        // The first call only returns once all the other ones have completed: this requires new calls to be submitted while it is still in flight
+        final AtomicBoolean firstCall = new AtomicBoolean(true);
+        final CountDownLatch othersCompleted = new CountDownLatch(nbPayments - 1);
+        final AtomicBoolean othersCompletedFirst = new AtomicBoolean(false);
+        final AtomicInteger nbInFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final PaymentPluginApi paymentPluginApi = Mockito.mock(PaymentPluginApi.class);
+        Mockito.when(paymentPluginApi.getPaymentInfo(Mockito.any(UUID.class), Mockito.any(UUID.class), Mockito.anyIterable(), Mockito.any()))
+               .thenAnswer(invocation -> {
+                   maxInFlight.accumulateAndGet(nbInFlight.incrementAndGet(), Math::max);
+                   if (firstCall.getAndSet(false)) {
+                       othersCompletedFirst.set(othersCompleted.await(1, TimeUnit.SECONDS));
+                   } else {
+                       Thread.sleep(50);
+                       othersCompleted.countDown();
+                   }
+                   nbInFlight.decrementAndGet();
+                   return Collections.emptyList();
+               });
+        registerPaymentPluginApi(paymentPluginApi);
+
+        final PaymentRefresher refresher = createPaymentRefresher(createInfoPlugins(), limitedPaymentConfig);
+        final List<Payment> payments = refresher.getAccountPayments(accountId, true, false, true, callContext, internalCallContext);
+
+        Assert.assertEquals(payments.size(), nbPayments);
+        Assert.assertTrue(othersCompletedFirst.get());
+        Assert.assertEquals(maxInFlight.get(), parallelism);
+        Mockito.verify(paymentPluginApi, Mockito.times(nbPayments)).getPaymentInfo(Mockito.any(UUID.class), Mockito.any(UUID.class), Mockito.anyIterable(), Mockito.any());
+    }
+
+    @Test(groups = "fast")
+    public void testGetAccountPaymentsWithPluginInfoTimeout() throws Exception {
+        final int nbPayments = paymentConfig.getPaymentPluginInfoParallelism() + 2;
+        final UUID accountId = UUIDs.randomUUID();
+        final Map<UUID, UUID> transactionIdByPaymentId = createAccountPayments(accountId, nbPayments);
+        final UUID slowPaymentId = transactionIdByPaymentId.keySet().iterator().next();
+
+        final long timeoutMillis = paymentConfig.getPaymentPluginTimeout().getMillis();
+        final AtomicBoolean slowCallInterrupted = new AtomicBoolean(false);
+        final PaymentPluginApi paymentPluginApi = Mockito.mock(PaymentPluginApi.class);
+        Mockito.when(paymentPluginApi.getPaymentInfo(Mockito.any(UUID.class), Mockito.any(UUID.class), Mockito.anyIterable(), Mockito.any()))
+               .thenAnswer(invocation -> {
+                   final UUID paymentId = invocation.getArgument(1);
+                   if (slowPaymentId.equals(paymentId)) {
+                       try {
+                           Thread.sleep(5 * timeoutMillis);
+                       } catch (final InterruptedException e) {
+                           slowCallInterrupted.set(true);
+                           throw e;
+                       }
+                   }
+                   final PaymentTransactionInfoPlugin infoPlugin = Mockito.mock(PaymentTransactionInfoPlugin.class);
+                   Mockito.when(infoPlugin.getKbPaymentId()).thenReturn(paymentId);
+                   Mockito.when(infoPlugin.getKbTransactionPaymentId()).thenReturn(transactionIdByPaymentId.get(paymentId));
+                   return List.of(infoPlugin);
+               });
+        registerPaymentPluginApi(paymentPluginApi);
+
+        final PaymentRefresher refresher = createPaymentRefresher(createInfoPlugins());
+        Mockito.doReturn(false)
+               .when(refresher).invokeJanitor(Mockito.any(UUID.class),
+                                              Mockito.any(PaymentTransactionModelDao.class),
+                                              Mockito.any(PaymentTransactionInfoPlugin.class),
+                                              Mockito.anyBoolean(),
+                                              Mockito.any(InternalTenantContext.class));
+
+        final long startNanos = System.nanoTime();
+        final List<Payment> payments = refresher.getAccountPayments(accountId, true, false, true, callContext, internalCallContext);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        // The slow call doesn't hold back the other ones, and is given up on after the plugin timeout
+        Assert.assertTrue(elapsedMillis < 2 * timeoutMillis, "Took " + elapsedMillis + "ms");
+        Assert.assertEquals(payments.size(), nbPayments);
+        for (final Payment payment : payments) {
+            final PaymentTransactionInfoPlugin infoPlugin = payment.getTransactions().get(0).getPaymentInfoPlugin();
+            if (slowPaymentId.equals(payment.getId())) {
+                Assert.assertNull(infoPlugin);
+            } else {
+                Assert.assertNotNull(infoPlugin);
+                Assert.assertEquals(infoPlugin.getKbPaymentId(), payment.getId());
+            }
+        }
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).untilTrue(slowCallInterrupted);
+    }
 }
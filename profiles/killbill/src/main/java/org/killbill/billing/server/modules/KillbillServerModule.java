@@ -60,6 +60,7 @@ import org.killbill.billing.util.glue.CallContextModule;
 import org.killbill.billing.util.glue.ClockModule;
 import org.killbill.billing.util.glue.ConfigModule;
 import org.killbill.billing.util.glue.CustomFieldModule;
+import org.killbill.billing.util.glue.DBRouterModule;
 import org.killbill.billing.util.glue.EventModule;
 import org.killbill.billing.util.glue.ExportModule;
 import org.killbill.billing.util.glue.GlobalLockerModule;
@@ -193,6 +194,7 @@ public class KillbillServerModule extends KillbillPlatformModule {
         install(new CatalogModule(configSource));
         install(new CurrencyModule(configSource));
         install(new CustomFieldModule(configSource));
+        install(new DBRouterModule(configSource));
         install(new DefaultAccountModule(configSource));
         install(new DefaultEntitlementModule(configSource));
         install(new DefaultInvoiceModule(configSource));
@@ -42,6 +42,7 @@ import org.killbill.billing.util.glue.CacheModule;
 import org.killbill.billing.util.glue.CallContextModule;
 import org.killbill.billing.util.glue.ConfigModule;
 import org.killbill.billing.util.glue.CustomFieldModule;
+import org.killbill.billing.util.glue.DBRouterModule;
 import org.killbill.billing.util.glue.EventModule;
 import org.killbill.billing.util.glue.ExportModule;
 import org.killbill.billing.util.glue.GlobalLockerModule;
@@ -72,6 +73,7 @@ public class KillpayServerModule extends KillbillServerModule {
         install(new CallContextModule(configSource));
         install(new CurrencyModule(configSource));
         install(new CustomFieldModule(configSource));
+        install(new DBRouterModule(configSource));
         install(new DefaultAccountModule(configSource));
         install(new ExportModule(configSource));
         install(new GlobalLockerModule(configSource));
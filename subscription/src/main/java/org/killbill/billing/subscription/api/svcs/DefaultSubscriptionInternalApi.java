@@ -337,6 +337,12 @@ public class DefaultSubscriptionInternalApi extends DefaultSubscriptionBaseCreat
         }
     }
 
+    @Override
+    public SubscriptionBase copySubscription(final SubscriptionBase subscription) {
+        // User APIs rebuild the transitions in place, but don't modify the previous ones nor the events
+        return createSubscriptionForApiUse(subscription);
+    }
+
     @Override
     public SubscriptionBaseBundle getBundleFromId(final UUID id, final InternalTenantContext context) throws SubscriptionBaseApiException {
         final SubscriptionBaseBundle result = dao.getSubscriptionBundleFromId(id, context);
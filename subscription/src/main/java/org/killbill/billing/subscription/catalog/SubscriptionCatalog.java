@@ -18,13 +18,19 @@
 package org.killbill.billing.subscription.catalog;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.catalog.api.BillingActionPolicy;
 import org.killbill.billing.catalog.api.BillingAlignment;
 import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.IndexedVersionedCatalog;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanAlignmentCreate;
 import org.killbill.billing.catalog.api.PlanChangeResult;
@@ -48,12 +54,15 @@ import static org.killbill.billing.ErrorCode.CAT_NO_SUCH_PLAN;
 public class SubscriptionCatalog {
 
     private final VersionedCatalog catalog;
+    // Null if the catalog doesn't support O(log V) lookups
+    private final IndexedVersionedCatalog indexedCatalog;
     private final List<StaticCatalog> versions;
     private final Clock clock;
 
     // package scope
     SubscriptionCatalog(final VersionedCatalog catalog, final Clock clock) {
         this.catalog = catalog;
+        this.indexedCatalog = catalog instanceof IndexedVersionedCatalog ? (IndexedVersionedCatalog) catalog : null;
         this.versions = catalog.getVersions();
         this.clock = clock;
     }
@@ -69,6 +78,11 @@ public class SubscriptionCatalog {
     //
     // Public apis accessed through delegation
     //
+    public void loadOverriddenPlans(final Map<String, ? extends Collection<Date>> effectiveDatesByPlanName) {
+        if (indexedCatalog != null && !effectiveDatesByPlanName.isEmpty()) {
+            indexedCatalog.loadOverriddenPlans(effectiveDatesByPlanName);
+        }
+    }
 
     //
     // Private (subscription-specific) apis that require state associated with this a given subscription
@@ -80,6 +94,23 @@ public class SubscriptionCatalog {
     }
 
     public Plan getNextPlanVersion(final Plan curPlan) {
+        if (indexedCatalog != null && !versions.isEmpty()) {
+            final int curVersionIndex = indexedCatalog.getVersionIndex(curPlan.getCatalog().getEffectiveDate());
+            if (versions.get(curVersionIndex).getEffectiveDate().compareTo(curPlan.getCatalog().getEffectiveDate()) != 0 ||
+                curVersionIndex == versions.size() - 1) {
+                return null;
+            }
+            final Plan nextPlan = indexedCatalog.findPlan(curPlan.getName(), curVersionIndex + 1);
+            if (nextPlan != null) {
+                return nextPlan;
+            }
+            // Not in the index (e.g. overridden plan)
+            try {
+                return versions.get(curVersionIndex + 1).findPlan(curPlan.getName());
+            } catch (final CatalogApiException ignored) {
+                return null;
+            }
+        }
 
         boolean foundCurVersion = false;
         StaticCatalog nextCatalogVersion = null;
@@ -173,20 +204,30 @@ public class SubscriptionCatalog {
             throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, requestedDate.toDate().toString());
         }
 
+        // When looking up by name, only visit the versions defining that plan (unless it's unknown to the index, e.g. overridden plan)
+        final String indexedPlanName = indexedCatalog != null &&
+                                       wrapper.getSpec().getPlanName() != null &&
+                                       indexedCatalog.getLatestVersionIndexForPlan(wrapper.getSpec().getPlanName(), versions.size() - 1) >= 0 ?
+                                       wrapper.getSpec().getPlanName() : null;
+
         CatalogPlanEntry candidateInSubsequentCatalog = null;
-        for (int i = catalogs.size() - 1; i >= 0; i--) { // Working backwards to find the latest applicable plan
+        for (int i = previousVersionIndex(indexedPlanName, catalogs.size() - 1); i >= 0; i = previousVersionIndex(indexedPlanName, i - 1)) { // Working backwards to find the latest applicable plan
             final StaticCatalog c = catalogs.get(i);
 
             final Plan plan;
-            try {
-                plan = wrapper.findPlan(c);
-            } catch (final CatalogApiException e) {
-                if (e.getCode() != CAT_NO_SUCH_PLAN.getCode() &&
-                    e.getCode() != ErrorCode.CAT_PLAN_NOT_FOUND.getCode()) {
-                    throw e;
-                } else {
-                    // If we can't find an entry it probably means the plan has been retired so we keep looking...
-                    continue;
+            if (indexedPlanName != null) {
+                plan = indexedCatalog.findPlan(indexedPlanName, i);
+            } else {
+                try {
+                    plan = wrapper.findPlan(c);
+                } catch (final CatalogApiException e) {
+                    if (e.getCode() != CAT_NO_SUCH_PLAN.getCode() &&
+                        e.getCode() != ErrorCode.CAT_PLAN_NOT_FOUND.getCode()) {
+                        throw e;
+                    } else {
+                        // If we can't find an entry it probably means the plan has been retired so we keep looking...
+                        continue;
+                    }
                 }
             }
 
@@ -221,7 +262,18 @@ public class SubscriptionCatalog {
                                       spec.getPriceListName() != null ? spec.getPriceListName() : "undefined");
     }
 
+    private int previousVersionIndex(@Nullable final String indexedPlanName, final int maxVersionIndex) {
+        if (indexedPlanName == null || maxVersionIndex < 0) {
+            return maxVersionIndex;
+        }
+        return indexedCatalog.getLatestVersionIndexForPlan(indexedPlanName, maxVersionIndex);
+    }
+
     private List<StaticCatalog> versionsBeforeDate(final DateTime date) {
+        if (indexedCatalog != null && !versions.isEmpty()) {
+            // Versions are sorted by effective date
+            return versions.subList(0, indexedCatalog.getVersionIndex(date.toDate()) + 1);
+        }
 
         final List<StaticCatalog> result = new ArrayList<StaticCatalog>();
 
@@ -401,6 +401,8 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
         for (final SubscriptionBaseEvent evt : eventsForAccount) {
             eventsForSubscriptions.putElement(evt.getSubscriptionId(), evt);
         }
+        // Resolve all the plans referenced by the account at once (price overridden plans would otherwise be loaded one by one when rebuilding the transitions)
+        catalog.loadOverriddenPlans(getEffectiveDatesByPlanName(eventsForSubscriptions));
         for (final UUID bundleId : subscriptionsFromAccountId.keySet()) {
             final List<DefaultSubscriptionBase> subscriptionsForBundle = subscriptionsFromAccountId.get(bundleId);
             result.put(bundleId, buildBundleSubscriptions(subscriptionsForBundle, eventsForSubscriptions, null, catalog, context));
@@ -408,6 +410,23 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
         return result;
     }
 
+    // For each plan, the effective dates of the (sorted) subscription events where that plan is the current plan
+    private static Map<String, Set<Date>> getEffectiveDatesByPlanName(final MultiValueMap<UUID, SubscriptionBaseEvent> eventsForSubscriptions) {
+        final Map<String, Set<Date>> result = new HashMap<>();
+        for (final List<SubscriptionBaseEvent> events : eventsForSubscriptions.values()) {
+            String planName = null;
+            for (final SubscriptionBaseEvent evt : events) {
+                if (evt.getType() == EventType.API_USER && ((ApiEvent) evt).getEventPlan() != null) {
+                    planName = ((ApiEvent) evt).getEventPlan();
+                }
+                if (planName != null) {
+                    result.computeIfAbsent(planName, k -> new HashSet<>()).add(evt.getEffectiveDate().toDate());
+                }
+            }
+        }
+        return result;
+    }
+
     public Map<UUID, List<DefaultSubscriptionBase>> getSubscriptionsFromAccountId(@Nullable final LocalDate cutoffDt, final InternalTenantContext context) {
         final List<DefaultSubscriptionBase> allSubscriptions = transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> {
             final SubscriptionSqlDao subscriptionSqlDao = entitySqlDaoWrapperFactory.become(SubscriptionSqlDao.class);
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.tenant.dao;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -28,7 +29,9 @@ import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.tenant.api.TenantApiException;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.glue.DefaultTenantModule;
+import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Pagination;
@@ -37,6 +40,7 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.clock.Clock;
+import org.killbill.commons.utils.Preconditions;
 import org.skife.jdbi.v2.IDBI;
 
 import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
@@ -102,9 +106,24 @@ public class NoCachingTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Te
         });
     }
 
+    //
+    // Only for the keys which are neither cached nor broadcast (see DefaultTenantDao#isSystemKey), e.g. data derived from the system keys
+    //
     @Override
     public void addTenantKeyValue(final String key, final String value, final boolean uniqueKey, final InternalCallContext context) {
-        throw new IllegalStateException("Not implemented by NoCachingTenantDao");
+        Preconditions.checkState(Arrays.stream(TenantKey.values()).noneMatch(input -> key.startsWith(input.toString())),
+                                 "System key %s cannot be updated by NoCachingTenantDao", key);
+
+        transactionalSqlDao.execute(false, entitySqlDaoWrapperFactory -> {
+            final TenantKVSqlDao tenantKVSqlDao = entitySqlDaoWrapperFactory.become(TenantKVSqlDao.class);
+            if (uniqueKey) {
+                for (final TenantKVModelDao cur : tenantKVSqlDao.getTenantValueForKey(key, context)) {
+                    tenantKVSqlDao.markTenantKeyAsDeleted(cur.getId().toString(), context);
+                }
+            }
+            createAndRefresh(tenantKVSqlDao, new TenantKVModelDao(UUIDs.randomUUID(), context.getCreatedDate(), context.getUpdatedDate(), key, value), context);
+            return null;
+        });
     }
 
     @Override
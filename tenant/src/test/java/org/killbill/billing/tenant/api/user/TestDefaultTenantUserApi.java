@@ -26,6 +26,7 @@ import org.killbill.billing.tenant.api.DefaultTenant;
 import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.tenant.api.TenantApiException;
 import org.killbill.billing.tenant.api.TenantData;
+import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -144,6 +145,34 @@ public class TestDefaultTenantUserApi extends TenantTestSuiteWithEmbeddedDb {
         Assert.assertEquals(value.size(), 0);
     }
 
+    @Test(groups = "slow")
+    public void testReservedKeys() throws Exception {
+        for (final String tenantKey : TenantInternalApi.RESERVED_KEYS) {
+            // Maintained internally (e.g. signed catalog snapshots)
+            noCachingTenantDao.addTenantKeyValue(tenantKey, "TheInternalValue", true, internalCallContext);
+
+            try {
+                tenantUserApi.addTenantKeyValue(tenantKey, "TheValue", callContext);
+                Assert.fail();
+            } catch (final IllegalArgumentException e) {
+                Assert.assertEquals(e.getMessage(), "Tenant key " + tenantKey + " is reserved");
+            }
+            try {
+                tenantUserApi.updateTenantKeyValue(tenantKey, "TheValue", callContext);
+                Assert.fail();
+            } catch (final IllegalArgumentException ignored) {
+            }
+            try {
+                tenantUserApi.deleteTenantKey(tenantKey, callContext);
+                Assert.fail();
+            } catch (final IllegalArgumentException ignored) {
+            }
+
+            final List<String> value = tenantUserApi.getTenantValuesForKey(tenantKey, callContext);
+            Assert.assertEquals(value, List.of("TheInternalValue"));
+        }
+    }
+
     @Test(groups = "slow", description = "Test Tenant creation with External Key over limit")
     public void testCreateTenantWithExternalKeyOverLimit() throws Exception {
         final TenantData tenantdata = new DefaultTenant(UUID.randomUUID(),
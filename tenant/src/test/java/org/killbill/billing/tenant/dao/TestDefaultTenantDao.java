@@ -28,6 +28,7 @@ import org.testng.annotations.Test;
 
 import org.killbill.billing.tenant.TenantTestSuiteWithEmbeddedDb;
 import org.killbill.billing.tenant.api.DefaultTenant;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.security.shiro.KillbillCredentialsMatcher;
 
 public class TestDefaultTenantDao extends TenantTestSuiteWithEmbeddedDb {
@@ -77,6 +78,31 @@ public class TestDefaultTenantDao extends TenantTestSuiteWithEmbeddedDb {
         Assert.assertEquals(value.size(), 0);
     }
 
+    @Test(groups = "slow")
+    public void testNoCachingTenantKeyValue() throws Exception {
+        final DefaultTenant tenant = new DefaultTenant(UUID.randomUUID(), null, null, UUID.randomUUID().toString(),
+                                                       UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        tenantDao.create(new TenantModelDao(tenant), internalCallContext);
+
+        noCachingTenantDao.addTenantKeyValue("DERIVED_KEY", "TheValue", true, internalCallContext);
+        noCachingTenantDao.addTenantKeyValue("DERIVED_KEY", "TheSecondValue", true, internalCallContext);
+
+        // Unique key: only the last value is kept
+        Assert.assertEquals(noCachingTenantDao.getTenantValueForKey("DERIVED_KEY", internalCallContext), List.of("TheSecondValue"));
+        Assert.assertEquals(tenantDao.getTenantValueForKey("DERIVED_KEY", internalCallContext), List.of("TheSecondValue"));
+
+        // Nothing to broadcast
+        Assert.assertTrue(noCachingTenantBroadcastDao.getLatestEntriesFrom(0L).isEmpty());
+
+        // System keys must go through the DefaultTenantDao
+        try {
+            noCachingTenantDao.addTenantKeyValue(TenantKey.CATALOG.toString(), "<catalog/>", false, internalCallContext);
+            Assert.fail();
+        } catch (final IllegalStateException e) {
+            Assert.assertTrue(noCachingTenantDao.getTenantValueForKey(TenantKey.CATALOG.toString(), internalCallContext).isEmpty());
+        }
+    }
+
 
 
 
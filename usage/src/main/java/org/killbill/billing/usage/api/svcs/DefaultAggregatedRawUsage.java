@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.svcs;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.usage.api.AggregatedRawUsageRecord;
+
+public class DefaultAggregatedRawUsage extends DefaultRawUsage implements AggregatedRawUsageRecord {
+
+    private final DateTime maxRecordDate;
+    private final BigDecimal maxAmount;
+    private final long nbRecords;
+
+    public DefaultAggregatedRawUsage(final UUID subscriptionId, final DateTime minRecordDate, final DateTime maxRecordDate, final String unitType,
+                                     final BigDecimal amount, final BigDecimal maxAmount, final long nbRecords, final String trackingId) {
+        super(subscriptionId, minRecordDate, unitType, amount, trackingId);
+        this.maxRecordDate = maxRecordDate;
+        this.maxAmount = maxAmount;
+        this.nbRecords = nbRecords;
+    }
+
+    @Override
+    public DateTime getMaxDate() {
+        return maxRecordDate;
+    }
+
+    @Override
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    @Override
+    public long getNbRecords() {
+        return nbRecords;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("DefaultAggregatedRawUsage{");
+        sb.append("subscriptionId=").append(getSubscriptionId());
+        sb.append(", minRecordDate=").append(getDate());
+        sb.append(", maxRecordDate=").append(maxRecordDate);
+        sb.append(", unitType='").append(getUnitType()).append('\'');
+        sb.append(", amount=").append(getAmount());
+        sb.append(", maxAmount=").append(maxAmount);
+        sb.append(", nbRecords=").append(nbRecords);
+        sb.append(", trackingId=").append(getTrackingId());
+        sb.append('}');
+        return sb.toString();
+    }
+}
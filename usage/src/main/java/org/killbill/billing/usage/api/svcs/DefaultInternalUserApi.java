@@ -17,14 +17,22 @@
 
 package org.killbill.billing.usage.api.svcs;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.invoice.api.DryRunInfo;
@@ -34,12 +42,15 @@ import org.killbill.billing.usage.InternalUserApi;
 import org.killbill.billing.usage.api.BaseUserApi;
 import org.killbill.billing.usage.api.DefaultUsageContext;
 import org.killbill.billing.usage.api.RawUsageRecord;
+import org.killbill.billing.usage.dao.RolledUpUsageDailyModelDao;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
 import org.killbill.billing.usage.plugin.api.UsageContext;
 import org.killbill.billing.usage.plugin.api.UsagePluginApi;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.billing.util.entity.Pagination;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +58,10 @@ public class DefaultInternalUserApi extends BaseUserApi implements InternalUserA
 
     private static final Logger log = LoggerFactory.getLogger(DefaultInternalUserApi.class);
 
+    // Same ordering as the streaming query
+    private static final Comparator<RawUsageRecord> SUBSCRIPTION_AND_DATE_COMPARATOR = Comparator.<RawUsageRecord, String>comparing(input -> input.getSubscriptionId().toString())
+                                                                                                 .thenComparing(RawUsageRecord::getDate);
+
     private final RolledUpUsageDao rolledUpUsageDao;
     private final InternalCallContextFactory internalCallContextFactory;
 
@@ -64,6 +79,93 @@ public class DefaultInternalUserApi extends BaseUserApi implements InternalUserA
 
         log.info("GetRawUsageForAccount startDate='{}', endDate='{}'", startDate, endDate);
 
+        final List<RawUsageRecord> resultFromPlugin = getRawUsageFromPlugin(startDate, endDate, dryRunInfo, internalTenantContext);
+        if (resultFromPlugin != null) {
+            return resultFromPlugin;
+        }
+
+        return toRawUsageRecords(rolledUpUsageDao.getRawUsageForAccount(startDate, endDate, internalTenantContext));
+    }
+
+    @Override
+    public Pagination<RawUsageRecord> getRawUsageStreamForAccount(final DateTime startDate, final DateTime endDate, @Nullable final DryRunInfo dryRunInfo, final InternalTenantContext internalTenantContext) {
+
+        log.info("GetRawUsageStreamForAccount startDate='{}', endDate='{}'", startDate, endDate);
+
+        final List<RawUsageRecord> resultFromPlugin = getRawUsageFromPlugin(startDate, endDate, dryRunInfo, internalTenantContext);
+        if (resultFromPlugin != null) {
+            final List<RawUsageRecord> sortedResultFromPlugin = resultFromPlugin.stream()
+                                                                                .sorted(SUBSCRIPTION_AND_DATE_COMPARATOR)
+                                                                                .collect(Collectors.toUnmodifiableList());
+            return new DefaultPagination<RawUsageRecord>((long) sortedResultFromPlugin.size(), sortedResultFromPlugin.iterator());
+        }
+
+        final Iterator<RolledUpUsageModelDao> usage = rolledUpUsageDao.getRawUsageStreamForAccount(startDate, endDate, internalTenantContext);
+        return new DefaultPagination<RawUsageRecord>(null, new RawUsageIterator(usage));
+    }
+
+    @Override
+    public List<RawUsageRecord> getAggregatedUsageForAccount(final DateTime startDate, final DateTime endDate, final Set<LocalDate> rawUsageDays, @Nullable final DryRunInfo dryRunInfo, final InternalTenantContext internalTenantContext) {
+
+        log.info("GetAggregatedUsageForAccount startDate='{}', endDate='{}'", startDate, endDate);
+
+        final List<RawUsageRecord> resultFromPlugin = getRawUsageFromPlugin(startDate, endDate, dryRunInfo, internalTenantContext);
+        if (resultFromPlugin != null) {
+            return resultFromPlugin;
+        }
+
+        // Only full days can be read from the rollup
+        final LocalDate startDay = new LocalDate(startDate, DateTimeZone.UTC).plusDays(1);
+        final LocalDate endDay = new LocalDate(endDate, DateTimeZone.UTC).minusDays(1);
+        if (startDay.isAfter(endDay) || !rolledUpUsageDao.isDailyUsageComplete(startDay, endDay, internalTenantContext)) {
+            // E.g. usage recorded prior to the introduction of the rollup
+            log.info("GetAggregatedUsageForAccount daily rollup isn't complete, reading raw usage for startDate='{}', endDate='{}'", startDate, endDate);
+            return toRawUsageRecords(rolledUpUsageDao.getRawUsageForAccount(startDate, endDate, internalTenantContext));
+        }
+
+        final List<RolledUpUsageDailyModelDao> dailyUsage = rolledUpUsageDao.getDailyUsageForAccount(startDay, endDay, internalTenantContext);
+
+        // An aggregate spanning two account local days would lose the (local) date of some of its records
+        final Set<LocalDate> excludedDays = new HashSet<>(rawUsageDays);
+        for (final RolledUpUsageDailyModelDao input : dailyUsage) {
+            if (!internalTenantContext.toLocalDate(input.getMinRecordDate()).equals(internalTenantContext.toLocalDate(input.getMaxRecordDate()))) {
+                excludedDays.add(input.getRecordDay());
+            }
+        }
+
+        final List<RawUsageRecord> result = new ArrayList<>();
+        for (final RolledUpUsageDailyModelDao input : dailyUsage) {
+            if (!excludedDays.contains(input.getRecordDay())) {
+                result.add(new DefaultAggregatedRawUsage(input.getSubscriptionId(), input.getMinRecordDate(), input.getMaxRecordDate(), input.getUnitType(),
+                                                         input.getAmount(), input.getMaxAmount(), input.getNbRecords(), input.getTrackingId()));
+            }
+        }
+
+        // Partial first and last days
+        result.addAll(toRawUsageRecords(rolledUpUsageDao.getRawUsageForAccount(startDate, toEndOfDay(startDay.minusDays(1)), internalTenantContext)));
+        result.addAll(toRawUsageRecords(rolledUpUsageDao.getRawUsageForAccount(endDay.plusDays(1).toDateTimeAtStartOfDay(DateTimeZone.UTC), endDate, internalTenantContext)));
+
+        // Excluded days, fetched by ranges of consecutive days
+        final List<LocalDate> sortedExcludedDays = excludedDays.stream()
+                                                               .filter(day -> !day.isBefore(startDay) && !day.isAfter(endDay))
+                                                               .sorted()
+                                                               .collect(Collectors.toUnmodifiableList());
+        int i = 0;
+        while (i < sortedExcludedDays.size()) {
+            final LocalDate rangeStartDay = sortedExcludedDays.get(i);
+            LocalDate rangeEndDay = rangeStartDay;
+            while (i + 1 < sortedExcludedDays.size() && sortedExcludedDays.get(i + 1).equals(rangeEndDay.plusDays(1))) {
+                rangeEndDay = sortedExcludedDays.get(++i);
+            }
+            result.addAll(toRawUsageRecords(rolledUpUsageDao.getRawUsageForAccount(rangeStartDay.toDateTimeAtStartOfDay(DateTimeZone.UTC), toEndOfDay(rangeEndDay), internalTenantContext)));
+            i++;
+        }
+
+        return result;
+    }
+
+    @Nullable
+    private List<RawUsageRecord> getRawUsageFromPlugin(final DateTime startDate, final DateTime endDate, @Nullable final DryRunInfo dryRunInfo, final InternalTenantContext internalTenantContext) {
         final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
 
         final DryRunType dryRunType = dryRunInfo != null ? dryRunInfo.getDryRunType() : null;
@@ -71,15 +173,46 @@ public class DefaultInternalUserApi extends BaseUserApi implements InternalUserA
 
         final UsageContext usageContext = new DefaultUsageContext(dryRunType, inputTargetDate, tenantContext);
 
-        final List<RawUsageRecord> resultFromPlugin = getAccountUsageFromPlugin(startDate, endDate, Collections.emptyList(), usageContext);
-        if (resultFromPlugin != null) {
-            return resultFromPlugin;
-        }
+        return getAccountUsageFromPlugin(startDate, endDate, Collections.emptyList(), usageContext);
+    }
 
-        final List<RolledUpUsageModelDao> usage = rolledUpUsageDao.getRawUsageForAccount(startDate, endDate, internalTenantContext);
+    private static List<RawUsageRecord> toRawUsageRecords(final List<RolledUpUsageModelDao> usage) {
         return usage.stream()
                 .map(input -> new DefaultRawUsage(input.getSubscriptionId(), input.getRecordDate(), input.getUnitType(), input.getAmount(), input.getTrackingId()))
                 .collect(Collectors.toUnmodifiableList());
     }
 
+    // Keeps the underlying result set closeable (see DefaultPagination#close)
+    private static final class RawUsageIterator implements Iterator<RawUsageRecord>, Closeable {
+
+        private final Iterator<RolledUpUsageModelDao> delegate;
+
+        private RawUsageIterator(final Iterator<RolledUpUsageModelDao> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public RawUsageRecord next() {
+            final RolledUpUsageModelDao input = delegate.next();
+            return new DefaultRawUsage(input.getSubscriptionId(), input.getRecordDate(), input.getUnitType(), input.getAmount(), input.getTrackingId());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate instanceof Closeable) {
+                ((Closeable) delegate).close();
+            }
+        }
+    }
+
+    // The raw usage query includes the end date
+    private static DateTime toEndOfDay(final LocalDate day) {
+        return day.plusDays(1).toDateTimeAtStartOfDay(DateTimeZone.UTC).minusMillis(1);
+    }
+
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.user;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.api.BulkUsageUserApi;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
+import org.killbill.billing.usage.api.UsageRecordResult;
+import org.killbill.billing.usage.api.UsageRecordResult.Status;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+
+public class DefaultBulkUsageUserApi implements BulkUsageUserApi {
+
+    private final RolledUpUsageDao rolledUpUsageDao;
+    private final InternalCallContextFactory internalCallContextFactory;
+
+    @Inject
+    public DefaultBulkUsageUserApi(final RolledUpUsageDao rolledUpUsageDao, final InternalCallContextFactory internalCallContextFactory) {
+        this.rolledUpUsageDao = rolledUpUsageDao;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    @Override
+    public List<UsageRecordResult> recordRolledUpUsage(final Iterable<SubscriptionUsageRecord> records, final CallContext callContext) {
+        final Set<String> trackingIds = new HashSet<>();
+        for (final SubscriptionUsageRecord record : records) {
+            if (record.getTrackingId() != null && !record.getTrackingId().isEmpty()) {
+                trackingIds.add(record.getTrackingId());
+            }
+        }
+
+        // Single lookup for the whole batch, instead of one recordsWithTrackingIdExist call per record
+        final Map<UUID, Set<String>> trackingIdsPerSubscription = new HashMap<>();
+        if (!trackingIds.isEmpty()) {
+            final InternalTenantContext tenantContext = internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(callContext);
+            for (final RolledUpUsageModelDao existing : rolledUpUsageDao.getSubscriptionIdsWithTrackingIds(trackingIds, tenantContext)) {
+                trackingIdsPerSubscription.computeIfAbsent(existing.getSubscriptionId(), k -> new HashSet<>()).add(existing.getTrackingId());
+            }
+        }
+
+        final List<UsageRecordResult> results = new ArrayList<>();
+        final Map<UUID, InternalCallContext> contextPerSubscription = new HashMap<>();
+        // Rows are inserted per account (account_record_id comes from the context), keyed by account record id
+        final Map<Long, InternalCallContext> contextPerAccount = new LinkedHashMap<>();
+        final Map<Long, List<RolledUpUsageModelDao>> usagesPerAccount = new LinkedHashMap<>();
+        for (final SubscriptionUsageRecord record : records) {
+            final String trackingId;
+            if (record.getTrackingId() == null || record.getTrackingId().isEmpty()) {
+                trackingId = UUIDs.randomUUID().toString();
+            } else if (!trackingIdsPerSubscription.computeIfAbsent(record.getSubscriptionId(), k -> new HashSet<>()).add(record.getTrackingId())) {
+                // Already recorded, or seen earlier in this batch
+                results.add(new UsageRecordResult(record.getSubscriptionId(), record.getTrackingId(), Status.DUPLICATE));
+                continue;
+            } else {
+                trackingId = record.getTrackingId();
+            }
+
+            final InternalCallContext internalCallContext = contextPerSubscription.computeIfAbsent(record.getSubscriptionId(),
+                                                                                                   subscriptionId -> internalCallContextFactory.createInternalCallContext(subscriptionId, ObjectType.SUBSCRIPTION, callContext));
+            contextPerAccount.putIfAbsent(internalCallContext.getAccountRecordId(), internalCallContext);
+            final List<RolledUpUsageModelDao> usages = usagesPerAccount.computeIfAbsent(internalCallContext.getAccountRecordId(), k -> new ArrayList<>());
+            for (final UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
+                for (final UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
+                    usages.add(new RolledUpUsageModelDao(record.getSubscriptionId(), unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount(), trackingId));
+                }
+            }
+            results.add(new UsageRecordResult(record.getSubscriptionId(), trackingId, Status.RECORDED));
+        }
+
+        // Each account is written with one (chunked) JDBC batch, in its own transaction
+        for (final Map.Entry<Long, List<RolledUpUsageModelDao>> entry : usagesPerAccount.entrySet()) {
+            rolledUpUsageDao.record(entry.getValue(), contextPerAccount.get(entry.getKey()));
+        }
+
+        return results;
+    }
+}
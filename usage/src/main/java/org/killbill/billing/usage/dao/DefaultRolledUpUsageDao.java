@@ -18,33 +18,103 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.dao.DBRouter;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
 
 import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
 
 public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
 
+    // Bound the size of the IN clause for very large batches
+    private static final int MAX_TRACKING_IDS_PER_QUERY = 1000;
+
     private final DBRouter<RolledUpUsageSqlDao> dbRouter;
+    private final DBRouter<RolledUpUsageDailySqlDao> dailyDbRouter;
 
     @Inject
     public DefaultRolledUpUsageDao(final IDBI dbi, @Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi) {
         this.dbRouter = new DBRouter<RolledUpUsageSqlDao>(dbi, roDbi, RolledUpUsageSqlDao.class);
+        this.dailyDbRouter = new DBRouter<RolledUpUsageDailySqlDao>(dbi, roDbi, RolledUpUsageDailySqlDao.class);
+        // RolledUpUsageDailySqlDao is not an EntitySqlDao, so its mapper isn't registered by IDBISetup
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyModelDao.class));
+        if (roDbi != dbi) {
+            ((DBI) roDbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageDailyModelDao.class));
+        }
     }
 
     @Override
     public void record(final Iterable<RolledUpUsageModelDao> usages, final InternalCallContext context) {
-        dbRouter.onDemand(false).create(usages, context);
+        final Collection<RolledUpUsageDailyModelDao> dailyUsages = aggregateDailyUsage(usages, context);
+        // The daily rollup is maintained in the same transaction, so that it never diverges from the raw records
+        try {
+            dbRouter.inTransaction(false, (handle, status) -> {
+                handle.attach(RolledUpUsageSqlDao.class).create(usages, context);
+                handle.attach(RolledUpUsageDailySqlDao.class).create(dailyUsages, context);
+                return null;
+            });
+        } catch (final CallbackFailedException e) {
+            // Surface the underlying error (e.g. duplicate records) to the caller
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    //
+    // Records are aggregated per (subscription, unit type, tracking id, UTC day): a tracking id is only recorded once for a given subscription,
+    // so the daily rows can simply be inserted and the tracking id lineage is preserved. When the account time zone is known, the aggregates
+    // are also split on the account local day so that the (local) record date of the invoice trackings can be derived from them.
+    //
+    private static Collection<RolledUpUsageDailyModelDao> aggregateDailyUsage(final Iterable<RolledUpUsageModelDao> usages, final InternalCallContext context) {
+        final DateTimeZone accountTimeZone = context.getFixedOffsetTimeZone();
+        final Map<List<Object>, RolledUpUsageDailyModelDao> dailyUsages = new LinkedHashMap<>();
+        for (final RolledUpUsageModelDao usage : usages) {
+            final LocalDate recordDay = new LocalDate(usage.getRecordDate(), DateTimeZone.UTC);
+            final LocalDate localRecordDay = accountTimeZone != null ? new LocalDate(usage.getRecordDate(), accountTimeZone) : null;
+            final List<Object> key = Arrays.asList(usage.getSubscriptionId(), usage.getUnitType(), usage.getTrackingId(), recordDay, localRecordDay);
+
+            final RolledUpUsageDailyModelDao dailyUsage = dailyUsages.get(key);
+            if (dailyUsage == null) {
+                final RolledUpUsageDailyModelDao newDailyUsage = new RolledUpUsageDailyModelDao(usage.getSubscriptionId(), usage.getUnitType(), recordDay, usage.getTrackingId(),
+                                                                                                usage.getAmount(), usage.getAmount(), 1L, usage.getRecordDate(), usage.getRecordDate());
+                newDailyUsage.setCreatedDate(context.getCreatedDate());
+                newDailyUsage.setAccountRecordId(context.getAccountRecordId());
+                newDailyUsage.setTenantRecordId(context.getTenantRecordId());
+                dailyUsages.put(key, newDailyUsage);
+            } else {
+                dailyUsage.setAmount(dailyUsage.getAmount().add(usage.getAmount()));
+                dailyUsage.setMaxAmount(dailyUsage.getMaxAmount().max(usage.getAmount()));
+                dailyUsage.setNbRecords(dailyUsage.getNbRecords() + 1);
+                if (usage.getRecordDate().isBefore(dailyUsage.getMinRecordDate())) {
+                    dailyUsage.setMinRecordDate(usage.getRecordDate());
+                }
+                if (usage.getRecordDate().isAfter(dailyUsage.getMaxRecordDate())) {
+                    dailyUsage.setMaxRecordDate(usage.getRecordDate());
+                }
+            }
+        }
+        return dailyUsages.values();
     }
 
     @Override
@@ -52,6 +122,18 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
         return dbRouter.onDemand(false).recordsWithTrackingIdExist(subscriptionId, trackingId, context) != null;
     }
 
+    @Override
+    public List<RolledUpUsageModelDao> getSubscriptionIdsWithTrackingIds(final Collection<String> trackingIds, final InternalTenantContext context) {
+        final List<RolledUpUsageModelDao> result = new ArrayList<>();
+        final List<String> trackingIdsList = new ArrayList<>(trackingIds);
+        final RolledUpUsageSqlDao sqlDao = dbRouter.onDemand(false);
+        for (int i = 0; i < trackingIdsList.size(); i += MAX_TRACKING_IDS_PER_QUERY) {
+            final List<String> chunk = trackingIdsList.subList(i, Math.min(i + MAX_TRACKING_IDS_PER_QUERY, trackingIdsList.size()));
+            result.addAll(sqlDao.getSubscriptionIdsWithTrackingIds(chunk, context));
+        }
+        return result;
+    }
+
     @Override
     public List<RolledUpUsageModelDao> getUsageForSubscription(final UUID subscriptionId, final DateTime startDate, final DateTime endDate, final String unitType, final InternalTenantContext context) {
         return dbRouter.onDemand(true).getUsageForSubscription(subscriptionId, startDate.toDate(), endDate.toDate(), unitType, context);
@@ -67,4 +149,23 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
     public List<RolledUpUsageModelDao> getRawUsageForAccount(final DateTime startDate, final DateTime endDate, final InternalTenantContext context) {
         return dbRouter.onDemand(true).getRawUsageForAccount(startDate.toDate(), endDate.toDate(), context);
     }
+
+    @Override
+    public Iterator<RolledUpUsageModelDao> getRawUsageStreamForAccount(final DateTime startDate, final DateTime endDate, final InternalTenantContext context) {
+        return dbRouter.onDemand(true).getRawUsageForAccountOrderedBySubscription(startDate.toDate(), endDate.toDate(), context);
+    }
+
+    @Override
+    public List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(final LocalDate startDay, final LocalDate endDay, final InternalTenantContext context) {
+        return dailyDbRouter.onDemand(true).getDailyUsageForAccount(startDay.toDate(), endDay.toDate(), context);
+    }
+
+    @Override
+    public boolean isDailyUsageComplete(final LocalDate startDay, final LocalDate endDay, final InternalTenantContext context) {
+        final Long nbAggregatedRecords = dailyDbRouter.onDemand(true).getNbAggregatedRecordsForAccount(startDay.toDate(), endDay.toDate(), context);
+        final Long nbRawRecords = dbRouter.onDemand(true).getNbRawRecordsForAccount(startDay.toDateTimeAtStartOfDay(DateTimeZone.UTC).toDate(),
+                                                                                    endDay.plusDays(1).toDateTimeAtStartOfDay(DateTimeZone.UTC).toDate(),
+                                                                                    context);
+        return nbRawRecords.equals(nbAggregatedRecords);
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.dao;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Aggregate of the rolled_up_usage records of a subscription sharing the same unit type, tracking id and day.
+ */
+public class RolledUpUsageDailyModelDao {
+
+    private Long recordId;
+    private UUID subscriptionId;
+    private String unitType;
+    private LocalDate recordDay;
+    private String trackingId;
+    private BigDecimal amount;
+    private BigDecimal maxAmount;
+    private Long nbRecords;
+    private DateTime minRecordDate;
+    private DateTime maxRecordDate;
+    private DateTime createdDate;
+    private Long accountRecordId;
+    private Long tenantRecordId;
+
+    public RolledUpUsageDailyModelDao() { /* For the DAO mapper */ }
+
+    public RolledUpUsageDailyModelDao(final UUID subscriptionId, final String unitType, final LocalDate recordDay, final String trackingId,
+                                      final BigDecimal amount, final BigDecimal maxAmount, final Long nbRecords, final DateTime minRecordDate, final DateTime maxRecordDate) {
+        this.subscriptionId = subscriptionId;
+        this.unitType = unitType;
+        this.recordDay = recordDay;
+        this.trackingId = trackingId;
+        this.amount = amount;
+        this.maxAmount = maxAmount;
+        this.nbRecords = nbRecords;
+        this.minRecordDate = minRecordDate;
+        this.maxRecordDate = maxRecordDate;
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getUnitType() {
+        return unitType;
+    }
+
+    public void setUnitType(final String unitType) {
+        this.unitType = unitType;
+    }
+
+    public LocalDate getRecordDay() {
+        return recordDay;
+    }
+
+    public void setRecordDay(final LocalDate recordDay) {
+        this.recordDay = recordDay;
+    }
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public void setTrackingId(final String trackingId) {
+        this.trackingId = trackingId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(final BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(final BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    public Long getNbRecords() {
+        return nbRecords;
+    }
+
+    public void setNbRecords(final Long nbRecords) {
+        this.nbRecords = nbRecords;
+    }
+
+    public DateTime getMinRecordDate() {
+        return minRecordDate;
+    }
+
+    public void setMinRecordDate(final DateTime minRecordDate) {
+        this.minRecordDate = minRecordDate;
+    }
+
+    public DateTime getMaxRecordDate() {
+        return maxRecordDate;
+    }
+
+    public void setMaxRecordDate(final DateTime maxRecordDate) {
+        this.maxRecordDate = maxRecordDate;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(final DateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public void setAccountRecordId(final Long accountRecordId) {
+        this.accountRecordId = accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    public void setTenantRecordId(final Long tenantRecordId) {
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("RolledUpUsageDailyModelDao");
+        sb.append("{subscriptionId=").append(subscriptionId);
+        sb.append(", unitType='").append(unitType).append('\'');
+        sb.append(", recordDay=").append(recordDay);
+        sb.append(", trackingId=").append(trackingId);
+        sb.append(", amount=").append(amount);
+        sb.append(", maxAmount=").append(maxAmount);
+        sb.append(", nbRecords=").append(nbRecords);
+        sb.append(", minRecordDate=").append(minRecordDate);
+        sb.append(", maxRecordDate=").append(maxRecordDate);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -16,10 +16,13 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 
@@ -29,9 +32,19 @@ public interface RolledUpUsageDao {
 
     Boolean recordsWithTrackingIdExist(UUID subscriptionId, String trackingId, InternalTenantContext context);
 
+    List<RolledUpUsageModelDao> getSubscriptionIdsWithTrackingIds(Collection<String> trackingIds, InternalTenantContext context);
+
     List<RolledUpUsageModelDao> getUsageForSubscription(UUID subscriptionId, DateTime startDate, DateTime endDate, String unitType, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getAllUsageForSubscription(UUID subscriptionId, DateTime startDate, DateTime endDate, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getRawUsageForAccount(DateTime startDate, DateTime endDate, InternalTenantContext context);
+
+    // Streaming variant, ordered by subscription id and record date (the iterator must be exhausted or closed)
+    Iterator<RolledUpUsageModelDao> getRawUsageStreamForAccount(DateTime startDate, DateTime endDate, InternalTenantContext context);
+
+    List<RolledUpUsageDailyModelDao> getDailyUsageForAccount(LocalDate startDay, LocalDate endDay, InternalTenantContext context);
+
+    // Whether the daily rollup accounts for all the raw records of the [startDay, endDay] (UTC) period
+    boolean isDailyUsageComplete(LocalDate startDay, LocalDate endDay, InternalTenantContext context);
 }
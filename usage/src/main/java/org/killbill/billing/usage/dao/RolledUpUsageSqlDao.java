@@ -18,7 +18,9 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,9 +28,11 @@ import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.killbill.commons.jdbi.statement.SmartFetchSize;
 import org.killbill.commons.jdbi.template.KillBillSqlDaoStringTemplate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface RolledUpUsageSqlDao extends EntitySqlDao<RolledUpUsageModelDao, Entity> {
@@ -38,6 +42,10 @@ public interface RolledUpUsageSqlDao extends EntitySqlDao<RolledUpUsageModelDao,
                                     @Bind("trackingId") final String trackingId,
                                     @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    List<RolledUpUsageModelDao> getSubscriptionIdsWithTrackingIds(@BindIn("trackingIds") final Collection<String> trackingIds,
+                                                                  @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     List<RolledUpUsageModelDao> getUsageForSubscription(@Bind("subscriptionId") final UUID subscriptionId,
                                                         @Bind("startDate") final Date startDate,
@@ -55,4 +63,15 @@ public interface RolledUpUsageSqlDao extends EntitySqlDao<RolledUpUsageModelDao,
     List<RolledUpUsageModelDao> getRawUsageForAccount(@Bind("startDate") final Date startDate,
                                                       @Bind("endDate") final Date endDate,
                                                       @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    Iterator<RolledUpUsageModelDao> getRawUsageForAccountOrderedBySubscription(@Bind("startDate") final Date startDate,
+                                                                               @Bind("endDate") final Date endDate,
+                                                                               @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    Long getNbRawRecordsForAccount(@Bind("startDate") final Date startDate,
+                                   @Bind("endDate") final Date endDate,
+                                   @SmartBindBean final InternalTenantContext context);
 }
@@ -21,8 +21,10 @@ package org.killbill.billing.usage.glue;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.usage.InternalUserApi;
+import org.killbill.billing.usage.api.BulkUsageUserApi;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.billing.usage.api.svcs.DefaultInternalUserApi;
+import org.killbill.billing.usage.api.user.DefaultBulkUsageUserApi;
 import org.killbill.billing.usage.api.user.DefaultUsageUserApi;
 import org.killbill.billing.usage.dao.DefaultRolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
@@ -45,6 +47,10 @@ public class UsageModule extends KillBillModule {
         bind(UsageUserApi.class).to(DefaultUsageUserApi.class).asEagerSingleton();
     }
 
+    protected void installBulkUsageUserApi() {
+        bind(BulkUsageUserApi.class).to(DefaultBulkUsageUserApi.class).asEagerSingleton();
+    }
+
     protected void installInternalUserApi() {
         bind(InternalUserApi.class).to(DefaultInternalUserApi.class).asEagerSingleton();
     }
@@ -59,6 +65,7 @@ public class UsageModule extends KillBillModule {
     protected void configure() {
         installRolledUpUsageDao();
         installUsageUserApi();
+        installBulkUsageUserApi();
         installInternalUserApi();
         installUsagePluginApi();
     }
@@ -20,3 +20,22 @@ CREATE INDEX rolled_up_usage_subscription_id ON rolled_up_usage(subscription_id
 CREATE INDEX rolled_up_usage_tenant_account_record_id ON rolled_up_usage(tenant_record_id, account_record_id);
 CREATE INDEX rolled_up_usage_account_record_id ON rolled_up_usage(account_record_id);
 CREATE INDEX rolled_up_usage_tracking_id_subscription_id_tenant_record_id ON rolled_up_usage(tracking_id, subscription_id, tenant_record_id);
+
+DROP TABLE IF EXISTS rolled_up_usage_daily;
+CREATE TABLE rolled_up_usage_daily (
+    record_id serial unique,
+    subscription_id varchar(36) NOT NULL,
+    unit_type varchar(255) NOT NULL,
+    record_day date NOT NULL,
+    tracking_id varchar(128) NOT NULL,
+    amount decimal(18, 9) NOT NULL,
+    max_amount decimal(18, 9) NOT NULL,
+    nb_records bigint NOT NULL,
+    min_record_date datetime NOT NULL,
+    max_record_date datetime NOT NULL,
+    created_date datetime NOT NULL,
+    account_record_id bigint /*! unsigned */ not null,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX rolled_up_usage_daily_tenant_account_record_day ON rolled_up_usage_daily(tenant_record_id, account_record_id, record_day);
@@ -0,0 +1,17 @@
+CREATE TABLE rolled_up_usage_daily (
+    record_id serial unique,
+    subscription_id varchar(36) NOT NULL,
+    unit_type varchar(255) NOT NULL,
+    record_day date NOT NULL,
+    tracking_id varchar(128) NOT NULL,
+    amount decimal(18, 9) NOT NULL,
+    max_amount decimal(18, 9) NOT NULL,
+    nb_records bigint NOT NULL,
+    min_record_date datetime NOT NULL,
+    max_record_date datetime NOT NULL,
+    created_date datetime NOT NULL,
+    account_record_id bigint /*! unsigned */ not null,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX rolled_up_usage_daily_tenant_account_record_day ON rolled_up_usage_daily(tenant_record_id, account_record_id, record_day);
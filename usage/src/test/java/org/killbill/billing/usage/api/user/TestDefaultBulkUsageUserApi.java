@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.api.user;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
+import org.killbill.billing.usage.api.UsageRecordResult;
+import org.killbill.billing.usage.api.UsageRecordResult.Status;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+
+public class TestDefaultBulkUsageUserApi extends UsageTestSuiteWithEmbeddedDB {
+
+    private static final String UNIT_TYPE = "foo";
+    private static final DateTime START_DATE = new LocalDate(2013, 1, 1).toDateTimeAtStartOfDay();
+    private static final DateTime END_DATE = new LocalDate(2013, 2, 1).toDateTimeAtStartOfDay();
+
+    @Test(groups = "slow")
+    public void testRecordedAndDuplicateStatuses() {
+        final UUID subscriptionId = UUIDs.randomUUID();
+        final Map<UUID, InternalCallContext> contextPerSubscription = new HashMap<>();
+        contextPerSubscription.put(subscriptionId, internalCallContext);
+        final DefaultBulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(rolledUpUsageDao, contextPerSubscription);
+
+        // Recorded by a previous call
+        final List<RolledUpUsageModelDao> existingUsages = new ArrayList<>();
+        existingUsages.add(new RolledUpUsageModelDao(subscriptionId, UNIT_TYPE, START_DATE, BigDecimal.TEN, "t1"));
+        rolledUpUsageDao.record(existingUsages, internalCallContext);
+
+        final List<SubscriptionUsageRecord> records = new ArrayList<>();
+        records.add(createRecord(subscriptionId, "t1", START_DATE.plusDays(1), BigDecimal.ONE));
+        records.add(createRecord(subscriptionId, "t2", START_DATE.plusDays(2), BigDecimal.valueOf(2L)));
+        records.add(createRecord(subscriptionId, null, START_DATE.plusDays(3), BigDecimal.valueOf(3L)));
+        final List<UsageRecordResult> results = bulkUsageUserApi.recordRolledUpUsage(records, callContext);
+
+        // One result per record, in order
+        assertEquals(results.size(), 3);
+        checkResult(results.get(0), subscriptionId, "t1", Status.DUPLICATE);
+        checkResult(results.get(1), subscriptionId, "t2", Status.RECORDED);
+        assertEquals(results.get(2).getSubscriptionId(), subscriptionId);
+        assertEquals(results.get(2).getStatus(), Status.RECORDED);
+        // A tracking id is generated for records without one
+        assertNotNull(results.get(2).getTrackingId());
+        assertFalse(results.get(2).getTrackingId().isEmpty());
+
+        final List<RolledUpUsageModelDao> usages = rolledUpUsageDao.getUsageForSubscription(subscriptionId, START_DATE, END_DATE, UNIT_TYPE, internalCallContext);
+        assertEquals(usages.size(), 3);
+        assertEquals(usages.get(0).getTrackingId(), "t1");
+        assertEquals(usages.get(0).getAmount().compareTo(BigDecimal.TEN), 0);
+        assertEquals(usages.get(1).getTrackingId(), "t2");
+        assertEquals(usages.get(2).getTrackingId(), results.get(2).getTrackingId());
+    }
+
+    @Test(groups = "slow")
+    public void testDuplicatesWithinBatch() {
+        final UUID subscriptionId1 = UUIDs.randomUUID();
+        final UUID subscriptionId2 = UUIDs.randomUUID();
+        final Map<UUID, InternalCallContext> contextPerSubscription = new HashMap<>();
+        contextPerSubscription.put(subscriptionId1, internalCallContext);
+        contextPerSubscription.put(subscriptionId2, internalCallContext);
+        final DefaultBulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(rolledUpUsageDao, contextPerSubscription);
+
+        final List<SubscriptionUsageRecord> records = new ArrayList<>();
+        records.add(createRecord(subscriptionId1, "t1", START_DATE, BigDecimal.ONE));
+        records.add(createRecord(subscriptionId1, "t1", START_DATE.plusDays(1), BigDecimal.TEN));
+        // Tracking ids are scoped by subscription
+        records.add(createRecord(subscriptionId2, "t1", START_DATE, BigDecimal.valueOf(2L)));
+        final List<UsageRecordResult> results = bulkUsageUserApi.recordRolledUpUsage(records, callContext);
+
+        assertEquals(results.size(), 3);
+        checkResult(results.get(0), subscriptionId1, "t1", Status.RECORDED);
+        checkResult(results.get(1), subscriptionId1, "t1", Status.DUPLICATE);
+        checkResult(results.get(2), subscriptionId2, "t1", Status.RECORDED);
+
+        final List<RolledUpUsageModelDao> usages1 = rolledUpUsageDao.getUsageForSubscription(subscriptionId1, START_DATE, END_DATE, UNIT_TYPE, internalCallContext);
+        assertEquals(usages1.size(), 1);
+        assertEquals(usages1.get(0).getAmount().compareTo(BigDecimal.ONE), 0);
+        final List<RolledUpUsageModelDao> usages2 = rolledUpUsageDao.getUsageForSubscription(subscriptionId2, START_DATE, END_DATE, UNIT_TYPE, internalCallContext);
+        assertEquals(usages2.size(), 1);
+        assertEquals(usages2.get(0).getAmount().compareTo(BigDecimal.valueOf(2L)), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testGroupedPerAccount() {
+        final InternalCallContext account1Context = internalCallContext;
+        final InternalCallContext account2Context = new InternalCallContext(internalCallContext.getTenantRecordId(),
+                                                                            internalCallContext.getAccountRecordId() + 1,
+                                                                            null,
+                                                                            null,
+                                                                            internalCallContext.getUserToken(),
+                                                                            internalCallContext.getCreatedBy(),
+                                                                            internalCallContext.getCallOrigin(),
+                                                                            internalCallContext.getContextUserType(),
+                                                                            internalCallContext.getReasonCode(),
+                                                                            internalCallContext.getComments(),
+                                                                            clock.getUTCNow(),
+                                                                            clock.getUTCNow());
+        final UUID subscriptionId1 = UUIDs.randomUUID();
+        final UUID subscriptionId2 = UUIDs.randomUUID();
+        final UUID subscriptionId3 = UUIDs.randomUUID();
+        final Map<UUID, InternalCallContext> contextPerSubscription = new HashMap<>();
+        contextPerSubscription.put(subscriptionId1, account1Context);
+        contextPerSubscription.put(subscriptionId2, account2Context);
+        contextPerSubscription.put(subscriptionId3, account1Context);
+        final RolledUpUsageDao spiedRolledUpUsageDao = Mockito.spy(rolledUpUsageDao);
+        final DefaultBulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(spiedRolledUpUsageDao, contextPerSubscription);
+
+        // Records of both accounts are interleaved
+        final List<SubscriptionUsageRecord> records = new ArrayList<>();
+        records.add(createRecord(subscriptionId1, "t1", START_DATE, BigDecimal.ONE));
+        records.add(createRecord(subscriptionId2, "t2", START_DATE, BigDecimal.valueOf(2L)));
+        records.add(createRecord(subscriptionId3, "t3", START_DATE, BigDecimal.valueOf(3L)));
+        records.add(createRecord(subscriptionId1, "t4", START_DATE.plusDays(1), BigDecimal.valueOf(4L)));
+        final List<UsageRecordResult> results = bulkUsageUserApi.recordRolledUpUsage(records, callContext);
+        assertEquals(results.size(), 4);
+        for (final UsageRecordResult result : results) {
+            assertEquals(result.getStatus(), Status.RECORDED);
+        }
+
+        // One write per account
+        Mockito.verify(spiedRolledUpUsageDao, Mockito.times(1)).record(Mockito.anyIterable(), Mockito.eq(account1Context));
+        Mockito.verify(spiedRolledUpUsageDao, Mockito.times(1)).record(Mockito.anyIterable(), Mockito.eq(account2Context));
+        Mockito.verify(spiedRolledUpUsageDao, Mockito.times(2)).record(Mockito.anyIterable(), Mockito.any(InternalCallContext.class));
+
+        // Each row is attached to the account of its subscription
+        final List<RolledUpUsageModelDao> account1Usages = rolledUpUsageDao.getRawUsageForAccount(START_DATE, END_DATE, account1Context);
+        assertEquals(account1Usages.size(), 3);
+        for (final RolledUpUsageModelDao usage : account1Usages) {
+            assertFalse(subscriptionId2.equals(usage.getSubscriptionId()));
+        }
+        final List<RolledUpUsageModelDao> account2Usages = rolledUpUsageDao.getRawUsageForAccount(START_DATE, END_DATE, account2Context);
+        assertEquals(account2Usages.size(), 1);
+        assertEquals(account2Usages.get(0).getSubscriptionId(), subscriptionId2);
+    }
+
+    @Test(groups = "slow")
+    public void testRetriedBatch() {
+        final UUID subscriptionId = UUIDs.randomUUID();
+        final Map<UUID, InternalCallContext> contextPerSubscription = new HashMap<>();
+        contextPerSubscription.put(subscriptionId, internalCallContext);
+        final DefaultBulkUsageUserApi bulkUsageUserApi = createBulkUsageUserApi(rolledUpUsageDao, contextPerSubscription);
+
+        final List<SubscriptionUsageRecord> records = new ArrayList<>();
+        records.add(createRecord(subscriptionId, "t1", START_DATE, BigDecimal.ONE));
+        records.add(createRecord(subscriptionId, "t2", START_DATE.plusDays(1), BigDecimal.TEN));
+
+        final List<UsageRecordResult> firstResults = bulkUsageUserApi.recordRolledUpUsage(records, callContext);
+        checkResult(firstResults.get(0), subscriptionId, "t1", Status.RECORDED);
+        checkResult(firstResults.get(1), subscriptionId, "t2", Status.RECORDED);
+
+        // The client didn't get the response and sends the same batch again
+        final List<UsageRecordResult> retriedResults = bulkUsageUserApi.recordRolledUpUsage(records, callContext);
+        checkResult(retriedResults.get(0), subscriptionId, "t1", Status.DUPLICATE);
+        checkResult(retriedResults.get(1), subscriptionId, "t2", Status.DUPLICATE);
+
+        final List<RolledUpUsageModelDao> usages = rolledUpUsageDao.getUsageForSubscription(subscriptionId, START_DATE, END_DATE, UNIT_TYPE, internalCallContext);
+        assertEquals(usages.size(), 2);
+        BigDecimal total = BigDecimal.ZERO;
+        for (final RolledUpUsageModelDao usage : usages) {
+            total = total.add(usage.getAmount());
+        }
+        assertEquals(total.compareTo(BigDecimal.valueOf(11L)), 0);
+    }
+
+    private DefaultBulkUsageUserApi createBulkUsageUserApi(final RolledUpUsageDao rolledUpUsageDao, final Map<UUID, InternalCallContext> contextPerSubscription) {
+        // The subscriptions don't exist in this module: the account of each one is provided by the test
+        final InternalCallContextFactory internalCallContextFactory = Mockito.mock(InternalCallContextFactory.class);
+        Mockito.when(internalCallContextFactory.createInternalTenantContextWithoutAccountRecordId(Mockito.any(CallContext.class))).thenReturn(internalCallContext);
+        for (final Map.Entry<UUID, InternalCallContext> entry : contextPerSubscription.entrySet()) {
+            Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.eq(entry.getKey()), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.any(CallContext.class)))
+                   .thenReturn(entry.getValue());
+        }
+        return new DefaultBulkUsageUserApi(rolledUpUsageDao, internalCallContextFactory);
+    }
+
+    private SubscriptionUsageRecord createRecord(final UUID subscriptionId, final String trackingId, final DateTime date, final BigDecimal amount) {
+        final List<UsageRecord> dailyAmounts = new ArrayList<>();
+        dailyAmounts.add(new UsageRecord(date, amount));
+        final List<UnitUsageRecord> unitUsageRecords = new ArrayList<>();
+        unitUsageRecords.add(new UnitUsageRecord(UNIT_TYPE, dailyAmounts));
+        return new SubscriptionUsageRecord(subscriptionId, trackingId, unitUsageRecords);
+    }
+
+    private void checkResult(final UsageRecordResult result, final UUID subscriptionId, final String trackingId, final Status status) {
+        assertEquals(result.getSubscriptionId(), subscriptionId);
+        assertEquals(result.getTrackingId(), trackingId);
+        assertEquals(result.getStatus(), status);
+    }
+}
@@ -19,6 +19,8 @@ package org.killbill.billing.usage.dao;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +33,8 @@ import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
@@ -194,4 +198,118 @@ public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
         assertEquals(rolledUpUsageDao.recordsWithTrackingIdExist(subscriptionId, trackingId, internalCallContext),
                      Boolean.TRUE);
     }
-}
\ No newline at end of file
+
+    @Test(groups = "slow")
+    public void testGetSubscriptionIdsWithTrackingIds() {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final String unitType = "foo";
+        final DateTime startDate = new LocalDate(2013, 1, 1).toDateTimeAtStartOfDay();
+
+        final String trackingId1 = UUIDs.randomUUID().toString();
+        final String trackingId2 = UUIDs.randomUUID().toString();
+
+        final List<RolledUpUsageModelDao> usages = new ArrayList<RolledUpUsageModelDao>();
+        usages.add(new RolledUpUsageModelDao(subscriptionId1, unitType, startDate, BigDecimal.TEN, trackingId1));
+        usages.add(new RolledUpUsageModelDao(subscriptionId1, unitType, startDate.plusDays(1), BigDecimal.ONE, trackingId1));
+        usages.add(new RolledUpUsageModelDao(subscriptionId2, unitType, startDate, BigDecimal.ONE, trackingId2));
+        rolledUpUsageDao.record(usages, internalCallContext);
+
+        final List<RolledUpUsageModelDao> result = rolledUpUsageDao.getSubscriptionIdsWithTrackingIds(List.of(trackingId1, trackingId2, UUIDs.randomUUID().toString()), internalCallContext);
+        // One row per (subscription, tracking id)
+        assertEquals(result.size(), 2);
+        for (final RolledUpUsageModelDao cur : result) {
+            if (cur.getSubscriptionId().equals(subscriptionId1)) {
+                assertEquals(cur.getTrackingId(), trackingId1);
+            } else {
+                assertEquals(cur.getSubscriptionId(), subscriptionId2);
+                assertEquals(cur.getTrackingId(), trackingId2);
+            }
+        }
+
+        assertEquals(rolledUpUsageDao.getSubscriptionIdsWithTrackingIds(List.of(UUIDs.randomUUID().toString()), internalCallContext).size(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testDailyRollup() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String unitType = "foo";
+        final DateTime day1 = new DateTime(2013, 1, 1, 0, 0, 0, DateTimeZone.UTC);
+        final DateTime day2 = day1.plusDays(1);
+
+        final String trackingId1 = UUIDs.randomUUID().toString();
+        final String trackingId2 = UUIDs.randomUUID().toString();
+
+        final List<RolledUpUsageModelDao> usages = new ArrayList<RolledUpUsageModelDao>();
+        usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, day1.plusHours(1), BigDecimal.valueOf(1L), trackingId1));
+        usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, day1.plusHours(5), BigDecimal.valueOf(4L), trackingId1));
+        usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, day1.plusHours(10), BigDecimal.valueOf(2L), trackingId1));
+        usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, day1.plusHours(12), BigDecimal.valueOf(3L), trackingId2));
+        usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, day2.plusHours(1), BigDecimal.valueOf(6L), trackingId1));
+        rolledUpUsageDao.record(usages, internalCallContext);
+
+        final List<RolledUpUsageDailyModelDao> result = rolledUpUsageDao.getDailyUsageForAccount(day1.toLocalDate(), day2.toLocalDate(), internalCallContext);
+        // One row per (subscription, unit type, tracking id, day)
+        assertEquals(result.size(), 3);
+        for (final RolledUpUsageDailyModelDao cur : result) {
+            assertEquals(cur.getSubscriptionId(), subscriptionId);
+            assertEquals(cur.getUnitType(), unitType);
+            if (cur.getTrackingId().equals(trackingId1) && cur.getRecordDay().equals(day1.toLocalDate())) {
+                assertEquals(cur.getAmount().compareTo(BigDecimal.valueOf(7L)), 0);
+                assertEquals(cur.getMaxAmount().compareTo(BigDecimal.valueOf(4L)), 0);
+                assertEquals(cur.getNbRecords(), (Long) 3L);
+                assertEquals(cur.getMinRecordDate().compareTo(day1.plusHours(1)), 0);
+                assertEquals(cur.getMaxRecordDate().compareTo(day1.plusHours(10)), 0);
+            } else if (cur.getTrackingId().equals(trackingId1)) {
+                assertEquals(cur.getRecordDay(), day2.toLocalDate());
+                assertEquals(cur.getAmount().compareTo(BigDecimal.valueOf(6L)), 0);
+                assertEquals(cur.getNbRecords(), (Long) 1L);
+            } else {
+                assertEquals(cur.getTrackingId(), trackingId2);
+                assertEquals(cur.getRecordDay(), day1.toLocalDate());
+                assertEquals(cur.getAmount().compareTo(BigDecimal.valueOf(3L)), 0);
+                assertEquals(cur.getNbRecords(), (Long) 1L);
+            }
+        }
+        assertTrue(rolledUpUsageDao.isDailyUsageComplete(day1.toLocalDate(), day2.toLocalDate(), internalCallContext));
+
+        // Raw usage without the corresponding aggregates (e.g. recorded prior to the rollup)
+        dbi.onDemand(RolledUpUsageSqlDao.class).create(List.of(new RolledUpUsageModelDao(subscriptionId, unitType, day2.plusHours(2), BigDecimal.ONE, UUIDs.randomUUID().toString())), internalCallContext);
+        assertTrue(rolledUpUsageDao.isDailyUsageComplete(day1.toLocalDate(), day1.toLocalDate(), internalCallContext));
+        assertFalse(rolledUpUsageDao.isDailyUsageComplete(day1.toLocalDate(), day2.toLocalDate(), internalCallContext));
+    }
+
+    @Test(groups = "slow")
+    public void testRawUsageStream() {
+        final String unitType = "foo";
+        final DateTime startDate = new LocalDate(2013, 1, 1).toDateTimeAtStartOfDay();
+        final DateTime endDate = new LocalDate(2013, 2, 1).toDateTimeAtStartOfDay();
+
+        final List<UUID> subscriptionIds = new ArrayList<UUID>();
+        final List<RolledUpUsageModelDao> usages = new ArrayList<RolledUpUsageModelDao>();
+        for (int i = 0; i < 5; i++) {
+            subscriptionIds.add(UUID.randomUUID());
+        }
+        // Interleave the subscriptions, most recent records first
+        for (int day = 20; day > 0; day -= 5) {
+            for (final UUID subscriptionId : subscriptionIds) {
+                usages.add(new RolledUpUsageModelDao(subscriptionId, unitType, startDate.plusDays(day), BigDecimal.valueOf(day), UUID.randomUUID().toString()));
+            }
+        }
+        rolledUpUsageDao.record(usages, internalCallContext);
+
+        final List<RolledUpUsageModelDao> result = new ArrayList<RolledUpUsageModelDao>();
+        final Iterator<RolledUpUsageModelDao> iterator = rolledUpUsageDao.getRawUsageStreamForAccount(startDate, endDate, internalCallContext);
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        assertEquals(result.size(), usages.size());
+
+        subscriptionIds.sort(Comparator.comparing(UUID::toString));
+        for (int i = 0; i < result.size(); i++) {
+            final int dayIndex = i % 4;
+            assertEquals(result.get(i).getSubscriptionId(), subscriptionIds.get(i / 4));
+            assertEquals(result.get(i).getRecordDate().compareTo(startDate.plusDays(5 + 5 * dayIndex)), 0);
+        }
+    }
+}
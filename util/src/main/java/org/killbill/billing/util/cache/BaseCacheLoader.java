@@ -18,6 +18,10 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.killbill.billing.util.cache.Cachable.CacheType;
 
 public abstract class BaseCacheLoader<K, V> {
@@ -27,4 +31,16 @@ public abstract class BaseCacheLoader<K, V> {
     public abstract CacheType getCacheType();
 
     public abstract V compute(final K key, final CacheLoaderArgument cacheLoaderArgument);
+
+    // Loaders which can retrieve several keys in one query should override this (the default loads the keys one by one)
+    public Map<K, V> computeAll(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Map<K, V> values = new LinkedHashMap<K, V>();
+        for (final K key : keys) {
+            final V value = compute(key, cacheLoaderArgument);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
 }
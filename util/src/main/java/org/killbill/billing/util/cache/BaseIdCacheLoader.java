@@ -17,6 +17,11 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.killbill.billing.ObjectType;
 import org.skife.jdbi.v2.Handle;
 
@@ -28,18 +33,47 @@ public abstract class BaseIdCacheLoader<V> extends BaseCacheLoader<String, V> {
 
     protected abstract V doRetrieveOperation(final String rawKey, final ObjectType objectType, final Handle handle);
 
+    // Values are keyed by raw key, missing objects are simply absent
+    protected Map<String, V> doRetrieveOperations(final Collection<String> rawKeys, final ObjectType objectType, final Handle handle) {
+        final Map<String, V> values = new LinkedHashMap<String, V>();
+        for (final String rawKey : rawKeys) {
+            final V value = doRetrieveOperation(rawKey, objectType, handle);
+            if (value != null) {
+                values.put(rawKey, value);
+            }
+        }
+        return values;
+    }
+
     @Override
     public V compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
-        final String rawKey;
-        if (getCacheType().isKeyPrefixedWithTableName()) {
-            final String[] parts = key.split(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
-            rawKey = parts[1];
-        } else {
-            rawKey = key;
+        final ObjectType objectType = cacheLoaderArgument.getObjectType();
+        final Handle handle = cacheLoaderArgument.getHandle();
+        return doRetrieveOperation(toRawKey(key), objectType, handle);
+    }
+
+    @Override
+    public Map<String, V> computeAll(final Collection<String> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Map<String, String> keysByRawKey = new LinkedHashMap<String, String>();
+        for (final String key : keys) {
+            keysByRawKey.put(toRawKey(key), key);
         }
 
         final ObjectType objectType = cacheLoaderArgument.getObjectType();
         final Handle handle = cacheLoaderArgument.getHandle();
-        return doRetrieveOperation(rawKey, objectType, handle);
+        final Map<String, V> values = new LinkedHashMap<String, V>();
+        for (final Entry<String, V> entry : doRetrieveOperations(keysByRawKey.keySet(), objectType, handle).entrySet()) {
+            values.put(keysByRawKey.get(entry.getKey()), entry.getValue());
+        }
+        return values;
+    }
+
+    private String toRawKey(final String key) {
+        if (getCacheType().isKeyPrefixedWithTableName()) {
+            final String[] parts = key.split(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
+            return parts[1];
+        } else {
+            return key;
+        }
     }
 }
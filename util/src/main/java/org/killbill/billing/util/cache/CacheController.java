@@ -16,7 +16,9 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import org.killbill.billing.util.cache.Cachable.CacheType;
@@ -29,6 +31,9 @@ public interface CacheController<K, V> {
 
     V get(K key, CacheLoaderArgument objectType);
 
+    // Missing keys are loaded together (see BaseCacheLoader#computeAll), keys without value are absent from the returned map
+    Map<K, V> getAll(Collection<K> keys, CacheLoaderArgument objectType);
+
     boolean remove(K key);
 
     void remove(Function<K, Boolean> keyMatcher);
@@ -23,17 +23,24 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
 import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 
 import org.killbill.commons.utils.Preconditions;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.config.definition.CacheConfig;
+import org.killbill.billing.util.config.definition.RedisCacheConfig;
+import org.killbill.commons.metrics.api.MetricRegistry;
+import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.killbill.billing.util.glue.CacheModule.REDIS_CACHE_CLIENT;
+
 // Build the abstraction layer between JCache and Kill Bill
 public class CacheControllerDispatcherProvider implements Provider<CacheControllerDispatcher> {
 
@@ -42,20 +49,30 @@ public class CacheControllerDispatcherProvider implements Provider<CacheControll
     private final CacheManager cacheManager;
     private final Set<BaseCacheLoader> cacheLoaders;
     private final CacheConfig cacheConfig;
+    private final RedisCacheConfig redisCacheConfig;
+    private final RedissonClient redissonClient;
+    private final MetricRegistry metricRegistry;
 
     @Inject
     public CacheControllerDispatcherProvider(final CacheManager cacheManager,
                                              final Set<BaseCacheLoader> cacheLoaders,
-                                             final CacheConfig cacheConfig) {
+                                             final CacheConfig cacheConfig,
+                                             final RedisCacheConfig redisCacheConfig,
+                                             @Nullable @Named(REDIS_CACHE_CLIENT) final RedissonClient redissonClient,
+                                             final MetricRegistry metricRegistry) {
         this.cacheManager = cacheManager;
         this.cacheLoaders = cacheLoaders;
         this.cacheConfig = cacheConfig;
+        this.redisCacheConfig = redisCacheConfig;
+        this.redissonClient = redissonClient;
+        this.metricRegistry = metricRegistry;
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public CacheControllerDispatcher get() {
         final Map<CacheType, CacheController<Object, Object>> cacheControllers = new LinkedHashMap<CacheType, CacheController<Object, Object>>();
+        final NearCacheInvalidationTopic nearCacheInvalidationTopic = redisCacheConfig.isRedisCachingEnabled() && redissonClient != null ? new NearCacheInvalidationTopic(redissonClient) : null;
         for (final BaseCacheLoader cacheLoader : cacheLoaders) {
             final CacheType cacheType = cacheLoader.getCacheType();
 
@@ -71,7 +88,17 @@ public class CacheControllerDispatcherProvider implements Provider<CacheControll
                 }
                 Preconditions.checkState(!cache.isClosed(), "Cache '%s' should not be closed", cacheType.getCacheName());
 
-                cacheController = new KillBillCacheController<Object, Object>(cache, cacheLoader);
+                final CacheController<Object, Object> remoteCacheController = new KillBillCacheController<Object, Object>(cache, cacheLoader, metricRegistry);
+                if (nearCacheInvalidationTopic != null && redisCacheConfig.getNearCaches() != null && redisCacheConfig.getNearCaches().contains(cacheType.getCacheName())) {
+                    logger.info("Enabling near cache for cacheName='{}'", cacheType.getCacheName());
+                    cacheController = new NearCacheController<Object, Object>(remoteCacheController,
+                                                                              redisCacheConfig.getNearCacheMaxEntries(cacheType.getCacheName()),
+                                                                              redisCacheConfig.getNearCacheTtl(cacheType.getCacheName()).getMillis(),
+                                                                              nearCacheInvalidationTopic,
+                                                                              metricRegistry);
+                } else {
+                    cacheController = remoteCacheController;
+                }
             }
 
             cacheControllers.put(cacheType, cacheController);
@@ -18,9 +18,19 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -29,6 +39,9 @@ import javax.cache.Cache.Entry;
 import javax.cache.CacheException;
 
 import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.commons.metrics.api.Counter;
+import org.killbill.commons.metrics.api.MetricRegistry;
+import org.killbill.commons.metrics.api.Timer;
 import org.killbill.commons.utils.collect.Iterables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,10 +52,23 @@ public class KillBillCacheController<K, V> implements CacheController<K, V> {
 
     private final Cache<K, V> cache;
     private final BaseCacheLoader<K, V> baseCacheLoader;
+    // Loads in progress, so that concurrent misses on the same key share a single load (misses on different keys don't block each other)
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlightLoads = new ConcurrentHashMap<>();
 
-    public KillBillCacheController(final Cache<K, V> cache, final BaseCacheLoader<K, V> baseCacheLoader) {
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sharedLoads;
+    private final Timer loadTime;
+
+    public KillBillCacheController(final Cache<K, V> cache, final BaseCacheLoader<K, V> baseCacheLoader, final MetricRegistry metricRegistry) {
         this.cache = cache;
         this.baseCacheLoader = baseCacheLoader;
+
+        final String metricPrefix = "kb_cache." + baseCacheLoader.getCacheType().getCacheName();
+        this.hits = metricRegistry.counter(metricPrefix + ".hits");
+        this.misses = metricRegistry.counter(metricPrefix + ".misses");
+        this.sharedLoads = metricRegistry.counter(metricPrefix + ".shared-loads");
+        this.loadTime = metricRegistry.timer(metricPrefix + ".load-time");
     }
 
     @Override
@@ -65,16 +91,12 @@ public class KillBillCacheController<K, V> implements CacheController<K, V> {
 
         V value;
         try {
-            if (!isKeyInCache(key)) {
-                synchronized (this) {
-                    if (!isKeyInCache(key)) {
-                        value = computeAndCacheValue(key, cacheLoaderArgument);
-                    } else {
-                        value = cache.get(key);
-                    }
-                }
+            value = cache.get(key);
+            if (value == null) {
+                misses.inc(1);
+                value = loadValue(key, cacheLoaderArgument);
             } else {
-                value = cache.get(key);
+                hits.inc(1);
             }
         } catch (final CacheException e) {
             logger.warn("Unable to retrieve cached value for key='{}' and cacheLoaderArgument='{}'", key, cacheLoaderArgument, e);
@@ -88,6 +110,39 @@ public class KillBillCacheController<K, V> implements CacheController<K, V> {
         }
     }
 
+    @Override
+    public Map<K, V> getAll(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Set<K> keysToRetrieve = new LinkedHashSet<K>(keys);
+        keysToRetrieve.remove(null);
+        if (keysToRetrieve.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Misses aren't de-duplicated with the in-flight single key loads: the whole batch is loaded at once instead
+        final Map<K, V> values = new LinkedHashMap<K, V>();
+        try {
+            values.putAll(cache.getAll(keysToRetrieve));
+            hits.inc(values.size());
+
+            final Set<K> missingKeys = new LinkedHashSet<K>(keysToRetrieve);
+            missingKeys.removeAll(values.keySet());
+            if (!missingKeys.isEmpty()) {
+                misses.inc(missingKeys.size());
+                final long startNano = System.nanoTime();
+                final Map<K, V> loadedValues = computeValues(missingKeys, cacheLoaderArgument);
+                cache.putAll(loadedValues);
+                loadTime.update(System.nanoTime() - startNano, TimeUnit.NANOSECONDS);
+                values.putAll(loadedValues);
+            }
+        } catch (final CacheException e) {
+            logger.warn("Unable to retrieve cached values for keys='{}' and cacheLoaderArgument='{}'", keysToRetrieve, cacheLoaderArgument, e);
+            values.putAll(computeValues(keysToRetrieve, cacheLoaderArgument));
+        }
+
+        values.values().removeIf(BaseCacheLoader.EMPTY_VALUE_PLACEHOLDER::equals);
+        return values;
+    }
+
     @Override
     public void putIfAbsent(final K key, final V value) {
         cache.putIfAbsent(key, value);
@@ -129,6 +184,45 @@ public class KillBillCacheController<K, V> implements CacheController<K, V> {
         return baseCacheLoader.getCacheType();
     }
 
+    private V loadValue(final K key, final CacheLoaderArgument cacheLoaderArgument) {
+        final CompletableFuture<V> load = new CompletableFuture<>();
+        final CompletableFuture<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+        if (inFlightLoad != null) {
+            // Another thread is already loading that key, wait for its result
+            sharedLoads.inc(1);
+            return waitForLoad(inFlightLoad);
+        }
+
+        try {
+            // The value could have been cached (and the load removed) between our miss and our registration
+            V value = cache.get(key);
+            if (value == null) {
+                final long startNano = System.nanoTime();
+                value = computeAndCacheValue(key, cacheLoaderArgument);
+                loadTime.update(System.nanoTime() - startNano, TimeUnit.NANOSECONDS);
+            }
+            load.complete(value);
+            return value;
+        } catch (final RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, load);
+        }
+    }
+
+    private V waitForLoad(final CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (final CompletionException e) {
+            // Rethrow what the loading thread saw (CacheException, RuntimeException wrapping the loader exception, ...)
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private V computeAndCacheValue(final K key, final CacheLoaderArgument cacheLoaderArgument) {
         final V value = computeValue(key, cacheLoaderArgument);
         if (value == null) {
@@ -140,6 +234,14 @@ public class KillBillCacheController<K, V> implements CacheController<K, V> {
         return value;
     }
 
+    private Map<K, V> computeValues(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        try {
+            return baseCacheLoader.computeAll(keys, cacheLoaderArgument);
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private V computeValue(final K key, final CacheLoaderArgument cacheLoaderArgument) {
         final V value;
         try {
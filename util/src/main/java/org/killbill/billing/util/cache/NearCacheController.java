@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.ehcache.UserManagedCache;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.builders.UserManagedCacheBuilder;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.commons.metrics.api.Counter;
+import org.killbill.commons.metrics.api.MetricRegistry;
+
+/**
+ * In-process, size-bounded cache in front of a remote (Redis) cache controller.
+ * <p>
+ * Removals are propagated to the other nodes through the {@link NearCacheInvalidationTopic}. An entry loaded while an invalidation
+ * is in flight can stay stale until it expires, so mutable caches should be configured with a TTL.
+ */
+public class NearCacheController<K, V> implements CacheController<K, V> {
+
+    private final CacheController<K, V> delegate;
+    private final NearCacheInvalidationTopic invalidationTopic;
+    private final UserManagedCache<K, V> nearCache;
+    private final Counter nearHits;
+
+    @SuppressWarnings("unchecked")
+    public NearCacheController(final CacheController<K, V> delegate,
+                               final int maxEntries,
+                               final long ttlMillis,
+                               final NearCacheInvalidationTopic invalidationTopic,
+                               final MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.invalidationTopic = invalidationTopic;
+
+        final CacheType cacheType = delegate.getCacheType();
+        this.nearCache = UserManagedCacheBuilder.newUserManagedCacheBuilder((Class<K>) cacheType.getKeyType(), (Class<V>) cacheType.getValueType())
+                                                .withResourcePools(ResourcePoolsBuilder.heap(maxEntries))
+                                                .withExpiry(ttlMillis > 0 ? ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofMillis(ttlMillis)) : ExpiryPolicyBuilder.noExpiration())
+                                                .build(true);
+        this.nearHits = metricRegistry.counter("kb_cache." + cacheType.getCacheName() + ".near-hits");
+
+        invalidationTopic.register(cacheType.getCacheName(), this::evict);
+    }
+
+    @Override
+    public List<K> getKeys() {
+        return delegate.getKeys();
+    }
+
+    @Override
+    public boolean isKeyInCache(final K key) {
+        return nearCache.containsKey(key) || delegate.isKeyInCache(key);
+    }
+
+    @Override
+    public V get(final K key, final CacheLoaderArgument cacheLoaderArgument) {
+        if (key == null) {
+            return null;
+        }
+
+        final V nearValue = nearCache.get(key);
+        if (nearValue != null) {
+            nearHits.inc(1);
+            return nearValue;
+        }
+
+        final V value = delegate.get(key, cacheLoaderArgument);
+        if (value != null) {
+            nearCache.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Map<K, V> getAll(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Map<K, V> values = new LinkedHashMap<K, V>();
+        final Collection<K> remoteKeys = new LinkedHashSet<K>();
+        for (final K key : keys) {
+            if (key == null) {
+                continue;
+            }
+
+            final V nearValue = nearCache.get(key);
+            if (nearValue != null) {
+                nearHits.inc(1);
+                values.put(key, nearValue);
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+
+        if (!remoteKeys.isEmpty()) {
+            final Map<K, V> remoteValues = delegate.getAll(remoteKeys, cacheLoaderArgument);
+            nearCache.putAll(remoteValues);
+            values.putAll(remoteValues);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean remove(final K key) {
+        nearCache.remove(key);
+        invalidationTopic.publish(getCacheType().getCacheName(), key);
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void remove(final Function<K, Boolean> keyMatcher) {
+        // The matcher cannot be sent to the other nodes, evict their whole near cache instead
+        nearCache.clear();
+        invalidationTopic.publish(getCacheType().getCacheName(), null);
+        delegate.remove(keyMatcher);
+    }
+
+    @Override
+    public void putIfAbsent(final K key, final V value) {
+        // The remote cache could already have a different value, so only populate the near cache on reads
+        delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void removeAll() {
+        nearCache.clear();
+        invalidationTopic.publish(getCacheType().getCacheName(), null);
+        delegate.removeAll();
+    }
+
+    @Override
+    public CacheType getCacheType() {
+        return delegate.getCacheType();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evict(final Object key) {
+        if (key == null) {
+            nearCache.clear();
+        } else {
+            nearCache.remove((K) key);
+        }
+    }
+}
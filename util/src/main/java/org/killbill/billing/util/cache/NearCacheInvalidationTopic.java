@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Redis pub/sub channel used to evict the near cache entries on all nodes when an entry is removed on one of them
+public class NearCacheInvalidationTopic {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheInvalidationTopic.class);
+
+    private static final String TOPIC_NAME = "killbill-near-cache-invalidation";
+
+    private final RTopic topic;
+    private final Map<String, Consumer<Object>> listeners = new ConcurrentHashMap<>();
+
+    public NearCacheInvalidationTopic(final RedissonClient redissonClient) {
+        this.topic = redissonClient.getTopic(TOPIC_NAME);
+        this.topic.addListener(Invalidation.class, (channel, invalidation) -> {
+            final Consumer<Object> listener = listeners.get(invalidation.getCacheName());
+            if (listener != null) {
+                listener.accept(invalidation.getKey());
+            }
+        });
+    }
+
+    // The listener is invoked with the key to evict, or null to evict everything
+    public void register(final String cacheName, final Consumer<Object> listener) {
+        listeners.put(cacheName, listener);
+    }
+
+    public void publish(final String cacheName, @Nullable final Object key) {
+        try {
+            topic.publish(new Invalidation(cacheName, key));
+        } catch (final RuntimeException e) {
+            // The near caches of the other nodes will be stale until their entries expire
+            logger.warn("Unable to publish near cache invalidation for cacheName='{}', key='{}'", cacheName, key, e);
+        }
+    }
+
+    public static class Invalidation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheName;
+        private final Object key;
+
+        public Invalidation(final String cacheName, @Nullable final Object key) {
+            this.cacheName = cacheName;
+            this.key = key;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+    }
+}
@@ -17,8 +17,12 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import org.killbill.billing.util.cache.Cachable.CacheType;
@@ -56,6 +60,19 @@ public class NoOpCacheController<K, V> implements CacheController<K, V> {
         }
     }
 
+    @Override
+    public Map<K, V> getAll(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Collection<K> keysToRetrieve = new LinkedHashSet<K>(keys);
+        keysToRetrieve.remove(null);
+        if (keysToRetrieve.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<K, V> values = computeValues(keysToRetrieve, cacheLoaderArgument);
+        values.values().removeIf(BaseCacheLoader.EMPTY_VALUE_PLACEHOLDER::equals);
+        return values;
+    }
+
     @Override
     public boolean remove(final K key) {
         return false;
@@ -94,4 +111,12 @@ public class NoOpCacheController<K, V> implements CacheController<K, V> {
         }
         return value;
     }
+
+    private Map<K, V> computeValues(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        try {
+            return new LinkedHashMap<K, V>(baseCacheLoader.computeAll(keys, cacheLoaderArgument));
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -17,6 +17,11 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -48,4 +53,18 @@ public class ObjectIdCacheLoader extends BaseIdCacheLoader<UUID> {
         final Long recordId = Long.valueOf(rawKey);
         return nonEntityDao.retrieveIdFromObjectInTransaction(recordId, objectType, null, handle);
     }
+
+    @Override
+    protected Map<String, UUID> doRetrieveOperations(final Collection<String> rawKeys, final ObjectType objectType, final Handle handle) {
+        final Collection<Long> recordIds = new ArrayList<Long>(rawKeys.size());
+        for (final String rawKey : rawKeys) {
+            recordIds.add(Long.valueOf(rawKey));
+        }
+
+        final Map<String, UUID> values = new LinkedHashMap<String, UUID>();
+        for (final Entry<Long, UUID> entry : nonEntityDao.retrieveIdsFromObjectsInTransaction(recordIds, objectType, null, handle).entrySet()) {
+            values.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return values;
+    }
 }
@@ -17,6 +17,9 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.Map;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -45,16 +48,7 @@ public class OverriddenPlanCacheLoader extends BaseCacheLoader<String, Plan> {
 
     @Override
     public Plan compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
-        if (cacheLoaderArgument.getArgs() == null || cacheLoaderArgument.getArgs().length != 2) {
-            throw new IllegalArgumentException("Invalid arguments for overridden plans");
-        }
-        if (!(cacheLoaderArgument.getArgs()[0] instanceof LoaderCallback)) {
-            throw new IllegalArgumentException("Invalid arguments for overridden plans: missing loaderCallback from argument");
-        }
-
-        if (!(cacheLoaderArgument.getArgs()[1] instanceof StaticCatalog)) {
-            throw new IllegalArgumentException("Invalid arguments for overridden plans: missing catalog from argument");
-        }
+        checkArguments(cacheLoaderArgument);
 
         final String planName = key;
         final LoaderCallback callback = (LoaderCallback) cacheLoaderArgument.getArgs()[0];
@@ -70,8 +64,41 @@ public class OverriddenPlanCacheLoader extends BaseCacheLoader<String, Plan> {
         }
     }
 
+    @Override
+    public Map<String, Plan> computeAll(final Collection<String> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        checkArguments(cacheLoaderArgument);
+
+        final LoaderCallback callback = (LoaderCallback) cacheLoaderArgument.getArgs()[0];
+        final StaticCatalog catalog = (StaticCatalog) cacheLoaderArgument.getArgs()[1];
+        final InternalTenantContext internalTenantContext = cacheLoaderArgument.getInternalTenantContext();
+        try {
+            log.info("Loading {} overridden plans for tenant {}", keys.size(), internalTenantContext.getTenantRecordId());
+
+            return callback.loadPlans(keys, catalog, internalTenantContext);
+        } catch (final CatalogApiException e) {
+            throw new IllegalStateException(String.format("Failed to load overridden plans for tenant %s : %s",
+                                                          keys, internalTenantContext.getTenantRecordId()), e);
+        }
+    }
+
+    private static void checkArguments(final CacheLoaderArgument cacheLoaderArgument) {
+        if (cacheLoaderArgument.getArgs() == null || cacheLoaderArgument.getArgs().length != 2) {
+            throw new IllegalArgumentException("Invalid arguments for overridden plans");
+        }
+        if (!(cacheLoaderArgument.getArgs()[0] instanceof LoaderCallback)) {
+            throw new IllegalArgumentException("Invalid arguments for overridden plans: missing loaderCallback from argument");
+        }
+
+        if (!(cacheLoaderArgument.getArgs()[1] instanceof StaticCatalog)) {
+            throw new IllegalArgumentException("Invalid arguments for overridden plans: missing catalog from argument");
+        }
+    }
+
     public interface LoaderCallback {
 
         public Plan loadPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
+
+        // Plans which cannot be resolved in that catalog are absent from the returned map
+        public Map<String, Plan> loadPlans(final Collection<String> planNames, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
     }
 }
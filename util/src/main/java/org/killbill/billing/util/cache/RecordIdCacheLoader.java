@@ -18,6 +18,11 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -48,4 +53,18 @@ public class RecordIdCacheLoader extends BaseIdCacheLoader<Long> {
     protected Long doRetrieveOperation(final String rawKey, final ObjectType objectType, final Handle handle) {
         return nonEntityDao.retrieveRecordIdFromObjectInTransaction(UUID.fromString(rawKey), objectType, null, handle);
     }
+
+    @Override
+    protected Map<String, Long> doRetrieveOperations(final Collection<String> rawKeys, final ObjectType objectType, final Handle handle) {
+        final Collection<UUID> objectIds = new ArrayList<UUID>(rawKeys.size());
+        for (final String rawKey : rawKeys) {
+            objectIds.add(UUID.fromString(rawKey));
+        }
+
+        final Map<String, Long> values = new LinkedHashMap<String, Long>();
+        for (final Entry<UUID, Long> entry : nonEntityDao.retrieveRecordIdsFromObjectsInTransaction(objectIds, objectType, null, handle).entrySet()) {
+            values.put(entry.getKey().toString(), entry.getValue());
+        }
+        return values;
+    }
 }
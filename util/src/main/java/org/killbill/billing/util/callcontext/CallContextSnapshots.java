@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.callcontext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+/**
+ * Per-thread scope in which account level snapshots (e.g. all blocking states of an account) are loaded
+ * once and shared by all the modules involved in the call (entitlement, junction, overdue, ...).
+ * <p>
+ * Outside of a scope, snapshots aren't used and callers should query the database directly. Writers
+ * are responsible for invalidating the snapshots they affect.
+ */
+public final class CallContextSnapshots {
+
+    private static final ThreadLocal<Map<SnapshotKey, Object>> CURRENT_SNAPSHOTS = new ThreadLocal<Map<SnapshotKey, Object>>();
+
+    private static final Scope OUTERMOST_SCOPE = CURRENT_SNAPSHOTS::remove;
+    private static final Scope NESTED_SCOPE = () -> {};
+
+    private CallContextSnapshots() {}
+
+    /**
+     * Open a scope on the current thread. Nested scopes share the snapshots of the outermost one.
+     *
+     * @return the scope, to be closed by the caller (try-with-resources)
+     */
+    public static Scope openScope() {
+        if (CURRENT_SNAPSHOTS.get() != null) {
+            return NESTED_SCOPE;
+        }
+
+        CURRENT_SNAPSHOTS.set(new HashMap<SnapshotKey, Object>());
+        return OUTERMOST_SCOPE;
+    }
+
+    /**
+     * @param context call context
+     * @return whether snapshots should be used for that context
+     */
+    public static boolean isEnabled(final InternalTenantContext context) {
+        return CURRENT_SNAPSHOTS.get() != null && context.getAccountRecordId() != null;
+    }
+
+    public static <T> T getOrLoad(final Class<T> snapshotType, final InternalTenantContext context, final Supplier<T> loader) {
+        final Map<SnapshotKey, Object> snapshots = CURRENT_SNAPSHOTS.get();
+        if (snapshots == null || context.getAccountRecordId() == null) {
+            return loader.get();
+        }
+
+        final SnapshotKey key = new SnapshotKey(snapshotType, context);
+        T snapshot = snapshotType.cast(snapshots.get(key));
+        if (snapshot == null) {
+            snapshot = loader.get();
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    public static void invalidate(final Class<?> snapshotType, final InternalTenantContext context) {
+        final Map<SnapshotKey, Object> snapshots = CURRENT_SNAPSHOTS.get();
+        if (snapshots != null) {
+            snapshots.remove(new SnapshotKey(snapshotType, context));
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static final class SnapshotKey {
+
+        private final Class<?> snapshotType;
+        private final Long tenantRecordId;
+        private final Long accountRecordId;
+
+        private SnapshotKey(final Class<?> snapshotType, final InternalTenantContext context) {
+            this.snapshotType = snapshotType;
+            this.tenantRecordId = context.getTenantRecordId();
+            this.accountRecordId = context.getAccountRecordId();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final SnapshotKey that = (SnapshotKey) o;
+            return snapshotType.equals(that.snapshotType) &&
+                   Objects.equals(tenantRecordId, that.tenantRecordId) &&
+                   Objects.equals(accountRecordId, that.accountRecordId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(snapshotType, tenantRecordId, accountRecordId);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.killbill.billing.util.config.definition;
 
 import org.skife.config.Config;
 import org.skife.config.Default;
+import org.skife.config.DefaultNull;
 import org.skife.config.Description;
 
 public interface CatalogConfig extends KillbillConfig {
@@ -32,4 +33,14 @@ public interface CatalogConfig extends KillbillConfig {
     @Default("1")
     @Description("Number of threads for the XML loader")
     Integer getCatalogThreadNb();
+
+    @Config("org.killbill.catalog.snapshot.enabled")
+    @Default("true")
+    @Description("Whether a binary snapshot of the per-tenant catalogs should be persisted and used to skip XML parsing when loading the catalog cache")
+    boolean isCatalogSnapshotEnabled();
+
+    @Config("org.killbill.catalog.snapshot.secret")
+    @DefaultNull
+    @Description("Secret used to sign the catalog snapshots (must be the same on all nodes): snapshots are disabled when not set")
+    String getCatalogSnapshotSecret();
 }
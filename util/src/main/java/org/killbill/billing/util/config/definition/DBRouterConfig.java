@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import java.util.List;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.DefaultNull;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface DBRouterConfig extends KillbillConfig {
+
+    @Config("org.killbill.dao.ro.readYourWritesWindow")
+    @Default("0s")
+    @Description("Period during which reads for an account (or a tenant, for writes without account) go to the RW instance after a write (disabled if set to 0s)")
+    TimeSpan getReadYourWritesWindow();
+
+    @Config("org.killbill.dao.ro.maxReplicaLag")
+    @Default("0s")
+    @Description("Maximum replication delay of the RO instance, above which reads go to the RW instance (disabled if set to 0s)")
+    TimeSpan getMaxReplicaLag();
+
+    @Config("org.killbill.dao.ro.replicaLagQuery")
+    @DefaultNull
+    @Description("Query run against the RO instance, returning its replication delay in seconds (e.g. for PostgreSQL: select extract(epoch from now() - pg_last_xact_replay_timestamp()))")
+    String getReplicaLagQuery();
+
+    @Config("org.killbill.dao.ro.replicaLagProbeInterval")
+    @Default("10s")
+    @Description("How often the replication delay is probed")
+    TimeSpan getReplicaLagProbeInterval();
+
+    @Config("org.killbill.dao.ro.overrides")
+    @Default("")
+    @Description("Per SQL DAO (method) routing overrides, e.g. RolledUpUsageSqlDao.getUsageForSubscription=RO,NonEntitySqlDao=RW (RO overrides only apply to reads, and must be set per method)")
+    List<String> getRoutingOverrides();
+}
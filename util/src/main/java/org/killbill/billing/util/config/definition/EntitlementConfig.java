@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config.definition;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface EntitlementConfig extends KillbillConfig {
+
+    @Config("org.killbill.entitlement.accountEventsStreamsCache.enabled")
+    @Default("false")
+    @Description("Whether the events streams of an account are cached for read-only API calls. Entries are invalidated by the subscription, blocking state, " +
+                 "account and catalog events processed by this node: these events must not be skipped by the bus optimizer")
+    boolean isAccountEventsStreamsCacheEnabled();
+
+    @Config("org.killbill.entitlement.accountEventsStreamsCache.maxAccounts")
+    @Default("1000")
+    @Description("Maximum number of accounts in the events streams cache")
+    int getAccountEventsStreamsCacheMaxAccounts();
+
+    @Config("org.killbill.entitlement.accountEventsStreamsCache.ttl")
+    @Default("5m")
+    @Description("Maximum time an account stays in the events streams cache")
+    TimeSpan getAccountEventsStreamsCacheTtl();
+}
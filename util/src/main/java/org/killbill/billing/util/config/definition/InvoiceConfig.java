@@ -77,6 +77,61 @@ public interface InvoiceConfig extends KillbillConfig {
     @Description("Whether we disable writing $0 usage amounts")
     boolean isUsageZeroAmountDisabled(@Param("dummy") final InternalTenantContext tenantContext);
 
+    @Config("org.killbill.invoice.usage.dailyRollup.enabled")
+    @Default("false")
+    @Description("Whether in-arrear usage is read from the daily usage rollup (when complete) instead of the raw usage records")
+    boolean isUsageDailyRollupEnabled();
+
+    @Config("org.killbill.invoice.usage.dailyRollup.enabled")
+    @Default("false")
+    @Description("Whether in-arrear usage is read from the daily usage rollup (when complete) instead of the raw usage records")
+    boolean isUsageDailyRollupEnabled(@Param("dummy") final InternalTenantContext tenantContext);
+
+    @Config("org.killbill.invoice.usage.streaming.enabled")
+    @Default("false")
+    @Description("Whether in-arrear raw usage is streamed and consumed one subscription at a time instead of being loaded in memory (ignored when the daily rollup is enabled)")
+    boolean isUsageStreamingEnabled();
+
+    @Config("org.killbill.invoice.usage.streaming.enabled")
+    @Default("false")
+    @Description("Whether in-arrear raw usage is streamed and consumed one subscription at a time instead of being loaded in memory (ignored when the daily rollup is enabled)")
+    boolean isUsageStreamingEnabled(@Param("dummy") final InternalTenantContext tenantContext);
+
+    @Config("org.killbill.invoice.parallel.enabled")
+    @Default("false")
+    @Description("Whether the invoice items of the different subscriptions of an account are generated (and merged with the existing ones) in parallel")
+    boolean isParallelItemGenerationEnabled();
+
+    @Config("org.killbill.invoice.parallel.enabled")
+    @Default("false")
+    @Description("Whether the invoice items of the different subscriptions of an account are generated (and merged with the existing ones) in parallel")
+    boolean isParallelItemGenerationEnabled(@Param("dummy") final InternalTenantContext tenantContext);
+
+    @Config("org.killbill.invoice.parallel.threads.pool.nb")
+    @Default("4")
+    @Description("Number of threads used to generate invoice items in parallel (see org.killbill.invoice.parallel.enabled)")
+    int getParallelItemGenerationThreadNb();
+
+    @Config("org.killbill.invoice.tree.arrayBacked.enabled")
+    @Default("false")
+    @Description("Whether the subscription item trees (used to compute repairs) are backed by primitive arrays instead of linked nodes")
+    boolean isArrayBackedItemTreeEnabled();
+
+    @Config("org.killbill.invoice.tree.arrayBacked.enabled")
+    @Default("false")
+    @Description("Whether the subscription item trees (used to compute repairs) are backed by primitive arrays instead of linked nodes")
+    boolean isArrayBackedItemTreeEnabled(@Param("dummy") final InternalTenantContext tenantContext);
+
+    @Config("org.killbill.invoice.watermark.enabled")
+    @Default("false")
+    @Description("Whether to persist per-subscription billing watermarks and skip, on subsequent runs, the (fixed and recurring) generation of subscriptions unchanged since their watermark")
+    boolean isSubscriptionWatermarkEnabled();
+
+    @Config("org.killbill.invoice.watermark.enabled")
+    @Default("false")
+    @Description("Whether to persist per-subscription billing watermarks and skip, on subsequent runs, the (fixed and recurring) generation of subscriptions unchanged since their watermark")
+    boolean isSubscriptionWatermarkEnabled(@Param("dummy") final InternalTenantContext tenantContext);
+
     @Config("org.killbill.invoice.usage.missing.lenient")
     @Default("false")
     @Description("Whether we fail invoice when we discover missing past usage records")
@@ -208,4 +263,14 @@ public interface InvoiceConfig extends KillbillConfig {
     @Description("How far back in time should invoice generation look at")
     Period getMaxInvoiceLimit(@Param("dummy") final InternalTenantContext tenantContext);
 
+    @Config("org.killbill.invoice.slowAccountThreshold")
+    @Default("0s")
+    @Description("Log the stage timings of invoice runs taking longer than this threshold (ignored if set to 0s)")
+    TimeSpan getSlowAccountThreshold();
+
+    @Config("org.killbill.invoice.slowAccountThreshold")
+    @Default("0s")
+    @Description("Log the stage timings of invoice runs taking longer than this threshold (ignored if set to 0s)")
+    TimeSpan getSlowAccountThreshold(@Param("dummy") final InternalTenantContext tenantContext);
+
 }
@@ -125,6 +125,11 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Number of threads for plugin executor dispatcher")
     int getPaymentPluginThreadNb();
 
+    @Config("org.killbill.payment.plugin.info.parallelism")
+    @Default("5")
+    @Description("Maximum number of concurrent plugin calls per request when retrieving the plugin info of all payments of an account (1 to disable)")
+    int getPaymentPluginInfoParallelism();
+
     @Config("org.killbill.payment.globalLock.retries")
     @Default("50")
     @Description("Maximum number of times the system will retry to grab global lock (with a 100ms wait each time)")
@@ -17,10 +17,14 @@
 
 package org.killbill.billing.util.config.definition;
 
+import java.util.Set;
+
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.DefaultNull;
 import org.skife.config.Description;
+import org.skife.config.Param;
+import org.skife.config.TimeSpan;
 
 public interface RedisCacheConfig extends KillbillConfig {
 
@@ -43,4 +47,19 @@ public interface RedisCacheConfig extends KillbillConfig {
     @DefaultNull
     @Description("Redis Password")
     public String getPassword();
+
+    @Config("org.killbill.cache.config.redis.nearCaches")
+    @Default("record-id,account-record-id,tenant-record-id,object-id")
+    @Description("Caches fronted by an in-process near cache (the default ones are immutable id mappings)")
+    public Set<String> getNearCaches();
+
+    @Config("org.killbill.cache.config.redis.nearCache.${cacheName}.maxEntries")
+    @Default("10000")
+    @Description("Maximum number of entries in the near cache")
+    public int getNearCacheMaxEntries(@Param("cacheName") final String cacheName);
+
+    @Config("org.killbill.cache.config.redis.nearCache.${cacheName}.ttl")
+    @Default("0s")
+    @Description("Time to live of the near cache entries (no expiration if set to 0s)")
+    public TimeSpan getNearCacheTtl(@Param("cacheName") final String cacheName);
 }
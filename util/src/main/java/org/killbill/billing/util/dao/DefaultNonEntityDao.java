@@ -18,7 +18,17 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -42,6 +52,9 @@ import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
 
 public class DefaultNonEntityDao implements NonEntityDao {
 
+    // Large enough to resolve most listings in a single round trip, while avoiding too large IN clauses -- https://github.com/killbill/killbill/issues/1390
+    private static final int MAX_BATCH_SIZE = 10000;
+
     private final DBRouter<NonEntitySqlDao> dbRouter;
     private final WithCaching<String, Long> withCachingObjectId;
     private final WithCaching<String, UUID> withCachingRecordId;
@@ -75,6 +88,26 @@ public class DefaultNonEntityDao implements NonEntityDao {
         }, objectId.toString(), objectType, tableName, cache);
     }
 
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
+        return retrieveRecordIdsFromObjectsInTransaction(objectIds, objectType, cache, null);
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
+
+        final Map<String, Long> recordIds = withCachingObjectId.withBulkCaching(new BulkOperationRetrieval<String, Long>() {
+            @Override
+            public Map<String, Long> doRetrieve(final List<String> rawKeys) {
+                final NonEntitySqlDao inTransactionNonEntitySqlDao = handle == null ? dbRouter.onDemand(true) : SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
+                return toIdKeyedMap(inTransactionNonEntitySqlDao.getRecordIdIdMappingsFromObjects(rawKeys, tableName.getTableName()));
+            }
+        }, toRawKeys(objectIds, UUID::toString), objectType, tableName, cache, handle);
+        return fromRawKeys(recordIds, UUID::fromString);
+    }
+
     @Override
     public Long retrieveAccountRecordIdFromObject(@Nullable final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
         return retrieveAccountRecordIdFromObjectInTransaction(objectId, objectType, cache, null);
@@ -107,6 +140,38 @@ public class DefaultNonEntityDao implements NonEntityDao {
         }, objectIdOrNull, objectType, tableName, cache);
     }
 
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
+        return retrieveAccountRecordIdsFromObjectsInTransaction(objectIds, objectType, cache, null);
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
+
+        final Map<String, Long> accountRecordIds = withCachingObjectId.withBulkCaching(new BulkOperationRetrieval<String, Long>() {
+            @Override
+            public Map<String, Long> doRetrieve(final List<String> rawKeys) {
+                final NonEntitySqlDao inTransactionNonEntitySqlDao = handle == null ? dbRouter.onDemand(true) : SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
+
+                switch (tableName) {
+                    case TENANT:
+                    case TAG_DEFINITIONS:
+                    case TAG_DEFINITION_HISTORY:
+                        return Collections.emptyMap();
+
+                    case ACCOUNT:
+                        return toIdKeyedMap(inTransactionNonEntitySqlDao.getAccountRecordIdMappingsFromAccounts(rawKeys));
+
+                    default:
+                        return toIdKeyedMap(inTransactionNonEntitySqlDao.getAccountRecordIdMappingsFromObjectsOtherThanAccount(rawKeys, tableName.getTableName()));
+                }
+            }
+        }, toRawKeys(objectIds, UUID::toString), objectType, tableName, cache, handle);
+        return fromRawKeys(accountRecordIds, UUID::fromString);
+    }
+
     @Override
     public Long retrieveTenantRecordIdFromObject(@Nullable final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
         return retrieveTenantRecordIdFromObjectInTransaction(objectId, objectType, cache, null);
@@ -159,6 +224,40 @@ public class DefaultNonEntityDao implements NonEntityDao {
         }, String.valueOf(recordId), objectType, tableName, cache);
     }
 
+    @Override
+    public Map<Long, UUID> retrieveIdsFromObjects(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache) {
+        return retrieveIdsFromObjectsInTransaction(recordIds, objectType, cache, null);
+    }
+
+    @Override
+    public Map<Long, UUID> retrieveIdsFromObjectsInTransaction(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache, @Nullable final Handle handle) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
+
+        final Collection<Long> recordIdsToRetrieve = new ArrayList<Long>(recordIds);
+        if (objectType == ObjectType.TENANT) {
+            recordIdsToRetrieve.remove(InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID);
+        }
+
+        final Map<String, UUID> ids = withCachingRecordId.withBulkCaching(new BulkOperationRetrieval<String, UUID>() {
+            @Override
+            public Map<String, UUID> doRetrieve(final List<String> rawKeys) {
+                final NonEntitySqlDao inTransactionNonEntitySqlDao = handle == null ? dbRouter.onDemand(true) : SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
+                final Collection<Long> rawRecordIds = new ArrayList<Long>(rawKeys.size());
+                for (final String rawKey : rawKeys) {
+                    rawRecordIds.add(Long.valueOf(rawKey));
+                }
+
+                final Map<String, UUID> result = new HashMap<String, UUID>();
+                for (final RecordIdIdMappings mapping : inTransactionNonEntitySqlDao.getRecordIdIdMappingsFromRecordIds(rawRecordIds, tableName.getTableName())) {
+                    result.put(String.valueOf(mapping.getRecordId()), mapping.getId());
+                }
+                return result;
+            }
+        }, toRawKeys(recordIdsToRetrieve, String::valueOf), objectType, tableName, cache, handle);
+        return fromRawKeys(ids, Long::valueOf);
+    }
+
     @Override
     public Long retrieveLastHistoryRecordIdFromTransaction(@Nullable final Long targetRecordId, final TableName tableName, final NonEntitySqlDao transactional) {
         // There is no caching here because the value returned changes as we add more history records, and so we would need some cache invalidation
@@ -170,11 +269,43 @@ public class DefaultNonEntityDao implements NonEntityDao {
         return dbRouter.onDemand(true).getHistoryTargetRecordId(recordId, tableName.getTableName());
     }
 
+    private static <T> List<String> toRawKeys(final Collection<T> objectOrRecordIds, final Function<T, String> toRawKey) {
+        final Collection<String> rawKeys = new LinkedHashSet<String>();
+        for (final T objectOrRecordId : objectOrRecordIds) {
+            if (objectOrRecordId != null) {
+                rawKeys.add(toRawKey.apply(objectOrRecordId));
+            }
+        }
+        return new ArrayList<String>(rawKeys);
+    }
+
+    private static <T, TypeOut> Map<T, TypeOut> fromRawKeys(final Map<String, TypeOut> valuesByRawKey, final Function<String, T> fromRawKey) {
+        final Map<T, TypeOut> result = new LinkedHashMap<T, TypeOut>();
+        for (final Entry<String, TypeOut> entry : valuesByRawKey.entrySet()) {
+            result.put(fromRawKey.apply(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    private static Map<String, Long> toIdKeyedMap(final Iterable<RecordIdIdMappings> mappings) {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final RecordIdIdMappings mapping : mappings) {
+            result.put(mapping.getId().toString(), mapping.getRecordId());
+        }
+        return result;
+    }
+
     private interface OperationRetrieval<TypeOut> {
 
         public TypeOut doRetrieve(final ObjectType objectType);
     }
 
+    private interface BulkOperationRetrieval<TypeIn, TypeOut> {
+
+        // Values are keyed by raw key, missing objects are simply absent
+        public Map<TypeIn, TypeOut> doRetrieve(final List<TypeIn> rawKeys);
+    }
+
     // 'cache' will be null for the CacheLoader classes -- or if cache is not configured.
     private class WithCaching<TypeIn, TypeOut> {
 
@@ -199,5 +330,41 @@ public class DefaultNonEntityDao implements NonEntityDao {
             });
             return result;
         }
+
+        private Map<TypeIn, TypeOut> withBulkCaching(final BulkOperationRetrieval<TypeIn, TypeOut> op, final List<TypeIn> objectOrRecordIds, final ObjectType objectType, final TableName tableName, @Nullable final CacheController<TypeIn, TypeOut> cache, @Nullable final Handle handle) {
+            if (objectOrRecordIds.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            if (cache != null) {
+                final Map<TypeIn, TypeIn> objectOrRecordIdByKey = new LinkedHashMap<TypeIn, TypeIn>();
+                for (final TypeIn objectOrRecordId : objectOrRecordIds) {
+                    final TypeIn key = (cache.getCacheType().isKeyPrefixedWithTableName()) ?
+                                       (TypeIn) (tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + objectOrRecordId.toString()) :
+                                       objectOrRecordId;
+                    objectOrRecordIdByKey.put(key, objectOrRecordId);
+                }
+
+                final Map<TypeIn, TypeOut> valuesByKey = cache.getAll(objectOrRecordIdByKey.keySet(), new CacheLoaderArgument(objectType, new Object[]{}, null, handle));
+                final Map<TypeIn, TypeOut> result = new LinkedHashMap<TypeIn, TypeOut>();
+                for (final Entry<TypeIn, TypeOut> entry : valuesByKey.entrySet()) {
+                    result.put(objectOrRecordIdByKey.get(entry.getKey()), entry.getValue());
+                }
+                return result;
+            }
+
+            final Profiling<Map<TypeIn, TypeOut>, RuntimeException> prof = new Profiling<Map<TypeIn, TypeOut>, RuntimeException>();
+            return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, "NonEntityDao (type = " + objectType + ") bulk cache miss", new WithProfilingCallback<Map<TypeIn, TypeOut>, RuntimeException>() {
+                @Override
+                public Map<TypeIn, TypeOut> execute() throws RuntimeException {
+                    final Map<TypeIn, TypeOut> result = new LinkedHashMap<TypeIn, TypeOut>();
+                    for (int start = 0; start < objectOrRecordIds.size(); start += MAX_BATCH_SIZE) {
+                        final List<TypeIn> batch = objectOrRecordIds.subList(start, Math.min(start + MAX_BATCH_SIZE, objectOrRecordIds.size()));
+                        result.putAll(op.doRetrieve(batch));
+                    }
+                    return result;
+                }
+            });
+        }
     }
 }
@@ -18,6 +18,8 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -33,10 +35,19 @@ public interface NonEntityDao {
 
     public Long retrieveRecordIdFromObjectInTransaction(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle);
 
+    // Bulk variants: unknown objects are absent from the returned maps
+    public Map<UUID, Long> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache);
+
+    public Map<UUID, Long> retrieveRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle);
+
     public Long retrieveAccountRecordIdFromObject(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache);
 
     public Long retrieveAccountRecordIdFromObjectInTransaction(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle);
 
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache);
+
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle);
+
     public Long retrieveTenantRecordIdFromObject(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache);
 
     public Long retrieveTenantRecordIdFromObjectInTransaction(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle);
@@ -45,6 +56,10 @@ public interface NonEntityDao {
 
     public UUID retrieveIdFromObjectInTransaction(final Long recordId, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache, @Nullable final Handle handle);
 
+    public Map<Long, UUID> retrieveIdsFromObjects(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache);
+
+    public Map<Long, UUID> retrieveIdsFromObjectsInTransaction(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache, @Nullable final Handle handle);
+
     // This retrieves from the history table the latest record for which targetId matches the one we are passing
     public Long retrieveLastHistoryRecordIdFromTransaction(final Long targetRecordId, final TableName tableName, final NonEntitySqlDao transactional);
 
@@ -18,6 +18,8 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -28,6 +30,7 @@ import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 @KillBillSqlDaoStringTemplate
 public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe {
@@ -38,6 +41,12 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public UUID getIdFromObject(@Bind("recordId") Long recordId, @Define("tableName") final String tableName);
 
+    @SqlQuery
+    public List<RecordIdIdMappings> getRecordIdIdMappingsFromObjects(@BindIn("ids") final Collection<String> ids, @Define("tableName") final String tableName);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getRecordIdIdMappingsFromRecordIds(@BindIn("recordIds") final Collection<Long> recordIds, @Define("tableName") final String tableName);
+
     @SqlQuery
     public Long getAccountRecordIdFromAccount(@Bind("id") String id);
 
@@ -47,6 +56,13 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public Long getAccountRecordIdFromObjectOtherThanAccount(@Bind("id") String id, @Define("tableName") final String tableName);
 
+    // The account record id is returned as the record id of the mapping
+    @SqlQuery
+    public List<RecordIdIdMappings> getAccountRecordIdMappingsFromAccounts(@BindIn("ids") final Collection<String> ids);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getAccountRecordIdMappingsFromObjectsOtherThanAccount(@BindIn("ids") final Collection<String> ids, @Define("tableName") final String tableName);
+
     @SqlQuery
     public Long getTenantRecordIdFromTenant(@Bind("id") String id);
 
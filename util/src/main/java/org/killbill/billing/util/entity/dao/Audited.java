@@ -44,4 +44,13 @@ public @interface Audited {
      * @return the type of operation
      */
     ChangeType value();
+
+    /**
+     * Whether the EntityModelDao arguments fully describe the rows after the update (including their record id).
+     * In that case, the history entries are built from these arguments instead of re-reading the rows
+     * (the rows are still re-read if a record id is missing).
+     *
+     * @return true if the history can be built from the arguments
+     */
+    boolean historyFromArguments() default false;
 }
@@ -17,24 +17,100 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
 public class DBRouter<C> extends DBRouterUntyped {
 
+    private final Class<C> sqlObjectType;
     private final C onDemand;
     private final C roOnDemand;
+    // Per method routing, only used if the routing policy has overrides for that SQL DAO or needs the context of the calls (read-your-writes)
+    private final C routedROOnDemand;
+    private final C routedRWOnDemand;
 
     public DBRouter(final IDBI dbi, final IDBI roDbi, final Class<C> sqlObjectType) {
         super(dbi, roDbi);
+        this.sqlObjectType = sqlObjectType;
         this.onDemand = dbi.onDemand(sqlObjectType);
         this.roOnDemand = roDbi.onDemand(sqlObjectType);
+        this.routedROOnDemand = newRoutingProxy(true);
+        this.routedRWOnDemand = newRoutingProxy(false);
     }
 
     public C onDemand(final boolean requestedRO) {
+        if (getRoutingPolicy().hasOverrides(sqlObjectType) || getRoutingPolicy().isReadYourWritesEnabled()) {
+            return requestedRO ? routedROOnDemand : routedRWOnDemand;
+        }
+
         if (shouldUseRODBI(requestedRO)) {
             return roOnDemand;
         } else {
             return onDemand;
         }
     }
+
+    private C route(final boolean requestedRO, final boolean isWrite, final Method method, @Nullable final InternalTenantContext context) {
+        // Overrides never send a write to the RO instance
+        final Boolean roOverride = isWrite ? null : getRoutingPolicy().getROOverride(sqlObjectType, method.getName());
+        final boolean readFromRO = roOverride != null ? roOverride : requestedRO;
+        if ((requestedRO && !readFromRO) || (readFromRO && context != null && getRoutingPolicy().isPinned(context))) {
+            // Read which must see the latest state: unlike a write, this doesn't prevent subsequent calls from using the RO DBI
+            getRoutingPolicy().onRouted(false);
+            return onDemand;
+        }
+
+        if (shouldUseRODBI(readFromRO)) {
+            return roOnDemand;
+        } else {
+            return onDemand;
+        }
+    }
+
+    private C newRoutingProxy(final boolean requestedRO) {
+        final InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(onDemand, args);
+                }
+
+                final boolean isWrite = method.getAnnotation(SqlUpdate.class) != null || method.getAnnotation(SqlBatch.class) != null;
+                final InternalTenantContext context = getContext(args);
+                final Object result;
+                try {
+                    result = method.invoke(route(requestedRO, isWrite, method, context), args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+
+                if (isWrite && context != null) {
+                    getRoutingPolicy().onWrite(context);
+                }
+                return result;
+            }
+        };
+        return sqlObjectType.cast(Proxy.newProxyInstance(sqlObjectType.getClassLoader(), new Class<?>[]{sqlObjectType}, handler));
+    }
+
+    private static InternalTenantContext getContext(@Nullable final Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        for (final Object arg : args) {
+            if (arg instanceof InternalTenantContext) {
+                return (InternalTenantContext) arg;
+            }
+        }
+        return null;
+    }
 }
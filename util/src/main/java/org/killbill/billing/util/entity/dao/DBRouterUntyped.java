@@ -17,6 +17,9 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import javax.inject.Inject;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.commons.utils.annotation.VisibleForTesting;
 import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
 import org.skife.jdbi.v2.Handle;
@@ -39,6 +42,8 @@ public class DBRouterUntyped {
         }
     };
 
+    private static volatile DBRoutingPolicy routingPolicy = new NoOpDBRoutingPolicy();
+
     protected final IDBI dbi;
     protected final IDBI roDbi;
 
@@ -59,27 +64,53 @@ public class DBRouterUntyped {
         }
     }
 
+    // Static injection, as routers are instantiated by the DAOs
+    @Inject
+    public static void setRoutingPolicy(final DBRoutingPolicy policy) {
+        routingPolicy = policy;
+    }
+
+    @VisibleForTesting
+    public static DBRoutingPolicy getRoutingPolicy() {
+        return routingPolicy;
+    }
+
     @VisibleForTesting
     public static THREAD_STATE getCurrentState() {
         return CURRENT_THREAD_STATE.get();
     }
 
+    /**
+     * @param context context of the read
+     * @return whether the current thread accepts reads which might not reflect the latest writes (e.g. from the RO instance)
+     */
+    public static boolean isStaleReadAllowed(final InternalTenantContext context) {
+        return getCurrentState() == RO_ALLOWED && routingPolicy.canUseRODBI() && !routingPolicy.isPinned(context);
+    }
+
     boolean shouldUseRODBI(final boolean requestedRO) {
+        final DBRoutingPolicy policy = routingPolicy;
+        final boolean useRODBI;
         if (requestedRO) {
-            if (isRODBIAllowed()) {
-                logger.debug("Using RO DBI");
-                return true;
-            } else {
+            if (!isRODBIAllowed()) {
                 // Redirect to the rw instance, to work-around any replication delay
                 logger.debug("RO DBI requested, but thread state is {}, using RW DBI", getCurrentState());
-                return false;
+                useRODBI = false;
+            } else if (!policy.canUseRODBI()) {
+                logger.debug("RO DBI requested, but not allowed by the routing policy, using RW DBI");
+                useRODBI = false;
+            } else {
+                logger.debug("Using RO DBI");
+                useRODBI = true;
             }
         } else {
             // Disable RO DBI for future calls in this thread
             disallowRODBI();
             logger.debug("Using RW DBI");
-            return false;
+            useRODBI = false;
         }
+        policy.onRouted(useRODBI);
+        return useRODBI;
     }
 
     private boolean isRODBIAllowed() {
@@ -90,12 +121,18 @@ public class DBRouterUntyped {
         CURRENT_THREAD_STATE.set(RW_ONLY);
     }
 
+    // Read which must see the latest state (see DBRoutingPolicy#isPinned): unlike a write, this doesn't prevent subsequent calls from using the RO DBI
+    Handle getRWHandleForRead() {
+        routingPolicy.onRouted(false);
+        return dbi.open();
+    }
+
     public Handle getHandle(final boolean requestedRO) {
-        if (shouldUseRODBI(requestedRO)) {
-            return roDbi.open();
-        } else {
-            return dbi.open();
-        }
+        return open(shouldUseRODBI(requestedRO));
+    }
+
+    Handle open(final boolean useRODBI) {
+        return useRODBI ? roDbi.open() : dbi.open();
     }
 
     public <T> T onDemand(final boolean requestedRO, final Class<T> sqlObjectType) {
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+/**
+ * Decides, on top of the thread state maintained by {@link DBRouterUntyped}, whether the RO instance can be used.
+ */
+public interface DBRoutingPolicy {
+
+    /**
+     * @param sqlObjectType SQL DAO interface
+     * @return whether some methods of this SQL DAO have a routing override
+     */
+    boolean hasOverrides(Class<?> sqlObjectType);
+
+    /**
+     * @param sqlObjectType SQL DAO interface
+     * @param methodName    SQL DAO method
+     * @return true to request the RO instance, false to force the RW instance, null to keep the caller hint
+     */
+    @Nullable
+    Boolean getROOverride(Class<?> sqlObjectType, String methodName);
+
+    /**
+     * @return false if the RO instance might not reflect the latest state (e.g. replica lag)
+     */
+    boolean canUseRODBI();
+
+    /**
+     * @return whether reads following a write for the same account (or tenant) must go to the RW instance,
+     * see {@link #isPinned(InternalTenantContext)}
+     */
+    boolean isReadYourWritesEnabled();
+
+    /**
+     * @param context context of the query
+     * @return true if the RO instance might not reflect a recent write for the account (or tenant) of that context
+     */
+    boolean isPinned(InternalTenantContext context);
+
+    /**
+     * Invoked once a write for the account (or tenant) of that context was made on the RW instance.
+     *
+     * @param context context of the write
+     */
+    void onWrite(InternalTenantContext context);
+
+    /**
+     * Invoked for each routing decision.
+     *
+     * @param useRODBI whether the RO instance was picked
+     */
+    void onRouted(boolean useRODBI);
+}
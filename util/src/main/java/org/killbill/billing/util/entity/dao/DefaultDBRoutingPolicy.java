@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.config.definition.DBRouterConfig;
+import org.killbill.commons.metrics.api.Counter;
+import org.killbill.commons.metrics.api.MetricRegistry;
+import org.killbill.commons.utils.Preconditions;
+import org.killbill.commons.utils.annotation.VisibleForTesting;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.killbill.billing.util.glue.IDBISetup.MAIN_RO_IDBI_NAMED;
+
+public class DefaultDBRoutingPolicy implements DBRoutingPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultDBRoutingPolicy.class);
+
+    // Expired entries are purged when the map grows above that size
+    private static final int MAX_PINNED_KEYS_BEFORE_PURGE = 10000;
+
+    private final IDBI roDbi;
+    private final long readYourWritesWindowNanos;
+    private final double maxReplicaLagSeconds;
+    private final String replicaLagQuery;
+    private final long replicaLagProbeIntervalNanos;
+    private final Map<String, Boolean> overrides = new HashMap<String, Boolean>();
+    private final Set<String> overriddenSqlObjectTypes = new HashSet<String>();
+    // tenantRecordId/accountRecordId -> System.nanoTime() until which reads must go to the RW instance
+    private final Map<String, Long> pinnedUntilNanos = new ConcurrentHashMap<String, Long>();
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+    private final Counter roCounter;
+    private final Counter rwCounter;
+
+    private volatile long nextProbeNanos;
+    private volatile double replicaLagSeconds;
+
+    @Inject
+    public DefaultDBRoutingPolicy(@Named(MAIN_RO_IDBI_NAMED) final IDBI roDbi, final DBRouterConfig dbRouterConfig, final MetricRegistry metricRegistry) {
+        this.roDbi = roDbi;
+        this.readYourWritesWindowNanos = TimeUnit.MILLISECONDS.toNanos(dbRouterConfig.getReadYourWritesWindow().getMillis());
+        this.maxReplicaLagSeconds = dbRouterConfig.getMaxReplicaLag().getMillis() / 1000.0;
+        this.replicaLagQuery = dbRouterConfig.getReplicaLagQuery();
+        this.replicaLagProbeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(dbRouterConfig.getReplicaLagProbeInterval().getMillis());
+        this.nextProbeNanos = System.nanoTime();
+        parseOverrides(dbRouterConfig.getRoutingOverrides());
+
+        this.roCounter = metricRegistry.counter("kb_dbrouter.ro");
+        this.rwCounter = metricRegistry.counter("kb_dbrouter.rw");
+        metricRegistry.gauge("kb_dbrouter.replica-lag-seconds", () -> replicaLagSeconds);
+    }
+
+    private void parseOverrides(final List<String> routingOverrides) {
+        for (final String routingOverride : routingOverrides) {
+            if (routingOverride.trim().isEmpty()) {
+                continue;
+            }
+
+            final String[] keyAndValue = routingOverride.trim().split("=");
+            Preconditions.checkArgument(keyAndValue.length == 2 && ("RO".equals(keyAndValue[1]) || "RW".equals(keyAndValue[1])),
+                                        "Invalid routing override %s, expected SqlDao[.method]=RO|RW", routingOverride);
+            // A class level RO override would also send the writes to the RO instance
+            Preconditions.checkArgument(keyAndValue[0].contains(".") || "RW".equals(keyAndValue[1]),
+                                        "Invalid routing override %s, RO overrides must be set per SQL DAO method", routingOverride);
+            overrides.put(keyAndValue[0], "RO".equals(keyAndValue[1]));
+            overriddenSqlObjectTypes.add(keyAndValue[0].split("\\.")[0]);
+        }
+    }
+
+    @Override
+    public boolean hasOverrides(final Class<?> sqlObjectType) {
+        return overriddenSqlObjectTypes.contains(sqlObjectType.getSimpleName());
+    }
+
+    @Override
+    public Boolean getROOverride(final Class<?> sqlObjectType, final String methodName) {
+        final Boolean methodOverride = overrides.get(sqlObjectType.getSimpleName() + "." + methodName);
+        return methodOverride != null ? methodOverride : overrides.get(sqlObjectType.getSimpleName());
+    }
+
+    @Override
+    public boolean canUseRODBI() {
+        if (!isReplicaLagAcceptable()) {
+            logger.debug("Replica lag is {}s, using RW DBI", replicaLagSeconds);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isReadYourWritesEnabled() {
+        return readYourWritesWindowNanos > 0;
+    }
+
+    @Override
+    public boolean isPinned(final InternalTenantContext context) {
+        if (readYourWritesWindowNanos <= 0) {
+            return false;
+        }
+
+        // Writes without an account (e.g. tag definitions) pin all reads of the tenant
+        return isPinned(getPinningKey(context.getTenantRecordId(), context.getAccountRecordId())) ||
+               (context.getAccountRecordId() != null && isPinned(getPinningKey(context.getTenantRecordId(), null)));
+    }
+
+    @Override
+    public void onWrite(final InternalTenantContext context) {
+        if (readYourWritesWindowNanos <= 0) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        if (pinnedUntilNanos.size() > MAX_PINNED_KEYS_BEFORE_PURGE) {
+            pinnedUntilNanos.values().removeIf(pinnedUntil -> pinnedUntil - now < 0);
+        }
+        pinnedUntilNanos.put(getPinningKey(context.getTenantRecordId(), context.getAccountRecordId()), now + readYourWritesWindowNanos);
+    }
+
+    @Override
+    public void onRouted(final boolean useRODBI) {
+        if (useRODBI) {
+            roCounter.inc(1);
+        } else {
+            rwCounter.inc(1);
+        }
+    }
+
+    @VisibleForTesting
+    double getReplicaLagSeconds() {
+        return replicaLagSeconds;
+    }
+
+    private boolean isPinned(final String key) {
+        final Long pinnedUntil = pinnedUntilNanos.get(key);
+        return pinnedUntil != null && pinnedUntil - System.nanoTime() > 0;
+    }
+
+    private static String getPinningKey(@Nullable final Long tenantRecordId, @Nullable final Long accountRecordId) {
+        return tenantRecordId + "/" + accountRecordId;
+    }
+
+    private boolean isReplicaLagAcceptable() {
+        if (maxReplicaLagSeconds <= 0 || replicaLagQuery == null) {
+            return true;
+        }
+
+        final long now = System.nanoTime();
+        // Only one thread probes the replica, the other ones use the last known value
+        if (now - nextProbeNanos >= 0 && probing.compareAndSet(false, true)) {
+            try {
+                replicaLagSeconds = probeReplicaLag();
+                nextProbeNanos = now + replicaLagProbeIntervalNanos;
+            } finally {
+                probing.set(false);
+            }
+        }
+        return replicaLagSeconds <= maxReplicaLagSeconds;
+    }
+
+    private double probeReplicaLag() {
+        try (final Handle handle = roDbi.open()) {
+            final List<Map<String, Object>> rows = handle.select(replicaLagQuery);
+            if (rows.isEmpty() || rows.get(0).isEmpty()) {
+                return 0;
+            }
+            final Object lag = rows.get(0).values().iterator().next();
+            // No lag reported (e.g. not a replica)
+            return lag == null ? 0 : Double.parseDouble(lag.toString());
+        } catch (final RuntimeException e) {
+            logger.warn("Unable to probe the replica lag, using RW DBI", e);
+            return Double.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.dao.EntityAudit;
+import org.killbill.billing.util.dao.EntityHistoryModelDao;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.Entity;
+import org.killbill.commons.profiling.Profiling;
+import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
+import org.killbill.commons.utils.Preconditions;
+import org.skife.jdbi.v2.Handle;
+
+/**
+ * Transaction scoped buffer of the history and audit rows generated by the @Audited EntitySqlDao calls.
+ * <p>
+ * The rows are written as JDBC batches right before the transaction commits (see EntitySqlDaoTransactionalJdbiWrapper), in the order
+ * of the calls: histories are inserted first, table by table, as the audit rows point to the history record ids.
+ * Consecutive calls sharing the same context end up in the same batch.
+ */
+class EntityHistoryAndAuditBuffer {
+
+    private final Handle handle;
+    private final Profiling<Void, RuntimeException> prof;
+    private final List<PendingWrite> pendingWrites = new LinkedList<PendingWrite>();
+
+    EntityHistoryAndAuditBuffer(final Handle handle) {
+        this.handle = handle;
+        this.prof = new Profiling<Void, RuntimeException>();
+    }
+
+    <M extends EntityModelDao<E>, E extends Entity> void addHistoriesAndAudits(final EntitySqlDao<M, E> sqlDao,
+                                                                                final TableName tableName,
+                                                                                final Iterable<M> reHydratedEntityModelDaos,
+                                                                                final ChangeType changeType,
+                                                                                final InternalCallContext context) {
+        final List<EntityHistoryModelDao> histories = new LinkedList<EntityHistoryModelDao>();
+        for (final M reHydratedEntityModelDao : reHydratedEntityModelDaos) {
+            histories.add(new EntityHistoryModelDao<M, E>(reHydratedEntityModelDao, reHydratedEntityModelDao.getRecordId(), changeType, null, context.getCreatedDate()));
+        }
+        pendingWrites.add(new PendingWrite(sqlDao, tableName, histories, null, changeType, context));
+    }
+
+    void addAudits(final EntitySqlDao<?, ?> sqlDao,
+                   final TableName tableName,
+                   final List<Long> auditTargetRecordIds,
+                   final ChangeType changeType,
+                   final InternalCallContext context) {
+        pendingWrites.add(new PendingWrite(sqlDao, tableName, null, auditTargetRecordIds, changeType, context));
+    }
+
+    void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, "EntitySqlDao (history/audit): flush", new WithProfilingCallback<Void, RuntimeException>() {
+            @Override
+            public Void execute() {
+                insertHistories();
+                insertAudits();
+                return null;
+            }
+        });
+        pendingWrites.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertHistories() {
+        final Map<TableName, List<PendingWrite>> pendingWritesWithHistoryByTableName = new LinkedHashMap<TableName, List<PendingWrite>>();
+        for (final PendingWrite pendingWrite : pendingWrites) {
+            if (pendingWrite.histories != null) {
+                pendingWritesWithHistoryByTableName.computeIfAbsent(pendingWrite.tableName, t -> new ArrayList<PendingWrite>()).add(pendingWrite);
+            }
+        }
+
+        for (final List<PendingWrite> pendingWritesForTable : pendingWritesWithHistoryByTableName.values()) {
+            for (final List<PendingWrite> batch : splitByContext(pendingWritesForTable)) {
+                final Collection<EntityHistoryModelDao> histories = new ArrayList<EntityHistoryModelDao>();
+                for (final PendingWrite pendingWrite : batch) {
+                    histories.addAll(pendingWrite.histories);
+                }
+
+                final PendingWrite first = batch.get(0);
+                final List<Long> historyRecordIds = first.sqlDao.addHistoriesFromTransaction(histories, first.context);
+                EntitySqlDaoWrapperInvocationHandler.printSQLWarnings(handle);
+                // Note: audit entries point to the history record id
+                Preconditions.checkState(historyRecordIds.size() == histories.size(), "Wrong number of historyRecordIds=%s (histories=%s)", historyRecordIds, histories);
+
+                int offset = 0;
+                for (final PendingWrite pendingWrite : batch) {
+                    pendingWrite.auditTargetRecordIds = historyRecordIds.subList(offset, offset + pendingWrite.histories.size());
+                    offset += pendingWrite.histories.size();
+                }
+            }
+        }
+    }
+
+    private void insertAudits() {
+        for (final List<PendingWrite> batch : splitByContext(pendingWrites)) {
+            final Collection<EntityAudit> audits = new LinkedList<EntityAudit>();
+            for (final PendingWrite pendingWrite : batch) {
+                final TableName destinationTableName = Objects.requireNonNullElse(pendingWrite.tableName.getHistoryTableName(), pendingWrite.tableName);
+                for (final Long auditTargetRecordId : pendingWrite.auditTargetRecordIds) {
+                    audits.add(new EntityAudit(destinationTableName, auditTargetRecordId, pendingWrite.changeType, pendingWrite.context.getCreatedDate()));
+                }
+            }
+
+            final PendingWrite first = batch.get(0);
+            first.sqlDao.insertAuditsFromTransaction(audits, first.context);
+            EntitySqlDaoWrapperInvocationHandler.printSQLWarnings(handle);
+        }
+    }
+
+    // Consecutive writes sharing the same context (the context values are bound to each row)
+    private static List<List<PendingWrite>> splitByContext(final List<PendingWrite> pendingWrites) {
+        final List<List<PendingWrite>> batches = new LinkedList<List<PendingWrite>>();
+        List<PendingWrite> currentBatch = null;
+        for (final PendingWrite pendingWrite : pendingWrites) {
+            if (currentBatch == null || currentBatch.get(0).context != pendingWrite.context) {
+                currentBatch = new ArrayList<PendingWrite>();
+                batches.add(currentBatch);
+            }
+            currentBatch.add(pendingWrite);
+        }
+        return batches;
+    }
+
+    private static final class PendingWrite {
+
+        private final EntitySqlDao sqlDao;
+        private final TableName tableName;
+        // Null for tables without history
+        private final List<EntityHistoryModelDao> histories;
+        private final ChangeType changeType;
+        private final InternalCallContext context;
+        // History record ids are only known once the histories have been inserted
+        private List<Long> auditTargetRecordIds;
+
+        private PendingWrite(final EntitySqlDao sqlDao,
+                             final TableName tableName,
+                             final List<EntityHistoryModelDao> histories,
+                             final List<Long> auditTargetRecordIds,
+                             final ChangeType changeType,
+                             final InternalCallContext context) {
+            this.sqlDao = sqlDao;
+            this.tableName = tableName;
+            this.histories = histories;
+            this.auditTargetRecordIds = auditTargetRecordIds;
+            this.changeType = changeType;
+            this.context = context;
+        }
+    }
+}
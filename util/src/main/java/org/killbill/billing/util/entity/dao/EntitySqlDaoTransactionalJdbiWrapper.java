@@ -61,17 +61,25 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
     class JdbiTransaction<ReturnType, M extends EntityModelDao<E>, E extends Entity> implements Transaction<ReturnType, EntitySqlDao<M, E>> {
 
         private final Handle h;
+        private final ReadYourWritesTracker readYourWritesTracker;
         private final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper;
 
-        JdbiTransaction(final Handle h, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        JdbiTransaction(final Handle h, @Nullable final ReadYourWritesTracker readYourWritesTracker, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
             this.h = h;
+            this.readYourWritesTracker = readYourWritesTracker;
             this.entitySqlDaoTransactionWrapper = entitySqlDaoTransactionWrapper;
         }
 
         @Override
         public ReturnType inTransaction(final EntitySqlDao<M, E> transactionalSqlDao, final TransactionStatus status) throws Exception {
-            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, internalCallContextFactory);
-            return entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, internalCallContextFactory, readYourWritesTracker);
+            final ReturnType returnType = entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            if (readYourWritesTracker != null) {
+                readYourWritesTracker.checkNotStale();
+            }
+            // History and audit rows are written in batches, right before the commit
+            factoryEntitySqlDao.flushHistoryAndAudits();
+            return returnType;
         }
     }
 
@@ -85,17 +93,38 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
      * @return result from the transaction fo type ReturnType
      */
     public <ReturnType> ReturnType execute(final boolean requestedRO, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        final boolean useRODBI = dbRouter.shouldUseRODBI(requestedRO);
+        final DBRoutingPolicy routingPolicy = DBRouterUntyped.getRoutingPolicy();
+        // Reads on the RW instance don't need any bookkeeping
+        final ReadYourWritesTracker readYourWritesTracker = routingPolicy.isReadYourWritesEnabled() && (useRODBI || !requestedRO) ? new ReadYourWritesTracker(routingPolicy, useRODBI) : null;
+        try {
+            final ReturnType returnType = execute(dbRouter.open(useRODBI), readYourWritesTracker, entitySqlDaoTransactionWrapper);
+            if (readYourWritesTracker != null) {
+                readYourWritesTracker.onCommit();
+            }
+            return returnType;
+        } catch (final RuntimeException e) {
+            if (readYourWritesTracker == null || !readYourWritesTracker.isStaleRead()) {
+                throw e;
+            }
+            logger.debug("Recent write for the account of the transaction, retrying on the RW DBI");
+            return execute(dbRouter.getRWHandleForRead(), null, entitySqlDaoTransactionWrapper);
+        }
+    }
+
+    private <ReturnType> ReturnType execute(final Handle handle,
+                                            @Nullable final ReadYourWritesTracker readYourWritesTracker,
+                                            final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
         final String debugInfo = logger.isDebugEnabled() ? getDebugInfo() : null;
 
-        final Handle handle = dbRouter.getHandle(requestedRO);
         logger.debug("DBI handle created, transaction: {}", debugInfo);
         try {
             final EntitySqlDao<EntityModelDao<Entity>, Entity> entitySqlDao = handle.attach(InitialEntitySqlDao.class);
             // The transaction isolation level is now set at the pool level: this avoids 3 roundtrips for each transaction
             // Note that if the pool isn't used (tests or PostgreSQL), the transaction level will depend on the DB configuration
-            //return entitySqlDao.inTransaction(TransactionIsolationLevel.READ_COMMITTED, new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper));
+            //return entitySqlDao.inTransaction(TransactionIsolationLevel.READ_COMMITTED, new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, readYourWritesTracker, entitySqlDaoTransactionWrapper));
             logger.debug("Starting transaction {}", debugInfo);
-            final ReturnType returnType = entitySqlDao.inTransaction(new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper));
+            final ReturnType returnType = entitySqlDao.inTransaction(new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, readYourWritesTracker, entitySqlDaoTransactionWrapper));
             logger.debug("Exiting  transaction {}, returning {}", debugInfo, returnType);
             return returnType;
         } finally {
@@ -20,6 +20,8 @@ package org.killbill.billing.util.entity.dao;
 
 import java.lang.reflect.Proxy;
 
+import javax.annotation.Nullable;
+
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.entity.Entity;
@@ -40,12 +42,21 @@ public class EntitySqlDaoWrapperFactory {
     private final CacheControllerDispatcher cacheControllerDispatcher;
 
     private final InternalCallContextFactory internalCallContextFactory;
+    private final EntityHistoryAndAuditBuffer historyAndAuditBuffer;
+    private final ReadYourWritesTracker readYourWritesTracker;
 
     public EntitySqlDaoWrapperFactory(final Handle handle, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final InternalCallContextFactory internalCallContextFactory) {
+        this(handle, clock, cacheControllerDispatcher, internalCallContextFactory, null);
+    }
+
+    EntitySqlDaoWrapperFactory(final Handle handle, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final InternalCallContextFactory internalCallContextFactory,
+                               @Nullable final ReadYourWritesTracker readYourWritesTracker) {
         this.handle = handle;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.historyAndAuditBuffer = new EntityHistoryAndAuditBuffer(handle);
+        this.readYourWritesTracker = readYourWritesTracker;
     }
 
     /**
@@ -67,13 +78,18 @@ public class EntitySqlDaoWrapperFactory {
         return handle;
     }
 
+    // Write the history and audit rows of the @Audited calls made so far in this transaction
+    void flushHistoryAndAudits() {
+        historyAndAuditBuffer.flush();
+    }
+
     private <NewSqlDao extends EntitySqlDao<NewEntityModelDao, NewEntity>,
             NewEntityModelDao extends EntityModelDao<NewEntity>,
             NewEntity extends Entity> NewSqlDao create(final Class<NewSqlDao> newSqlDaoClass, final NewSqlDao newSqlDao) {
         final ClassLoader classLoader = newSqlDao.getClass().getClassLoader();
         final Class[] interfacesToImplement = {newSqlDaoClass};
         final EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity> wrapperInvocationHandler =
-                new EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity>(newSqlDaoClass, newSqlDao, handle, cacheControllerDispatcher, internalCallContextFactory);
+                new EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity>(newSqlDaoClass, newSqlDao, handle, historyAndAuditBuffer, cacheControllerDispatcher, internalCallContextFactory, readYourWritesTracker);
 
         final Object newSqlDaoObject = Proxy.newProxyInstance(classLoader, interfacesToImplement, wrapperInvocationHandler);
         return newSqlDaoClass.cast(newSqlDaoObject);
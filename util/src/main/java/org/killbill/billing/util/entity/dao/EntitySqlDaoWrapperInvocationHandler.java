@@ -34,7 +34,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -47,8 +46,6 @@ import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
-import org.killbill.billing.util.dao.EntityAudit;
-import org.killbill.billing.util.dao.EntityHistoryModelDao;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.clock.Clock;
@@ -76,34 +73,45 @@ import org.slf4j.LoggerFactory;
  */
 public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>, M extends EntityModelDao<E>, E extends Entity> implements InvocationHandler {
 
-    private final Logger logger = LoggerFactory.getLogger(EntitySqlDaoWrapperInvocationHandler.class);
+    private static final Logger logger = LoggerFactory.getLogger(EntitySqlDaoWrapperInvocationHandler.class);
 
     private final Map<String, Annotation[][]> parameterAnnotationsByMethod = new ConcurrentHashMap<String, Annotation[][]>();
 
     private final Class<S> sqlDaoClass;
     private final S sqlDao;
     private final Handle handle;
+    private final EntityHistoryAndAuditBuffer historyAndAuditBuffer;
 
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final ReadYourWritesTracker readYourWritesTracker;
     private final Profiling<Object, Throwable> prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
                                                 final S sqlDao,
                                                 final Handle handle,
+                                                final EntityHistoryAndAuditBuffer historyAndAuditBuffer,
                                                 // Special DAO that don't require caching can invoke EntitySqlDaoWrapperInvocationHandler with no caching (e.g NoCachingTenantDao)
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
-                                                final InternalCallContextFactory internalCallContextFactory) {
+                                                final InternalCallContextFactory internalCallContextFactory,
+                                                @Nullable final ReadYourWritesTracker readYourWritesTracker) {
         this.sqlDaoClass = sqlDaoClass;
         this.sqlDao = sqlDao;
         this.handle = handle;
+        this.historyAndAuditBuffer = historyAndAuditBuffer;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.readYourWritesTracker = readYourWritesTracker;
         this.prof = new Profiling<Object, Throwable>();
     }
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (readYourWritesTracker != null) {
+            // Not an error: the transaction is retried on the RW instance
+            readYourWritesTracker.onQuery(args);
+        }
+
         try {
             return prof.executeWithProfiling(ProfilingFeatureType.DAO, getProfilingId(null, method), new WithProfilingCallback<Object, Throwable>() {
                 @Override
@@ -251,9 +259,12 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                 context = internalCallContextFactory.createInternalCallContext(accountModelDao, entityRecordIds.get(0), contextMaybeWithoutAccountRecordId);
             }
         } else {
-            // Rehydrate entry with latest state
-            final List<M> retrievedEntities = sqlDao.getByIdsIncludedDeleted(entityIds, contextMaybeWithoutAccountRecordId);
-            printSQLWarnings();
+            // Rehydrate entry with latest state (PERF: unless the arguments already describe it)
+            List<M> retrievedEntities = auditedAnnotation.historyFromArguments() ? retrieveEntityModelDaosWithRecordIdFromArguments(args) : null;
+            if (retrievedEntities == null || retrievedEntities.size() != entityIds.size()) {
+                retrievedEntities = sqlDao.getByIdsIncludedDeleted(entityIds, contextMaybeWithoutAccountRecordId);
+                printSQLWarnings();
+            }
             for (final M entity : retrievedEntities) {
                 deletedAndUpdatedEntities.put(entity.getRecordId(), entity);
                 entityRecordIds.add(entity.getRecordId());
@@ -277,6 +288,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                      "accountRecordId should be set for tableName=%s and changeType=%s", tableName, changeType);
         }
 
+        if (readYourWritesTracker != null) {
+            readYourWritesTracker.onWrite(context);
+        }
+
         final Collection<M> reHydratedEntities = updateHistoryAndAudit(entityRecordIds, deletedAndUpdatedEntities, tableName, changeType, context);
         if (method.getReturnType().equals(Void.TYPE)) {
             // Return early
@@ -308,6 +323,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     }
 
     private void printSQLWarnings() {
+        printSQLWarnings(handle);
+    }
+
+    static void printSQLWarnings(final Handle handle) {
         if (logger.isDebugEnabled()) {
             try {
                 SQLWarning warning = handle.getConnection().getWarnings();
@@ -350,7 +369,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                rawKey;
     }
 
-    // Update history and audit tables.
+    // Update history and audit tables (the rows are buffered and written in batches at the end of the transaction).
     // PERF: if the latest entities had to be fetched from the database, return them. Otherwise, return null.
     private Collection<M> updateHistoryAndAudit(final List<Long> entityRecordIds,
                                                 final Map<Long, M> deletedAndUpdatedEntities,
@@ -366,7 +385,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
             @Override
             public Collection<M> execute() {
                 if (tableName.getHistoryTableName() == null) {
-                    insertAudits(entityRecordIds, tableName, changeType, context);
+                    historyAndAuditBuffer.addAudits(sqlDao, tableName, entityRecordIds, changeType, context);
                     return deletedAndUpdatedEntities.values();
                 } else {
                     // Make sure to re-hydrate the objects first (especially needed for create calls)
@@ -388,10 +407,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                     }
                     Preconditions.checkState(reHydratedEntities.size() == entityRecordIds.size(), "Wrong number of reHydratedEntities=%s (entityRecordIds=%s)", reHydratedEntities, entityRecordIds);
 
-                    final Collection<Long> auditTargetRecordIds = insertHistories(reHydratedEntities, changeType, context);
-                    // Note: audit entries point to the history record id
-                    Preconditions.checkState(auditTargetRecordIds.size() == entityRecordIds.size(), "Wrong number of auditTargetRecordIds=%s (entityRecordIds=%s)", auditTargetRecordIds, entityRecordIds);
-                    insertAudits(auditTargetRecordIds, tableName, changeType, context);
+                    historyAndAuditBuffer.addHistoriesAndAudits(sqlDao, tableName, reHydratedEntities, changeType, context);
 
                     return reHydratedEntities;
                 }
@@ -491,6 +507,24 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return tableName;
     }
 
+    // Null if one of the EntityModelDao arguments doesn't have a record id
+    private List<M> retrieveEntityModelDaosWithRecordIdFromArguments(final Object[] args) {
+        final List<M> entityModelDaos = new ArrayList<M>();
+        for (final Object arg : args) {
+            final Iterable<?> candidates = arg instanceof Iterable ? (Iterable<?>) arg : Collections.singletonList(arg);
+            for (final Object candidate : candidates) {
+                if (!(candidate instanceof EntityModelDao)) {
+                    continue;
+                }
+                if (((EntityModelDao) candidate).getRecordId() == null) {
+                    return null;
+                }
+                entityModelDaos.add((M) candidate);
+            }
+        }
+        return entityModelDaos;
+    }
+
     private TimeZoneAwareEntity retrieveTimeZoneAwareEntityFromArguments(final Object[] args) {
         for (final Object arg : args) {
             if (!(arg instanceof TimeZoneAwareEntity)) {
@@ -501,35 +535,6 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         throw new IllegalStateException("TimeZoneAwareEntity should have been found among " + args);
     }
 
-    private List<Long> insertHistories(final Iterable<M> reHydratedEntityModelDaos, final ChangeType changeType, final InternalCallContext context) {
-        final Collection<EntityHistoryModelDao<M, E>> histories = new LinkedList<EntityHistoryModelDao<M, E>>();
-        for (final M reHydratedEntityModelDao : reHydratedEntityModelDaos) {
-            final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(reHydratedEntityModelDao, reHydratedEntityModelDao.getRecordId(), changeType, null, context.getCreatedDate());
-            histories.add(history);
-        }
-
-        final List<Long> recordIds = sqlDao.addHistoriesFromTransaction(histories, context);
-        printSQLWarnings();
-        return recordIds;
-    }
-
-    // Bulk insert all audit logs for this operation
-    private void insertAudits(final Iterable<Long> auditTargetRecordIds,
-                              final TableName tableName,
-                              final ChangeType changeType,
-                              final InternalCallContext context) {
-        final TableName destinationTableName = Objects.requireNonNullElse(tableName.getHistoryTableName(), tableName);
-
-        final Collection<EntityAudit> audits = new LinkedList<>();
-        for (final Long auditTargetRecordId : auditTargetRecordIds) {
-            final EntityAudit audit = new EntityAudit(destinationTableName, auditTargetRecordId, changeType, context.getCreatedDate());
-            audits.add(audit);
-        }
-
-        sqlDao.insertAuditsFromTransaction(audits, context);
-        printSQLWarnings();
-    }
-
     private String getProfilingId(@Nullable final String prefix, @Nullable final Method method) {
         final StringBuilder stringBuilder = new StringBuilder().append(sqlDaoClass.getSimpleName());
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+/**
+ * Default policy: the RO instance is used whenever the thread state allows it.
+ */
+public class NoOpDBRoutingPolicy implements DBRoutingPolicy {
+
+    @Override
+    public boolean hasOverrides(final Class<?> sqlObjectType) {
+        return false;
+    }
+
+    @Override
+    public Boolean getROOverride(final Class<?> sqlObjectType, final String methodName) {
+        return null;
+    }
+
+    @Override
+    public boolean canUseRODBI() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadYourWritesEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isPinned(final InternalTenantContext context) {
+        return false;
+    }
+
+    @Override
+    public void onWrite(final InternalTenantContext context) {
+    }
+
+    @Override
+    public void onRouted(final boolean useRODBI) {
+    }
+}
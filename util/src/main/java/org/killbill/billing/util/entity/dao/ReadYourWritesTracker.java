@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+/**
+ * Read-your-writes bookkeeping for a single EntitySqlDao transaction (see {@link DBRoutingPolicy#isPinned(InternalTenantContext)}):
+ * <ul>
+ * <li>on the RO instance, the transaction is aborted as soon as a query is made for a pinned account (or tenant), so that it can be retried on the RW instance</li>
+ * <li>on the RW instance, the accounts (or tenants) written to are pinned once the transaction is committed</li>
+ * </ul>
+ */
+class ReadYourWritesTracker {
+
+    private final DBRoutingPolicy routingPolicy;
+    private final boolean onRODBI;
+    // Contexts are usually shared by all calls of a transaction
+    private final Set<InternalTenantContext> writeContexts = Collections.newSetFromMap(new IdentityHashMap<InternalTenantContext, Boolean>());
+
+    private boolean staleRead;
+
+    ReadYourWritesTracker(final DBRoutingPolicy routingPolicy, final boolean onRODBI) {
+        this.routingPolicy = routingPolicy;
+        this.onRODBI = onRODBI;
+    }
+
+    void onQuery(@Nullable final Object[] args) {
+        if (!onRODBI || args == null) {
+            return;
+        }
+
+        for (final Object arg : args) {
+            if (arg instanceof InternalTenantContext && routingPolicy.isPinned((InternalTenantContext) arg)) {
+                staleRead = true;
+                break;
+            }
+        }
+        checkNotStale();
+    }
+
+    void onWrite(final InternalTenantContext context) {
+        writeContexts.add(context);
+    }
+
+    // In case the StaleReadException was swallowed by the transaction
+    void checkNotStale() {
+        if (staleRead) {
+            throw new StaleReadException();
+        }
+    }
+
+    boolean isStaleRead() {
+        return staleRead;
+    }
+
+    void onCommit() {
+        for (final InternalTenantContext context : writeContexts) {
+            routingPolicy.onWrite(context);
+        }
+    }
+
+    static class StaleReadException extends RuntimeException {
+
+        StaleReadException() {
+            super("RO instance might not reflect a recent write, the transaction has to be retried on the RW instance", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.glue;
+
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.config.definition.DBRouterConfig;
+import org.killbill.billing.util.entity.dao.DBRouterUntyped;
+import org.killbill.billing.util.entity.dao.DBRoutingPolicy;
+import org.killbill.billing.util.entity.dao.DefaultDBRoutingPolicy;
+import org.skife.config.ConfigurationObjectFactory;
+
+public class DBRouterModule extends KillBillModule {
+
+    public DBRouterModule(final KillbillConfigSource configSource) {
+        super(configSource);
+    }
+
+    @Override
+    protected void configure() {
+        final DBRouterConfig dbRouterConfig = new ConfigurationObjectFactory(skifeConfigSource).build(DBRouterConfig.class);
+        bind(DBRouterConfig.class).toInstance(dbRouterConfig);
+
+        bind(DBRoutingPolicy.class).to(DefaultDBRoutingPolicy.class).asEagerSingleton();
+        requestStaticInjection(DBRouterUntyped.class);
+    }
+}
@@ -24,6 +24,7 @@ import org.aopalliance.intercept.MethodInvocation;
 import org.killbill.billing.KillbillApi;
 import org.killbill.billing.osgi.api.ROTenantContext;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.CallContextSnapshots;
 import org.killbill.billing.util.config.definition.JaxrsConfig;
 import org.killbill.billing.util.entity.dao.DBRouterUntyped;
 import org.killbill.commons.profiling.Profiling;
@@ -86,7 +87,10 @@ public class KillbillApiAopModule extends AbstractModule {
                 @Override
                 public Object execute() throws Throwable {
                     logger.debug("Entering API call {}, arguments: {}", invocation.getMethod(), invocation.getArguments());
-                    final Object proceed = invocation.proceed();
+                    final Object proceed;
+                    try (final CallContextSnapshots.Scope ignored = CallContextSnapshots.openScope()) {
+                        proceed = invocation.proceed();
+                    }
                     logger.debug("Exiting  API call {}, returning: {}", invocation.getMethod(), proceed);
                     return proceed;
                 }
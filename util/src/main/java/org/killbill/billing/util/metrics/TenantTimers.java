@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.metrics;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.commons.metrics.api.MetricRegistry;
+import org.killbill.commons.metrics.api.Timer;
+
+/**
+ * Timers scoped by tenant, for the internal stages (invoice generation, billing events computation, ...) which aren't covered by the
+ * {@code kb_resource} timers of the API layer.
+ * <p>
+ * The registry has no notion of tags: like for the {@code kb_resource} timers, the name is the metric name followed by the tag values,
+ * i.e. {@code <metricName>.<tenantRecordId>.<dryRun|live>} (e.g. {@code kb_invoice.total.1.live}).
+ */
+public final class TenantTimers {
+
+    private TenantTimers() {}
+
+    public static Timer timer(final MetricRegistry metricRegistry, final String metricName, final InternalTenantContext context, final boolean isDryRun) {
+        return metricRegistry.timer(String.format("%s.%s.%s", metricName, context.getTenantRecordId(), isDryRun ? "dryRun" : "live"));
+    }
+}
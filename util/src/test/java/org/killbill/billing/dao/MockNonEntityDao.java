@@ -18,6 +18,8 @@
 
 package org.killbill.billing.dao;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -62,6 +64,16 @@ public class MockNonEntityDao implements NonEntityDao {
         return null;
     }
 
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle) {
+        return Collections.emptyMap();
+    }
+
     @Override
     public Long retrieveAccountRecordIdFromObject(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
         return accountRecordIdMappings.get(objectId);
@@ -72,6 +84,22 @@ public class MockNonEntityDao implements NonEntityDao {
         return null;
     }
 
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
+        final Map<UUID, Long> result = new HashMap<UUID, Long>();
+        for (final UUID objectId : objectIds) {
+            if (accountRecordIdMappings.get(objectId) != null) {
+                result.put(objectId, accountRecordIdMappings.get(objectId));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjectsInTransaction(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<String, Long> cache, @Nullable final Handle handle) {
+        return Collections.emptyMap();
+    }
+
     @Override
     public Long retrieveTenantRecordIdFromObject(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<String, Long> cache) {
         return tenantRecordIdMappings.get(objectId);
@@ -96,6 +124,24 @@ public class MockNonEntityDao implements NonEntityDao {
         return null;
     }
 
+    @Override
+    public Map<Long, UUID> retrieveIdsFromObjects(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache) {
+        final Map<Long, UUID> result = new HashMap<Long, UUID>();
+        if (objectType == ACCOUNT) {
+            for (final Long recordId : recordIds) {
+                if (accountIdMappings.get(recordId) != null) {
+                    result.put(recordId, accountIdMappings.get(recordId));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Long, UUID> retrieveIdsFromObjectsInTransaction(final Collection<Long> recordIds, final ObjectType objectType, @Nullable final CacheController<String, UUID> cache, @Nullable final Handle handle) {
+        return Collections.emptyMap();
+    }
+
     @Override
     public Long retrieveLastHistoryRecordIdFromTransaction(final Long targetRecordId, final TableName tableName, final NonEntitySqlDao transactional) {
         return null;
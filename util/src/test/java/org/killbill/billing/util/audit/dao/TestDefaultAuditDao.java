@@ -17,6 +17,7 @@
 package org.killbill.billing.util.audit.dao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.Handle;
@@ -34,10 +35,14 @@ import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
 
 public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
 
@@ -91,6 +96,43 @@ public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(secondAuditLogs.get(1).getChangeType(), ChangeType.DELETE);
     }
 
+    @Test(groups = "slow")
+    public void testAuditsForSeveralCallsInOneTransaction() throws Exception {
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, controlCacheDispatcher, nonEntityDao, internalCallContextFactory);
+        final TagModelDao firstTag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.ACCOUNT);
+        final TagModelDao secondTag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.ACCOUNT);
+
+        // The history and audit rows of the three calls are written at the end of the transaction
+        transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final TagSqlDao tagSqlDao = entitySqlDaoWrapperFactory.become(TagSqlDao.class);
+                tagSqlDao.create(firstTag, internalCallContext);
+                tagSqlDao.create(secondTag, internalCallContext);
+                tagSqlDao.markTagAsDeleted(firstTag.getId().toString(), internalCallContext);
+                return null;
+            }
+        });
+
+        final List<AuditLog> firstTagAuditLogs = auditDao.getAuditLogsForId(TableName.TAG, firstTag.getId(), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(firstTagAuditLogs.size(), 2);
+        Assert.assertEquals(firstTagAuditLogs.get(0).getChangeType(), ChangeType.INSERT);
+        Assert.assertEquals(firstTagAuditLogs.get(1).getChangeType(), ChangeType.DELETE);
+
+        final List<AuditLog> secondTagAuditLogs = auditDao.getAuditLogsForId(TableName.TAG, secondTag.getId(), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(secondTagAuditLogs.size(), 1);
+        Assert.assertEquals(secondTagAuditLogs.get(0).getChangeType(), ChangeType.INSERT);
+
+        // History rows are in call order
+        final Handle handle = dbi.open();
+        final List<Map<String, Object>> histories = handle.select("select id, change_type from tag_history order by record_id");
+        handle.close();
+        Assert.assertEquals(histories.size(), 3);
+        Assert.assertEquals(histories.get(0).get("change_type"), ChangeType.INSERT.toString());
+        Assert.assertEquals(histories.get(1).get("change_type"), ChangeType.INSERT.toString());
+        Assert.assertEquals(histories.get(2).get("change_type"), ChangeType.DELETE.toString());
+    }
+
     private void addTag() throws TagDefinitionApiException, TagApiException {
         // Create a tag definition
         eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.killbill.billing.ObjectType;
@@ -110,6 +112,29 @@ public class TestCache extends UtilTestSuiteWithEmbeddedDB {
 
     }
 
+    @Test(groups = "slow")
+    public void testCacheGetAll() throws Exception {
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, roDbi, clock, controlCacheDispatcher, nonEntityDao, internalCallContextFactory);
+        final TagModelDao cachedTag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
+        final TagModelDao tag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
+        insertTag(cachedTag);
+        insertTag(tag);
+
+        final Long cachedTagRecordId = tagDao.getRecordId(cachedTag);
+        Assert.assertEquals(getCacheSize(CacheType.RECORD_ID), 1);
+
+        // One key from the cache, one loaded from the database and one unknown key
+        final CacheController<String, Long> cache = controlCacheDispatcher.getCacheController(CacheType.RECORD_ID);
+        final Map<String, Long> recordIds = cache.getAll(List.of(cachedTag.getId().toString(), tag.getId().toString(), UUID.randomUUID().toString()), new CacheLoaderArgument(ObjectType.TAG));
+        Assert.assertEquals(recordIds.size(), 2);
+        Assert.assertEquals(recordIds.get(cachedTag.getId().toString()), cachedTagRecordId);
+        Assert.assertEquals(recordIds.get(tag.getId().toString()), tagDao.getRecordId(tag));
+        Assert.assertEquals(getCacheSize(CacheType.RECORD_ID), 2);
+
+        final Map<UUID, Long> recordIdsFromDao = nonEntityDao.retrieveRecordIdsFromObjects(List.of(cachedTag.getId(), tag.getId()), ObjectType.TAG, cache);
+        Assert.assertEquals(recordIdsFromDao, Map.of(cachedTag.getId(), cachedTagRecordId, tag.getId(), recordIds.get(tag.getId().toString())));
+    }
+
     private void insertTag(final TagModelDao modelDao) {
         transactionalSqlDao.execute(false, new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
@@ -17,11 +17,22 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.cache.Cache;
 import javax.cache.CacheException;
 
 import org.killbill.billing.util.UtilTestSuiteNoDB;
 import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -52,7 +63,7 @@ public class TestKillBillCacheController extends UtilTestSuiteNoDB {
             }
         };
 
-        final KillBillCacheController<String, Long> killBillCacheController = new KillBillCacheController<String, Long>(cache, baseCacheLoader);
+        final KillBillCacheController<String, Long> killBillCacheController = new KillBillCacheController<String, Long>(cache, baseCacheLoader, new NoOpMetricRegistry());
 
         try {
             killBillCacheController.getKeys();
@@ -64,4 +75,63 @@ public class TestKillBillCacheController extends UtilTestSuiteNoDB {
         // This will go back to the cache loader
         Assert.assertEquals(killBillCacheController.get("12", null), new Long(12));
     }
+
+    @Test(groups = "fast")
+    public void testConcurrentMisses() throws Exception {
+        final ConcurrentHashMap<String, Long> backingMap = new ConcurrentHashMap<>();
+        final Cache cache = Mockito.mock(Cache.class);
+        Mockito.when(cache.get(Mockito.any())).thenAnswer(invocation -> backingMap.get(invocation.getArgument(0)));
+        Mockito.doAnswer(invocation -> backingMap.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache).put(Mockito.any(), Mockito.any());
+
+        final CountDownLatch slowLoadStarted = new CountDownLatch(1);
+        final CountDownLatch slowLoadRelease = new CountDownLatch(1);
+        final AtomicInteger nbSlowLoads = new AtomicInteger();
+        final BaseCacheLoader<String, Long> baseCacheLoader = new BaseCacheLoader<String, Long>() {
+            @Override
+            public CacheType getCacheType() {
+                return CacheType.RECORD_ID;
+            }
+
+            @Override
+            public Long compute(final String key, final CacheLoaderArgument cacheLoaderArgument) {
+                if ("1".equals(key)) {
+                    nbSlowLoads.incrementAndGet();
+                    slowLoadStarted.countDown();
+                    try {
+                        slowLoadRelease.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Long.valueOf(key);
+            }
+        };
+
+        final KillBillCacheController<String, Long> killBillCacheController = new KillBillCacheController<String, Long>(cache, baseCacheLoader, new NoOpMetricRegistry());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<Long>> slowLoads = new ArrayList<>();
+            slowLoads.add(executor.submit(() -> killBillCacheController.get("1", null)));
+            Assert.assertTrue(slowLoadStarted.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                slowLoads.add(executor.submit(() -> killBillCacheController.get("1", null)));
+            }
+
+            // A miss on another key isn't blocked by the slow load
+            Assert.assertEquals(executor.submit(() -> killBillCacheController.get("2", null)).get(10, TimeUnit.SECONDS), Long.valueOf(2));
+
+            slowLoadRelease.countDown();
+            for (final Future<Long> slowLoad : slowLoads) {
+                Assert.assertEquals(slowLoad.get(10, TimeUnit.SECONDS), Long.valueOf(1));
+            }
+        } finally {
+            slowLoadRelease.countDown();
+            executor.shutdownNow();
+        }
+
+        // Concurrent misses on the same key shared one load
+        Assert.assertEquals(nbSlowLoads.get(), 1);
+        Assert.assertEquals(backingMap.get("1"), Long.valueOf(1));
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.awaitility.Awaitility;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.glue.RedissonCacheClientProvider;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
+import org.mockito.Mockito;
+import org.redisson.api.RedissonClient;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import redis.embedded.RedisServer;
+
+public class TestNearCacheController extends UtilTestSuiteNoDB {
+
+    private static final int REDIS_PORT = 56380;
+
+    private RedisServer redisServer;
+    private RedissonClient redissonClientNode1;
+    private RedissonClient redissonClientNode2;
+
+    @BeforeClass(groups = "fast")
+    public void startRedis() throws Exception {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+
+        redissonClientNode1 = new RedissonCacheClientProvider("redis://127.0.0.1:" + REDIS_PORT, 1, null).get();
+        redissonClientNode2 = new RedissonCacheClientProvider("redis://127.0.0.1:" + REDIS_PORT, 1, null).get();
+    }
+
+    @AfterClass(groups = "fast")
+    public void stopRedis() throws Exception {
+        redissonClientNode1.shutdown();
+        redissonClientNode2.shutdown();
+        redisServer.stop();
+    }
+
+    @Test(groups = "fast")
+    public void testNearCacheWithInvalidation() {
+        final AtomicInteger nbRemoteGets = new AtomicInteger();
+        final CacheController<String, Long> remoteCacheController = createRemoteCacheController(nbRemoteGets);
+
+        // Two nodes sharing the same remote cache
+        final NearCacheController<String, Long> node1 = new NearCacheController<String, Long>(remoteCacheController, 100, 0L, new NearCacheInvalidationTopic(redissonClientNode1), new NoOpMetricRegistry());
+        final NearCacheController<String, Long> node2 = new NearCacheController<String, Long>(remoteCacheController, 100, 0L, new NearCacheInvalidationTopic(redissonClientNode2), new NoOpMetricRegistry());
+
+        Assert.assertEquals(node1.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(node2.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(nbRemoteGets.get(), 2);
+
+        // No more network round trip after the first load
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(node1.get("1", null), Long.valueOf(1));
+            Assert.assertEquals(node2.get("1", null), Long.valueOf(1));
+        }
+        Assert.assertEquals(nbRemoteGets.get(), 2);
+
+        // A removal on node1 evicts the entry on node2 as well
+        node1.remove("1");
+        Assert.assertEquals(node1.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(nbRemoteGets.get(), 3);
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            node2.get("1", null);
+            return nbRemoteGets.get() == 4;
+        });
+
+        // Same for removeAll
+        node2.removeAll();
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            node1.get("1", null);
+            return nbRemoteGets.get() == 5;
+        });
+    }
+
+    @Test(groups = "fast")
+    public void testNearCacheWithTTL() throws InterruptedException {
+        final AtomicInteger nbRemoteGets = new AtomicInteger();
+        final NearCacheController<String, Long> nearCacheController = new NearCacheController<String, Long>(createRemoteCacheController(nbRemoteGets), 100, 100L,
+                                                                                                             new NearCacheInvalidationTopic(redissonClientNode1), new NoOpMetricRegistry());
+
+        Assert.assertEquals(nearCacheController.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(nearCacheController.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(nbRemoteGets.get(), 1);
+
+        Thread.sleep(200);
+        Assert.assertEquals(nearCacheController.get("1", null), Long.valueOf(1));
+        Assert.assertEquals(nbRemoteGets.get(), 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheController<String, Long> createRemoteCacheController(final AtomicInteger nbRemoteGets) {
+        final CacheController<String, Long> remoteCacheController = Mockito.mock(CacheController.class);
+        Mockito.when(remoteCacheController.getCacheType()).thenReturn(CacheType.RECORD_ID);
+        Mockito.when(remoteCacheController.get(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> {
+            nbRemoteGets.incrementAndGet();
+            return Long.valueOf(invocation.<String>getArgument(0));
+        });
+        return remoteCacheController;
+    }
+}
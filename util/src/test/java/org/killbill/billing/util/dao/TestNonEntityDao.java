@@ -20,6 +20,8 @@ package org.killbill.billing.util.dao;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.killbill.billing.ObjectType;
@@ -86,6 +88,37 @@ public class TestNonEntityDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(resultAccountRecordId, accountRecordId);
     }
 
+    @Test(groups = "slow")
+    public void testRetrieveRecordIdsAndIdsFromObjects() throws IOException {
+        accountRecordId = generateAccountRecordId(accountId);
+        final UUID otherAccountId = UUID.randomUUID();
+        final Long otherAccountRecordId = generateAccountRecordId(otherAccountId);
+        final UUID unknownAccountId = UUID.randomUUID();
+
+        final Map<UUID, Long> recordIds = nonEntityDao.retrieveRecordIdsFromObjects(List.of(accountId, otherAccountId, unknownAccountId), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(recordIds, Map.of(accountId, accountRecordId, otherAccountId, otherAccountRecordId));
+
+        final Map<UUID, Long> accountRecordIds = nonEntityDao.retrieveAccountRecordIdsFromObjects(List.of(accountId, otherAccountId, unknownAccountId), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(accountRecordIds, Map.of(accountId, accountRecordId, otherAccountId, otherAccountRecordId));
+
+        final Map<Long, UUID> ids = nonEntityDao.retrieveIdsFromObjects(List.of(accountRecordId, otherAccountRecordId, otherAccountRecordId + 1000), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(ids, Map.of(accountRecordId, accountId, otherAccountRecordId, otherAccountId));
+
+        Assert.assertTrue(nonEntityDao.retrieveRecordIdsFromObjects(List.of(), ObjectType.ACCOUNT, null).isEmpty());
+    }
+
+    @Test(groups = "slow")
+    public void testRetrieveAccountRecordIdsFromOtherObjects() throws IOException {
+        accountRecordId = generateAccountRecordId(accountId);
+        insertTagDefinition();
+        insertTag();
+
+        final Map<UUID, Long> accountRecordIds = nonEntityDao.retrieveAccountRecordIdsFromObjects(List.of(tagId, UUID.randomUUID()), ObjectType.TAG, null);
+        Assert.assertEquals(accountRecordIds, Map.of(tagId, accountRecordId));
+
+        Assert.assertTrue(nonEntityDao.retrieveAccountRecordIdsFromObjects(List.of(tagDefinitionId), ObjectType.TAG_DEFINITION, null).isEmpty());
+    }
+
     @Test(groups = "slow")
     public void testRetrieveTenantRecordIdFromObject() throws IOException {
         accountRecordId = generateAccountRecordId(accountId);
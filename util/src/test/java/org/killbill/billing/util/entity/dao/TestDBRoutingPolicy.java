@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.DBRouterConfig;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
+import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
+import org.skife.config.ConfigurationObjectFactory;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestDBRoutingPolicy extends UtilTestSuiteNoDB {
+
+    private IDBI rwDbi;
+    private IDBI roDbi;
+    private Handle rwKeepAliveHandle;
+    private Handle roKeepAliveHandle;
+    private DBRoutingPolicy initialRoutingPolicy;
+
+    public interface SourceSqlDao {
+
+        @SqlQuery("select name from source")
+        String getSource();
+
+        @SqlQuery("select name from source")
+        String getSourceFromLatestState();
+
+        @SqlQuery("select name from source")
+        String getSourceForAccount(@BindBean final InternalTenantContext context);
+
+        @SqlUpdate("update source set name = name")
+        void updateSourceForAccount(@BindBean final InternalTenantContext context);
+    }
+
+    @BeforeMethod(groups = "fast")
+    public void setUpDatabases() {
+        if (hasFailed()) {
+            return;
+        }
+
+        // Two distinct in-memory databases, standing in for the RW instance and its replica
+        rwDbi = new DBI("jdbc:h2:mem:rw-" + UUID.randomUUID());
+        roDbi = new DBI("jdbc:h2:mem:ro-" + UUID.randomUUID());
+        rwKeepAliveHandle = createSource(rwDbi, "rw");
+        roKeepAliveHandle = createSource(roDbi, "ro");
+        roKeepAliveHandle.execute("create table replica_lag (seconds int)");
+        roKeepAliveHandle.execute("insert into replica_lag values (0)");
+
+        initialRoutingPolicy = DBRouterUntyped.getRoutingPolicy();
+    }
+
+    @AfterMethod(groups = "fast")
+    public void tearDownDatabases() {
+        if (hasFailed()) {
+            return;
+        }
+
+        DBRouterUntyped.setRoutingPolicy(initialRoutingPolicy);
+        rwKeepAliveHandle.close();
+        roKeepAliveHandle.close();
+    }
+
+    @Test(groups = "fast")
+    public void testDefaultRouting() throws Throwable {
+        final DBRouter<SourceSqlDao> dbRouter = new DBRouter<SourceSqlDao>(rwDbi, roDbi, SourceSqlDao.class);
+
+        Assert.assertEquals(dbRouter.onDemand(true).getSource(), "rw");
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "ro");
+            Assert.assertEquals(dbRouter.onDemand(false).getSource(), "rw");
+            // Calls after a write stay on the RW instance
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "rw");
+            return null;
+        });
+    }
+
+    @Test(groups = "fast")
+    public void testReadYourWrites() throws Throwable {
+        DBRouterUntyped.setRoutingPolicy(createRoutingPolicy("org.killbill.dao.ro.readYourWritesWindow", "1h"));
+        final DBRouter<SourceSqlDao> dbRouter = new DBRouter<SourceSqlDao>(rwDbi, roDbi, SourceSqlDao.class);
+
+        // Distinct API calls (different user tokens) for the same account
+        final InternalTenantContext writerContext = createContext(1L, 10L);
+        final InternalTenantContext readerContext = createContext(1L, 10L);
+        final InternalTenantContext otherAccountContext = createContext(1L, 11L);
+        final InternalTenantContext otherTenantContext = createContext(2L, 10L);
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(writerContext), "ro");
+            dbRouter.onDemand(false).updateSourceForAccount(writerContext);
+            return null;
+        });
+
+        // New calls: only the account which was written to is pinned to the RW instance
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(readerContext), "rw");
+            // Unlike a write, this doesn't affect the subsequent calls
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(otherAccountContext), "ro");
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(otherTenantContext), "ro");
+            return null;
+        });
+
+        // Reads made on the RW instance (e.g. duplicate checks) don't pin the account
+        withRODBIAllowed(() -> dbRouter.onDemand(false).getSourceForAccount(otherAccountContext));
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(otherAccountContext), "ro");
+            return null;
+        });
+
+        // Writes without account pin the whole tenant
+        withRODBIAllowed(() -> {
+            dbRouter.onDemand(false).updateSourceForAccount(createContext(2L, null));
+            return null;
+        });
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceForAccount(otherTenantContext), "rw");
+            return null;
+        });
+    }
+
+    @Test(groups = "fast")
+    public void testMaxReplicaLag() throws Throwable {
+        final DefaultDBRoutingPolicy routingPolicy = createRoutingPolicy("org.killbill.dao.ro.maxReplicaLag", "2s",
+                                                                          "org.killbill.dao.ro.replicaLagQuery", "select seconds from replica_lag",
+                                                                          "org.killbill.dao.ro.replicaLagProbeInterval", "0s");
+        DBRouterUntyped.setRoutingPolicy(routingPolicy);
+        final DBRouter<SourceSqlDao> dbRouter = new DBRouter<SourceSqlDao>(rwDbi, roDbi, SourceSqlDao.class);
+
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "ro");
+            return null;
+        });
+
+        roKeepAliveHandle.execute("update replica_lag set seconds = 5");
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "rw");
+            return null;
+        });
+        Assert.assertEquals(routingPolicy.getReplicaLagSeconds(), 5.0);
+
+        roKeepAliveHandle.execute("update replica_lag set seconds = 1");
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "ro");
+            return null;
+        });
+    }
+
+    @Test(groups = "fast")
+    public void testRoutingOverrides() throws Throwable {
+        DBRouterUntyped.setRoutingPolicy(createRoutingPolicy("org.killbill.dao.ro.overrides", "SourceSqlDao.getSourceFromLatestState=RW"));
+        final DBRouter<SourceSqlDao> dbRouter = new DBRouter<SourceSqlDao>(rwDbi, roDbi, SourceSqlDao.class);
+
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(true).getSourceFromLatestState(), "rw");
+            // Unlike a write, the override doesn't affect the subsequent calls
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "ro");
+            return null;
+        });
+
+        DBRouterUntyped.setRoutingPolicy(createRoutingPolicy("org.killbill.dao.ro.overrides", "SourceSqlDao.getSource=RO,SourceSqlDao.updateSourceForAccount=RO"));
+        withRODBIAllowed(() -> {
+            Assert.assertEquals(dbRouter.onDemand(false).getSource(), "ro");
+            // Overrides never send a write to the RO instance
+            dbRouter.onDemand(false).updateSourceForAccount(createContext(1L, 10L));
+            Assert.assertEquals(dbRouter.onDemand(true).getSource(), "rw");
+            return null;
+        });
+
+        // A class level RO override would also apply to the writes
+        try {
+            createRoutingPolicy("org.killbill.dao.ro.overrides", "SourceSqlDao=RO");
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(), "Invalid routing override SourceSqlDao=RO, RO overrides must be set per SQL DAO method");
+        }
+    }
+
+    private DefaultDBRoutingPolicy createRoutingPolicy(final String... properties) {
+        final Properties config = new Properties();
+        for (int i = 0; i < properties.length; i += 2) {
+            config.setProperty(properties[i], properties[i + 1]);
+        }
+        final DBRouterConfig dbRouterConfig = new ConfigurationObjectFactory(config).build(DBRouterConfig.class);
+        return new DefaultDBRoutingPolicy(roDbi, dbRouterConfig, new NoOpMetricRegistry());
+    }
+
+    private Object withRODBIAllowed(final WithProfilingCallback<Object, Throwable> callback) throws Throwable {
+        return DBRouterUntyped.withRODBIAllowed(true, callback);
+    }
+
+    private InternalTenantContext createContext(final Long tenantRecordId, @Nullable final Long accountRecordId) {
+        return new InternalCallContext(tenantRecordId, accountRecordId, null, null, UUID.randomUUID(), "test", CallOrigin.EXTERNAL, UserType.ADMIN, null, null, clock.getUTCNow(), clock.getUTCNow());
+    }
+
+    private Handle createSource(final IDBI dbi, final String name) {
+        // Keep a connection open, so that the in-memory database isn't dropped
+        final Handle handle = dbi.open();
+        handle.execute("create table source (name varchar(2))");
+        handle.execute("insert into source values (?)", name);
+        return handle;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020-2022 Equinix, Inc
+ * Copyright 2014-2022 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.definition.DBRouterConfig;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.killbill.billing.util.customfield.dao.CustomFieldSqlDao;
+import org.killbill.commons.metrics.impl.NoOpMetricRegistry;
+import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
+import org.skife.config.ConfigurationObjectFactory;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestReadYourWrites extends UtilTestSuiteWithEmbeddedDB {
+
+    private Handle replicaKeepAliveHandle;
+    private DBRoutingPolicy initialRoutingPolicy;
+    private EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
+
+    @BeforeMethod(groups = "slow")
+    public void setUpReplica() {
+        if (hasFailed()) {
+            return;
+        }
+
+        // Replica which hasn't received anything yet (not even the schema): any query sent to it fails
+        final IDBI replicaDbi = new DBI("jdbc:h2:mem:replica-" + UUID.randomUUID());
+        replicaKeepAliveHandle = replicaDbi.open();
+
+        final Properties config = new Properties();
+        config.setProperty("org.killbill.dao.ro.readYourWritesWindow", "1h");
+        initialRoutingPolicy = DBRouterUntyped.getRoutingPolicy();
+        DBRouterUntyped.setRoutingPolicy(new DefaultDBRoutingPolicy(replicaDbi, new ConfigurationObjectFactory(config).build(DBRouterConfig.class), new NoOpMetricRegistry()));
+
+        transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, replicaDbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
+    }
+
+    @AfterMethod(groups = "slow")
+    public void tearDownReplica() {
+        if (hasFailed()) {
+            return;
+        }
+
+        DBRouterUntyped.setRoutingPolicy(initialRoutingPolicy);
+        replicaKeepAliveHandle.close();
+    }
+
+    @Test(groups = "slow")
+    public void testReadAfterWriteFromAnotherCall() throws Throwable {
+        // Two API calls for the same account, e.g. a POST followed by a GET (distinct user tokens, no account id in the API context)
+        final InternalCallContext writerContext = createContext(internalCallContext.getAccountRecordId(), "writer");
+        final InternalCallContext readerContext = createContext(internalCallContext.getAccountRecordId(), "reader");
+        final InternalCallContext otherAccountContext = createContext(internalCallContext.getAccountRecordId() + 1, "other");
+
+        final CustomFieldModelDao customField = new CustomFieldModelDao(clock.getUTCNow(), "name", "value", UUID.randomUUID(), ObjectType.ACCOUNT);
+        withRODBIAllowed(false, () -> transactionalSqlDao.execute(false, entitySqlDaoWrapperFactory -> entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class).create(customField, writerContext)));
+
+        // The account is pinned to the RW instance
+        final CustomFieldModelDao fromReader = (CustomFieldModelDao) withRODBIAllowed(true, () -> getCustomField(customField.getId(), readerContext));
+        Assert.assertNotNull(fromReader);
+        Assert.assertEquals(fromReader.getFieldValue(), "value");
+
+        // Other accounts still read from the replica
+        try {
+            withRODBIAllowed(true, () -> getCustomField(customField.getId(), otherAccountContext));
+            Assert.fail("Read should have been sent to the replica");
+        } catch (final RuntimeException expected) {
+            Assert.assertFalse(expected instanceof ReadYourWritesTracker.StaleReadException);
+        }
+
+        // A RO transaction aborted on a pinned account doesn't prevent the next reads of the call from using the replica
+        Assert.assertEquals(withRODBIAllowed(true, () -> {
+            getCustomField(customField.getId(), readerContext);
+            return DBRouterUntyped.getCurrentState();
+        }), DBRouterUntyped.THREAD_STATE.RO_ALLOWED);
+    }
+
+    private CustomFieldModelDao getCustomField(final UUID customFieldId, final InternalCallContext context) {
+        return transactionalSqlDao.execute(true, entitySqlDaoWrapperFactory -> entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class).getById(customFieldId.toString(), context));
+    }
+
+    private InternalCallContext createContext(final Long accountRecordId, final String userName) {
+        return new InternalCallContext(internalCallContext.getTenantRecordId(), accountRecordId, null, null, UUID.randomUUID(), userName, CallOrigin.EXTERNAL, UserType.ADMIN, null, null, clock.getUTCNow(), clock.getUTCNow());
+    }
+
+    private Object withRODBIAllowed(final boolean allowRODBI, final WithProfilingCallback<Object, Throwable> callback) throws Throwable {
+        return DBRouterUntyped.withRODBIAllowed(allowRODBI, callback);
+    }
+}